@@ -1083,8 +1083,12 @@ public class DrlVoidVisitorAdapter<A> extends VoidVisitorAdapter<A> implements D
     }
 
     @Override
-    public void visit(SwitchExpr switchExpr, A arg) {
-        wrapped.visit(switchExpr, arg);
+    public void visit(SwitchExpr n, A arg) {
+        if (wrapped != null) {
+            wrapped.visit(n, arg);
+        } else {
+            super.visit(n, arg);
+        }
     }
 
     @Override
@@ -1097,8 +1101,12 @@ public class DrlVoidVisitorAdapter<A> extends VoidVisitorAdapter<A> implements D
     }
 
     @Override
-    public void visit(YieldStmt yieldStmt, A arg) {
-        wrapped.visit(yieldStmt, arg);
+    public void visit(YieldStmt n, A arg) {
+        if (wrapped != null) {
+            wrapped.visit(n, arg);
+        } else {
+            super.visit(n, arg);
+        }
     }
 
     @Override
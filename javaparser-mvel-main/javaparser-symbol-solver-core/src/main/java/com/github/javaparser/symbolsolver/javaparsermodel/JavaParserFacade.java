@@ -25,6 +25,7 @@ import static com.github.javaparser.resolution.Navigator.demandParentNode;
 import static com.github.javaparser.resolution.model.SymbolReference.solved;
 import static com.github.javaparser.resolution.model.SymbolReference.unsolved;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -68,7 +69,8 @@ public class JavaParserFacade {
     private static final DataKey<ResolvedType> TYPE_WITHOUT_LAMBDAS_RESOLVED = new DataKey<ResolvedType>() {
     };
 
-    private static final Map<TypeSolver, JavaParserFacade> instances = new WeakHashMap<>();
+    // values are weak too: a facade references its type solver, which would otherwise keep its own key reachable
+    private static final Map<TypeSolver, WeakReference<JavaParserFacade>> instances = new WeakHashMap<>();
 
     private static final String JAVA_LANG_STRING = String.class.getCanonicalName();
 
@@ -81,9 +83,43 @@ public class JavaParserFacade {
      *
      * @see <a href="https://github.com/javaparser/javaparser/issues/2668">https://github.com/javaparser/javaparser/issues/2668</a>
      * @see <a href="https://github.com/javaparser/javaparser/issues/2671">https://github.com/javaparser/javaparser/issues/2671</a>
+     * <br>
+     * <br>A root type solver implementing {@link Provider} supplies its own facade, which is returned without locking.
+     */
+    public static JavaParserFacade get(TypeSolver typeSolver) {
+        TypeSolver root = typeSolver.getRoot();
+        if (root instanceof Provider) {
+            return ((Provider) root).getFacade();
+        }
+        return getShared(root);
+    }
+
+    private static synchronized JavaParserFacade getShared(TypeSolver root) {
+        WeakReference<JavaParserFacade> ref = instances.get(root);
+        JavaParserFacade facade = ref != null ? ref.get() : null;
+        if (facade == null) {
+            facade = new JavaParserFacade(root);
+            instances.put(root, new WeakReference<>(facade));
+        }
+        return facade;
+    }
+
+    /**
+     * Creates a facade that is not shared through {@link #get(TypeSolver)}, for a caller that keeps it to itself,
+     * for instance to confine it to one thread.
      */
-    public static synchronized JavaParserFacade get(TypeSolver typeSolver) {
-        return instances.computeIfAbsent(typeSolver.getRoot(), JavaParserFacade::new);
+    public static JavaParserFacade create(TypeSolver typeSolver) {
+        return new JavaParserFacade(typeSolver);
+    }
+
+    /**
+     * A root type solver owning the facade {@link #get(TypeSolver)} returns for it. The facade is then created once
+     * and lives as long as the type solver, and looking it up takes no lock, which matters as the symbol solver
+     * calls {@link #get(TypeSolver)} throughout resolution.
+     */
+    public interface Provider {
+
+        JavaParserFacade getFacade();
     }
 
     /**
@@ -404,7 +440,7 @@ public class JavaParserFacade {
                 .orElseThrow(() -> new RuntimeException("TypeDeclaration unexpectedly empty."));
         Set<MethodUsage> allMethods = resolvedTypdeDecl.getAllMethods();
 
-        if (scope.isTypeExpr()) {
+        if (isTypeScope(scope)) {
             // static methods should match all params
             List<MethodUsage> staticMethodUsages = allMethods.stream()
                     .filter(it -> it.getDeclaration().isStatic())
@@ -446,6 +482,14 @@ public class JavaParserFacade {
         return result.get();
     }
 
+    /**
+     * A simple name such as {@code Person} in {@code Person::getAge} may be parsed as a {@link NameExpr}; it names a
+     * type, rather than a receiver, when no value of that name is in scope.
+     */
+    private boolean isTypeScope(Expression scope) {
+        return scope.isTypeExpr() || (scope.isNameExpr() && !solve(scope.asNameExpr()).isSolved());
+    }
+
     protected ResolvedType getBinaryTypeConcrete(Node left, Node right, boolean solveLambdas, BinaryExpr.Operator operator) {
         ResolvedType leftType = getTypeConcrete(left, solveLambdas);
         ResolvedType rightType = getTypeConcrete(right, solveLambdas);
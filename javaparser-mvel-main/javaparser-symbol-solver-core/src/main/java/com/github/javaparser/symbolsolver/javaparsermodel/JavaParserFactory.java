@@ -60,6 +60,9 @@ public class JavaParserFactory {
         }
             if (node instanceof CompilationUnit) {
             return new CompilationUnitContext((CompilationUnit) node, typeSolver);
+        }
+            if (node instanceof ConditionalExpr) {
+            return new ConditionalExprContext((ConditionalExpr) node, typeSolver);
         }
             if (node instanceof EnclosedExpr) {
             return new EnclosedExprContext((EnclosedExpr) node, typeSolver);
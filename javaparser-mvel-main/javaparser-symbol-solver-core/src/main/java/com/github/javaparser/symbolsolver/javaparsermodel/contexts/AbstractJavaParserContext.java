@@ -148,7 +148,8 @@ public abstract class AbstractJavaParserContext<N extends Node> implements Conte
 
         // First check if there are any pattern expressions available to this node.
         Context parentContext = optionalParentContext.get();
-        if(parentContext instanceof BinaryExprContext || parentContext instanceof IfStatementContext) {
+        if(parentContext instanceof BinaryExprContext || parentContext instanceof IfStatementContext
+                || parentContext instanceof ConditionalExprContext) {
             List<PatternExpr> patternExprs = parentContext.patternExprsExposedToChild(this.getWrappedNode());
 
             Optional<PatternExpr> localResolutionResults = patternExprs
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2013-2023 The JavaParser Team.
+ *
+ * This file is part of JavaParser.
+ *
+ * JavaParser can be used either under the terms of
+ * a) the GNU Lesser General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ * b) the terms of the Apache License
+ *
+ * You should have received a copy of both licenses in LICENCE.LGPL and
+ * LICENCE.APACHE. Please refer to those files for details.
+ *
+ * JavaParser is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ */
+
+
+package com.github.javaparser.symbolsolver.javaparsermodel.contexts;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.PatternExpr;
+import com.github.javaparser.resolution.Context;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConditionalExprContext extends AbstractJavaParserContext<ConditionalExpr> {
+
+    public ConditionalExprContext(ConditionalExpr wrappedNode, TypeSolver typeSolver) {
+        super(wrappedNode, typeSolver);
+    }
+
+    /**
+     * <pre>{@code
+     * a instanceof String s ? s.length() : 0   // s is in scope in the then expression
+     * !(a instanceof String s) ? 0 : s.length() // s is in scope in the else expression
+     * }</pre>
+     */
+    @Override
+    public List<PatternExpr> patternExprsExposedToChild(Node child) {
+        Context conditionContext = JavaParserFactory.getContext(wrappedNode.getCondition(), typeSolver);
+
+        List<PatternExpr> results = new ArrayList<>();
+        if (child == wrappedNode.getThenExpr()) {
+            results.addAll(conditionContext.patternExprsExposedFromChildren());
+        } else if (child == wrappedNode.getElseExpr()) {
+            results.addAll(conditionContext.negatedPatternExprsExposedFromChildren());
+        }
+        return results;
+    }
+}
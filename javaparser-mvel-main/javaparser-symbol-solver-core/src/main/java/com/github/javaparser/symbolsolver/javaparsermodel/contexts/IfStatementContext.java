@@ -21,9 +21,11 @@
 package com.github.javaparser.symbolsolver.javaparsermodel.contexts;
 
 import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.PatternExpr;
 import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.resolution.Context;
 import com.github.javaparser.resolution.TypeSolver;
 import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFactory;
@@ -46,13 +48,13 @@ public class IfStatementContext extends StatementContext<IfStmt> {
 
         List<PatternExpr> results = new ArrayList<>();
 
-        boolean givenNodeIsWithinThenStatement = wrappedNode.getThenStmt().containsWithinRange(child);
+        boolean givenNodeIsWithinThenStatement = isWithin(wrappedNode.getThenStmt(), child);
         if(givenNodeIsWithinThenStatement) {
             results.addAll(conditionContext.patternExprsExposedFromChildren());
         }
 
         wrappedNode.getElseStmt().ifPresent(elseStatement -> {
-            boolean givenNodeIsWithinElseStatement = elseStatement.containsWithinRange(child);
+            boolean givenNodeIsWithinElseStatement = isWithin(elseStatement, child);
             if(givenNodeIsWithinElseStatement) {
                 results.addAll(conditionContext.negatedPatternExprsExposedFromChildren());
             }
@@ -61,6 +63,39 @@ public class IfStatementContext extends StatementContext<IfStmt> {
         return results;
     }
 
+    /**
+     * The pattern expressions introduced to the statements following this one, as in
+     * {@code if (!(a instanceof String s)) return;}: an if without an else introduces the patterns that hold when its
+     * condition is false if its then statement cannot complete normally.
+     */
+    public List<PatternExpr> patternExprsExposedToFollowingStatements() {
+        if (wrappedNode.getElseStmt().isPresent() || canCompleteNormally(wrappedNode.getThenStmt())) {
+            return new ArrayList<>();
+        }
+        Context conditionContext = JavaParserFactory.getContext(wrappedNode.getCondition(), typeSolver);
+        return conditionContext.negatedPatternExprsExposedFromChildren();
+    }
+
+    /**
+     * A conservative approximation: only a jump, or a block ending in one, is known not to complete normally.
+     */
+    private static boolean canCompleteNormally(Statement statement) {
+        if (statement.isBlockStmt()) {
+            NodeList<Statement> statements = statement.asBlockStmt().getStatements();
+            return statements.isEmpty() || canCompleteNormally(statements.getLast().get());
+        }
+        return !(statement.isReturnStmt() || statement.isThrowStmt() || statement.isBreakStmt()
+                || statement.isContinueStmt() || statement.isYieldStmt());
+    }
+
+    /**
+     * Whether the child is the statement or one of its descendants. This is decided on the tree rather than
+     * on token ranges, so that nodes created after parsing, which have no range, are found as well.
+     */
+    private static boolean isWithin(Statement statement, Node child) {
+        return statement == child || statement.isAncestorOf(child);
+    }
+
 
     /**
      * <pre>{@code
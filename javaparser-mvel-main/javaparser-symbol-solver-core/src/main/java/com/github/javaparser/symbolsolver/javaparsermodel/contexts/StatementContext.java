@@ -27,6 +27,7 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.LambdaExpr;
 import com.github.javaparser.ast.expr.PatternExpr;
 import com.github.javaparser.ast.nodeTypes.NodeWithStatements;
+import com.github.javaparser.ast.stmt.IfStmt;
 import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.resolution.Context;
 import com.github.javaparser.resolution.SymbolDeclarator;
@@ -150,6 +151,11 @@ public class StatementContext<N extends Statement> extends AbstractJavaParserCon
             return parentContext.solveSymbolAsValue(name);
         }
         if (!(parentOfWrappedNode instanceof NodeWithStatements)) {
+            // Example: {@code if (a instanceof String s) return s;}
+            Optional<Value> patternReference = solvePatternAsValue(parentContext.patternExprsExposedToChild(wrappedNode), name);
+            if (patternReference.isPresent()) {
+                return patternReference;
+            }
             return parentContext.solveSymbolAsValue(name);
         }
 
@@ -174,10 +180,34 @@ public class StatementContext<N extends Statement> extends AbstractJavaParserCon
             if (symbolReference.isPresent()) {
                 return symbolReference;
             }
+            if (statement instanceof IfStmt) {
+                // Example: {@code if (!(a instanceof String s)) return; return s;}
+                symbolReference = solvePatternAsValue(((IfStatementContext) JavaParserFactory.getContext(statement, typeSolver))
+                        .patternExprsExposedToFollowingStatements(), name);
+                if (symbolReference.isPresent()) {
+                    return symbolReference;
+                }
+            }
         }
 
         // If nothing is found we should ask the grand parent context.
-         return parentContext.getParent().map(context -> context.solveSymbolAsValue(name)).orElse(Optional.empty());
+        Optional<Context> grandParentContext = parentContext.getParent();
+        if (!grandParentContext.isPresent()) {
+            return Optional.empty();
+        }
+        // Example: {@code if (a instanceof String s) { return s; }}
+        symbolReference = solvePatternAsValue(grandParentContext.get().patternExprsExposedToChild(parentOfWrappedNode), name);
+        if (symbolReference.isPresent()) {
+            return symbolReference;
+        }
+        return grandParentContext.get().solveSymbolAsValue(name);
+    }
+
+    private Optional<Value> solvePatternAsValue(List<PatternExpr> patternExprs, String name) {
+        return patternExprs.stream()
+                .filter(patternExpr -> patternExpr.getNameAsString().equals(name))
+                .findFirst()
+                .map(patternExpr -> Value.from(JavaParserSymbolDeclaration.patternVar(patternExpr, typeSolver)));
     }
 
     @Override
@@ -282,6 +312,14 @@ public class StatementContext<N extends Statement> extends AbstractJavaParserCon
                     // }
                     continue;
                 }
+                if (prevContext instanceof IfStatementContext) {
+                    // Example: {@code if (!(a instanceof String s)) return; return s;}
+                    for (PatternExpr patternExpr : ((IfStatementContext) prevContext).patternExprsExposedToFollowingStatements()) {
+                        if (patternExpr.getNameAsString().equals(name)) {
+                            return SymbolReference.solved(JavaParserSymbolDeclaration.patternVar(patternExpr, typeSolver));
+                        }
+                    }
+                }
                 if (prevContext instanceof StatementContext) {
                     // We have an explicit check for "StatementContext" to prevent a factorial increase of visited statements.
                     //
@@ -1,21 +1,29 @@
 package org.mvel3.benchmark;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.mvel3.CompilationResult;
+import org.mvel3.CompilerParameters;
 import org.mvel3.Evaluator;
 import org.mvel3.MVEL;
 import org.mvel3.Type;
 import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.mvel3.transpiler.context.Declaration;
 import org.openjdk.jmh.annotations.*;
 
 /**
  * Two threads compiling different expressions simultaneously against the shared
  * LambdaRegistry. Proves thread safety under load and gives a contention
  * baseline.
+ * <p>
+ * {@code compileAllCatalog} measures how bulk compilation of a catalog of distinct
+ * expressions via {@link MVEL#compileAll(List, int)} scales from 1 to N threads.
  */
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
@@ -70,4 +78,43 @@ public class ConcurrentCompilationBenchmark {
                 shared.expressions[local.threadIndex],
                 Integer.class, Collections.emptySet(), shared.types);
     }
+
+    @State(Scope.Benchmark)
+    public static class CatalogState {
+
+        @Param({"1", "2", "4", "8"})
+        int parallelism;
+
+        @Param({"64"})
+        int catalogSize;
+
+        List<CompilerParameters<?, ?, ?>> catalog;
+
+        @Setup(Level.Trial)
+        public void init() {
+            Map<String, Type<?>> types = new HashMap<>();
+            types.put("a", Type.type(int.class));
+            types.put("b", Type.type(int.class));
+
+            catalog = new ArrayList<>(catalogSize);
+            for (int i = 0; i < catalogSize; i++) {
+                // distinct constants, so no two entries share a class
+                catalog.add(MVEL.<Object>map(Declaration.from(types))
+                                .<Integer>out(Integer.class)
+                                .expression("a * b + " + i)
+                                .build());
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void resetRegistry() {
+            LambdaRegistry.INSTANCE.resetAndRemoveAllPersistedFiles();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<CompilationResult<?, ?, ?>> compileAllCatalog(CatalogState catalog) {
+        return new MVEL().compileAll(catalog.catalog, catalog.parallelism);
+    }
 }
@@ -8,8 +8,10 @@ import java.util.concurrent.TimeUnit;
 
 import org.mvel3.ClassManager;
 import org.mvel3.CompilerParameters;
+import org.mvel3.ContextShape;
 import org.mvel3.Evaluator;
 import org.mvel3.MVEL;
+import org.mvel3.ShapedContext;
 import org.mvel3.Type;
 import org.mvel3.benchmark.domain.FactionState;
 import org.mvel3.lambdaextractor.LambdaRegistry;
@@ -39,11 +41,24 @@ public class ContextConstructionBenchmark {
         }
     }
 
+    private static final ContextShape SHAPE = ContextShape.of(
+            Declaration.of("influence", int.class),
+            Declaration.of("atWar", boolean.class),
+            Declaration.of("stability", int.class),
+            Declaration.of("treasury", double.class),
+            Declaration.of("factionName", String.class));
+    private static final int INFLUENCE = SHAPE.slot("influence");
+    private static final int AT_WAR = SHAPE.slot("atWar");
+    private static final int STABILITY = SHAPE.slot("stability");
+    private static final int TREASURY = SHAPE.slot("treasury");
+    private static final int FACTION_NAME = SHAPE.slot("factionName");
+
     @State(Scope.Thread)
     public static class EvalState {
 
         Evaluator<Map<String, Object>, Void, Boolean> mapEvaluator;
         Evaluator<FactionState, Void, Boolean> pojoEvaluator;
+        Evaluator<ShapedContext, Void, Boolean> shapedEvaluator;
 
         @Setup(Level.Trial)
         public void compile() {
@@ -77,6 +92,14 @@ public class ContextConstructionBenchmark {
                             .build();
 
             pojoEvaluator = mvel.compilePojoEvaluator(params);
+
+            // SHAPED evaluator
+            shapedEvaluator = MVEL.shaped(SHAPE)
+                    .<Boolean>out(Boolean.class)
+                    .expression("influence > 50 && !atWar && stability > 30")
+                    .imports(Collections.emptySet())
+                    .classManager(new ClassManager())
+                    .compile();
         }
     }
 
@@ -104,6 +127,17 @@ public class ContextConstructionBenchmark {
         return fs;
     }
 
+    @Benchmark
+    public ShapedContext constructShapedContext() {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        return SHAPE.newContext()
+                .setInt(INFLUENCE, rng.nextInt(0, 100))
+                .setInt(STABILITY, rng.nextInt(0, 100))
+                .setDouble(TREASURY, rng.nextDouble(0, 5000))
+                .setObject(FACTION_NAME, FACTION_NAMES[rng.nextInt(100)])
+                .setBoolean(AT_WAR, rng.nextBoolean());
+    }
+
     @Benchmark
     public Boolean constructAndEvalMap(EvalState state) {
         ThreadLocalRandom rng = ThreadLocalRandom.current();
@@ -127,4 +161,16 @@ public class ContextConstructionBenchmark {
         fs.setAtWar(rng.nextBoolean());
         return state.pojoEvaluator.eval(fs);
     }
+
+    @Benchmark
+    public Boolean constructAndEvalShaped(EvalState state) {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        ShapedContext ctx = SHAPE.newContext()
+                .setInt(INFLUENCE, rng.nextInt(0, 100))
+                .setInt(STABILITY, rng.nextInt(0, 100))
+                .setDouble(TREASURY, rng.nextDouble(0, 5000))
+                .setObject(FACTION_NAME, FACTION_NAMES[rng.nextInt(100)])
+                .setBoolean(AT_WAR, rng.nextBoolean());
+        return state.shapedEvaluator.eval(ctx);
+    }
 }
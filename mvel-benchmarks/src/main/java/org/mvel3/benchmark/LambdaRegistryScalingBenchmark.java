@@ -0,0 +1,96 @@
+package org.mvel3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mvel3.lambdaextractor.LambdaKey;
+import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.mvel3.lambdaextractor.LambdaUtils;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of {@link LambdaRegistry#registerLambda(int, LambdaKey)} from 1 to 8 threads, registering a
+ * catalog of distinct lambdas as compiling threads do. Registration is striped by key hash, so throughput
+ * should grow with the thread count rather than flatten as it did with a registry wide lock.
+ * <p>
+ * Each thread reuses a fixed range of logical IDs, which keeps the registry size constant across iterations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dmvel3.compiler.lambda.persistence=false",
+        "-Dmvel3.compiler.lambda.resetOnTestStartup=true"
+})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LambdaRegistryScalingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RegistryState {
+
+        @Param({"256"})
+        int catalogSize;
+
+        LambdaKey[] keys;
+
+        @Setup(Level.Trial)
+        public void init() {
+            LambdaRegistry.INSTANCE.resetAndRemoveAllPersistedFiles();
+            keys = new LambdaKey[catalogSize];
+            for (int i = 0; i < catalogSize; i++) {
+                // every third lambda is a subtype overload of the one before, exercising the reuse path
+                String type = i % 3 == 2 ? "java.lang.String" : "java.lang.Object";
+                int body = i % 3 == 2 ? i - 1 : i;
+                keys[i] = LambdaUtils.createLambdaKeyFromMethodDeclarationString(
+                        "public boolean eval(" + type + " obj) { return obj.hashCode() == " + body + "; }");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
+
+        int logicalIdBase;
+        int next;
+
+        @Setup(Level.Trial)
+        public void init(RegistryState registry) {
+            int threadIndex = THREAD_COUNTER.getAndIncrement();
+            logicalIdBase = (1 + threadIndex) * registry.catalogSize;
+            // start threads at different keys, so they do not move through the stripes in lockstep
+            next = (threadIndex * 7) % registry.catalogSize;
+        }
+    }
+
+    private static int register(RegistryState registry, ThreadState thread) {
+        int index = thread.next;
+        thread.next = (index + 1) % registry.catalogSize;
+        return LambdaRegistry.INSTANCE.registerLambda(thread.logicalIdBase + index, registry.keys[index]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int registerLambda1Thread(RegistryState registry, ThreadState thread) {
+        return register(registry, thread);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public int registerLambda2Threads(RegistryState registry, ThreadState thread) {
+        return register(registry, thread);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int registerLambda4Threads(RegistryState registry, ThreadState thread) {
+        return register(registry, thread);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int registerLambda8Threads(RegistryState registry, ThreadState thread) {
+        return register(registry, thread);
+    }
+}
@@ -0,0 +1,74 @@
+package org.mvel3.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.mvel3.Evaluator;
+import org.mvel3.MVEL;
+import org.mvel3.Type;
+import org.mvel3.benchmark.domain.Holding;
+import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of a null-safe chain over computed properties. {@code holding!.liege!.liege!.name} evaluates each
+ * link once, calling {@link Holding#getLiege()} twice. The explicit guards it used to be lowered to,
+ * {@code holding.liege != null ? (holding.liege.liege != null ? holding.liege.liege.name : null) : null},
+ * call it five times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dmvel3.compiler.lambda.persistence=false",
+        "-Dmvel3.compiler.lambda.resetOnTestStartup=true"
+})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NullSafeNavigationBenchmark {
+
+    @State(Scope.Thread)
+    public static class NavigationState {
+
+        Evaluator<Map<String, Object>, Void, String> nullSafeChain;
+        Evaluator<Map<String, Object>, Void, String> explicitGuards;
+        Map<String, Object> context;
+
+        @Setup(Level.Trial)
+        public void compile() {
+            LambdaRegistry.INSTANCE.resetAndRemoveAllPersistedFiles();
+
+            Map<String, Type<?>> types = new HashMap<>();
+            types.put("holding", Type.type(Holding.class));
+            Set<String> imports = Collections.singleton(Holding.class.getCanonicalName());
+
+            MVEL mvel = new MVEL();
+            nullSafeChain = mvel.compileMapExpression(
+                    "holding!.liege!.liege!.name",
+                    String.class, imports, types);
+            explicitGuards = mvel.compileMapExpression(
+                    "holding.liege != null ? (holding.liege.liege != null ? holding.liege.liege.name : null) : null",
+                    String.class, imports, types);
+
+            Map<String, Holding> holdingsById = new HashMap<>();
+            holdingsById.put("kingdom", new Holding("Kingdom", null, holdingsById));
+            holdingsById.put("duchy", new Holding("Duchy", "kingdom", holdingsById));
+            holdingsById.put("county", new Holding("County", "duchy", holdingsById));
+
+            context = new HashMap<>();
+            context.put("holding", holdingsById.get("county"));
+        }
+    }
+
+    @Benchmark
+    public String nullSafeChain(NavigationState state) {
+        return state.nullSafeChain.eval(state.context);
+    }
+
+    @Benchmark
+    public String explicitGuards(NavigationState state) {
+        return state.explicitGuards.eval(state.context);
+    }
+}
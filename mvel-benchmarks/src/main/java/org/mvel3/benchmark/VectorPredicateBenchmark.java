@@ -0,0 +1,124 @@
+package org.mvel3.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.mvel3.ClassManager;
+import org.mvel3.Columns;
+import org.mvel3.Evaluator;
+import org.mvel3.MVEL;
+import org.mvel3.compiler.vector.VectorBackend;
+import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.mvel3.transpiler.context.Declaration;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the scalar row loop of a columns evaluator against its Vector API kernel, over batches of
+ * {@code rows} faction states. The vector benchmarks run in forks with {@code -Dmvel3.compiler.vector=true}; both
+ * report the time per row.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgsAppend = {
+        "-Dmvel3.compiler.lambda.persistence=false",
+        "-Dmvel3.compiler.lambda.resetOnTestStartup=true",
+        "--add-modules", "jdk.incubator.vector"
+})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class VectorPredicateBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @State(Scope.Thread)
+    public static class BatchState {
+
+        Evaluator<Columns, Void, long[]> predicate;
+        Evaluator<Columns, Void, double[]> score;
+        Columns columns;
+
+        @Setup(Level.Trial)
+        public void compile() {
+            LambdaRegistry.INSTANCE.resetAndRemoveAllPersistedFiles();
+
+            Declaration<?>[] declarations = {Declaration.of("influence", int.class),
+                                             Declaration.of("atWar", boolean.class),
+                                             Declaration.of("stability", int.class),
+                                             Declaration.of("treasury", double.class)};
+
+            predicate = MVEL.columns(declarations)
+                    .<long[]>out(long[].class)
+                    .expression("influence > 50 && !atWar && stability > 30")
+                    .imports(Collections.emptySet())
+                    .classManager(new ClassManager())
+                    .compile();
+
+            score = MVEL.columns(declarations)
+                    .<double[]>out(double[].class)
+                    .expression("influence * 0.6 + stability * 0.4 - treasury / 1000.0")
+                    .imports(Collections.emptySet())
+                    .classManager(new ClassManager())
+                    .compile();
+
+            // The vector forks must measure the kernels, not a silent fallback to the scalar row loop
+            if (Boolean.getBoolean("mvel3.compiler.vector")
+                    && !(VectorBackend.isLowered(predicate) && VectorBackend.isLowered(score))) {
+                throw new IllegalStateException("Expressions were not lowered to Vector API kernels");
+            }
+
+            columns = new Columns(ROWS, new int[ROWS], new boolean[ROWS], new int[ROWS], new double[ROWS]);
+        }
+
+        @Setup(Level.Iteration)
+        public void mutateContext() {
+            ThreadLocalRandom rng = ThreadLocalRandom.current();
+            int[] influence = (int[]) columns.column(0);
+            boolean[] atWar = (boolean[]) columns.column(1);
+            int[] stability = (int[]) columns.column(2);
+            double[] treasury = (double[]) columns.column(3);
+            for (int i = 0; i < ROWS; i++) {
+                influence[i] = rng.nextInt(0, 100);
+                atWar[i] = rng.nextBoolean();
+                stability[i] = rng.nextInt(0, 100);
+                treasury[i] = rng.nextDouble(0, 5000);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long[] scalarPredicate(BatchState state) {
+        return state.predicate.eval(state.columns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    @Fork(value = 2, jvmArgsAppend = {
+            "-Dmvel3.compiler.lambda.persistence=false",
+            "-Dmvel3.compiler.lambda.resetOnTestStartup=true",
+            "--add-modules", "jdk.incubator.vector",
+            "-Dmvel3.compiler.vector=true"
+    })
+    public long[] vectorPredicate(BatchState state) {
+        return state.predicate.eval(state.columns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double[] scalarScore(BatchState state) {
+        return state.score.eval(state.columns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    @Fork(value = 2, jvmArgsAppend = {
+            "-Dmvel3.compiler.lambda.persistence=false",
+            "-Dmvel3.compiler.lambda.resetOnTestStartup=true",
+            "--add-modules", "jdk.incubator.vector",
+            "-Dmvel3.compiler.vector=true"
+    })
+    public double[] vectorScore(BatchState state) {
+        return state.score.eval(state.columns);
+    }
+}
@@ -1,12 +1,17 @@
 package org.mvel3.benchmark;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
+import org.mvel3.BooleanEvaluator;
 import org.mvel3.ClassManager;
+import org.mvel3.Columns;
 import org.mvel3.CompilerParameters;
 import org.mvel3.Evaluator;
 import org.mvel3.MVEL;
@@ -20,6 +25,12 @@ import org.openjdk.jmh.annotations.*;
  * Measures throughput and latency of pre-compiled expressions evaluated against
  * varying contexts. This is the dominant Chronicler pattern: same compiled
  * predicate, many different faction states per tick.
+ * <p>
+ * Each predicate is evaluated both through {@link Evaluator#eval}, which boxes its result, and through
+ * {@link BooleanEvaluator#evalBoolean}, which does not. The columnar benchmarks evaluate a batch of
+ * {@link #ROWS} states per invocation, row by row through the unboxed evaluator, and in one call over a
+ * {@link Columns} batch; both report the time per row. The filter benchmarks select the matching states of the
+ * same batch, in a loop in the benchmark and through {@link Evaluator#filter}, whose loop is in the evaluator class.
  */
 @BenchmarkMode({Mode.AverageTime, Mode.Throughput})
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -31,10 +42,13 @@ import org.openjdk.jmh.annotations.*;
 @Measurement(iterations = 5, time = 2)
 public class WarmEvaluationBenchmark {
 
+    static final int ROWS = 1024;
+
     @State(Scope.Thread)
     public static class MapPredicateState {
 
         Evaluator<Map<String, Object>, Void, Boolean> evaluator;
+        BooleanEvaluator<Map<String, Object>> unboxed;
         Map<String, Object> context;
 
         @Setup(Level.Trial)
@@ -50,6 +64,7 @@ public class WarmEvaluationBenchmark {
             evaluator = mvel.compileMapExpression(
                     "influence > 50 && !atWar && stability > 30",
                     Boolean.class, Collections.emptySet(), types);
+            unboxed = BooleanEvaluator.of(evaluator);
 
             context = new HashMap<>();
         }
@@ -67,6 +82,7 @@ public class WarmEvaluationBenchmark {
     public static class PojoPredicateState {
 
         Evaluator<FactionState, Void, Boolean> evaluator;
+        BooleanEvaluator<FactionState> unboxed;
         FactionState context;
 
         @Setup(Level.Trial)
@@ -86,6 +102,7 @@ public class WarmEvaluationBenchmark {
 
             MVEL mvel = new MVEL();
             evaluator = mvel.compilePojoEvaluator(params);
+            unboxed = BooleanEvaluator.of(evaluator);
 
             context = new FactionState();
         }
@@ -103,6 +120,7 @@ public class WarmEvaluationBenchmark {
     public static class MapComplexPredicateState {
 
         Evaluator<Map<String, Object>, Void, Boolean> evaluator;
+        BooleanEvaluator<Map<String, Object>> unboxed;
         Map<String, Object> context;
 
         @Setup(Level.Trial)
@@ -119,6 +137,7 @@ public class WarmEvaluationBenchmark {
             evaluator = mvel.compileMapExpression(
                     "influence > 50 && stability > 30 && treasury > 1000.0 && factionName != null",
                     Boolean.class, Collections.emptySet(), types);
+            unboxed = BooleanEvaluator.of(evaluator);
 
             context = new HashMap<>();
         }
@@ -133,18 +152,130 @@ public class WarmEvaluationBenchmark {
         }
     }
 
+    @State(Scope.Thread)
+    public static class ColumnsPredicateState {
+
+        Evaluator<FactionState, Void, Boolean> pojoEvaluator;
+        BooleanEvaluator<FactionState> rowEvaluator;
+        Evaluator<Columns, Void, long[]> batchEvaluator;
+        FactionState[] rows;
+        List<FactionState> rowList;
+        Columns columns;
+
+        @Setup(Level.Trial)
+        public void compile() {
+            LambdaRegistry.INSTANCE.resetAndRemoveAllPersistedFiles();
+
+            Declaration<?>[] declarations = {Declaration.of("influence", int.class),
+                                             Declaration.of("atWar", boolean.class),
+                                             Declaration.of("stability", int.class)};
+            String expression = "influence > 50 && !atWar && stability > 30";
+
+            CompilerParameters<FactionState, Void, Boolean> params =
+                    MVEL.<FactionState>pojo(FactionState.class, declarations[0], declarations[1], declarations[2])
+                            .<Boolean>out(Boolean.class)
+                            .expression(expression)
+                            .imports(Collections.emptySet())
+                            .classManager(new ClassManager())
+                            .build();
+            pojoEvaluator = new MVEL().compilePojoEvaluator(params);
+            rowEvaluator = BooleanEvaluator.of(pojoEvaluator);
+
+            batchEvaluator = MVEL.columns(declarations)
+                    .<long[]>out(long[].class)
+                    .expression(expression)
+                    .imports(Collections.emptySet())
+                    .classManager(new ClassManager())
+                    .compile();
+
+            rows = new FactionState[ROWS];
+            for (int i = 0; i < ROWS; i++) {
+                rows[i] = new FactionState();
+            }
+            rowList = Arrays.asList(rows);
+            columns = new Columns(ROWS, new int[ROWS], new boolean[ROWS], new int[ROWS]);
+        }
+
+        @Setup(Level.Iteration)
+        public void mutateContext() {
+            ThreadLocalRandom rng = ThreadLocalRandom.current();
+            int[] influence = (int[]) columns.column(0);
+            boolean[] atWar = (boolean[]) columns.column(1);
+            int[] stability = (int[]) columns.column(2);
+            for (int i = 0; i < ROWS; i++) {
+                influence[i] = rng.nextInt(0, 100);
+                atWar[i] = rng.nextBoolean();
+                stability[i] = rng.nextInt(0, 100);
+                rows[i].setInfluence(influence[i]);
+                rows[i].setAtWar(atWar[i]);
+                rows[i].setStability(stability[i]);
+            }
+        }
+    }
+
     @Benchmark
     public Boolean evalMapPredicate(MapPredicateState state) {
         return state.evaluator.eval(state.context);
     }
 
+    @Benchmark
+    public boolean evalMapPredicateUnboxed(MapPredicateState state) {
+        return state.unboxed.evalBoolean(state.context);
+    }
+
     @Benchmark
     public Boolean evalPojoPredicate(PojoPredicateState state) {
         return state.evaluator.eval(state.context);
     }
 
+    @Benchmark
+    public boolean evalPojoPredicateUnboxed(PojoPredicateState state) {
+        return state.unboxed.evalBoolean(state.context);
+    }
+
     @Benchmark
     public Boolean evalMapComplexPredicate(MapComplexPredicateState state) {
         return state.evaluator.eval(state.context);
     }
+
+    @Benchmark
+    public boolean evalMapComplexPredicateUnboxed(MapComplexPredicateState state) {
+        return state.unboxed.evalBoolean(state.context);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long[] evalPojoPredicateRows(ColumnsPredicateState state) {
+        long[] bits = new long[(ROWS + 63) >>> 6];
+        for (int i = 0; i < ROWS; i++) {
+            if (state.rowEvaluator.evalBoolean(state.rows[i])) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        return bits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long[] evalColumnsPredicate(ColumnsPredicateState state) {
+        return state.batchEvaluator.eval(state.columns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<FactionState> filterPojoPredicateRows(ColumnsPredicateState state) {
+        List<FactionState> matches = new ArrayList<>();
+        for (FactionState row : state.rowList) {
+            if (state.pojoEvaluator.eval(row)) {
+                matches.add(row);
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<FactionState> filterPojoPredicate(ColumnsPredicateState state) {
+        return state.pojoEvaluator.filter(state.rowList);
+    }
 }
@@ -0,0 +1,27 @@
+package org.mvel3.benchmark.domain;
+
+import java.util.Map;
+
+/**
+ * A feudal holding whose liege is a computed property: it is looked up by id on every call.
+ */
+public class Holding {
+
+    private final String name;
+    private final String liegeId;
+    private final Map<String, Holding> holdingsById;
+
+    public Holding(String name, String liegeId, Map<String, Holding> holdingsById) {
+        this.name = name;
+        this.liegeId = liegeId;
+        this.holdingsById = holdingsById;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Holding getLiege() {
+        return liegeId == null ? null : holdingsById.get(liegeId);
+    }
+}
@@ -13,6 +13,8 @@ module org.mvel3 {
     // --- exported public API packages ---
     exports org.mvel3;
     exports org.mvel3.compiler.classfile;
+    exports org.mvel3.compiler.interpreter;
+    exports org.mvel3.compiler.vector;
     exports org.mvel3.javacompiler;
     exports org.mvel3.lambdaextractor;
     exports org.mvel3.methodutils;
@@ -0,0 +1,28 @@
+package org.mvel3;
+
+/**
+ * An evaluator of a {@code Boolean} expression that returns its result unboxed.
+ * <p>
+ * Evaluators compiled with a {@code Boolean} out type implement this interface as well as {@link Evaluator},
+ * so that a predicate evaluated many times does not box its result on every call. A {@code null} result
+ * cannot be returned unboxed, and throws {@link NullPointerException}.
+ *
+ * @param <C> the context type (Map, List, or POJO)
+ */
+@FunctionalInterface
+public interface BooleanEvaluator<C> {
+
+    boolean evalBoolean(C c);
+
+    /**
+     * The evaluator itself if it was compiled to evaluate unboxed, or one that unboxes the result of
+     * {@link Evaluator#eval(Object) eval(C)}, as for an interpreted evaluator.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> BooleanEvaluator<C> of(Evaluator<C, ?, Boolean> evaluator) {
+        if (evaluator instanceof BooleanEvaluator<?> unboxed) {
+            return (BooleanEvaluator<C>) unboxed;
+        }
+        return c -> evaluator.eval(c);
+    }
+}
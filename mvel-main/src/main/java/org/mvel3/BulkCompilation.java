@@ -0,0 +1,197 @@
+package org.mvel3;
+
+import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.mvel3.transpiler.TranspiledResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles a batch of expressions across a fixed pool of threads, see {@link MVEL#compileAll(List, int)}.
+ * <p>
+ * Parsing, transpilation and bytecode emission run in parallel, with columns expressions lowered to the vector
+ * backend first when it is enabled, as {@link MVELCompiler#compile(CompilerParameters)} does. Every transpilation creates its own parser and
+ * rewriter, while resolved types are shared through the per class loader
+ * {@link org.mvel3.transpiler.context.TranspilerEnvironment}. Expressions the emitter cannot handle are then
+ * compiled together by {@link MVELCompiler#compileBatch}, paying the javac start-up cost once rather than per
+ * expression. When lambda persistence is enabled, both emission and that step register classes with the
+ * {@link LambdaRegistry}, which numbers them in registration order, so they run in input order.
+ */
+final class BulkCompilation {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final EvaluatorCache evaluatorCache;
+
+    private final MVELCompiler compiler = new MVELCompiler();
+
+    private final List<? extends CompilerParameters<?, ?, ?>> parameters;
+
+    private final TranspiledResult[] transpiled;
+
+    private final CompilationResult<?, ?, ?>[] results;
+
+    BulkCompilation(EvaluatorCache evaluatorCache, List<? extends CompilerParameters<?, ?, ?>> parameters) {
+        this.evaluatorCache = evaluatorCache;
+        this.parameters = parameters;
+        this.transpiled = new TranspiledResult[parameters.size()];
+        this.results = new CompilationResult<?, ?, ?>[parameters.size()];
+    }
+
+    List<CompilationResult<?, ?, ?>> run(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be greater than zero, got " + parallelism);
+        }
+        if (parameters.isEmpty()) {
+            return List.of();
+        }
+
+        int pool = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, parameters.size()), r -> {
+            Thread thread = new Thread(r, "mvel3-compile-" + pool + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (LambdaRegistry.PERSISTENCE_ENABLED) {
+            // one journal write for the whole batch
+            LambdaRegistry.INSTANCE.beginBatch();
+        }
+        try {
+            forEach(executor, this::transpile);
+            if (LambdaRegistry.PERSISTENCE_ENABLED) {
+                for (int i = 0; i < results.length; i++) {
+                    emit(i);
+                }
+            } else {
+                forEach(executor, this::emit);
+            }
+            compileRemaining();
+        } finally {
+            executor.shutdownNow();
+            if (LambdaRegistry.PERSISTENCE_ENABLED) {
+                LambdaRegistry.INSTANCE.endBatch();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void transpile(int index) {
+        CompilerParameters<?, ?, ?> params = parameters.get(index);
+        try {
+            Evaluator<?, ?, ?> cached = evaluatorCache != null ? evaluatorCache.getIfPresent(params) : null;
+            Evaluator<?, ?, ?> persisted;
+            if (cached != null) {
+                results[index] = success(index, params, cached);
+            } else if ((persisted = compiler.loadPersistedEmitted(params)) != null) {
+                results[index] = cache(index, params, persisted);
+            } else {
+                transpiled[index] = compiler.transpile(params);
+            }
+        } catch (RuntimeException e) {
+            results[index] = new CompilationResult<>(index, params, null, e);
+        }
+    }
+
+    private void emit(int index) {
+        if (results[index] != null) {
+            return;
+        }
+        try {
+            Evaluator<?, ?, ?> evaluator = compiler.lower(parameters.get(index), transpiled[index]);
+            if (evaluator == null) {
+                evaluator = compiler.emit(parameters.get(index), transpiled[index]);
+            }
+            if (evaluator != null) {
+                results[index] = cache(index, parameters.get(index), evaluator);
+                // release the AST as soon as it is compiled
+                transpiled[index] = null;
+            }
+        } catch (RuntimeException e) {
+            results[index] = new CompilationResult<>(index, parameters.get(index), null, e);
+            transpiled[index] = null;
+        }
+    }
+
+    /**
+     * Compiles everything the emitter could not handle through a single javac batch.
+     */
+    private void compileRemaining() {
+        List<Integer> indexes = new ArrayList<>();
+        List<CompilerParameters<?, ?, ?>> batchParameters = new ArrayList<>();
+        List<TranspiledResult> batchTranspiled = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                indexes.add(i);
+                batchParameters.add(parameters.get(i));
+                batchTranspiled.add(transpiled[i]);
+                transpiled[i] = null;
+            }
+        }
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        List<CompilationResult<?, ?, ?>> batchResults = compiler.compileBatch(batchParameters, batchTranspiled);
+        for (int i = 0; i < batchResults.size(); i++) {
+            CompilationResult<?, ?, ?> result = batchResults.get(i);
+            int index = indexes.get(i);
+            results[index] = result.isSuccess()
+                             ? cache(index, result.parameters(), result.evaluator())
+                             : new CompilationResult<>(index, result.parameters(), null, result.error());
+        }
+    }
+
+    private <C, W, O> CompilationResult<C, W, O> cache(int index, CompilerParameters<C, W, O> params, Evaluator<?, ?, ?> compiled) {
+        Evaluator<C, W, O> evaluator = (Evaluator<C, W, O>) compiled;
+        if (evaluatorCache != null) {
+            evaluator = evaluatorCache.put(params, evaluator);
+        }
+        return new CompilationResult<>(index, params, evaluator, null);
+    }
+
+    private static <C, W, O> CompilationResult<C, W, O> success(int index, CompilerParameters<C, W, O> params, Evaluator<?, ?, ?> evaluator) {
+        return new CompilationResult<>(index, params, (Evaluator<C, W, O>) evaluator, null);
+    }
+
+    /**
+     * Runs the action for every index on the executor and waits for all of them. Actions record their own
+     * failures; anything escaping them, such as an {@link Error}, is rethrown.
+     */
+    private void forEach(ExecutorService executor, IndexAction action) {
+        List<Callable<Void>> tasks = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            int index = i;
+            tasks.add(() -> {
+                action.run(index);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExpressionCompileException("Interrupted while compiling", null, e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new ExpressionCompileException("Bulk compilation failed", null, cause.getMessage(), cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexAction {
+        void run(int index);
+    }
+}
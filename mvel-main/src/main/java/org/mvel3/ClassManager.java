@@ -21,10 +21,28 @@ public class ClassManager {
 
     private volatile Supplier<MethodHandles.Lookup> lookupSupplier;
 
+    private volatile String lookupClassName;
+
+    private boolean defaulted;
+
     public ClassManager() {
         this(() -> MethodHandles.lookup());
     }
 
+    /**
+     * A manager the caller did not choose, made up by {@link MVELBuilder#build()} or an {@link EvaluatorCache}.
+     * The cache keys evaluators defined into such a manager regardless of which one it is.
+     */
+    static ClassManager defaulted() {
+        ClassManager manager = new ClassManager();
+        manager.defaulted = true;
+        return manager;
+    }
+
+    boolean isDefaulted() {
+        return defaulted;
+    }
+
     public ClassManager(Supplier<MethodHandles.Lookup> lookupSupplier) {
         this.lookupSupplier = lookupSupplier;
         this.classes = new ConcurrentHashMap<>();
@@ -43,15 +61,26 @@ public class ClassManager {
         return lookupSupplier;
     }
 
+    /**
+     * The name of the class the lookup defines into, computed once.
+     */
+    String getLookupClassName() {
+        String name = lookupClassName;
+        if (name == null && lookupSupplier != null) {
+            name = lookupSupplier.get().lookupClass().getName();
+            lookupClassName = name;
+        }
+        return name;
+    }
+
     public void define(Map<String, byte[]> byteCode) {
         for (Map.Entry<String, byte[]> entry : byteCode.entrySet()) {
             try {
                 ClassEntry newEntry = new ClassEntry(entry.getKey(), entry.getValue());
-                entries.computeIfAbsent(newEntry, e -> {
+                ClassEntry definedEntry = entries.computeIfAbsent(newEntry, e -> {
                     try {
                         MethodHandles.Lookup lookup = lookupSupplier.get();
-                        Class<?> c = lookup.defineHiddenClass(entry.getValue(), true).lookupClass();
-                        classes.put(entry.getKey(), c);
+                        e.definedClass = lookup.defineHiddenClass(entry.getValue(), true).lookupClass();
                     } catch (IllegalAccessException ex) {
                         throw new ExpressionCompileException(
                             "Failed to define hidden class '" + entry.getKey() + "': access denied",
@@ -59,6 +88,8 @@ public class ClassManager {
                     }
                     return e;
                 });
+                // an equal class defined under another name is shared, and reachable under this name too
+                classes.put(entry.getKey(), definedEntry.definedClass);
             } catch (ExpressionCompileException e) {
                 throw e;
             } catch (Exception e) {
@@ -79,6 +110,8 @@ public class ClassManager {
 
         private int hashCode;
 
+        private volatile Class<?> definedClass;
+
         public ClassEntry(String name, byte[] bytes) {
             this.name = name;
             this.bytes = bytes;
@@ -102,6 +135,10 @@ public class ClassManager {
             return bytes;
         }
 
+        public Class<?> getDefinedClass() {
+            return definedClass;
+        }
+
         @Override
         public int hashCode() {
             return hashCode;
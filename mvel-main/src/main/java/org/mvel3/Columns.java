@@ -0,0 +1,107 @@
+package org.mvel3;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * A batch of rows held column by column, the context of an evaluator compiled with {@link MVEL#columns}: one
+ * array per declared variable, in declaration order, so {@code int[]} for an {@code int} variable and
+ * {@code String[]} for a {@code String}.
+ * <p>
+ * The evaluator loops over the first {@link #length()} rows, reading each variable straight from its array,
+ * and writes the result of each row into an output array held here: a bitset for a {@code long[]} out type,
+ * with bit {@code i} set when row {@code i} is {@code true}, or one value per row for a {@code double[]} out
+ * type. A row whose body completes without returning is {@code false}, or {@code 0.0}. The output array is
+ * reused by every evaluation of this batch, so it is only valid until the next one.
+ * <pre>{@code
+ * Evaluator<Columns, Void, long[]> evaluator = MVEL.columns(Declaration.of("influence", int.class),
+ *                                                           Declaration.of("atWar", boolean.class))
+ *                                                  .<long[]>out(long[].class)
+ *                                                  .expression("influence > 50 && !atWar")
+ *                                                  .compile();
+ * long[] matches = evaluator.eval(new Columns(influence.length, influence, atWar));
+ * }</pre>
+ */
+public final class Columns {
+
+    private final Object[] columns;
+    private int length;
+
+    private long[] bits;
+    private double[] doubles;
+
+    /**
+     * @param length  the number of rows, which no column may be shorter than
+     * @param columns one array per declared variable, in declaration order
+     */
+    public Columns(int length, Object... columns) {
+        this.columns = columns.clone();
+        for (int slot = 0; slot < columns.length; slot++) {
+            checkColumn(slot, columns[slot], length);
+        }
+        this.length = length;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public Object column(int slot) {
+        return columns[slot];
+    }
+
+    /**
+     * Replaces the array of a variable, for instance to evaluate the next batch with the same context.
+     */
+    public Columns setColumn(int slot, Object values) {
+        checkColumn(slot, values, length);
+        columns[slot] = values;
+        return this;
+    }
+
+    public Columns setLength(int length) {
+        for (int slot = 0; slot < columns.length; slot++) {
+            checkColumn(slot, columns[slot], length);
+        }
+        this.length = length;
+        return this;
+    }
+
+    /**
+     * A bitset with a bit for each row, all clear.
+     */
+    public long[] bits() {
+        int words = (length + 63) >>> 6;
+        if (bits == null || bits.length < words) {
+            bits = new long[words];
+        } else {
+            Arrays.fill(bits, 0L);
+        }
+        return bits;
+    }
+
+    /**
+     * An array with a value for each row, all {@code 0.0}.
+     */
+    public double[] doubles() {
+        if (doubles == null || doubles.length < length) {
+            doubles = new double[length];
+        } else {
+            Arrays.fill(doubles, 0, length, 0.0);
+        }
+        return doubles;
+    }
+
+    private static void checkColumn(int slot, Object values, int length) {
+        if (values == null || !values.getClass().isArray()) {
+            throw new IllegalArgumentException("Column " + slot + " is not an array: " + values);
+        }
+        if (Array.getLength(values) < length) {
+            throw new IllegalArgumentException("Column " + slot + " has fewer than " + length + " rows");
+        }
+    }
+}
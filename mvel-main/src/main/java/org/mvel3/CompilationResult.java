@@ -0,0 +1,25 @@
+package org.mvel3;
+
+/**
+ * Outcome of compiling one expression of a bulk compilation, see {@link MVEL#compileAll(java.util.List)}.
+ * Exactly one of {@code evaluator} and {@code error} is non-null.
+ */
+public record CompilationResult<C, W, O>(int index,
+                                         CompilerParameters<C, W, O> parameters,
+                                         Evaluator<C, W, O> evaluator,
+                                         RuntimeException error) {
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the evaluator, or rethrows the exception that made this expression fail.
+     */
+    public Evaluator<C, W, O> getOrThrow() {
+        if (error != null) {
+            throw error;
+        }
+        return evaluator;
+    }
+}
@@ -40,6 +40,7 @@ import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
 import com.github.javaparser.ast.type.Type;
 import org.mvel3.parser.MvelParser;
 import org.mvel3.parser.printer.PrintUtil;
@@ -451,7 +452,85 @@ public class CompilationUnitGenerator {
     }
 
     public <R, K, T> CompilationUnit createCompilationUnit(TranspiledResult input, CompilerParameters<T,K,R> info) {
-        return input.getUnit();
+        CompilationUnit unit = input.getUnit();
+        addPrimitiveResultMethod(unit, info);
+        addBulkMethods(unit, info);
+        return unit;
+    }
+
+    /**
+     * For a {@code Boolean}, {@code Integer}, {@code Long} or {@code Double} out type, add a copy of the eval
+     * method returning the primitive, as {@code evalBoolean}, and implement its {@link PrimitiveResult}
+     * interface, so that javac unboxes at each return rather than the caller unboxing the result.
+     * A body that returns {@code null} would not compile unboxed, so is left boxed.
+     */
+    private <T, K, R> void addPrimitiveResultMethod(CompilationUnit unit, CompilerParameters<T, K, R> info) {
+        PrimitiveResult primitiveResult = PrimitiveResult.of(info.outType().getClazz());
+        ClassOrInterfaceDeclaration evaluatorClass = unit.findFirst(ClassOrInterfaceDeclaration.class).orElse(null);
+        if (primitiveResult == null || evaluatorClass == null
+            // already added, when the same transpiled result is compiled again
+            || !evaluatorClass.getMethodsByName(primitiveResult.methodName()).isEmpty()) {
+            return;
+        }
+
+        MethodDeclaration eval = evaluatorClass.getMethodsByName(info.generatedMethodName()).stream()
+                .filter(md -> !md.isStatic() && md.getParameters().size() == 1 && md.getBody().isPresent())
+                .findFirst()
+                .orElse(null);
+        if (eval == null || eval.findAll(ReturnStmt.class).stream()
+                .anyMatch(rs -> rs.getExpression().filter(Expression::isNullLiteralExpr).isPresent())) {
+            return;
+        }
+
+        MethodDeclaration unboxed = eval.clone();
+        unboxed.setName(primitiveResult.methodName());
+        // PrimitiveResult constants are named after the primitive they return
+        unboxed.setType(new PrimitiveType(PrimitiveType.Primitive.valueOf(primitiveResult.name())));
+        evaluatorClass.addMember(unboxed);
+        evaluatorClass.addImplementedType(primitiveResult.evaluatorInterface().getCanonicalName() + "<" +
+                                          info.contextDeclaration().type().getCanonicalGenericsName() + ">");
+    }
+
+    /**
+     * Add {@link Evaluator#evalAll} and, for a {@code Boolean} out type, {@link Evaluator#filter}, so that the loop
+     * is compiled into the evaluator class and its call to eval has a single receiver, where the interface defaults
+     * would share one call site between every evaluator.
+     */
+    private <T, K, R> void addBulkMethods(CompilationUnit unit, CompilerParameters<T, K, R> info) {
+        ClassOrInterfaceDeclaration evaluatorClass = unit.findFirst(ClassOrInterfaceDeclaration.class).orElse(null);
+        if (evaluatorClass == null || !"eval".equals(info.generatedMethodName())
+            // already added, when the same transpiled result is compiled again
+            || !evaluatorClass.getMethodsByName("evalAll").isEmpty()) {
+            return;
+        }
+
+        String contextType = info.contextDeclaration().type().getCanonicalGenericsName();
+        String outType = info.outType().getCanonicalGenericsName();
+        JavaParser parser = new JavaParser();
+        evaluatorClass.addMember(parser.parseMethodDeclaration(
+                "public void evalAll(java.util.List<? extends " + contextType + "> inputs, " +
+                "org.mvel3.ResultSink<? super " + contextType + ", ? super " + outType + "> sink) {" +
+                "    int index = 0;" +
+                "    for (" + contextType + " input : inputs) {" +
+                "        sink.accept(index++, input, eval(input));" +
+                "    }" +
+                "}").getResult().get());
+
+        if (PrimitiveResult.of(info.outType().getClazz()) != PrimitiveResult.BOOLEAN) {
+            return;
+        }
+        String test = evaluatorClass.getMethodsByName(PrimitiveResult.BOOLEAN.methodName()).isEmpty()
+                      ? "eval(input)" : PrimitiveResult.BOOLEAN.methodName() + "(input)";
+        evaluatorClass.addMember(parser.parseMethodDeclaration(
+                "public java.util.List<" + contextType + "> filter(java.util.Collection<? extends " + contextType + "> inputs) {" +
+                "    java.util.List<" + contextType + "> matches = new java.util.ArrayList<>();" +
+                "    for (" + contextType + " input : inputs) {" +
+                "        if (" + test + ") {" +
+                "            matches.add(input);" +
+                "        }" +
+                "    }" +
+                "    return matches;" +
+                "}").getResult().get());
     }
 
 }
@@ -0,0 +1,112 @@
+package org.mvel3;
+
+import org.mvel3.compiler.classfile.ContextShapeEmitter;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed set of declared variables, compiled to a {@link ShapedContext} subclass with a field for each.
+ * <p>
+ * An evaluator compiled with {@link MVEL#shaped(ContextShape)} reads its inputs with one call per variable,
+ * {@code __context.getInt(0)}, where a {@code Map} context costs a hash lookup, a cast and an unbox, and
+ * filling the context allocates nothing but the context itself.
+ */
+public final class ContextShape {
+
+    private final Declaration<?>[] declarations;
+    private final Map<String, Integer> slots;
+    private final ShapedContext prototype;
+
+    private ContextShape(Declaration<?>[] declarations) {
+        this.declarations = declarations.clone();
+        this.slots = new HashMap<>();
+        List<Class<?>> fieldTypes = new ArrayList<>(declarations.length);
+        for (int i = 0; i < declarations.length; i++) {
+            if (slots.putIfAbsent(declarations[i].name(), i) != null) {
+                throw new IllegalArgumentException("Variable declared twice: " + declarations[i].name());
+            }
+            fieldTypes.add(fieldType(declarations[i].type().getClazz()));
+        }
+        this.prototype = define(fieldTypes);
+    }
+
+    public static ContextShape of(Declaration<?>... declarations) {
+        return new ContextShape(declarations);
+    }
+
+    /**
+     * @return the slot of a declared variable, for the {@link ShapedContext} accessors
+     * @throws IllegalArgumentException if the variable is not declared
+     */
+    public int slot(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            throw new IllegalArgumentException("Variable not declared in shape: " + name);
+        }
+        return slot;
+    }
+
+    public Declaration<?>[] declarations() {
+        return declarations.clone();
+    }
+
+    /**
+     * A new context, with every variable at its default value.
+     */
+    public ShapedContext newContext() {
+        return prototype.create();
+    }
+
+    /**
+     * The type of the field that holds a variable of the given type: {@code boolean}, {@code int},
+     * {@code long}, {@code double}, or {@code Object} for any reference type.
+     */
+    public static Class<?> fieldType(Class<?> type) {
+        if (type == boolean.class || type == int.class || type == long.class || type == double.class) {
+            return type;
+        }
+        if (type == byte.class || type == short.class || type == char.class) {
+            return int.class;
+        }
+        if (type == float.class) {
+            return double.class;
+        }
+        return Object.class;
+    }
+
+    /**
+     * The name of the {@link ShapedContext} getter for a variable of the given type, as {@code getInt}.
+     * Its setter has the same name with a {@code set} prefix.
+     */
+    public static String getterName(Class<?> type) {
+        Class<?> fieldType = fieldType(type);
+        String name = fieldType.getSimpleName();
+        return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    public static String setterName(Class<?> type) {
+        return "s" + getterName(type).substring(1);
+    }
+
+    private ShapedContext define(List<Class<?>> fieldTypes) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(ContextShapeEmitter.emit(fieldTypes), true);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class, ContextShape.class));
+            return (ShapedContext) constructor.invoke(this);
+        } catch (Throwable e) {
+            throw new ExpressionCompileException(
+                    "Failed to define context class for shape " + Arrays.toString(declarations),
+                    null, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.mvel3;
+
+/**
+ * An evaluator of a {@code Double} expression that returns its result unboxed.
+ * <p>
+ * Evaluators compiled with a {@code Double} out type implement this interface as well as {@link Evaluator}.
+ * A {@code null} result cannot be returned unboxed, and throws {@link NullPointerException}.
+ *
+ * @param <C> the context type (Map, List, or POJO)
+ */
+@FunctionalInterface
+public interface DoubleEvaluator<C> {
+
+    double evalDouble(C c);
+
+    /**
+     * The evaluator itself if it was compiled to evaluate unboxed, or one that unboxes the result of
+     * {@link Evaluator#eval(Object) eval(C)}.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> DoubleEvaluator<C> of(Evaluator<C, ?, Double> evaluator) {
+        if (evaluator instanceof DoubleEvaluator<?> unboxed) {
+            return (DoubleEvaluator<C>) unboxed;
+        }
+        return c -> evaluator.eval(c);
+    }
+}
@@ -0,0 +1,256 @@
+package org.mvel3;
+
+import org.mvel3.compiler.classfile.ClassfileEvaluatorEmitter;
+import org.mvel3.lambdaextractor.LambdaRegistry;
+import org.mvel3.methodutils.Murmur3F;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.ClassModel;
+import java.lang.classfile.constantpool.ClassEntry;
+import java.lang.classfile.constantpool.PoolEntry;
+import java.lang.constant.ClassDesc;
+import java.lang.reflect.Member;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On disk store for bytecode produced by the Classfile API emitter, used when lambda persistence is enabled.
+ * <p>
+ * Class files are named after a murmur hash of their content, so equal bytecode is written once whichever
+ * expressions produced it. An append-only index maps the canonical {@link EvaluatorCache.Key} form of the
+ * compiler parameters to the class file, which lets {@link MVELCompiler#compile(CompilerParameters)} define a
+ * previously emitted evaluator without parsing, transpiling or emitting it again, including after a restart.
+ * <p>
+ * Index entries whose class file has gone, for example after
+ * {@link LambdaRegistry#resetAndRemoveAllPersistedFiles()}, are ignored and overwritten by the next compilation.
+ * An index written for another {@link ClassfileEvaluatorEmitter#FORMAT_VERSION} is discarded, so that classes
+ * emitted without methods added since are emitted again.
+ * <p>
+ * Each index entry also records a fingerprint of the classes outside the JDK that the class file references, such
+ * as the context and declaration types, taken from their members. A class file is only loaded while that
+ * fingerprint still matches, so that an evaluator emitted against an earlier version of a user class is compiled
+ * again rather than failing to link when evaluated.
+ */
+final class EmittedClassStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmittedClassStore.class);
+
+    private static final Path ROOT = LambdaRegistry.DEFAULT_PERSISTENCE_PATH;
+
+    private static final Path CLASS_DIRECTORY = ROOT.resolve("emitted");
+
+    private static final Path INDEX_FILE = ROOT.resolve("emitted-index.dat");
+
+    // This version has to be incremented when the index format changes; the emitted bytecode has its own version
+    private static final String INDEX_VERSION = "v2." + ClassfileEvaluatorEmitter.FORMAT_VERSION;
+
+    static final EmittedClassStore INSTANCE = new EmittedClassStore();
+
+    // canonical parameters -> class file, relative to the persistence path when under it, and its fingerprint
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+
+    private EmittedClassStore() {
+        loadIndex();
+    }
+
+    /**
+     * Returns the persisted bytecode for the given parameters, or null if none was stored or a class it references
+     * has changed since.
+     */
+    byte[] load(CompilerParameters<?, ?, ?> parameters) {
+        IndexEntry entry = index.get(EvaluatorCache.Key.of(parameters).canonical());
+        if (entry == null) {
+            return null;
+        }
+        Path classFile = ROOT.resolve(entry.location());
+        byte[] bytecode;
+        try {
+            bytecode = Files.exists(classFile) ? Files.readAllBytes(classFile) : null;
+        } catch (IOException e) {
+            LOG.warn("Failed to read emitted class {}: {}", classFile, e.getMessage());
+            return null;
+        }
+        if (bytecode != null && !entry.fingerprint().equals(fingerprint(bytecode, classLoader(parameters)))) {
+            LOG.debug("Emitted class {} references classes that have changed, compiling again", classFile);
+            return null;
+        }
+        return bytecode;
+    }
+
+    /**
+     * Writes the bytecode to its content hashed class file, unless an equal one exists, and returns the file.
+     */
+    Path write(byte[] bytecode) {
+        Path classFile = CLASS_DIRECTORY.resolve(contentHash(bytecode) + ".class");
+        if (Files.exists(classFile)) {
+            return classFile;
+        }
+        try {
+            Files.createDirectories(CLASS_DIRECTORY);
+            // write aside and move, so that a concurrent reader never sees a partial class file
+            Path tempFile = Files.createTempFile(CLASS_DIRECTORY, "emitted", ".tmp");
+            Files.write(tempFile, bytecode);
+            Files.move(tempFile, classFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ExpressionCompileException("Failed to write emitted class file " + classFile, null, e.getMessage(), e);
+        }
+        return classFile;
+    }
+
+    /**
+     * Records that the given parameters compile to the given class file. That is usually one returned by
+     * {@link #write(byte[])}, or an equal lambda the {@link LambdaRegistry} persisted before.
+     */
+    void register(CompilerParameters<?, ?, ?> parameters, Path classFile) {
+        String canonical = EvaluatorCache.Key.of(parameters).canonical();
+        String location = classFile.startsWith(ROOT) ? ROOT.relativize(classFile).toString() : classFile.toAbsolutePath().toString();
+        IndexEntry entry;
+        try {
+            // the file rather than the emitted bytecode, as an equal lambda persisted before may have been compiled by javac
+            entry = new IndexEntry(location, fingerprint(Files.readAllBytes(classFile), classLoader(parameters)));
+        } catch (IOException e) {
+            throw new ExpressionCompileException("Failed to read emitted class file " + classFile, null, e.getMessage(), e);
+        }
+        if (entry.equals(index.put(canonical, entry))) {
+            return;
+        }
+        appendToIndex(canonical, entry);
+    }
+
+    private synchronized void appendToIndex(String canonical, IndexEntry entry) {
+        try {
+            Files.createDirectories(INDEX_FILE.getParent());
+            boolean newFile = !Files.exists(INDEX_FILE);
+            try (BufferedWriter writer = Files.newBufferedWriter(INDEX_FILE, StandardCharsets.UTF_8,
+                                                                 StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (newFile) {
+                    writer.write(INDEX_VERSION);
+                    writer.newLine();
+                }
+                writer.write(encode(canonical) + "|" + encode(entry.location()) + "|" + entry.fingerprint());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new ExpressionCompileException("Failed to update emitted class index " + INDEX_FILE, null, e.getMessage(), e);
+        }
+    }
+
+    private void loadIndex() {
+        if (!Files.exists(INDEX_FILE)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(INDEX_FILE, StandardCharsets.UTF_8)) {
+            String version = reader.readLine();
+            if (!INDEX_VERSION.equals(version)) {
+                reader.close();
+                // deleted rather than left, as appending to it would keep its version line
+                LOG.info("Discarding emitted class index {} of version {}, current is {}", INDEX_FILE, version, INDEX_VERSION);
+                Files.delete(INDEX_FILE);
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\\|");
+                if (fields.length != 3) {
+                    continue;
+                }
+                // later lines win, as they were appended by later compilations
+                index.put(decode(fields[0]), new IndexEntry(decode(fields[1]), fields[2]));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("Ignoring unreadable emitted class index {}: {}", INDEX_FILE, e.getMessage());
+            index.clear();
+        }
+    }
+
+    private static ClassLoader classLoader(CompilerParameters<?, ?, ?> parameters) {
+        return parameters.classLoader() != null ? parameters.classLoader() : EmittedClassStore.class.getClassLoader();
+    }
+
+    /**
+     * Hashes the members of every class the bytecode references, as the given class loader sees them now. JDK
+     * classes are only named, the runtime version standing for them. A class that cannot be loaded counts as
+     * absent, so one that disappears changes the fingerprint as well.
+     */
+    static String fingerprint(byte[] bytecode, ClassLoader classLoader) {
+        ClassModel model = ClassFile.of().parse(bytecode);
+        String self = model.thisClass().asInternalName();
+        Set<String> names = new TreeSet<>();
+        for (PoolEntry entry : model.constantPool()) {
+            if (entry instanceof ClassEntry classEntry && !classEntry.asInternalName().equals(self)) {
+                ClassDesc desc = classEntry.asSymbol();
+                while (desc.isArray()) {
+                    desc = desc.componentType();
+                }
+                if (desc.isClassOrInterface()) {
+                    String descriptor = desc.descriptorString();
+                    names.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+                }
+            }
+        }
+
+        Murmur3F murmur = new Murmur3F();
+        update(murmur, Runtime.version().toString());
+        for (String name : names) {
+            update(murmur, name);
+            try {
+                Class<?> clazz = Class.forName(name, false, classLoader);
+                ClassLoader loader = clazz.getClassLoader();
+                if (loader != null && loader != ClassLoader.getPlatformClassLoader()) {
+                    update(murmur, members(clazz));
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                update(murmur, "?");
+            }
+        }
+        return murmur.getValueHexString();
+    }
+
+    private static String members(Class<?> clazz) {
+        Set<String> members = new TreeSet<>();
+        // declared ones for what a lookup in the same package can use, public ones for what is inherited
+        for (Member[] group : new Member[][]{clazz.getDeclaredFields(), clazz.getDeclaredConstructors(),
+                                              clazz.getDeclaredMethods(), clazz.getFields(), clazz.getMethods()}) {
+            for (Member member : group) {
+                members.add(member.toString());
+            }
+        }
+        return clazz.getModifiers() + " " + clazz.getSuperclass() + " " + Arrays.toString(clazz.getInterfaces()) + " " + members;
+    }
+
+    private static void update(Murmur3F murmur, String value) {
+        murmur.update(value.getBytes(StandardCharsets.UTF_8));
+        murmur.update(0);
+    }
+
+    private static String contentHash(byte[] bytecode) {
+        Murmur3F murmur = new Murmur3F();
+        murmur.update(bytecode);
+        return murmur.getValueHexString();
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+
+    private record IndexEntry(String location, String fingerprint) {
+    }
+}
@@ -1,5 +1,9 @@
 package org.mvel3;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Interface for compiled MVEL expression evaluators.
  * <p>
@@ -23,6 +27,13 @@ package org.mvel3;
  *   <li>POJO context ({@code MVEL.pojo(...)}): Use {@link #eval(Object) eval(C c)} where C is the POJO class</li>
  *   <li>With root context: Use {@link #eval(Object, Object) eval(C c, W w)} when a "with" object is configured</li>
  * </ul>
+ * <p>
+ * An evaluator compiled with a {@code Boolean}, {@code Integer}, {@code Long} or {@code Double} output type
+ * also implements {@link BooleanEvaluator}, {@link IntEvaluator}, {@link LongEvaluator} or
+ * {@link DoubleEvaluator}, which return the result without boxing it.
+ * <p>
+ * To evaluate many contexts, use {@link #evalAll} or {@link #filter} rather than calling {@link #eval(Object)} in a
+ * loop: generated evaluators implement them with the loop inside their own class.
  *
  * @param <C> the context type (Map, List, or POJO)
  * @param <W> the "with" root context type (Void if not used)
@@ -77,4 +88,39 @@ public interface Evaluator<C, W, O> {
     default O evalWith(W w) {
         throw new ExpressionEvaluationException("This evaluator does not implement evalWith(W). Use the correct eval method for your context type.");
     }
+
+    /**
+     * Evaluates each input in iteration order, passing each result to the sink along with its input.
+     * <p>
+     * Generated evaluators override this with the same loop in their own class. The {@link #eval(Object)} call
+     * inside it then has a single receiver class and can be inlined, where a loop in the caller shares one call
+     * site between every evaluator class it is used with.
+     *
+     * @param inputs the contexts to evaluate
+     * @param sink   receives the result for each input
+     */
+    default void evalAll(List<? extends C> inputs, ResultSink<? super C, ? super O> sink) {
+        int index = 0;
+        for (C input : inputs) {
+            sink.accept(index++, input, eval(input));
+        }
+    }
+
+    /**
+     * Returns the inputs for which this predicate evaluates to true, in iteration order. Like {@link #evalAll},
+     * generated evaluators with a {@code Boolean} output type implement the loop in their own class.
+     *
+     * @param inputs the contexts to evaluate
+     * @return a new list of the matching inputs
+     * @throws ClassCastException if the output type is not {@code Boolean}
+     */
+    default List<C> filter(Collection<? extends C> inputs) {
+        List<C> matches = new ArrayList<>();
+        for (C input : inputs) {
+            if ((Boolean) eval(input)) {
+                matches.add(input);
+            }
+        }
+        return matches;
+    }
 }
@@ -0,0 +1,318 @@
+package org.mvel3;
+
+import org.mvel3.methodutils.Murmur3F;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Bounded, LRU cache of already instantiated {@link Evaluator}s, keyed by a canonical hash of the
+ * {@link CompilerParameters} that produced them.
+ * <p>
+ * Two parameter sets map to the same entry when they have the same expression, content and context type,
+ * declarations, imports, out type, generated names and class loader. Imports are order insensitive, as is the
+ * order in which declarations were added, except for {@link ContextType#LIST}, {@link ContextType#SHAPED} and
+ * {@link ContextType#COLUMNS} where it is the element index, slot or column.
+ * Evaluators defined into different {@link ClassManager}s are different entries, so that managers stay isolated
+ * from each other. Parameters built without a {@code ClassManager} of their own, such as those of the
+ * {@link MVEL} convenience methods or of a {@link MVELBuilder} with no cache, get a default one, which is not
+ * part of the key: they share entries whichever default manager they were built with. Evaluators interpreted until
+ * they tier up, see {@link MVELBuilder#tierUpThreshold(int)}, are keyed by their threshold too, so that callers
+ * asking for a compiled evaluator never get an interpreting one.
+ * <p>
+ * Compilation happens outside the cache lock, so two threads missing on the same key at the same time may both
+ * compile; the first result to be stored wins and is returned to both.
+ */
+public class EvaluatorCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<Key, Evaluator<?, ?, ?>> entries;
+
+    private final ClassManager classManager = ClassManager.defaulted();
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    public EvaluatorCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public EvaluatorCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be greater than zero, got " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Evaluator<?, ?, ?>> eldest) {
+                if (size() > EvaluatorCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached evaluator for the given parameters, or compiles, caches and returns a new one.
+     */
+    public <C, W, O> Evaluator<C, W, O> getOrCompile(CompilerParameters<C, W, O> parameters,
+                                                     Function<CompilerParameters<C, W, O>, Evaluator<C, W, O>> compiler) {
+        return getOrCompile(parameters, 0, compiler);
+    }
+
+    /**
+     * As {@link #getOrCompile(CompilerParameters, Function)}, for an evaluator interpreted until it has been
+     * evaluated {@code tierUpThreshold} times, zero meaning compiled straight away.
+     */
+    <C, W, O> Evaluator<C, W, O> getOrCompile(CompilerParameters<C, W, O> parameters, int tierUpThreshold,
+                                              Function<CompilerParameters<C, W, O>, Evaluator<C, W, O>> compiler) {
+        Key key = Key.of(parameters, tierUpThreshold);
+
+        Evaluator<C, W, O> evaluator = get(key);
+        if (evaluator != null) {
+            return evaluator;
+        }
+
+        evaluator = compiler.apply(parameters);
+
+        synchronized (entries) {
+            Evaluator<C, W, O> existing = (Evaluator<C, W, O>) entries.putIfAbsent(key, evaluator);
+            return existing != null ? existing : evaluator;
+        }
+    }
+
+    public <C, W, O> Evaluator<C, W, O> getIfPresent(CompilerParameters<C, W, O> parameters) {
+        return get(Key.of(parameters));
+    }
+
+    /**
+     * Stores an evaluator compiled outside of {@link #getOrCompile}, without counting a request. If an evaluator
+     * is already cached for the parameters, that one is kept and returned.
+     */
+    <C, W, O> Evaluator<C, W, O> put(CompilerParameters<C, W, O> parameters, Evaluator<C, W, O> evaluator) {
+        synchronized (entries) {
+            Evaluator<C, W, O> existing = (Evaluator<C, W, O>) entries.putIfAbsent(Key.of(parameters), evaluator);
+            return existing != null ? existing : evaluator;
+        }
+    }
+
+    private <C, W, O> Evaluator<C, W, O> get(Key key) {
+        synchronized (entries) {
+            Evaluator<C, W, O> evaluator = (Evaluator<C, W, O>) entries.get(key);
+            if (evaluator != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return evaluator;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * The {@link ClassManager} that evaluators compiled through this cache without one of their own are defined into.
+     */
+    public ClassManager classManager() {
+        return classManager;
+    }
+
+    /**
+     * Removes all entries. Statistics are kept; use {@link #resetStats()} to clear them.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public void resetStats() {
+        synchronized (entries) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits, misses, evictions, entries.size(), maximumSize);
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, int maximumSize) {
+        public long requests() {
+            return hits + misses;
+        }
+
+        public double hitRate() {
+            long requests = requests();
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+    }
+
+    /**
+     * Canonical form of a {@link CompilerParameters}. As with {@link ClassManager.ClassEntry}, the murmur hash
+     * gives good hash codes and an early exit from equals, and the canonical string settles collisions.
+     * <p>
+     * The {@link ClassManager} is compared by identity and only weakly referenced, so a cached entry does not keep
+     * its manager reachable; once the manager is collected, no other key equals the entry's, which then ages out.
+     * A defaulted manager is left out of the key altogether.
+     */
+    static final class Key {
+        private final String canonical;
+
+        private final ClassLoader classLoader;
+
+        private final WeakReference<ClassManager> classManager;
+
+        private final boolean defaultedManager;
+
+        private final byte[] hash;
+
+        private final int hashCode;
+
+        private Key(String canonical, ClassLoader classLoader, ClassManager classManager) {
+            this.canonical = canonical;
+            this.classLoader = classLoader;
+            this.defaultedManager = classManager != null && classManager.isDefaulted();
+            this.classManager = classManager != null && !defaultedManager ? new WeakReference<>(classManager) : null;
+
+            Murmur3F murmur = new Murmur3F();
+            murmur.update(canonical.getBytes(StandardCharsets.UTF_8));
+            hash = murmur.getValueBytesBigEndian();
+            hashCode = 31 * (31 * Arrays.hashCode(hash) + System.identityHashCode(classLoader))
+                       + (defaultedManager ? 1 : System.identityHashCode(classManager));
+        }
+
+        static Key of(CompilerParameters<?, ?, ?> parameters) {
+            return of(parameters, 0);
+        }
+
+        static Key of(CompilerParameters<?, ?, ?> parameters, int tierUpThreshold) {
+            StringBuilder sb = new StringBuilder(256);
+            append(sb, "contextType", parameters.contextType());
+            append(sb, "contentType", parameters.contentType());
+            append(sb, "expression", parameters.expression());
+            append(sb, "outType", typeName(parameters.outType()));
+            append(sb, "context", declarationName(parameters.contextDeclaration()));
+            append(sb, "with", declarationName(parameters.withDeclaration()));
+            append(sb, "vars", declarations(parameters.variableDeclarations(), parameters.contextType() != ContextType.LIST
+                                                                                  && parameters.contextType() != ContextType.SHAPED
+                                                                                  && parameters.contextType() != ContextType.COLUMNS));
+            append(sb, "imports", parameters.imports() != null ? new TreeSet<>(parameters.imports()) : null);
+            append(sb, "staticImports", parameters.staticImports() != null ? new TreeSet<>(parameters.staticImports()) : null);
+            append(sb, "className", parameters.generatedClassName());
+            append(sb, "methodName", parameters.generatedMethodName());
+            append(sb, "superName", parameters.generatedSuperName());
+            append(sb, "lookup", parameters.classManager() != null ? parameters.classManager().getLookupClassName() : null);
+            if (tierUpThreshold > 0) {
+                // left out otherwise, so the canonical form of compiled evaluators stays as persisted
+                append(sb, "tierUp", tierUpThreshold);
+            }
+            return new Key(sb.toString(), parameters.classLoader(), parameters.classManager());
+        }
+
+        /**
+         * The canonical form, which unlike the class loader and class manager is stable across JVM runs.
+         */
+        String canonical() {
+            return canonical;
+        }
+
+        private static void append(StringBuilder sb, String name, Object value) {
+            String str = String.valueOf(value);
+            // length prefix keeps the encoding unambiguous whatever the expression contains
+            sb.append(name).append('[').append(str.length()).append(']').append(str).append('\n');
+        }
+
+        private static String typeName(Type<?> type) {
+            if (type == null) {
+                return null;
+            }
+            return (type.getClazz() != null ? type.getClazz().getName() : null) + type.getGenerics();
+        }
+
+        private static String declarationName(Declaration<?> declaration) {
+            return declaration == null ? null : declaration.name() + ':' + typeName(declaration.type());
+        }
+
+        private static List<String> declarations(List<Declaration> declarations, boolean sort) {
+            if (declarations == null) {
+                return null;
+            }
+            List<String> names = new ArrayList<>(declarations.size());
+            for (Declaration<?> declaration : declarations) {
+                names.add(declarationName(declaration));
+            }
+            if (sort) {
+                names.sort(null);
+            }
+            return names;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key that = (Key) o;
+
+            if (classLoader != that.classLoader || defaultedManager != that.defaultedManager
+                || classManager() != that.classManager() || !Arrays.equals(hash, that.hash)) {
+                return false;
+            }
+            return canonical.equals(that.canonical);
+        }
+
+        private ClassManager classManager() {
+            return classManager != null ? classManager.get() : null;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" + getValueHexString() + '}';
+        }
+
+        private String getValueHexString() {
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        }
+    }
+}
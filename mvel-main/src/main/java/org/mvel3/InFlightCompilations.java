@@ -0,0 +1,60 @@
+package org.mvel3;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Asynchronous compilations that have been submitted but not finished yet, keyed like {@link EvaluatorCache}.
+ * A request for parameters that are already being compiled gets a copy of the pending future instead of a second
+ * compilation. Every caller, the first included, gets its own copy, so that one completing or cancelling its future
+ * does not affect the others. Entries are removed as soon as their compilation finishes, so only concurrent duplicates are
+ * coalesced; reuse of finished evaluators is the job of the {@link EvaluatorCache}.
+ */
+final class InFlightCompilations {
+
+    private static final Map<EvaluatorCache.Key, CompletableFuture<? extends Evaluator<?, ?, ?>>> PENDING = new ConcurrentHashMap<>();
+
+    private InFlightCompilations() {
+    }
+
+    static <C, W, O> CompletableFuture<Evaluator<C, W, O>> compile(CompilerParameters<C, W, O> parameters, int tierUpThreshold,
+                                                                  Function<CompilerParameters<C, W, O>, Evaluator<C, W, O>> compiler,
+                                                                  Executor executor) {
+        EvaluatorCache.Key key = EvaluatorCache.Key.of(parameters, tierUpThreshold);
+
+        CompletableFuture<Evaluator<C, W, O>> future = new CompletableFuture<>();
+        CompletableFuture<Evaluator<C, W, O>> existing = (CompletableFuture<Evaluator<C, W, O>>) PENDING.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    Evaluator<C, W, O> evaluator = compiler.apply(parameters);
+                    // unregister before completing, so dependents never see a finished future still pending
+                    PENDING.remove(key, future);
+                    future.complete(evaluator);
+                } catch (Throwable t) {
+                    PENDING.remove(key, future);
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            PENDING.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.copy();
+    }
+
+    /**
+     * Number of compilations currently in flight.
+     */
+    static int pending() {
+        return PENDING.size();
+    }
+}
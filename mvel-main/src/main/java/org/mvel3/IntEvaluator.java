@@ -0,0 +1,27 @@
+package org.mvel3;
+
+/**
+ * An evaluator of an {@code Integer} expression that returns its result unboxed.
+ * <p>
+ * Evaluators compiled with an {@code Integer} out type implement this interface as well as {@link Evaluator}.
+ * A {@code null} result cannot be returned unboxed, and throws {@link NullPointerException}.
+ *
+ * @param <C> the context type (Map, List, or POJO)
+ */
+@FunctionalInterface
+public interface IntEvaluator<C> {
+
+    int evalInt(C c);
+
+    /**
+     * The evaluator itself if it was compiled to evaluate unboxed, or one that unboxes the result of
+     * {@link Evaluator#eval(Object) eval(C)}.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> IntEvaluator<C> of(Evaluator<C, ?, Integer> evaluator) {
+        if (evaluator instanceof IntEvaluator<?> unboxed) {
+            return (IntEvaluator<C>) unboxed;
+        }
+        return c -> evaluator.eval(c);
+    }
+}
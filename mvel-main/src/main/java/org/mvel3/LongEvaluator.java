@@ -0,0 +1,27 @@
+package org.mvel3;
+
+/**
+ * An evaluator of a {@code Long} expression that returns its result unboxed.
+ * <p>
+ * Evaluators compiled with a {@code Long} out type implement this interface as well as {@link Evaluator}.
+ * A {@code null} result cannot be returned unboxed, and throws {@link NullPointerException}.
+ *
+ * @param <C> the context type (Map, List, or POJO)
+ */
+@FunctionalInterface
+public interface LongEvaluator<C> {
+
+    long evalLong(C c);
+
+    /**
+     * The evaluator itself if it was compiled to evaluate unboxed, or one that unboxes the result of
+     * {@link Evaluator#eval(Object) eval(C)}.
+     */
+    @SuppressWarnings("unchecked")
+    static <C> LongEvaluator<C> of(Evaluator<C, ?, Long> evaluator) {
+        if (evaluator instanceof LongEvaluator<?> unboxed) {
+            return (LongEvaluator<C>) unboxed;
+        }
+        return c -> evaluator.eval(c);
+    }
+}
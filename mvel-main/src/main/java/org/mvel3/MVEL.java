@@ -21,20 +21,48 @@ package org.mvel3;
 
 import org.mvel3.MVELBuilder.ContentBuilder;
 import org.mvel3.MVELBuilder.TypesBuilderCollector;
+import org.mvel3.compiler.interpreter.TieredEvaluator;
 import org.mvel3.transpiler.context.Declaration;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import static org.mvel3.MVELBuilder.WITH_NAME;
 
 public class MVEL {
 
+    private final EvaluatorCache evaluatorCache;
+
     public MVEL() {
+        this(null);
+    }
+
+    /**
+     * All compile and execute methods of this instance look up, and store, their evaluators in the given cache.
+     */
+    public MVEL(EvaluatorCache evaluatorCache) {
+        this.evaluatorCache = evaluatorCache;
+    }
+
+    public EvaluatorCache getEvaluatorCache() {
+        return evaluatorCache;
+    }
+
+    /**
+     * The ClassManager of the convenience methods not given one: the cache's, so that identical calls hit it, or
+     * else a new one per call.
+     */
+    private ClassManager defaultClassManager() {
+        return evaluatorCache != null ? evaluatorCache.classManager() : ClassManager.defaulted();
     }
 
 
@@ -63,6 +91,21 @@ public class MVEL {
         return new MVELBuilder.WithBuilder<>(ContextType.LIST, Declaration.of(MVELBuilder.CONTEXT_NAME, Type.LIST), types);
     }
 
+    /**
+     * Compiles against a {@link ShapedContext} of the given shape, reading each variable from its own field.
+     */
+    public static MVELBuilder.WithBuilder<ShapedContext> shaped(ContextShape shape) {
+        return new MVELBuilder.WithBuilder<>(ContextType.SHAPED, Declaration.of(MVELBuilder.CONTEXT_NAME, Type.type(ShapedContext.class)), shape.declarations());
+    }
+
+    /**
+     * Compiles an evaluator over a {@link Columns} batch, with an array per variable, that evaluates every row in
+     * one call. The out type is a {@code long[]} bitset for a predicate or a {@code double[]}.
+     */
+    public static MVELBuilder.WithBuilder<Columns> columns(Declaration<?>... types) {
+        return new MVELBuilder.WithBuilder<>(ContextType.COLUMNS, Declaration.of(MVELBuilder.CONTEXT_NAME, Type.type(Columns.class)), types);
+    }
+
     public static <C> MVELBuilder.WithBuilder<C> pojo(Class cls) {
         return new MVELBuilder.WithBuilder<>(ContextType.POJO, Declaration.of(MVELBuilder.CONTEXT_NAME, Type.type(cls)), null);
     }
@@ -87,13 +130,67 @@ public class MVEL {
     }
 
     public <C, W, O> Evaluator<C, W, O> compile(CompilerParameters<C, W, O> evalInfo) {
+        if (evaluatorCache != null) {
+            return evaluatorCache.getOrCompile(evalInfo, p -> new MVELCompiler().compile(p));
+        }
         MVELCompiler compiler = new MVELCompiler();
         Evaluator<C, W, O> eval = compiler.compile(evalInfo);
         return eval;
     }
 
+    /**
+     * Compiles all parameters using one thread per available processor, see {@link #compileAll(List, int)}.
+     */
+    public List<CompilationResult<?, ?, ?>> compileAll(List<? extends CompilerParameters<?, ?, ?>> parameters) {
+        return compileAll(parameters, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compiles a batch of expressions, such as a rule catalog, on up to {@code parallelism} threads and returns
+     * once all are done. The result list has one entry per input, in input order; an expression that fails to
+     * compile is reported in its own entry and does not affect the others.
+     */
+    public List<CompilationResult<?, ?, ?>> compileAll(List<? extends CompilerParameters<?, ?, ?>> parameters, int parallelism) {
+        return new BulkCompilation(evaluatorCache, parameters).run(parallelism);
+    }
+
+    /**
+     * Compiles on the common {@link ForkJoinPool}, see {@link #compileAsync(CompilerParameters, Executor)}.
+     */
+    public <C, W, O> CompletableFuture<Evaluator<C, W, O>> compileAsync(CompilerParameters<C, W, O> evalInfo) {
+        return compileAsync(evalInfo, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses, transpiles and compiles on the given executor. If an equal set of parameters is already being
+     * compiled asynchronously, the pending future is returned instead of starting another compilation.
+     */
+    public <C, W, O> CompletableFuture<Evaluator<C, W, O>> compileAsync(CompilerParameters<C, W, O> evalInfo, Executor executor) {
+        return InFlightCompilations.compile(evalInfo, 0, this::compile, executor);
+    }
+
+    /**
+     * Compiles all parameters on the common {@link ForkJoinPool}, see {@link #compileAllAsync(Collection, Executor)}.
+     */
+    public List<CompletableFuture<Evaluator<?, ?, ?>>> compileAllAsync(Collection<? extends CompilerParameters<?, ?, ?>> parameters) {
+        return compileAllAsync(parameters, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Submits every parameter set for asynchronous compilation and returns one future per input, in iteration
+     * order. Each future completes on its own, with the evaluator or with that expression's compilation failure;
+     * use {@link CompletableFuture#allOf(CompletableFuture[])} to await the whole batch.
+     */
+    public List<CompletableFuture<Evaluator<?, ?, ?>>> compileAllAsync(Collection<? extends CompilerParameters<?, ?, ?>> parameters, Executor executor) {
+        List<CompletableFuture<Evaluator<?, ?, ?>>> futures = new ArrayList<>(parameters.size());
+        for (CompilerParameters<?, ?, ?> evalInfo : parameters) {
+            futures.add(compileAsync(evalInfo, executor).thenApply(evaluator -> evaluator));
+        }
+        return futures;
+    }
+
     public  <V, R> Evaluator<Map<String, V>, Void, R> compileMapBlock(final String content, final Class<R> outClass, final Set<String> imports, final Map<String, Type<?>> types) {
-        return compileMapBlock(content, outClass, imports, types, new ClassManager(), ClassLoader.getSystemClassLoader());
+        return compileMapBlock(content, outClass, imports, types, defaultClassManager(), ClassLoader.getSystemClassLoader());
     }
 
     public <V, R> Evaluator<Map<String, V>, Void, R> compileMapBlock(final String content, final Class<R> outClass, final Set<String> imports, final Map<String, Type<?>> types,
@@ -105,13 +202,14 @@ public class MVEL {
                 .imports(imports)
                 .classManager(clsManager)
                 .classLoader(classLoader)
+                .cache(evaluatorCache)
                 .compile();
 
         return  evaluator;
     }
 
     public  <V, R> Evaluator<Map<String, V>, Void, R> compileMapExpression(final String content, final Class<R> outClass, final Set<String> imports, final Map<String, Type<?>> types) {
-        return compileMapExpression(content, outClass, imports, types, new ClassManager(), ClassLoader.getSystemClassLoader());
+        return compileMapExpression(content, outClass, imports, types, defaultClassManager(), ClassLoader.getSystemClassLoader());
     }
 
     public <V, R> Evaluator<Map<String, V>, Void, R> compileMapExpression(final String content, final Class<R> outClass, final Set<String> imports, final Map<String, Type<?>> types,
@@ -123,13 +221,14 @@ public class MVEL {
                                                            .imports(imports)
                                                            .classManager(clsManager)
                                                            .classLoader(classLoader)
+                                                           .cache(evaluatorCache)
                                                            .compile();
 
         return  evaluator;
     }
 
     public <V, R> Evaluator<List<V>, Void, R> compileListBlock(final String content, Class<R> outClass, final Set<String> imports, final Declaration<V>[] types) {
-        return compileListBlock(content, outClass, imports, types, new ClassManager(), ClassLoader.getSystemClassLoader());
+        return compileListBlock(content, outClass, imports, types, defaultClassManager(), ClassLoader.getSystemClassLoader());
     }
 
     public <V, R> Evaluator<List<V>, Void, R> compileListBlock(final String content, Class outClass, final Set<String> imports, final Declaration<V>[] types,
@@ -141,6 +240,7 @@ public class MVEL {
                                                      .imports(imports)
                                                      .classManager(clsManager)
                                                      .classLoader(classLoader)
+                                                     .cache(evaluatorCache)
                                                      .compile();
 
         return  evaluator;
@@ -148,7 +248,7 @@ public class MVEL {
 
 
     public <V, R> Evaluator<List<V>, Void, R>  compileListExpression(final String content, Class<R> outClass, final Set<String> imports, final Declaration<V>[] types) {
-        return compileListExpression(content, outClass, imports, types, new ClassManager(), ClassLoader.getSystemClassLoader());
+        return compileListExpression(content, outClass, imports, types, defaultClassManager(), ClassLoader.getSystemClassLoader());
     }
 
     public <V, R> Evaluator<List<V>, Void, R> compileListExpression(final String content, Class outClass, final Set<String> imports, final Declaration<V>[] types,
@@ -159,16 +259,14 @@ public class MVEL {
                                                     .imports(imports)
                                                     .classManager(clsManager)
                                                     .classLoader(classLoader)
+                                                    .cache(evaluatorCache)
                                                     .compile();
 
         return  evaluator;
     }
 
     public <T, K, R> Evaluator<T, K, R> compilePojoEvaluator(CompilerParameters<T, K, R> info) {
-        MVELCompiler compiler = new MVELCompiler();
-        Evaluator<T, K, R> evaluator = compiler.compile(info);
-
-        return  evaluator;
+        return compile(info);
     }
 
     public Object executeExpression(final String content) {
@@ -187,7 +285,7 @@ public class MVEL {
                                    final Map<String, Type<?>> types,
                                    Type<R> outType,
                                    final Map<String, Object> vars) {
-        return executeExpression(expr, imports, types, outType, vars, new ClassManager(), ClassLoader.getSystemClassLoader());
+        return executeExpression(expr, imports, types, outType, vars, defaultClassManager(), ClassLoader.getSystemClassLoader());
     }
 
     public <R> R executeExpression(final String expr, Set<String> imports,
@@ -214,6 +312,9 @@ public class MVEL {
         Evaluator<Map<String, Object>, Void, R> evaluator = mvelBuilder.imports(imports)
                    .classManager(clsManager)
                    .classLoader(classLoader)
+                   .cache(evaluatorCache)
+                   // one-shot evaluation: interpret, and only compile if a cached evaluator turns out to be hot
+                   .tierUpThreshold(TieredEvaluator.DEFAULT_THRESHOLD)
                    .compile();
 
         return evaluator.eval(vars);
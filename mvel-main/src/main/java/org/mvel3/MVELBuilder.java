@@ -8,6 +8,9 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class MVELBuilder<C, W, O> {
 
@@ -193,6 +196,12 @@ public class MVELBuilder<C, W, O> {
 
     private String generatedSuperName;
 
+    private EvaluatorCache evaluatorCache;
+
+    private int tierUpThreshold;
+
+    private Executor tierUpExecutor;
+
     public static <C, W, O> MVELBuilder<C, W, O> create() {
         MVELBuilder builder = new MVELBuilder<>();
         builder.outType = Type.type(Void.class); // default no return
@@ -209,6 +218,9 @@ public class MVELBuilder<C, W, O> {
         builder.outType         = template.outType;
         builder.generatedClassName = template.generatedClassName;
         builder.generatedMethodName = template.generatedMethodName;
+        builder.evaluatorCache = template.evaluatorCache;
+        builder.tierUpThreshold = template.tierUpThreshold;
+        builder.tierUpExecutor = template.tierUpExecutor;
 
         return builder;
     }
@@ -237,6 +249,35 @@ public class MVELBuilder<C, W, O> {
         return this;
     }
 
+    /**
+     * Compiled evaluators are looked up in, and added to, the given cache. A null cache disables caching.
+     */
+    public MVELBuilder<C, W, O> cache(EvaluatorCache evaluatorCache) {
+        this.evaluatorCache = evaluatorCache;
+        return this;
+    }
+
+    /**
+     * Interpret the expression until it has been evaluated the given number of times, then compile it to bytecode in
+     * the background. Zero, the default, compiles straight away.
+     */
+    public MVELBuilder<C, W, O> tierUpThreshold(int tierUpThreshold) {
+        if (tierUpThreshold < 0) {
+            throw new IllegalArgumentException("tierUpThreshold cannot be negative, got " + tierUpThreshold);
+        }
+        this.tierUpThreshold = tierUpThreshold;
+        return this;
+    }
+
+    /**
+     * Executor for the background compilation of interpreted expressions, see {@link #tierUpThreshold(int)}.
+     * A null executor uses a shared daemon thread.
+     */
+    public MVELBuilder<C, W, O> tierUpExecutor(Executor tierUpExecutor) {
+        this.tierUpExecutor = tierUpExecutor;
+        return this;
+    }
+
     public MVELBuilder<C, W, O> imports(Set<String> imports) {
         this.imports = imports;
         return this;
@@ -333,7 +374,34 @@ public class MVELBuilder<C, W, O> {
     }
 
     public Evaluator<C, W, O>  compile(CompilerParameters<C, W, O> parameters) {
+        if (evaluatorCache != null) {
+            return evaluatorCache.getOrCompile(parameters, tierUpThreshold, this::compileUncached);
+        }
+        return compileUncached(parameters);
+    }
+
+    /**
+     * Compiles on the common {@link ForkJoinPool}, see {@link #compileAsync(Executor)}.
+     */
+    public CompletableFuture<Evaluator<C, W, O>> compileAsync() {
+        return compileAsync(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses, transpiles and compiles on the given executor, for instance a virtual thread per task executor, and
+     * returns a future the caller can poll or await. If an equal set of parameters is already being compiled
+     * asynchronously, the pending future is returned instead of starting another compilation; the settings of
+     * the builder that started it apply.
+     */
+    public CompletableFuture<Evaluator<C, W, O>> compileAsync(Executor executor) {
+        return InFlightCompilations.compile(build(), tierUpThreshold, this::compile, executor);
+    }
+
+    private Evaluator<C, W, O> compileUncached(CompilerParameters<C, W, O> parameters) {
         MVELCompiler compiler = new MVELCompiler();
+        if (tierUpThreshold > 0) {
+            return compiler.compileTiered(parameters, tierUpThreshold, tierUpExecutor);
+        }
         return compiler.compile(parameters);
     }
 
@@ -356,7 +424,7 @@ public class MVELBuilder<C, W, O> {
         }
 
         if (classManager == null) {
-            classManager = new ClassManager();
+            classManager = evaluatorCache != null ? evaluatorCache.classManager() : ClassManager.defaulted();
         }
 
         CompilerParameters<C, W, O> info = new CompilerParameters<>(contextType, classLoader, classManager, imports, staticImports, outType,
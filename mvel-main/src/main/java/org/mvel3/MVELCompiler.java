@@ -19,44 +19,61 @@ package org.mvel3;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.PackageDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.Name;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.LabeledStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
 import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.resolution.MethodUsage;
 import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
 import com.github.javaparser.resolution.types.ResolvedType;
 import org.mvel3.javacompiler.KieMemoryCompiler;
+import org.mvel3.javacompiler.KieMemoryCompilerException;
 import org.mvel3.lambdaextractor.LambdaKey;
 import org.mvel3.lambdaextractor.LambdaRegistry;
 import org.mvel3.lambdaextractor.LambdaUtils;
 import org.mvel3.transpiler.MVELToJavaRewriter;
+import org.mvel3.parser.MvelParser;
 import org.mvel3.parser.printer.PrintUtil;
 import org.mvel3.transpiler.EvalPre;
 import org.mvel3.transpiler.MVELTranspiler;
 import org.mvel3.transpiler.TranspiledResult;
 import org.mvel3.transpiler.context.Declaration;
+import org.mvel3.transpiler.context.TranspilerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.mvel3.compiler.classfile.ClassfileEvaluatorEmitter;
+import org.mvel3.compiler.interpreter.AstInterpreter;
+import org.mvel3.compiler.interpreter.TieredEvaluator;
+import org.mvel3.compiler.vector.VectorBackend;
 
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static org.mvel3.transpiler.MVELTranspiler.handleParserResult;
 
@@ -68,17 +85,108 @@ public class MVELCompiler {
             "true".equalsIgnoreCase(System.getProperty("mvel3.compiler.classfile.debug"));
 
     public <T, K, R> Evaluator<T, K, R> compile(CompilerParameters<T, K, R> info) {
+        Evaluator<T, K, R> persisted = loadPersistedEmitted(info);
+        if (persisted != null) {
+            return persisted;
+        }
+        return compile(info, transpile(info));
+    }
+
+    /**
+     * Returns the evaluator previously emitted and persisted for these parameters, or null. Only looks on disk
+     * when lambda persistence is enabled; nothing is parsed or transpiled. A persisted evaluator is the scalar one,
+     * so columns evaluators are never loaded while the vector backend is enabled, they must be transpiled to be
+     * lowered.
+     */
+    public <T, K, R> Evaluator<T, K, R> loadPersistedEmitted(CompilerParameters<T, K, R> info) {
+        if (!LambdaRegistry.PERSISTENCE_ENABLED || (VectorBackend.ENABLED && info.contextType() == ContextType.COLUMNS)) {
+            return null;
+        }
+        byte[] bytecode = EmittedClassStore.INSTANCE.load(info);
+        if (bytecode == null) {
+            return null;
+        }
+        try {
+            Evaluator<T, K, R> evaluator = loadClassfileEmitted(bytecode, info);
+            log.debug("Persisted Classfile API evaluator used for expression: {}", info.expression());
+            return evaluator;
+        } catch (ExpressionCompileException | LinkageError e) {
+            log.debug("Persisted Classfile API evaluator could not be loaded, compiling again: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns an evaluator that interprets the transpiled AST straight away and compiles it to bytecode on the
+     * given executor once it has been invoked {@code threshold} times. Expressions the interpreter does not
+     * support are compiled immediately, as with {@link #compile(CompilerParameters)}.
+     *
+     * @param executor executor for the background compilation, or null for the shared tier-up thread
+     */
+    public <T, K, R> Evaluator<T, K, R> compileTiered(CompilerParameters<T, K, R> info, int threshold, Executor executor) {
         TranspiledResult transpiled = transpile(info);
 
+        AstInterpreter interpreter = AstInterpreter.create(info, transpiled);
+        if (interpreter != null) {
+            log.debug("Interpreting until tier-up: {}", info.expression());
+            return new TieredEvaluator<>(info, interpreter, threshold, executor);
+        }
+        return compile(info, transpiled);
+    }
+
+    /**
+     * Compiles an already transpiled result, for callers that transpile separately, such as bulk compilation.
+     */
+    public <T, K, R> Evaluator<T, K, R> compile(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
+        Evaluator<T, K, R> vectorized = lower(info, transpiled);
+        if (vectorized != null) {
+            return vectorized;
+        }
+        return compileScalar(info, transpiled);
+    }
+
+    /**
+     * Returns the Vector API evaluator for a columns expression when the vector backend is enabled and the
+     * expression can be lowered, or null.
+     */
+    public <T, K, R> Evaluator<T, K, R> lower(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
+        return VectorBackend.ENABLED ? VectorBackend.lower(info, transpiled) : null;
+    }
+
+    /**
+     * Compiles an already transpiled result to bytecode evaluating one context at a time, never lowering it to
+     * the vector backend.
+     */
+    public <T, K, R> Evaluator<T, K, R> compileScalar(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
+        Evaluator<T, K, R> emitted = emit(info, transpiled);
+        if (emitted != null) {
+            return emitted;
+        }
+
+        // Javac fallback: full pipeline (print AST → javac → bytecode)
+        // Used for expressions canEmit() rejects and for emit-time failures.
+        CompilationUnit unit = new CompilationUnitGenerator(
+                transpiled.getTranspilerContext().getParser()).createCompilationUnit(transpiled, info);
+        Evaluator<T, K, R> evaluator = compileEvaluator(unit, info);
+        return evaluator;
+    }
+
+    /**
+     * Emits the evaluator straight to bytecode with the Classfile API, or returns null when the expression needs
+     * the javac pipeline.
+     */
+    public <T, K, R> Evaluator<T, K, R> emit(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
         // Primary path: Classfile API direct bytecode emission (no javac)
-        // Handles ~98.6% of expressions. See ClassfileEvaluatorEmitter.canEmit() for
-        // the 9 documented cases that fall through to javac.
-        // Skip when Lambda persistence is enabled — persistence requires javac's classfile
-        // format for ClassManager-based deduplication.
-        if (!LambdaRegistry.PERSISTENCE_ENABLED && ClassfileEvaluatorEmitter.canEmit(transpiled)) {
+        // See ClassfileEvaluatorEmitter.canEmit() for the kinds of expressions that fall through to javac.
+        // When Lambda persistence is enabled, the bytecode is persisted through EmittedClassStore,
+        // deduplicated against javac-compiled classes by the LambdaRegistry.
+        if (ClassfileEvaluatorEmitter.canEmit(transpiled)) {
             try {
                 byte[] bytecode = ClassfileEvaluatorEmitter.emit(info, transpiled);
                 Evaluator<T, K, R> evaluator = loadClassfileEmitted(bytecode, info);
+                if (LambdaRegistry.PERSISTENCE_ENABLED) {
+                    persistEmitted(info, transpiled, bytecode);
+                }
                 log.debug("Classfile API emitter used for expression: {}", info.expression());
                 return evaluator;
             } catch (Exception | VerifyError e) {
@@ -92,13 +200,126 @@ public class MVELCompiler {
             String reason = ClassfileEvaluatorEmitter.diagnoseRejection(transpiled);
             log.debug("Classfile canEmit=false for: {} | reason: {}", info.expression(), reason);
         }
+        return null;
+    }
 
-        // Javac fallback: full pipeline (print AST → javac → bytecode)
-        // Used for the 9 documented fallback cases and any future emit-time failures.
+    /**
+     * Compiles already transpiled results through the javac pipeline, with one javac run per class loader rather
+     * than one per expression. Javac has a high fixed cost per run, which dominates when many expressions fall
+     * back to it. Callers wanting the Classfile API emitter first should try {@link #emit} on each result.
+     * <p>
+     * When lambda persistence is enabled, expressions are registered with the {@link LambdaRegistry} in list
+     * order, as {@link #compile(CompilerParameters)} would do one by one, and the registry journal is written
+     * once for the whole batch.
+     *
+     * @return one result per parameter, in list order, with the index into the given lists
+     */
+    public List<CompilationResult<?, ?, ?>> compileBatch(List<? extends CompilerParameters<?, ?, ?>> infos, List<TranspiledResult> transpiled) {
+        if (!LambdaRegistry.PERSISTENCE_ENABLED) {
+            return compileBatchClasses(infos, transpiled);
+        }
+        LambdaRegistry.INSTANCE.beginBatch();
+        try {
+            return compileBatchClasses(infos, transpiled);
+        } finally {
+            LambdaRegistry.INSTANCE.endBatch();
+        }
+    }
+
+    private List<CompilationResult<?, ?, ?>> compileBatchClasses(List<? extends CompilerParameters<?, ?, ?>> infos, List<TranspiledResult> transpiled) {
+        CompilationResult<?, ?, ?>[] results = new CompilationResult<?, ?, ?>[infos.size()];
+        Map<ClassLoader, BatchGroup> groups = new LinkedHashMap<>();
+
+        for (int i = 0; i < infos.size(); i++) {
+            CompilerParameters<?, ?, ?> info = infos.get(i);
+            try {
+                CompilationUnit unit = new CompilationUnitGenerator(
+                        transpiled.get(i).getTranspilerContext().getParser()).createCompilationUnit(transpiled.get(i), info);
+                ClassManager clsManager = info.classManager() != null ? info.classManager() : new ClassManager();
+                BatchGroup group = groups.computeIfAbsent(info.classLoader(), cl -> new BatchGroup());
+
+                String javaFQN = evaluatorFullQualifiedName(unit);
+                int physicalId = -1;
+                if (LambdaRegistry.PERSISTENCE_ENABLED) {
+                    physicalId = registerForPersistence(unit, info.classLoader());
+                    javaFQN = renameEvaluatorClass(unit, javaFQN, "_" + physicalId);
+                    if (LambdaRegistry.INSTANCE.isPersisted(physicalId)) {
+                        loadPersisted(clsManager, javaFQN, physicalId);
+                        results[i] = batchSuccess(i, info, clsManager.getClass(javaFQN));
+                        continue;
+                    }
+                } else if (group.sources.containsKey(javaFQN)) {
+                    // every evaluator shares the generated name, which must be unique within one javac run
+                    javaFQN = renameEvaluatorClass(unit, javaFQN, "_" + i);
+                }
+
+                // the same physical id means the same lambda, so duplicates share one source
+                group.sources.putIfAbsent(javaFQN, PrintUtil.printNode(unit));
+                group.units.add(new BatchUnit(i, info, clsManager, javaFQN, physicalId));
+            } catch (RuntimeException e) {
+                results[i] = new CompilationResult<>(i, info, null, e);
+            }
+        }
+
+        groups.forEach((classLoader, group) -> {
+            if (group.units.isEmpty()) {
+                return;
+            }
+            KieMemoryCompiler.BatchResult batch = KieMemoryCompiler.compileBatch(group.sources, classLoader);
+            for (BatchUnit unit : group.units) {
+                try {
+                    KieMemoryCompilerException failure = batch.failures().get(unit.javaFQN);
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    Map<String, byte[]> byteCode = batch.classesOf(unit.javaFQN);
+                    if (unit.physicalId >= 0 && !LambdaRegistry.INSTANCE.isPersisted(unit.physicalId)) {
+                        log.info("Persisting lambda class {}", unit.javaFQN);
+                        KieMemoryCompiler.persist(Collections.singletonMap(unit.javaFQN, byteCode.get(unit.javaFQN)), LambdaRegistry.DEFAULT_PERSISTENCE_PATH);
+                        LambdaRegistry.INSTANCE.registerPhysicalPath(unit.physicalId, LambdaRegistry.DEFAULT_PERSISTENCE_PATH.resolve(unit.javaFQN.replace('.', '/') + ".class"));
+                    }
+                    unit.classManager.define(byteCode);
+                    results[unit.index] = batchSuccess(unit.index, unit.info, unit.classManager.getClass(unit.javaFQN));
+                } catch (RuntimeException e) {
+                    results[unit.index] = new CompilationResult<>(unit.index, unit.info, null, e);
+                }
+            }
+        });
+
+        return Arrays.asList(results);
+    }
+
+    private <C, W, O> CompilationResult<C, W, O> batchSuccess(int index, CompilerParameters<C, W, O> info, Class<Evaluator<C, W, O>> evaluatorDefinition) {
+        return new CompilationResult<>(index, info, createEvaluatorInstance(evaluatorDefinition), null);
+    }
+
+    /** The javac input of one {@link #compileBatch} class loader. */
+    private static class BatchGroup {
+        private final Map<String, String> sources = new LinkedHashMap<>();
+        private final List<BatchUnit> units = new ArrayList<>();
+    }
+
+    private record BatchUnit(int index, CompilerParameters<?, ?, ?> info, ClassManager classManager, String javaFQN, int physicalId) {
+    }
+
+    /**
+     * Registers emitted bytecode with the {@link LambdaRegistry} like a javac-compiled class, so that an equal
+     * lambda persisted before, whichever way it was compiled, is not written again.
+     */
+    private <T, K, R> void persistEmitted(CompilerParameters<T, K, R> info, TranspiledResult transpiled, byte[] bytecode) {
         CompilationUnit unit = new CompilationUnitGenerator(
                 transpiled.getTranspilerContext().getParser()).createCompilationUnit(transpiled, info);
-        Evaluator<T, K, R> evaluator = compileEvaluator(unit, info);
-        return evaluator;
+        int physicalId = registerForPersistence(unit, info.classLoader());
+
+        Path classFile;
+        if (LambdaRegistry.INSTANCE.isPersisted(physicalId)) {
+            classFile = LambdaRegistry.INSTANCE.getPhysicalPath(physicalId);
+        } else {
+            classFile = EmittedClassStore.INSTANCE.write(bytecode);
+            log.info("Persisting emitted lambda class {}", classFile);
+            LambdaRegistry.INSTANCE.registerPhysicalPath(physicalId, classFile);
+        }
+        EmittedClassStore.INSTANCE.register(info, classFile);
     }
 
     /**
@@ -177,6 +398,38 @@ public class MVELCompiler {
                         return tempStmts;
                     };
                     break;
+                case "ShapedContext":
+                    evalPre = (evalInfo, context, statements) -> {
+                        NodeList tempStmts = new NodeList<Statement>();
+
+                        for (int i = 0; i < evalInfo.variableDeclarations().size(); i++) {
+                            Declaration declr = evalInfo.variableDeclarations().get(i);
+                            if (context.getInputs().contains(declr.name())) {
+                                // int a = __context.getInt(0); a byte, short, char, float or reference is cast
+                                // from the type of the field that holds it
+                                Class<?> declaredClass = declr.type().getClazz();
+                                Expression readExpr = new MethodCallExpr(new NameExpr(evalInfo.contextDeclaration().name()),
+                                                                         ContextShape.getterName(declaredClass),
+                                                                         NodeList.nodeList(new IntegerLiteralExpr(i)));
+                                Type varType = handleParserResult(context.getParser().parseType(declr.type().getCanonicalGenericsName()));
+                                if (ContextShape.fieldType(declaredClass) != declaredClass) {
+                                    readExpr = new CastExpr(varType.clone(), readExpr);
+                                }
+
+                                VariableDeclarator varDeclr = new VariableDeclarator(varType, declr.name());
+                                varDeclr.setInitializer(readExpr);
+                                tempStmts.add(new ExpressionStmt(new VariableDeclarationExpr(varDeclr)));
+                            }
+                        }
+
+                        tempStmts.addAll(statements);
+
+                        return tempStmts;
+                    };
+                    break;
+                case "Columns":
+                    evalPre = MVELCompiler::evalColumns;
+                    break;
                 default: // pojo
                     evalPre = (evalInfo, context, statements) -> {
                         NodeList tempStmts = new NodeList<Statement>();
@@ -211,6 +464,73 @@ public class MVELCompiler {
         return input;
     }
 
+    /**
+     * Wraps the statements in a loop over the rows of a {@link Columns} context. Each input is read from its
+     * column, and each {@code return} writes the result of the row to the output array, then moves on to the next
+     * row. The output starts cleared, so a row whose body completes without a {@code return} is {@code false}, or
+     * {@code 0.0}:
+     * <pre>{@code
+     * int[] __influence = (int[]) __context.column(0);
+     * long[] __out = __context.bits();
+     * int __length = __context.length();
+     * __rows: for (int __row = 0; __row < __length; __row++) {
+     *     int influence = __influence[__row];
+     *     { if (influence > 50) { __out[__row >>> 6] |= 1L << __row; } continue __rows; }
+     * }
+     * return __out;
+     * }</pre>
+     */
+    private static NodeList<Statement> evalColumns(CompilerParameters<?, ?, ?> evalInfo, TranspilerContext<?, ?, ?> context,
+                                                   NodeList<Statement> statements) {
+        Class<?> outClass = evalInfo.outType().getClazz();
+        if (outClass != long[].class && outClass != double[].class) {
+            throw new ExpressionTranspileException("A columns evaluator must return a long[] bitset or a double[]. Got: " +
+                                                   outClass.getName(), evalInfo.outType().getCanonicalGenericsName());
+        }
+        boolean bitset = outClass == long[].class;
+        String contextName = evalInfo.contextDeclaration().name();
+        MvelParser parser = context.getParser();
+
+        NodeList<Statement> tempStmts = new NodeList<>();
+        BlockStmt rowBody = new BlockStmt();
+        for (int i = 0; i < evalInfo.variableDeclarations().size(); i++) {
+            Declaration<?> declr = evalInfo.variableDeclarations().get(i);
+            if (context.getInputs().contains(declr.name())) {
+                String typeName = declr.type().getCanonicalGenericsName();
+                tempStmts.add(handleParserResult(parser.parseStatement(
+                        typeName + "[] __" + declr.name() + " = (" + typeName + "[]) " + contextName + ".column(" + i + ");")));
+                rowBody.addStatement(handleParserResult(parser.parseStatement(
+                        typeName + " " + declr.name() + " = __" + declr.name() + "[__row];")));
+            }
+        }
+        tempStmts.add(handleParserResult(parser.parseStatement(
+                outClass.getCanonicalName() + " __out = " + contextName + (bitset ? ".bits();" : ".doubles();"))));
+        tempStmts.add(handleParserResult(parser.parseStatement("int __length = " + contextName + ".length();")));
+
+        // Returns inside lambdas or anonymous classes belong to them, not to the row
+        List<ReturnStmt> returns = new ArrayList<>();
+        statements.forEach(stmt -> returns.addAll(stmt.findAll(ReturnStmt.class,
+                r -> r.findAncestor(LambdaExpr.class).isEmpty() && r.findAncestor(BodyDeclaration.class).isEmpty())));
+        for (ReturnStmt returnStmt : returns) {
+            Expression result = returnStmt.getExpression().orElseThrow(() -> new ExpressionTranspileException(
+                    "A columns evaluator must return a value for each row", returnStmt.toString()));
+            BlockStmt write = handleParserResult(parser.parseBlock(bitset
+                    ? "{ if (__result) { __out[__row >>> 6] |= 1L << __row; } continue __rows; }"
+                    : "{ __out[__row] = __result; continue __rows; }"));
+            returnStmt.replace(write);
+            write.findFirst(NameExpr.class, n -> n.getNameAsString().equals("__result")).get().replace(result);
+        }
+        statements.forEach(rowBody::addStatement);
+
+        ForStmt rowLoop = handleParserResult(parser.parseStatement(
+                "for (int __row = 0; __row < __length; __row++) {}")).asForStmt();
+        rowLoop.setBody(rowBody);
+        tempStmts.add(new LabeledStmt("__rows", rowLoop));
+        tempStmts.add(handleParserResult(parser.parseStatement("return __out;")));
+
+        return tempStmts;
+    }
+
     private <T, K, R> CompilationUnit compileNoLoad(CompilerParameters<T, K, R> info) {
         TranspiledResult input = transpile(info);
 
@@ -270,37 +590,17 @@ public class MVELCompiler {
     }
 
     private String compileEvaluatorClassWithPersistence(ClassManager classManager, ClassLoader classLoader, CompilationUnit compilationUnit, String javaFQN) {
-        MethodDeclaration methodDeclaration = compilationUnit.findFirst(MethodDeclaration.class).orElseThrow();
-        LambdaKey lambdaKey = LambdaUtils.createLambdaKeyFromMethodDeclaration(methodDeclaration);
-        int logicalId = LambdaRegistry.INSTANCE.getNextLogicalId();
-        int physicalId = LambdaRegistry.INSTANCE.registerLambda(logicalId, lambdaKey);
-        String oldClassName = javaFQN.substring(javaFQN.lastIndexOf('.') + 1);
-        String newClassName = oldClassName + "_" + physicalId; // The default class name is "GeneratorEvaluator__", but adding extra '_' just in case
-        ClassOrInterfaceDeclaration classOrInterfaceDeclaration = compilationUnit.findFirst(ClassOrInterfaceDeclaration.class).orElseThrow();
-        classOrInterfaceDeclaration.setName(newClassName);
-        String newSource = PrintUtil.printNode(compilationUnit);
-        String newJavaFQN = javaFQN.substring(0, javaFQN.lastIndexOf('.') + 1) + newClassName;
-        Map<String, String> sources = Collections.singletonMap(
-                newJavaFQN,
-                newSource
-        );
+        int physicalId = registerForPersistence(compilationUnit, classLoader);
+        // The default class name is "GeneratorEvaluator__", but adding extra '_' just in case
+        String newJavaFQN = renameEvaluatorClass(compilationUnit, javaFQN, "_" + physicalId);
 
         if (LambdaRegistry.INSTANCE.isPersisted(physicalId)) {
-            if (classManager.getClasses().containsKey(newJavaFQN)) {
-                log.info("Lambda class {} already loaded in ClassManager", newJavaFQN);
-                return newJavaFQN;
-            }
-            Path persistedFile = LambdaRegistry.INSTANCE.getPhysicalPath(physicalId);
-            log.info("Reading the persisted lambda class {}", newJavaFQN);
-            try {
-                byte[] bytes = Files.readAllBytes(persistedFile);
-                classManager.define(Collections.singletonMap(newJavaFQN, bytes));
-            } catch (Exception e) {
-                throw new ExpressionCompileException(
-                    "Failed to load persisted lambda class from " + persistedFile,
-                    null, e.getMessage(), e);
-            }
+            loadPersisted(classManager, newJavaFQN, physicalId);
         } else {
+            Map<String, String> sources = Collections.singletonMap(
+                    newJavaFQN,
+                    PrintUtil.printNode(compilationUnit)
+            );
             log.info("Persisting lambda class {}", newJavaFQN);
             List<Path> persistedFiles = KieMemoryCompiler.compileAndPersist(classManager, sources, classLoader, null, LambdaRegistry.DEFAULT_PERSISTENCE_PATH);
             LambdaRegistry.INSTANCE.registerPhysicalPath(physicalId, persistedFiles.get(0)); // only one class persisted
@@ -309,4 +609,40 @@ public class MVELCompiler {
         return newJavaFQN;
     }
 
+    /**
+     * The signature types of the evaluator, and of persisted lambdas it is compared with, are resolved with the
+     * class loader it is compiled against, which may be the only one to see the user types.
+     */
+    private int registerForPersistence(CompilationUnit compilationUnit, ClassLoader classLoader) {
+        MethodDeclaration methodDeclaration = compilationUnit.findFirst(MethodDeclaration.class).orElseThrow();
+        LambdaKey lambdaKey = LambdaUtils.createLambdaKeyFromMethodDeclaration(methodDeclaration, classLoader);
+        int logicalId = LambdaRegistry.INSTANCE.getNextLogicalId();
+        return LambdaRegistry.INSTANCE.registerLambda(logicalId, lambdaKey, classLoader);
+    }
+
+    private String renameEvaluatorClass(CompilationUnit compilationUnit, String javaFQN, String suffix) {
+        String oldClassName = javaFQN.substring(javaFQN.lastIndexOf('.') + 1);
+        String newClassName = oldClassName + suffix;
+        ClassOrInterfaceDeclaration classOrInterfaceDeclaration = compilationUnit.findFirst(ClassOrInterfaceDeclaration.class).orElseThrow();
+        classOrInterfaceDeclaration.setName(newClassName);
+        return javaFQN.substring(0, javaFQN.lastIndexOf('.') + 1) + newClassName;
+    }
+
+    private void loadPersisted(ClassManager classManager, String javaFQN, int physicalId) {
+        if (classManager.getClasses().containsKey(javaFQN)) {
+            log.info("Lambda class {} already loaded in ClassManager", javaFQN);
+            return;
+        }
+        Path persistedFile = LambdaRegistry.INSTANCE.getPhysicalPath(physicalId);
+        log.info("Reading the persisted lambda class {}", javaFQN);
+        try {
+            byte[] bytes = Files.readAllBytes(persistedFile);
+            classManager.define(Collections.singletonMap(javaFQN, bytes));
+        } catch (Exception e) {
+            throw new ExpressionCompileException(
+                "Failed to load persisted lambda class from " + persistedFile,
+                null, e.getMessage(), e);
+        }
+    }
+
 }
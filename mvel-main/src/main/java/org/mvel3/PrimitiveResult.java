@@ -0,0 +1,52 @@
+package org.mvel3;
+
+/**
+ * The out types that a compiled evaluator also returns unboxed, through the interface and method
+ * that it implements for them.
+ */
+public enum PrimitiveResult {
+    BOOLEAN(Boolean.class, boolean.class, BooleanEvaluator.class, "evalBoolean"),
+    INT(Integer.class, int.class, IntEvaluator.class, "evalInt"),
+    LONG(Long.class, long.class, LongEvaluator.class, "evalLong"),
+    DOUBLE(Double.class, double.class, DoubleEvaluator.class, "evalDouble");
+
+    private final Class<?> boxedType;
+    private final Class<?> primitiveType;
+    private final Class<?> evaluatorInterface;
+    private final String methodName;
+
+    PrimitiveResult(Class<?> boxedType, Class<?> primitiveType, Class<?> evaluatorInterface, String methodName) {
+        this.boxedType = boxedType;
+        this.primitiveType = primitiveType;
+        this.evaluatorInterface = evaluatorInterface;
+        this.methodName = methodName;
+    }
+
+    /**
+     * @return the primitive result for an out type, or null if it has none
+     */
+    public static PrimitiveResult of(Class<?> outType) {
+        for (PrimitiveResult result : values()) {
+            if (result.boxedType == outType) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    public Class<?> boxedType() {
+        return boxedType;
+    }
+
+    public Class<?> primitiveType() {
+        return primitiveType;
+    }
+
+    public Class<?> evaluatorInterface() {
+        return evaluatorInterface;
+    }
+
+    public String methodName() {
+        return methodName;
+    }
+}
@@ -0,0 +1,18 @@
+package org.mvel3;
+
+/**
+ * Receives the result for each input of {@link Evaluator#evalAll}.
+ *
+ * @param <C> the context type
+ * @param <O> the output type
+ */
+@FunctionalInterface
+public interface ResultSink<C, O> {
+
+    /**
+     * @param index  the position of the input in the list
+     * @param input  the context the expression was evaluated with
+     * @param result the result of evaluating the expression
+     */
+    void accept(int index, C input, O result);
+}
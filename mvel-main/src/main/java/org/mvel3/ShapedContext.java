@@ -0,0 +1,60 @@
+package org.mvel3;
+
+/**
+ * The context of an evaluator compiled for a {@link ContextShape}: one field per declared variable, primitive
+ * for a primitive variable, rather than a {@code Map} entry holding a boxed value.
+ * <p>
+ * Each shape generates its own subclass. Variables are read and written by slot, the index of their
+ * declaration in the shape, through the accessor for their type: {@code getInt}/{@code setInt} for an
+ * {@code int}, {@code byte}, {@code short} or {@code char}, {@code getDouble}/{@code setDouble} for a
+ * {@code double} or {@code float}, and {@code getObject}/{@code setObject} for any reference type. Setters
+ * return the context, so that it can be filled fluently:
+ * <pre>{@code
+ * ContextShape shape = ContextShape.of(Declaration.of("influence", int.class), Declaration.of("atWar", boolean.class));
+ * int influence = shape.slot("influence");
+ * int atWar = shape.slot("atWar");
+ * ShapedContext ctx = shape.newContext().setInt(influence, 75).setBoolean(atWar, false);
+ * }</pre>
+ * A slot read or written through the accessor of another type throws {@link IllegalArgumentException}.
+ */
+public abstract class ShapedContext {
+
+    private final ContextShape shape;
+
+    protected ShapedContext(ContextShape shape) {
+        this.shape = shape;
+    }
+
+    public ContextShape shape() {
+        return shape;
+    }
+
+    /**
+     * A new context of the same shape, with every variable at its default value.
+     */
+    protected abstract ShapedContext create();
+
+    public abstract boolean getBoolean(int slot);
+
+    public abstract int getInt(int slot);
+
+    public abstract long getLong(int slot);
+
+    public abstract double getDouble(int slot);
+
+    public abstract Object getObject(int slot);
+
+    public abstract ShapedContext setBoolean(int slot, boolean value);
+
+    public abstract ShapedContext setInt(int slot, int value);
+
+    public abstract ShapedContext setLong(int slot, long value);
+
+    public abstract ShapedContext setDouble(int slot, double value);
+
+    public abstract ShapedContext setObject(int slot, Object value);
+
+    protected static IllegalArgumentException wrongSlot(int slot, String type) {
+        return new IllegalArgumentException("Slot " + slot + " does not hold a " + type);
+    }
+}
@@ -1,29 +1,60 @@
 package org.mvel3.compiler.classfile;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.*;
 import com.github.javaparser.ast.stmt.*;
+import com.github.javaparser.ast.type.ArrayType;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.PrimitiveType;
 import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedTypeParameterDeclaration;
+import com.github.javaparser.resolution.types.ResolvedType;
+import com.github.javaparser.utils.Pair;
 import org.mvel3.CompilerParameters;
 import org.mvel3.ContextType;
+import org.mvel3.PrimitiveResult;
 import org.mvel3.transpiler.TranspiledResult;
 import org.mvel3.transpiler.context.Declaration;
 
 import java.lang.classfile.ClassBuilder;
 import java.lang.classfile.ClassFile;
 import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
 import java.lang.classfile.Opcode;
 import java.lang.classfile.TypeKind;
+import java.lang.classfile.instruction.SwitchCase;
 import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDesc;
+import java.lang.constant.DirectMethodHandleDesc;
+import java.lang.constant.DynamicCallSiteDesc;
+import java.lang.constant.DynamicConstantDesc;
+import java.lang.constant.MethodHandleDesc;
 import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessFlag;
+import java.lang.reflect.Executable;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static java.lang.constant.ConstantDescs.*;
 
@@ -33,10 +64,34 @@ import static java.lang.constant.ConstantDescs.*;
  * <p>
  * Phase 1 supports: predicate expressions (comparisons, arithmetic, boolean logic,
  * field access via getters, method calls, literals, string concatenation).
+ * Blocks may also use {@code for}, {@code while}, {@code do} and enhanced-for loops, with labelled
+ * {@code break} and {@code continue}. Conditional expressions are emitted with both branches unified
+ * to one type, and the {@code x != null ? ... : null} guards that null-safe navigation lowers to are emitted
+ * as a single chain of {@code ifnull} jumps.
+ * Switch statements and expressions, in colon and arrow form and with {@code yield}, dispatch through a
+ * {@code tableswitch} or {@code lookupswitch} on int, char and enum selectors, and on the hash code of a
+ * String selector.
+ * {@code instanceof} tests, with or without a type pattern, are emitted as {@code instanceof} and
+ * {@code checkcast}, the binding living in its own local.
+ * Lambdas and method references are linked by {@code LambdaMetafactory}, a lambda body being emitted into
+ * a private static method of the evaluator.
+ * An evaluator with a {@code Boolean}, {@code Integer}, {@code Long} or {@code Double} out type also
+ * implements the matching {@link PrimitiveResult} interface, its body being emitted a second time with
+ * unboxed returns.
  * Unsupported expressions fall back to the javac pipeline.
  */
 public final class ClassfileEvaluatorEmitter {
 
+    /**
+     * Version of what an emitted evaluator class contains, part of the key persisted emitted classes are stored
+     * under. It has to be incremented whenever emitted classes gain or change methods or interfaces, so that
+     * classes emitted by an earlier version are not loaded without them:
+     * 1 - eval and its bridge;
+     * 2 - primitive evalBoolean, evalInt, evalLong or evalDouble, and the matching PrimitiveResult interface;
+     * 3 - evalAll and filter.
+     */
+    public static final int FORMAT_VERSION = 3;
+
     private ClassfileEvaluatorEmitter() {}
 
     private static final ClassDesc CD_Evaluator = ClassDesc.of("org.mvel3.Evaluator");
@@ -44,35 +99,50 @@ public final class ClassfileEvaluatorEmitter {
     private static final ClassDesc CD_List = ClassDesc.of("java.util.List");
     private static final ClassDesc CD_BigDecimal = ClassDesc.of("java.math.BigDecimal");
     private static final ClassDesc CD_MathContext = ClassDesc.of("java.math.MathContext");
+    private static final ClassDesc CD_Iterable = ClassDesc.of("java.lang.Iterable");
+    private static final ClassDesc CD_Iterator = ClassDesc.of("java.util.Iterator");
+    private static final ClassDesc CD_Collection = ClassDesc.of("java.util.Collection");
+    private static final ClassDesc CD_ArrayList = ClassDesc.of("java.util.ArrayList");
+    private static final ClassDesc CD_ResultSink = ClassDesc.of("org.mvel3.ResultSink");
+    private static final ClassDesc CD_RandomAccess = ClassDesc.of("java.util.RandomAccess");
+    private static final ClassDesc CD_MatchException = ClassDesc.of("java.lang.MatchException");
+    private static final ClassDesc CD_Objects = ClassDesc.of("java.util.Objects");
+    private static final DirectMethodHandleDesc BSM_ENUM_SWITCH_MAP = ofConstantBootstrap(
+            ClassDesc.of(EnumSwitchMaps.class.getName()), "switchMap", CD_int.arrayType(),
+            CD_Class, CD_String.arrayType());
+    private static final DirectMethodHandleDesc BSM_LAMBDA_METAFACTORY = ofCallsiteBootstrap(
+            ClassDesc.of("java.lang.invoke.LambdaMetafactory"), "metafactory", CD_CallSite,
+            CD_MethodType, CD_MethodHandle, CD_MethodType);
+
+    /**
+     * Where {@code break}, {@code continue} and {@code yield} jump to, for an enclosing loop, switch or
+     * labelled statement. The continue label is null for a statement that is not a loop. A switch statement
+     * is also the target of an unlabelled {@code break}; a switch expression has a yield kind instead, which
+     * its {@code yield}s convert their value to before jumping to the break label.
+     */
+    private record JumpTarget(String name, Label breakLabel, Label continueLabel, boolean isSwitch, TypeKind yieldKind) {
+
+        JumpTarget(String name, Label breakLabel, Label continueLabel) {
+            this(name, breakLabel, continueLabel, false, null);
+        }
+    }
 
     /**
      * Check whether the transpiled method body can be emitted directly as bytecode.
      * <p>
-     * Returns {@code true} for ~98.6% of expressions (649 of 658 in the test suite).
-     * The remaining 9 expressions fall back to javac. These fall into three categories:
-     * <ol>
-     *   <li><b>canEmit=false (5 cases)</b> — rejected at the AST-inspection stage:
-     *     <ul>
-     *       <li>Scope-less free-function calls: {@code staticMethod(1)}, {@code isEven(1)},
-     *           {@code instanceMethod(1)}. These are DRL integration patterns that resolve
-     *           through static imports not visible to the emitter. (4 cases)</li>
-     *       <li>Error-path test: {@code foo.nonExistentProperty} — deliberately invalid,
-     *           expects a compilation error from javac. (1 case)</li>
-     *     </ul>
-     *   </li>
-     *   <li><b>Emit-time failures (4 cases)</b> — pass canEmit but fail during bytecode
-     *       generation, caught and falling back to javac:
-     *     <ul>
-     *       <li>List generic erasure: {@code foos[0].name}, {@code foos.get(0).getName()}.
-     *           {@code List.get()} returns {@code Object} at the bytecode level; the emitter
-     *           cannot resolve the element type without a type solver. (3 cases)</li>
-     *       <li>BigDecimal + var compound assignment: {@code var s1=0B; s1+=1}. The {@code var}
-     *           type is inferred as {@code BigDecimal}, but compound {@code +=} resolves to
-     *           {@code .add()} which the emitter can't find on the inferred type. (1 case)</li>
-     *     </ul>
-     *   </li>
-     * </ol>
-     * All 9 cases fall back gracefully to javac, which handles them correctly.
+     * Expressions outside what the emitter handles fall back to javac, in two ways:
+     * <ul>
+     *   <li><b>canEmit=false</b>: rejected when inspecting the AST, for instance an unresolvable property such as
+     *       {@code foo.nonExistentProperty}, which is left to javac to report.</li>
+     *   <li><b>Emit-time failures</b>: accepted here but failing during bytecode generation, caught by the caller,
+     *       for instance a compound {@code +=} on a {@code var} inferred as {@code BigDecimal}
+     *       ({@code var s1=0B; s1+=1}), whose {@code .add()} is not found on the inferred type.</li>
+     * </ul>
+     * Element types of generic collections, as in {@code foos[0].name}, are resolved from the declared
+     * generics by {@link ReifiedType}. Scope-less calls such as {@code isEven(1)} or {@code instanceMethod(1)}
+     * are emitted against the functions the transpiler resolved from the static imports and the generated
+     * superclass; a call to a function it did not resolve is left to javac to report. A {@code Void}
+     * evaluator, such as a rule action of {@code modify} and {@code with} blocks, needs no return statement.
      */
     public static boolean canEmit(TranspiledResult result) {
         MethodDeclaration method = result.getUnit()
@@ -82,11 +152,13 @@ public final class ClassfileEvaluatorEmitter {
 
         BlockStmt body = method.getBody().get();
 
-        // Must have at least one return statement (expressions always have a return)
+        // Must have at least one return statement (expressions always have a return), unless the
+        // evaluator returns Void, as a rule action does
         for (Statement stmt : body.getStatements()) {
             if (!isSupportedStatement(stmt)) return false;
         }
-        return containsReturn(body);
+        return (method.getType().isVoidType() || containsReturn(body))
+                && findUnresolvedFunctionCall(body, result) == null;
     }
 
     /**
@@ -98,6 +170,17 @@ public final class ClassfileEvaluatorEmitter {
             case BlockStmt bs -> bs.getStatements().stream().anyMatch(ClassfileEvaluatorEmitter::containsReturn);
             case IfStmt is -> containsReturn(is.getThenStmt())
                     || is.getElseStmt().map(ClassfileEvaluatorEmitter::containsReturn).orElse(false);
+            case ForStmt fs -> containsReturn(fs.getBody());
+            case WhileStmt ws -> containsReturn(ws.getBody());
+            case DoStmt ds -> containsReturn(ds.getBody());
+            case ForEachStmt fes -> containsReturn(fes.getBody());
+            case LabeledStmt ls -> containsReturn(ls.getStatement());
+            case SwitchStmt ss -> ss.getEntries().stream()
+                    .flatMap(entry -> entry.getStatements().stream())
+                    .anyMatch(ClassfileEvaluatorEmitter::containsReturn);
+            case ExpressionStmt es when es.getExpression() instanceof SwitchExpr se -> se.getEntries().stream()
+                    .flatMap(entry -> entry.getStatements().stream())
+                    .anyMatch(ClassfileEvaluatorEmitter::containsReturn);
             default -> false;
         };
     }
@@ -154,20 +237,30 @@ public final class ClassfileEvaluatorEmitter {
         MethodTypeDesc evalMethodType = MethodTypeDesc.of(returnDesc, paramDesc);
 
         BlockStmt body = method.getBody().get();
+        SyntheticMethods syntheticMethods = new SyntheticMethods();
+        Map<String, ReifiedType> declaredTypes = reifyDeclarations(params);
+        Map<String, List<Method>> functions = resolveFunctions(body, result, params);
+        ClassDesc superDesc = resolveSuperclass(params);
+        Class<?> outClass = params.outType().getClazz();
+        PrimitiveResult primitiveResult = method.getType().isVoidType() ? null : PrimitiveResult.of(outClass);
 
         return ClassFile.of().build(thisClass, cb -> {
             cb.withFlags(AccessFlag.PUBLIC, AccessFlag.FINAL);
-            cb.withSuperclass(CD_Object);
-            cb.withInterfaceSymbols(CD_Evaluator);
+            cb.withSuperclass(superDesc);
+            if (primitiveResult != null) {
+                cb.withInterfaceSymbols(CD_Evaluator, classDescForJavaClass(primitiveResult.evaluatorInterface()));
+            } else {
+                cb.withInterfaceSymbols(CD_Evaluator);
+            }
 
-            // No-arg constructor: invokespecial Object.<init>()V; return
+            // No-arg constructor: invokespecial Super.<init>()V; return
             cb.withMethodBody(
                     INIT_NAME, // "<init>"
                     MTD_void,  // ()V
                     ClassFile.ACC_PUBLIC,
                     code -> {
                         code.aload(0);
-                        code.invokespecial(CD_Object, INIT_NAME, MTD_void);
+                        code.invokespecial(superDesc, INIT_NAME, MTD_void);
                         code.return_();
                     }
             );
@@ -177,7 +270,8 @@ public final class ClassfileEvaluatorEmitter {
                     method.getNameAsString(),
                     evalMethodType,
                     ClassFile.ACC_PUBLIC,
-                    code -> emitMethodBody(code, body, params, paramType)
+                    code -> emitMethodBody(code, body, params, paramType, outClass, syntheticMethods, declaredTypes,
+                                           functions)
             );
 
             // Bridge method: eval(Object) → eval(ConcreteType) for type erasure
@@ -197,8 +291,141 @@ public final class ClassfileEvaluatorEmitter {
                 );
             }
 
+            // Unboxed eval: evalBoolean(ConcreteType) returning boolean, and its bridge.
+            // Lambda bodies are shared with eval, as SyntheticMethods names each lambda once.
+            if (primitiveResult != null) {
+                Class<?> primitiveClass = primitiveResult.primitiveType();
+                ClassDesc primitiveDesc = classDescForJavaClass(primitiveClass);
+                MethodTypeDesc primitiveMethodType = MethodTypeDesc.of(primitiveDesc, paramDesc);
+                cb.withMethodBody(
+                        primitiveResult.methodName(),
+                        primitiveMethodType,
+                        ClassFile.ACC_PUBLIC,
+                        code -> emitMethodBody(code, body, params, paramType, primitiveClass, syntheticMethods,
+                                               declaredTypes, functions)
+                );
+                if (!paramDesc.equals(CD_Object)) {
+                    cb.withMethodBody(
+                            primitiveResult.methodName(),
+                            MethodTypeDesc.of(primitiveDesc, CD_Object),
+                            ClassFile.ACC_PUBLIC | ClassFile.ACC_BRIDGE | ClassFile.ACC_SYNTHETIC,
+                            code -> {
+                                code.aload(0);
+                                code.aload(1);
+                                code.checkcast(paramDesc);
+                                code.invokevirtual(thisClass, primitiveResult.methodName(), primitiveMethodType);
+                                emitTypedReturn(code, TypeKind.from(primitiveClass));
+                            }
+                    );
+                }
+            }
+
+            // evalAll and filter, with the loop in this class so that its call to eval has a single receiver
+            if (method.getNameAsString().equals("eval")) {
+                emitBulkMethods(cb, thisClass, evalMethodType, paramDesc,
+                                primitiveResult == PrimitiveResult.BOOLEAN ? MethodTypeDesc.of(CD_boolean, paramDesc) : null);
+            }
+
             // Static POJO setter helpers: __contexta(__context, v) { __context.setA(v); return v; }
             emitStaticHelperMethods(cb, result, thisClass, params);
+
+            // Lambda bodies, collected while emitting eval
+            syntheticMethods.emitAll(cb);
+        });
+    }
+
+    /**
+     * Emit the bulk evaluation methods of {@link org.mvel3.Evaluator}, each a loop calling this class's own eval:
+     * <pre>{@code
+     *   public void evalAll(List inputs, ResultSink sink) {
+     *       int index = 0;
+     *       for (Object input : inputs) {
+     *           sink.accept(index++, input, eval((ContextType) input));
+     *       }
+     *   }
+     *
+     *   public List filter(Collection inputs) {
+     *       List matches = new ArrayList();
+     *       for (Object input : inputs) {
+     *           if (evalBoolean((ContextType) input)) {
+     *               matches.add(input);
+     *           }
+     *       }
+     *       return matches;
+     *   }
+     * }</pre>
+     * {@code filter} is only emitted for a {@code Boolean} out type, when {@code evalBooleanType} is not null.
+     */
+    private static void emitBulkMethods(ClassBuilder cb, ClassDesc thisClass, MethodTypeDesc evalMethodType,
+                                        ClassDesc paramDesc, MethodTypeDesc evalBooleanType) {
+        cb.withMethodBody("evalAll", MethodTypeDesc.of(CD_void, CD_List, CD_ResultSink), ClassFile.ACC_PUBLIC, code -> {
+            // 0 this, 1 inputs, 2 sink, 3 iterator, 4 index, 5 input
+            Label loop = code.newLabel();
+            Label end = code.newLabel();
+            code.aload(1);
+            code.invokeinterface(CD_List, "iterator", MethodTypeDesc.of(CD_Iterator));
+            code.astore(3);
+            code.iconst_0();
+            code.istore(4);
+            code.labelBinding(loop);
+            code.aload(3);
+            code.invokeinterface(CD_Iterator, "hasNext", MethodTypeDesc.of(CD_boolean));
+            code.ifeq(end);
+            code.aload(3);
+            code.invokeinterface(CD_Iterator, "next", MethodTypeDesc.of(CD_Object));
+            code.astore(5);
+            code.aload(2);
+            code.iload(4);
+            code.aload(5);
+            code.aload(0);
+            code.aload(5);
+            if (!paramDesc.equals(CD_Object)) {
+                code.checkcast(paramDesc);
+            }
+            code.invokevirtual(thisClass, "eval", evalMethodType);
+            code.invokeinterface(CD_ResultSink, "accept", MethodTypeDesc.of(CD_void, CD_int, CD_Object, CD_Object));
+            code.iinc(4, 1);
+            code.goto_(loop);
+            code.labelBinding(end);
+            code.return_();
+        });
+
+        if (evalBooleanType == null) {
+            return;
+        }
+        cb.withMethodBody("filter", MethodTypeDesc.of(CD_List, CD_Collection), ClassFile.ACC_PUBLIC, code -> {
+            // 0 this, 1 inputs, 2 matches, 3 iterator, 4 input
+            Label loop = code.newLabel();
+            Label end = code.newLabel();
+            code.new_(CD_ArrayList);
+            code.dup();
+            code.invokespecial(CD_ArrayList, INIT_NAME, MTD_void);
+            code.astore(2);
+            code.aload(1);
+            code.invokeinterface(CD_Collection, "iterator", MethodTypeDesc.of(CD_Iterator));
+            code.astore(3);
+            code.labelBinding(loop);
+            code.aload(3);
+            code.invokeinterface(CD_Iterator, "hasNext", MethodTypeDesc.of(CD_boolean));
+            code.ifeq(end);
+            code.aload(3);
+            code.invokeinterface(CD_Iterator, "next", MethodTypeDesc.of(CD_Object));
+            code.astore(4);
+            code.aload(0);
+            code.aload(4);
+            if (!paramDesc.equals(CD_Object)) {
+                code.checkcast(paramDesc);
+            }
+            code.invokevirtual(thisClass, PrimitiveResult.BOOLEAN.methodName(), evalBooleanType);
+            code.ifeq(loop);
+            code.aload(2);
+            code.aload(4);
+            code.invokeinterface(CD_List, "add", MethodTypeDesc.of(CD_boolean, CD_Object));
+            code.pop();
+            code.goto_(loop);
+            code.labelBinding(end);
+            code.aload(2);
+            code.areturn();
         });
     }
 
@@ -287,19 +514,29 @@ public final class ClassfileEvaluatorEmitter {
             CodeBuilder code,
             BlockStmt body,
             CompilerParameters<C, W, O> params,
-            Type contextParamType) {
+            Type contextParamType,
+            Class<?> outClass,
+            SyntheticMethods syntheticMethods,
+            Map<String, ReifiedType> declaredTypes,
+            Map<String, List<Method>> functions) {
 
         // Build slot table: slot 0 = this, slot 1 = __context
         String contextParamName = params.contextDeclaration().name();
-        LocalSlotTable slots = new LocalSlotTable(contextParamName, contextParamType);
-
-        // Determine the method's return type for proper boxing at return sites
-        Class<?> outClass = params.outType().getClazz();
+        LocalSlotTable slots = new LocalSlotTable(contextParamName, contextParamType, syntheticMethods,
+                                                  declaredTypes, functions);
 
+        // outClass is the method's return type, for proper boxing at return sites: the out type for eval,
+        // or its primitive for an unboxed evalBoolean, evalInt, evalLong or evalDouble
         List<Statement> stmts = body.getStatements();
+        Deque<JumpTarget> jumps = new ArrayDeque<>();
 
         for (Statement stmt : stmts) {
-            emitStatement(code, stmt, slots, params, outClass);
+            emitStatement(code, stmt, slots, params, outClass, jumps);
+        }
+        // A Void evaluator, as a modify or with block, runs off the end of its statements
+        if (outClass == Void.class && !endsWithJump(stmts)) {
+            code.aconst_null();
+            code.areturn();
         }
     }
 
@@ -310,13 +547,25 @@ public final class ClassfileEvaluatorEmitter {
             Statement stmt,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params,
-            Class<?> outClass) {
+            Class<?> outClass,
+            Deque<JumpTarget> jumps) {
 
         switch (stmt) {
             case ReturnStmt rs -> emitReturnStmt(code, rs, slots, params, outClass);
+            case ExpressionStmt es when es.getExpression() instanceof SwitchExpr se ->
+                    emitSwitchStmt(code, se.getSelector(), se.getEntries(), slots, params, outClass, jumps);
             case ExpressionStmt es -> emitExpressionStmt(code, es, slots, params);
-            case BlockStmt bs -> emitBlockStmt(code, bs, slots, params, outClass);
-            case IfStmt is -> emitIfStmt(code, is, slots, params, outClass);
+            case BlockStmt bs -> emitBlockStmt(code, bs, slots, params, outClass, jumps);
+            case IfStmt is -> emitIfStmt(code, is, slots, params, outClass, jumps);
+            case ForStmt fs -> emitForStmt(code, fs, slots, params, outClass, jumps, null);
+            case WhileStmt ws -> emitWhileStmt(code, ws, slots, params, outClass, jumps, null);
+            case DoStmt ds -> emitDoStmt(code, ds, slots, params, outClass, jumps, null);
+            case ForEachStmt fes -> emitForEachStmt(code, fes, slots, params, outClass, jumps, null);
+            case LabeledStmt ls -> emitLabeledStmt(code, ls, slots, params, outClass, jumps);
+            case SwitchStmt ss -> emitSwitchStmt(code, ss.getSelector(), ss.getEntries(), slots, params, outClass, jumps);
+            case YieldStmt ys -> emitYieldStmt(code, ys, slots, params, jumps);
+            case BreakStmt brk -> code.goto_(findJumpTarget(jumps, brk.getLabel(), false).breakLabel());
+            case ContinueStmt cont -> code.goto_(findJumpTarget(jumps, cont.getLabel(), true).continueLabel());
             case EmptyStmt _ -> {} // no-op: trailing semicolons
             default -> throw new UnsupportedOperationException(
                     "Unsupported statement type: " + stmt.getClass().getSimpleName());
@@ -331,7 +580,13 @@ public final class ClassfileEvaluatorEmitter {
             Class<?> outClass) {
 
         if (rs.getExpression().isEmpty()) {
-            code.return_();
+            if (outClass == Void.class) {
+                // eval returns Void, which only null inhabits
+                code.aconst_null();
+                code.areturn();
+            } else {
+                code.return_();
+            }
             return;
         }
 
@@ -341,7 +596,17 @@ public final class ClassfileEvaluatorEmitter {
         // The concrete method signature returns the boxed type (e.g. Boolean, Integer).
         // If the expression left a primitive on the stack, box it to match the return type.
         TypeKind exprKind = inferTypeKind(expr, slots, params);
-        if (exprKind == TypeKind.REFERENCE) {
+        if (outClass != null && outClass.isPrimitive()) {
+            // Unboxed evalBoolean/evalInt/...: unbox a reference, which throws on null, or widen a primitive
+            TypeKind resultKind = TypeKind.from(outClass);
+            if (exprKind == TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitCheckcastAndUnbox(code,
+                        MethodType.methodType(outClass).wrap().returnType().getName());
+            } else {
+                emitTypeWidening(code, exprKind, resultKind);
+            }
+            emitTypedReturn(code, resultKind);
+        } else if (exprKind == TypeKind.REFERENCE) {
             // If the method return type is more specific than Object, checkcast to match.
             // This handles cases like MVEL.setList() returning Object when return type is Integer.
             if (outClass != null && outClass != Object.class && !outClass.isPrimitive()) {
@@ -385,7 +650,18 @@ public final class ClassfileEvaluatorEmitter {
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        Expression expr = es.getExpression();
+        emitExpressionForEffect(code, es.getExpression(), slots, params);
+    }
+
+    /**
+     * Emit an expression whose value is discarded: an expression statement, or a for loop
+     * initializer or update.
+     */
+    private static <C, W, O> void emitExpressionForEffect(
+            CodeBuilder code,
+            Expression expr,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
 
         if (expr instanceof VariableDeclarationExpr vde) {
             // Variable declaration: Type varName = initializer;
@@ -417,18 +693,33 @@ public final class ClassfileEvaluatorEmitter {
                 int slot = slots.allocate(varName, slotType);
 
                 if (declarator.getInitializer().isPresent()) {
-                    emitExpression(code, declarator.getInitializer().get(), slots, params);
+                    Expression initializer = declarator.getInitializer().get();
+                    if (initializer instanceof ArrayInitializerExpr aie && varType.isArrayType()) {
+                        // int[] a = {1, 2, 3}: the initializer takes its array type from the declaration
+                        emitArrayInitializer(code, aie, requireArrayClass(varType.asArrayType(), params),
+                                slots, params);
+                    } else {
+                        emitExpression(code, initializer, slots, params);
+                    }
                     if (needsUnbox) {
                         String boxedName = varType.isVarType()
                                 ? inferBoxedNameFromExpression(declarator.getInitializer().get())
                                 : varType.asClassOrInterfaceType().getNameWithScope();
                         ClassfileTypeUtils.emitUnboxing(code, boxedName);
+                    } else if (slotType.isPrimitiveType()) {
+                        // e.g. long sum = 0: widen the int initializer to the declared type
+                        TypeKind initKind = inferTypeKind(declarator.getInitializer().get(), slots, params);
+                        if (initKind != TypeKind.REFERENCE) {
+                            emitTypeWidening(code, initKind, ClassfileTypeUtils.toTypeKind(slotType));
+                        }
                     }
                     code.storeLocal(ClassfileTypeUtils.toTypeKind(slotType), slot);
                 }
             }
         } else if (expr instanceof AssignExpr ae) {
             emitAssignExpr(code, ae, slots, params);
+        } else if (expr instanceof UnaryExpr ue && isIncrementOrDecrement(ue.getOperator())) {
+            emitIncrement(code, ue, slots, false);
         } else {
             // Expression statement whose value is discarded (e.g., MVEL.putMap(...), method calls)
             emitExpression(code, expr, slots, params);
@@ -452,10 +743,11 @@ public final class ClassfileEvaluatorEmitter {
             BlockStmt bs,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params,
-            Class<?> outClass) {
+            Class<?> outClass,
+            Deque<JumpTarget> jumps) {
 
         for (Statement stmt : bs.getStatements()) {
-            emitStatement(code, stmt, slots, params, outClass);
+            emitStatement(code, stmt, slots, params, outClass, jumps);
         }
     }
 
@@ -466,7 +758,8 @@ public final class ClassfileEvaluatorEmitter {
             IfStmt is,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params,
-            Class<?> outClass) {
+            Class<?> outClass,
+            Deque<JumpTarget> jumps) {
 
         if (is.getElseStmt().isPresent()) {
             var elseLabel = code.newLabel();
@@ -476,19 +769,19 @@ public final class ClassfileEvaluatorEmitter {
             code.ifeq(elseLabel);       // if false, jump to else
 
             // Then branch
-            emitStatement(code, is.getThenStmt(), slots, params, outClass);
+            emitStatement(code, is.getThenStmt(), slots, params, outClass, jumps);
 
-            if (endsWithReturn(is.getThenStmt())) {
-                // Both branches return — no goto or endLabel needed after then
+            if (endsWithJump(is.getThenStmt())) {
+                // The then branch does not fall through — no goto or endLabel needed after it
                 code.labelBinding(elseLabel);
-                emitStatement(code, is.getElseStmt().get(), slots, params, outClass);
+                emitStatement(code, is.getElseStmt().get(), slots, params, outClass, jumps);
             } else {
                 // Then branch falls through — need goto to skip else
                 var endLabel = code.newLabel();
                 code.goto_(endLabel);
 
                 code.labelBinding(elseLabel);
-                emitStatement(code, is.getElseStmt().get(), slots, params, outClass);
+                emitStatement(code, is.getElseStmt().get(), slots, params, outClass, jumps);
 
                 code.labelBinding(endLabel);
             }
@@ -499,1181 +792,3053 @@ public final class ClassfileEvaluatorEmitter {
             emitExpression(code, is.getCondition(), slots, params);
             code.ifeq(endLabel);        // if false, skip then block
 
-            emitStatement(code, is.getThenStmt(), slots, params, outClass);
+            emitStatement(code, is.getThenStmt(), slots, params, outClass, jumps);
 
             code.labelBinding(endLabel);
         }
     }
 
     /**
-     * Check whether a statement ends with a return (directly or in its last sub-statement).
-     * Used to avoid emitting dead code after returning branches.
+     * Check whether a statement ends with a return, break, continue or yield (directly or in its last
+     * sub-statement). Used to avoid emitting dead code after branches that jump away.
      */
-    private static boolean endsWithReturn(Statement stmt) {
+    private static boolean endsWithJump(Statement stmt) {
         return switch (stmt) {
-            case ReturnStmt _ -> true;
-            case BlockStmt bs -> {
-                List<Statement> stmts = bs.getStatements();
-                yield !stmts.isEmpty() && endsWithReturn(stmts.getLast());
-            }
-            case IfStmt is -> endsWithReturn(is.getThenStmt())
-                    && is.getElseStmt().map(ClassfileEvaluatorEmitter::endsWithReturn).orElse(false);
+            case ReturnStmt _, BreakStmt _, ContinueStmt _, YieldStmt _ -> true;
+            case BlockStmt bs -> endsWithJump(bs.getStatements());
+            case IfStmt is -> endsWithJump(is.getThenStmt())
+                    && is.getElseStmt().map(ClassfileEvaluatorEmitter::endsWithJump).orElse(false);
             default -> false;
         };
     }
 
-    // ── Expression emission ──────────────────────────────────────────────
+    private static boolean endsWithJump(List<Statement> stmts) {
+        return !stmts.isEmpty() && endsWithJump(stmts.getLast());
+    }
 
-    static <C, W, O> void emitExpression(
+    // ── Loop emission ────────────────────────────────────────────────────
+
+    private static <C, W, O> void emitWhileStmt(
             CodeBuilder code,
-            Expression expr,
+            WhileStmt ws,
             LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            String name) {
 
-        switch (expr) {
-            case IntegerLiteralExpr ile -> emitIntLiteral(code, ile);
-            case LongLiteralExpr lle -> emitLongLiteral(code, lle);
-            case DoubleLiteralExpr dle -> emitDoubleLiteral(code, dle);
-            case BooleanLiteralExpr ble -> emitBooleanLiteral(code, ble);
-            case StringLiteralExpr sle -> code.ldc(sle.getValue());
-            case NullLiteralExpr _ -> code.aconst_null();
-            case NameExpr ne -> emitNameExpr(code, ne, slots);
-            case EnclosedExpr ee -> emitExpression(code, ee.getInner(), slots, params);
-            case CastExpr ce -> emitCastExpr(code, ce, slots, params);
-            case UnaryExpr ue -> emitUnaryExpr(code, ue, slots, params);
-            case BinaryExpr be -> emitBinaryExpr(code, be, slots, params);
-            case MethodCallExpr mce -> emitMethodCallExpr(code, mce, slots, params);
-            case FieldAccessExpr fae -> emitFieldAccessExpr(code, fae, slots, params);
-            case ObjectCreationExpr oce -> emitObjectCreationExpr(code, oce, slots, params);
-            case AssignExpr ae -> emitAssignExprAsExpression(code, ae, slots, params);
-            default -> throw new UnsupportedOperationException(
-                    "Unsupported expression type: " + expr.getClass().getSimpleName()
-                    + " — " + expr);
-        }
-    }
+        Label conditionLabel = code.newLabel();
+        Label endLabel = code.newLabel();
 
-    // ── Literal emission ──────────────────────────────────────────────────
+        code.labelBinding(conditionLabel);
+        emitJumpIfFalse(code, ws.getCondition(), endLabel, slots, params);
+        emitLoopBody(code, ws.getBody(), slots, params, outClass, jumps,
+                new JumpTarget(name, endLabel, conditionLabel));
+        code.goto_(conditionLabel);
 
-    private static void emitIntLiteral(CodeBuilder code, IntegerLiteralExpr ile) {
-        int value = ile.asNumber().intValue();
-        emitIntConstant(code, value);
+        code.labelBinding(endLabel);
     }
 
-    static void emitIntConstant(CodeBuilder code, int value) {
-        switch (value) {
-            case -1 -> code.iconst_m1();
-            case 0 -> code.iconst_0();
-            case 1 -> code.iconst_1();
-            case 2 -> code.iconst_2();
-            case 3 -> code.iconst_3();
-            case 4 -> code.iconst_4();
-            case 5 -> code.iconst_5();
-            default -> {
-                if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
-                    code.bipush(value);
-                } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
-                    code.sipush(value);
-                } else {
-                    code.ldc(value);
-                }
-            }
+    private static <C, W, O> void emitDoStmt(
+            CodeBuilder code,
+            DoStmt ds,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            String name) {
+
+        Label bodyLabel = code.newLabel();
+        Label conditionLabel = code.newLabel();
+        Label endLabel = code.newLabel();
+
+        code.labelBinding(bodyLabel);
+        emitLoopBody(code, ds.getBody(), slots, params, outClass, jumps,
+                new JumpTarget(name, endLabel, conditionLabel));
+
+        code.labelBinding(conditionLabel);
+        if (isConstantTrue(ds.getCondition())) {
+            code.goto_(bodyLabel);
+        } else {
+            emitExpression(code, ds.getCondition(), slots, params);
+            code.ifne(bodyLabel);
         }
+
+        code.labelBinding(endLabel);
     }
 
-    private static void emitLongLiteral(CodeBuilder code, LongLiteralExpr lle) {
-        String text = lle.getValue();
-        // Strip trailing L/l
-        if (text.endsWith("L") || text.endsWith("l")) {
-            text = text.substring(0, text.length() - 1);
+    private static <C, W, O> void emitForStmt(
+            CodeBuilder code,
+            ForStmt fs,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            String name) {
+
+        for (Expression init : fs.getInitialization()) {
+            emitExpressionForEffect(code, init, slots, params);
         }
-        long value = Long.parseLong(text);
-        if (value == 0L) {
-            code.lconst_0();
-        } else if (value == 1L) {
-            code.lconst_1();
-        } else {
-            code.ldc(value);
+
+        Label conditionLabel = code.newLabel();
+        Label updateLabel = code.newLabel();
+        Label endLabel = code.newLabel();
+
+        code.labelBinding(conditionLabel);
+        if (fs.getCompare().isPresent()) {
+            emitJumpIfFalse(code, fs.getCompare().get(), endLabel, slots, params);
+        }
+        emitLoopBody(code, fs.getBody(), slots, params, outClass, jumps,
+                new JumpTarget(name, endLabel, updateLabel));
+
+        code.labelBinding(updateLabel);
+        for (Expression update : fs.getUpdate()) {
+            emitExpressionForEffect(code, update, slots, params);
         }
+        code.goto_(conditionLabel);
+
+        code.labelBinding(endLabel);
     }
 
-    private static void emitDoubleLiteral(CodeBuilder code, DoubleLiteralExpr dle) {
-        String text = dle.getValue();
-        // Strip trailing D/d/F/f if present
-        if (text.endsWith("D") || text.endsWith("d") || text.endsWith("F") || text.endsWith("f")) {
-            text = text.substring(0, text.length() - 1);
+    /**
+     * Emit an enhanced-for loop without allocating an Iterator where the iterable allows it:
+     * arrays are walked by index, and so are Lists implementing {@link RandomAccess}. A List
+     * whose static type does not tell is tested with {@code instanceof RandomAccess} at run
+     * time, and the body is emitted for both the indexed and the Iterator loop.
+     */
+    private static <C, W, O> void emitForEachStmt(
+            CodeBuilder code,
+            ForEachStmt fes,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            String name) {
+
+        Expression iterable = fes.getIterable();
+        Type declaredType = iterable instanceof NameExpr ne && slots.contains(ne.getNameAsString())
+                ? slots.type(ne.getNameAsString())
+                : null;
+        ReifiedType iterableType = reifyExpressionType(iterable, slots, params);
+        Class<?> iterableClass = iterableType != null ? iterableType.raw() : null;
+        if (iterableClass == null && declaredType != null && !declaredType.isArrayType()) {
+            iterableClass = resolveTypeClass(declaredType, params);
         }
-        double value = Double.parseDouble(text);
-        if (value == 0.0) {
-            code.dconst_0();
-        } else if (value == 1.0) {
-            code.dconst_1();
+
+        boolean isArray = (declaredType != null && declaredType.isArrayType())
+                || (iterableClass != null && iterableClass.isArray());
+        if (!isArray && (iterableClass == null || !Iterable.class.isAssignableFrom(iterableClass))) {
+            throw new UnsupportedOperationException("Cannot iterate over: " + iterable);
+        }
+
+        // the element type, when the iterable declares it: the array component or the Iterable's type argument
+        Type elementType = null;
+        if (declaredType != null && declaredType.isArrayType()) {
+            elementType = declaredType.asArrayType().getComponentType();
+        } else if (isArray) {
+            elementType = StaticJavaParser.parseType(iterableClass.getComponentType().getCanonicalName());
+        } else if (iterableType != null) {
+            Class<?> elementClass = iterableType.resolve(Iterable.class.getTypeParameters()[0]).raw();
+            if (elementClass != Object.class && !elementClass.isArray() && elementClass.getCanonicalName() != null) {
+                elementType = StaticJavaParser.parseType(elementClass.getCanonicalName());
+            }
+        }
+
+        VariableDeclarator variable = fes.getVariableDeclarator();
+        Type variableType = variable.getType().isVarType()
+                ? (elementType != null ? elementType : new ClassOrInterfaceType(null, "Object"))
+                : variable.getType();
+
+        int iterableSlot = slots.allocate("$iterable" + slots.nextSlot(), new ClassOrInterfaceType(null, "Object"));
+        emitExpression(code, iterable, slots, params);
+        code.astore(iterableSlot);
+
+        Label endLabel = code.newLabel();
+        if (isArray) {
+            TypeKind elementKind = elementType != null ? ClassfileTypeUtils.toTypeKind(elementType) : TypeKind.REFERENCE;
+            emitIndexedLoop(code, fes, iterableSlot, elementKind, variable.getNameAsString(), variableType,
+                    slots, params, outClass, jumps, new JumpTarget(name, endLabel, null));
+        } else if (List.class.isAssignableFrom(iterableClass)) {
+            if (RandomAccess.class.isAssignableFrom(iterableClass)) {
+                emitIndexedLoop(code, fes, iterableSlot, null, variable.getNameAsString(), variableType,
+                        slots, params, outClass, jumps, new JumpTarget(name, endLabel, null));
+            } else {
+                Label iteratorLabel = code.newLabel();
+                code.aload(iterableSlot);
+                code.instanceOf(CD_RandomAccess);
+                code.ifeq(iteratorLabel);
+                emitIndexedLoop(code, fes, iterableSlot, null, variable.getNameAsString(), variableType,
+                        slots, params, outClass, jumps, new JumpTarget(name, endLabel, null));
+                code.goto_(endLabel);
+
+                code.labelBinding(iteratorLabel);
+                emitIteratorLoop(code, fes, iterableSlot, variable.getNameAsString(), variableType,
+                        slots, params, outClass, jumps, new JumpTarget(name, endLabel, null));
+            }
         } else {
-            code.ldc(value);
+            emitIteratorLoop(code, fes, iterableSlot, variable.getNameAsString(), variableType,
+                    slots, params, outClass, jumps, new JumpTarget(name, endLabel, null));
         }
-    }
 
-    private static void emitBooleanLiteral(CodeBuilder code, BooleanLiteralExpr ble) {
-        code.ldc(ble.getValue() ? 1 : 0);
+        code.labelBinding(endLabel);
     }
 
-    // ── Variable access ───────────────────────────────────────────────────
+    /**
+     * Loop over an array, or a List when arrayKind is null, by index. The length is read once,
+     * as javac does for arrays.
+     */
+    private static <C, W, O> void emitIndexedLoop(
+            CodeBuilder code,
+            ForEachStmt fes,
+            int iterableSlot,
+            TypeKind arrayKind,
+            String variableName,
+            Type variableType,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            JumpTarget loop) {
 
-    private static void emitNameExpr(CodeBuilder code, NameExpr ne, LocalSlotTable slots) {
-        String name = ne.getNameAsString();
-        if (slots.contains(name)) {
-            slots.loadVar(code, name);
+        int lengthSlot = slots.allocate("$length" + slots.nextSlot(), PrimitiveType.intType());
+        int indexSlot = slots.allocate("$index" + slots.nextSlot(), PrimitiveType.intType());
+
+        code.aload(iterableSlot);
+        if (arrayKind != null) {
+            code.arraylength();
         } else {
-            throw new UnsupportedOperationException("Unknown variable: " + name);
+            code.invokeinterface(CD_List, "size", MethodTypeDesc.of(CD_int));
         }
+        code.istore(lengthSlot);
+        code.iconst_0();
+        code.istore(indexSlot);
+
+        Label conditionLabel = code.newLabel();
+        Label incrementLabel = code.newLabel();
+
+        code.labelBinding(conditionLabel);
+        code.iload(indexSlot);
+        code.iload(lengthSlot);
+        code.if_icmpge(loop.breakLabel());
+
+        code.aload(iterableSlot);
+        code.iload(indexSlot);
+        if (arrayKind != null) {
+            code.arrayLoad(arrayKind);
+        } else {
+            code.invokeinterface(CD_List, "get", MethodTypeDesc.of(CD_Object, CD_int));
+        }
+        emitLoopVariableStore(code, arrayKind != null ? arrayKind : TypeKind.REFERENCE,
+                variableName, variableType, slots, params);
+
+        emitLoopBody(code, fes.getBody(), slots, params, outClass, jumps,
+                new JumpTarget(loop.name(), loop.breakLabel(), incrementLabel));
+
+        code.labelBinding(incrementLabel);
+        code.iinc(indexSlot, 1);
+        code.goto_(conditionLabel);
     }
 
-    // ── Cast expression ───────────────────────────────────────────────────
+    private static <C, W, O> void emitIteratorLoop(
+            CodeBuilder code,
+            ForEachStmt fes,
+            int iterableSlot,
+            String variableName,
+            Type variableType,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            JumpTarget loop) {
 
-    private static <C, W, O> void emitCastExpr(
+        int iteratorSlot = slots.allocate("$iterator" + slots.nextSlot(), new ClassOrInterfaceType(null, "Object"));
+
+        code.aload(iterableSlot);
+        code.invokeinterface(CD_Iterable, "iterator", MethodTypeDesc.of(CD_Iterator));
+        code.astore(iteratorSlot);
+
+        Label conditionLabel = code.newLabel();
+
+        code.labelBinding(conditionLabel);
+        code.aload(iteratorSlot);
+        code.invokeinterface(CD_Iterator, "hasNext", MethodTypeDesc.of(CD_boolean));
+        code.ifeq(loop.breakLabel());
+
+        code.aload(iteratorSlot);
+        code.invokeinterface(CD_Iterator, "next", MethodTypeDesc.of(CD_Object));
+        emitLoopVariableStore(code, TypeKind.REFERENCE, variableName, variableType, slots, params);
+
+        emitLoopBody(code, fes.getBody(), slots, params, outClass, jumps,
+                new JumpTarget(loop.name(), loop.breakLabel(), conditionLabel));
+        code.goto_(conditionLabel);
+    }
+
+    /**
+     * Convert the element on the stack to the enhanced-for variable type and store it in a new slot.
+     * Like other declarations, boxed wrapper variables are kept unboxed, and reference variables
+     * are stored with their fully qualified type so that later member calls resolve.
+     */
+    private static <C, W, O> void emitLoopVariableStore(
             CodeBuilder code,
-            CastExpr ce,
+            TypeKind elementKind,
+            String variableName,
+            Type variableType,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        emitExpression(code, ce.getExpression(), slots, params);
-
-        Type targetType = ce.getType();
-        if (targetType.isPrimitiveType()) {
-            TypeKind sourceKind = inferTypeKind(ce.getExpression(), slots, params);
-            TypeKind targetKind = ClassfileTypeUtils.toTypeKind(targetType);
+        Type slotType = ClassfileTypeUtils.isBoxedWrapperType(variableType)
+                ? ClassfileTypeUtils.toPrimitiveType(variableType)
+                : variableType;
 
-            if (sourceKind == TypeKind.REFERENCE) {
-                // Unbox: stack has boxed type (e.g., Object from Map.get), checkcast + unbox
-                String boxedName = boxedNameForPrimitive(targetType.asPrimitiveType());
-                ClassfileTypeUtils.emitCheckcastAndUnbox(code, boxedName);
+        if (slotType.isPrimitiveType()) {
+            TypeKind slotKind = ClassfileTypeUtils.toTypeKind(slotType);
+            if (elementKind == TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitCheckcastAndUnbox(code, boxedNameForPrimitive(slotType.asPrimitiveType()));
             } else {
-                // Primitive-to-primitive cast (e.g., (int) Math.pow(5,2) → d2i)
-                emitPrimitiveCast(code, sourceKind, targetKind);
+                emitTypeWidening(code, elementKind, slotKind);
             }
         } else {
-            // Reference cast
-            code.checkcast(ClassfileTypeUtils.toClassDesc(targetType));
+            if (elementKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, elementKind);
+            }
+            Class<?> variableClass = resolveTypeClass(slotType, params);
+            if (variableClass == null) {
+                throw new UnsupportedOperationException("Cannot resolve loop variable type: " + slotType);
+            }
+            if (variableClass != Object.class) {
+                code.checkcast(classDescForJavaClass(variableClass));
+            }
+            slotType = StaticJavaParser.parseType(variableClass.getCanonicalName());
         }
+
+        int slot = slots.allocate(variableName, slotType);
+        code.storeLocal(ClassfileTypeUtils.toTypeKind(slotType), slot);
+    }
+
+    private static <C, W, O> void emitLabeledStmt(
+            CodeBuilder code,
+            LabeledStmt ls,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps) {
+
+        String name = ls.getLabel().asString();
+        switch (ls.getStatement()) {
+            case ForStmt fs -> emitForStmt(code, fs, slots, params, outClass, jumps, name);
+            case WhileStmt ws -> emitWhileStmt(code, ws, slots, params, outClass, jumps, name);
+            case DoStmt ds -> emitDoStmt(code, ds, slots, params, outClass, jumps, name);
+            case ForEachStmt fes -> emitForEachStmt(code, fes, slots, params, outClass, jumps, name);
+            default -> {
+                // a labelled block can only be left with a labelled break
+                Label endLabel = code.newLabel();
+                jumps.push(new JumpTarget(name, endLabel, null));
+                emitStatement(code, ls.getStatement(), slots, params, outClass, jumps);
+                jumps.pop();
+                code.labelBinding(endLabel);
+            }
+        }
+    }
+
+    private static <C, W, O> void emitLoopBody(
+            CodeBuilder code,
+            Statement body,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps,
+            JumpTarget loop) {
+
+        jumps.push(loop);
+        emitStatement(code, body, slots, params, outClass, jumps);
+        jumps.pop();
     }
 
     /**
-     * Emit a primitive-to-primitive narrowing or widening conversion.
+     * Emit a jump to the target when the condition is false. Nothing is emitted for a constant
+     * {@code true}, so that the verifier sees a {@code while (true)} loop is only left by break or return.
      */
-    private static void emitPrimitiveCast(CodeBuilder code, TypeKind from, TypeKind to) {
-        if (from == to) return;
-        switch (from) {
-            case DOUBLE -> {
-                switch (to) {
-                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.d2i();
-                    case LONG -> code.d2l();
-                    case FLOAT -> code.d2f();
-                    default -> {}
-                }
-            }
-            case FLOAT -> {
-                switch (to) {
-                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.f2i();
-                    case LONG -> code.f2l();
-                    case DOUBLE -> code.f2d();
-                    default -> {}
-                }
-            }
-            case LONG -> {
-                switch (to) {
-                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.l2i();
-                    case FLOAT -> code.l2f();
-                    case DOUBLE -> code.l2d();
-                    default -> {}
-                }
-            }
-            case INT, BOOLEAN, BYTE, SHORT, CHAR -> {
-                switch (to) {
-                    case LONG -> code.i2l();
-                    case FLOAT -> code.i2f();
-                    case DOUBLE -> code.i2d();
-                    default -> {}
-                }
-            }
-            default -> {}
-        }
-    }
-
-    // ── Unary expression ──────────────────────────────────────────────────
-
-    private static <C, W, O> void emitUnaryExpr(
+    private static <C, W, O> void emitJumpIfFalse(
             CodeBuilder code,
-            UnaryExpr ue,
+            Expression condition,
+            Label target,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        switch (ue.getOperator()) {
-            case LOGICAL_COMPLEMENT -> {
-                // !expr → emit expr, then XOR with 1 to flip boolean
-                emitExpression(code, ue.getExpression(), slots, params);
-                code.iconst_1();
-                code.ixor();
-            }
-            case MINUS -> {
-                // -expr → emit expr, then negate
-                emitExpression(code, ue.getExpression(), slots, params);
-                TypeKind kind = inferTypeKind(ue.getExpression(), slots, params);
-                switch (kind) {
-                    case INT -> code.ineg();
-                    case LONG -> code.lneg();
-                    case DOUBLE -> code.dneg();
-                    case FLOAT -> code.fneg();
-                    default -> throw new UnsupportedOperationException(
-                            "Cannot negate type: " + kind);
-                }
-            }
-            case BITWISE_COMPLEMENT -> {
-                // ~expr → emit expr, XOR with -1
-                emitExpression(code, ue.getExpression(), slots, params);
-                TypeKind kind = inferTypeKind(ue.getExpression(), slots, params);
-                switch (kind) {
-                    case INT -> { code.iconst_m1(); code.ixor(); }
-                    case LONG -> { code.ldc(-1L); code.lxor(); }
-                    default -> throw new UnsupportedOperationException(
-                            "Cannot bitwise-complement type: " + kind);
+        if (isConstantTrue(condition)) {
+            return;
+        }
+        emitExpression(code, condition, slots, params);
+        code.ifeq(target);
+    }
+
+    private static boolean isConstantTrue(Expression expr) {
+        return switch (expr) {
+            case BooleanLiteralExpr ble -> ble.getValue();
+            case EnclosedExpr ee -> isConstantTrue(ee.getInner());
+            default -> false;
+        };
+    }
+
+    /**
+     * Find the loop, switch or labelled statement a break or continue refers to: the named one, or else the
+     * innermost loop, or for a break also the innermost switch.
+     */
+    private static JumpTarget findJumpTarget(Deque<JumpTarget> jumps, Optional<SimpleName> label,
+                                             boolean isContinue) {
+        for (JumpTarget target : jumps) {
+            boolean matches = label.isPresent()
+                    ? label.get().asString().equals(target.name())
+                    : target.continueLabel() != null || (!isContinue && target.isSwitch());
+            if (matches) {
+                if (isContinue && target.continueLabel() == null) {
+                    throw new UnsupportedOperationException("continue target is not a loop: " + label.get());
                 }
+                return target;
             }
-            default -> throw new UnsupportedOperationException(
-                    "Unsupported unary operator: " + ue.getOperator());
         }
+        throw new UnsupportedOperationException("No enclosing loop for " + (isContinue ? "continue" : "break")
+                + label.map(l -> " " + l.asString()).orElse(""));
     }
 
-    // ── Binary expression ─────────────────────────────────────────────────
+    // ── Switch emission ──────────────────────────────────────────────────
 
-    private static <C, W, O> void emitBinaryExpr(
+    /**
+     * Emit a switch statement, or a switch expression whose value is discarded. Statement groups fall
+     * through to the next entry as in Java; arrow entries jump to the end.
+     */
+    private static <C, W, O> void emitSwitchStmt(
             CodeBuilder code,
-            BinaryExpr be,
+            Expression selector,
+            List<SwitchEntry> entries,
             LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
-
-        BinaryExpr.Operator op = be.getOperator();
-
-        // Short-circuit: && and ||
-        if (op == BinaryExpr.Operator.AND) {
-            emitShortCircuitAnd(code, be, slots, params);
-            return;
-        }
-        if (op == BinaryExpr.Operator.OR) {
-            emitShortCircuitOr(code, be, slots, params);
-            return;
-        }
-
-        // Comparison operators (==, !=, >, <, >=, <=) — supports int, long, double, float
-        if (isComparisonOp(op)) {
-            emitComparison(code, be, slots, params);
-            return;
-        }
-
-        // String concatenation: "foo" + bar or bar + "foo"
-        if (op == BinaryExpr.Operator.PLUS) {
-            TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
-            TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
-            if (isStringExpression(be.getLeft(), slots, params)
-                    || isStringExpression(be.getRight(), slots, params)) {
-                emitStringConcat(code, be, slots, params);
-                return;
+            CompilerParameters<C, W, O> params,
+            Class<?> outClass,
+            Deque<JumpTarget> jumps) {
+
+        Label endLabel = code.newLabel();
+        Label[] entryLabels = emitSwitchDispatch(code, selector, entries, endLabel, slots, params);
+
+        jumps.push(new JumpTarget(null, endLabel, null, true, null));
+        for (int i = 0; i < entries.size(); i++) {
+            SwitchEntry entry = entries.get(i);
+            code.labelBinding(entryLabels[i]);
+            for (Statement stmt : entry.getStatements()) {
+                emitStatement(code, stmt, slots, params, outClass, jumps);
+            }
+            if (entry.getType() != SwitchEntry.Type.STATEMENT_GROUP && !endsWithJump(entry.getStatements())) {
+                code.goto_(endLabel);
             }
         }
+        jumps.pop();
 
-        // Arithmetic/bitwise operators: determine the widened type, emit with widening
-        TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
-        TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
-        TypeKind opKind = widenTypeKind(leftKind, rightKind);
-
-        emitExpression(code, be.getLeft(), slots, params);
-        emitTypeWidening(code, leftKind, opKind);
-        emitExpression(code, be.getRight(), slots, params);
-        emitTypeWidening(code, rightKind, opKind);
-
-        switch (op) {
-            case PLUS -> emitAdd(code, opKind);
-            case MINUS -> emitSub(code, opKind);
-            case MULTIPLY -> emitMul(code, opKind);
-            case DIVIDE -> emitDiv(code, opKind);
-            case REMAINDER -> emitRem(code, opKind);
-            case BINARY_AND -> emitBitwiseAnd(code, opKind);
-            case BINARY_OR -> emitBitwiseOr(code, opKind);
-            case XOR -> emitBitwiseXor(code, opKind);
-            case LEFT_SHIFT -> emitShl(code, opKind);
-            case SIGNED_RIGHT_SHIFT -> emitShr(code, opKind);
-            case UNSIGNED_RIGHT_SHIFT -> emitUshr(code, opKind);
-            default -> throw new UnsupportedOperationException(
-                    "Unsupported binary operator: " + op);
-        }
+        code.labelBinding(endLabel);
     }
 
-    private static <C, W, O> void emitShortCircuitAnd(
+    /**
+     * Emit a switch expression. Each entry leaves its value converted to the kind from
+     * {@link #switchTypeKind}: an arrow expression directly, and a block or statement group through its
+     * {@code yield}s. An enum switch without a default entry throws {@link MatchException} for a constant
+     * it does not cover, as javac's does.
+     */
+    private static <C, W, O> void emitSwitchExpr(
             CodeBuilder code,
-            BinaryExpr be,
+            SwitchExpr se,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
-        // left && right: if left is false, result is false (short-circuit)
-        var falseLabel = code.newLabel();
-        var endLabel = code.newLabel();
-
-        emitExpression(code, be.getLeft(), slots, params);
-        code.ifeq(falseLabel);         // if left == 0 (false), jump to false
 
-        emitExpression(code, be.getRight(), slots, params);
-        code.goto_(endLabel);
+        TypeKind kind = switchTypeKind(se, slots, params);
+        List<SwitchEntry> entries = se.getEntries();
+        Label noMatchLabel = code.newLabel();
+        Label endLabel = code.newLabel();
+        Label[] entryLabels = emitSwitchDispatch(code, se.getSelector(), entries, noMatchLabel, slots, params);
+
+        // a switch expression can not be left by break, continue or return, so its entries only see its yields
+        Deque<JumpTarget> jumps = new ArrayDeque<>();
+        jumps.push(new JumpTarget(null, endLabel, null, false, kind));
+        for (int i = 0; i < entries.size(); i++) {
+            SwitchEntry entry = entries.get(i);
+            code.labelBinding(entryLabels[i]);
+            if (entry.getType() == SwitchEntry.Type.EXPRESSION) {
+                emitConditionalBranch(code, switchEntryValue(entry), kind, slots, params);
+                code.goto_(endLabel);
+            } else {
+                for (Statement stmt : entry.getStatements()) {
+                    emitStatement(code, stmt, slots, params, null, jumps);
+                }
+            }
+        }
 
-        code.labelBinding(falseLabel);
-        code.iconst_0();                // push false
+        if (entries.stream().noneMatch(entry -> entry.getLabels().isEmpty())) {
+            code.labelBinding(noMatchLabel);
+            code.new_(CD_MatchException);
+            code.dup();
+            code.aconst_null();
+            code.aconst_null();
+            code.invokespecial(CD_MatchException, INIT_NAME, MethodTypeDesc.of(CD_void, CD_String, CD_Throwable));
+            code.athrow();
+        }
 
         code.labelBinding(endLabel);
     }
 
-    private static <C, W, O> void emitShortCircuitOr(
+    private static <C, W, O> void emitYieldStmt(
             CodeBuilder code,
-            BinaryExpr be,
+            YieldStmt ys,
             LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
-
-        var trueLabel = code.newLabel();
-        var endLabel = code.newLabel();
-
-        emitExpression(code, be.getLeft(), slots, params);
-        code.ifne(trueLabel);           // if left != 0 (true), jump to true
-
-        emitExpression(code, be.getRight(), slots, params);
-        code.goto_(endLabel);
-
-        code.labelBinding(trueLabel);
-        code.iconst_1();                // push true
-
-        code.labelBinding(endLabel);
-    }
-
-    private static boolean isComparisonOp(BinaryExpr.Operator op) {
-        return switch (op) {
-            case GREATER, LESS, GREATER_EQUALS, LESS_EQUALS, EQUALS, NOT_EQUALS -> true;
-            default -> false;
-        };
+            CompilerParameters<C, W, O> params,
+            Deque<JumpTarget> jumps) {
+
+        JumpTarget target = jumps.stream()
+                .filter(jump -> jump.yieldKind() != null)
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedOperationException("No enclosing switch expression for yield"));
+        emitConditionalBranch(code, ys.getExpression(), target.yieldKind(), slots, params);
+        code.goto_(target.breakLabel());
     }
 
     /**
-     * Emit a comparison expression for any numeric type (int, long, double, float).
-     * For int: uses if_icmpXX instructions directly.
-     * For long/double/float: emits lcmp/dcmpg/fcmpg first, then ifeq/ifne/etc.
+     * Emit the selector and the jump to the entry it matches, and return the label of each entry. A selector
+     * that matches no case label jumps to the default entry, or to the no-match label when there is none.
+     * <ul>
+     *   <li>int, char, short and byte selectors, unboxed if need be, jump through a {@code tableswitch} when
+     *       the labels are dense and a {@code lookupswitch} otherwise</li>
+     *   <li>String selectors jump through a {@code lookupswitch} on {@code hashCode()}, then compare with
+     *       {@code equals()} the labels sharing that hash</li>
+     *   <li>enum selectors look up their {@code ordinal()} in a switch map from {@link EnumSwitchMaps} and
+     *       jump through a {@code tableswitch} on the label index</li>
+     * </ul>
      */
-    private static <C, W, O> void emitComparison(
+    private static <C, W, O> Label[] emitSwitchDispatch(
             CodeBuilder code,
-            BinaryExpr be,
+            Expression selector,
+            List<SwitchEntry> entries,
+            Label noMatchLabel,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
-        TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
-        TypeKind cmpKind = widenTypeKind(leftKind, rightKind);
-
-        var trueLabel = code.newLabel();
-        var endLabel = code.newLabel();
-
-        emitExpression(code, be.getLeft(), slots, params);
-        emitTypeWidening(code, leftKind, cmpKind);
-        emitExpression(code, be.getRight(), slots, params);
-        emitTypeWidening(code, rightKind, cmpKind);
+        Label[] entryLabels = new Label[entries.size()];
+        Label defaultLabel = noMatchLabel;
+        for (int i = 0; i < entries.size(); i++) {
+            entryLabels[i] = code.newLabel();
+            if (entries.get(i).getLabels().isEmpty()) {
+                defaultLabel = entryLabels[i];
+            }
+        }
 
-        switch (cmpKind) {
-            case INT, BOOLEAN -> {
-                // Direct int comparison with if_icmpXX
-                switch (be.getOperator()) {
-                    case GREATER -> code.if_icmpgt(trueLabel);
-                    case LESS -> code.if_icmplt(trueLabel);
-                    case GREATER_EQUALS -> code.if_icmpge(trueLabel);
-                    case LESS_EQUALS -> code.if_icmple(trueLabel);
-                    case EQUALS -> code.if_icmpeq(trueLabel);
-                    case NOT_EQUALS -> code.if_icmpne(trueLabel);
-                    default -> throw new IllegalStateException("Not a comparison: " + be.getOperator());
+        TypeKind selectorKind = inferTypeKind(selector, slots, params);
+        Class<?> selectorClass = selectorKind == TypeKind.REFERENCE
+                ? resolveExpressionType(selector, slots, params)
+                : null;
+
+        if (selectorClass == String.class) {
+            emitStringSwitchDispatch(code, selector, entries, entryLabels, defaultLabel, slots, params);
+        } else if (selectorClass != null && selectorClass.isEnum()) {
+            List<ConstantDesc> bootstrapArgs = new ArrayList<>();
+            bootstrapArgs.add(classDescForJavaClass(selectorClass));
+            List<SwitchCase> cases = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                for (Expression label : entries.get(i).getLabels()) {
+                    bootstrapArgs.add(enumLabelName(label, selectorClass));
+                    cases.add(SwitchCase.of(bootstrapArgs.size() - 1, entryLabels[i]));
                 }
             }
-            case LONG -> {
-                // lcmp pushes -1/0/+1, then branch on that int
-                code.lcmp();
-                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            code.ldc(DynamicConstantDesc.ofNamed(BSM_ENUM_SWITCH_MAP, "switchMap", CD_int.arrayType(),
+                    bootstrapArgs.toArray(ConstantDesc[]::new)));
+            emitExpression(code, selector, slots, params);
+            code.invokevirtual(CD_Enum, "ordinal", MethodTypeDesc.of(CD_int));
+            code.iaload();
+            emitIntSwitch(code, cases, defaultLabel);
+        } else {
+            boolean isWrapper = selectorClass == Integer.class || selectorClass == Character.class
+                    || selectorClass == Short.class || selectorClass == Byte.class;
+            boolean isIntLike = selectorKind == TypeKind.INT || selectorKind == TypeKind.CHAR
+                    || selectorKind == TypeKind.SHORT || selectorKind == TypeKind.BYTE;
+            if (!isWrapper && !isIntLike) {
+                throw new UnsupportedOperationException("Unsupported switch selector: " + selector);
             }
-            case DOUBLE -> {
-                // dcmpg for NaN safety (NaN produces 1, so < returns false correctly)
-                code.dcmpg();
-                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            List<SwitchCase> cases = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                for (Expression label : entries.get(i).getLabels()) {
+                    cases.add(SwitchCase.of(intLabelValue(label), entryLabels[i]));
+                }
             }
-            case FLOAT -> {
-                code.fcmpg();
-                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            emitExpression(code, selector, slots, params);
+            if (isWrapper) {
+                ClassfileTypeUtils.emitUnboxing(code, selectorClass.getName());
             }
-            default -> throw new UnsupportedOperationException(
-                    "Cannot compare type: " + cmpKind);
+            emitIntSwitch(code, cases, defaultLabel);
         }
-
-        code.iconst_0();               // false
-        code.goto_(endLabel);
-
-        code.labelBinding(trueLabel);
-        code.iconst_1();               // true
-
-        code.labelBinding(endLabel);
+        return entryLabels;
     }
 
     /**
-     * After lcmp/dcmpg/fcmpg, the stack has int -1/0/+1.
-     * Emit the appropriate branch for the comparison operator.
+     * Emit a {@code tableswitch} or a {@code lookupswitch} on the int on the stack, choosing by javac's
+     * cost model: the table wins unless its gaps cost more than the lookup's extra comparisons.
      */
-    private static void emitIntBranchForComparison(CodeBuilder code,
-                                                    BinaryExpr.Operator op,
-                                                    java.lang.classfile.Label trueLabel) {
-        switch (op) {
-            case GREATER -> code.ifgt(trueLabel);
-            case LESS -> code.iflt(trueLabel);
-            case GREATER_EQUALS -> code.ifge(trueLabel);
-            case LESS_EQUALS -> code.ifle(trueLabel);
-            case EQUALS -> code.ifeq(trueLabel);
-            case NOT_EQUALS -> code.ifne(trueLabel);
-            default -> throw new IllegalStateException("Not a comparison: " + op);
+    private static void emitIntSwitch(CodeBuilder code, List<SwitchCase> cases, Label defaultLabel) {
+        if (cases.isEmpty()) {
+            code.pop();
+            code.goto_(defaultLabel);
+            return;
+        }
+        List<SwitchCase> sorted = cases.stream().sorted(Comparator.comparingInt(SwitchCase::caseValue)).toList();
+        int low = sorted.getFirst().caseValue();
+        int high = sorted.getLast().caseValue();
+
+        long tableSpaceCost = 4 + ((long) high - low + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) sorted.size();
+        long lookupTimeCost = sorted.size();
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            code.tableswitch(low, high, defaultLabel, sorted);
+        } else {
+            code.lookupswitch(defaultLabel, sorted);
         }
     }
 
-    // ── String concatenation emission ─────────────────────────────────────
-
     /**
-     * Check if an expression evaluates to a String type.
+     * Dispatch on a String selector as javac does, without its second switch: a {@code lookupswitch} on the
+     * hash code, then an {@code equals()} test for each label with that hash, jumping straight to its entry.
+     * A null selector throws {@link NullPointerException} from {@code hashCode()}.
      */
-    private static <C, W, O> boolean isStringExpression(Expression expr, LocalSlotTable slots,
-                                                         CompilerParameters<C, W, O> params) {
-        return switch (expr) {
-            case StringLiteralExpr _ -> true;
-            case NameExpr ne -> {
-                if (slots.contains(ne.getNameAsString())) {
-                    Type t = slots.type(ne.getNameAsString());
-                    yield isStringType(t);
+    private static <C, W, O> void emitStringSwitchDispatch(
+            CodeBuilder code,
+            Expression selector,
+            List<SwitchEntry> entries,
+            Label[] entryLabels,
+            Label defaultLabel,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        Map<Integer, List<Map.Entry<String, Label>>> labelsByHash = new TreeMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            for (Expression label : entries.get(i).getLabels()) {
+                if (!(label instanceof StringLiteralExpr sle)) {
+                    throw new UnsupportedOperationException("Unsupported String case label: " + label);
                 }
-                yield false;
+                String value = sle.asString();
+                labelsByHash.computeIfAbsent(value.hashCode(), hash -> new ArrayList<>())
+                        .add(Map.entry(value, entryLabels[i]));
             }
-            case BinaryExpr be when be.getOperator() == BinaryExpr.Operator.PLUS ->
-                    isStringExpression(be.getLeft(), slots, params)
-                    || isStringExpression(be.getRight(), slots, params);
-            case MethodCallExpr mce -> {
-                // Check if method returns String via reflection
-                Class<?> retType = resolveMethodReturnClass(mce, slots, params);
-                yield retType == String.class;
+        }
+
+        int selectorSlot = slots.allocate("$switch" + slots.nextSlot(), StaticJavaParser.parseType("java.lang.String"));
+        emitExpression(code, selector, slots, params);
+        code.astore(selectorSlot);
+        code.aload(selectorSlot);
+        code.invokevirtual(CD_String, "hashCode", MethodTypeDesc.of(CD_int));
+
+        List<SwitchCase> hashCases = new ArrayList<>();
+        List<Label> hashLabels = new ArrayList<>();
+        for (int hash : labelsByHash.keySet()) {
+            Label hashLabel = code.newLabel();
+            hashCases.add(SwitchCase.of(hash, hashLabel));
+            hashLabels.add(hashLabel);
+        }
+        code.lookupswitch(defaultLabel, hashCases);
+
+        int index = 0;
+        for (List<Map.Entry<String, Label>> labels : labelsByHash.values()) {
+            code.labelBinding(hashLabels.get(index++));
+            for (Map.Entry<String, Label> label : labels) {
+                code.aload(selectorSlot);
+                code.ldc(label.getKey());
+                code.invokevirtual(CD_String, "equals", MethodTypeDesc.of(CD_boolean, CD_Object));
+                code.ifne(label.getValue());
             }
-            case EnclosedExpr ee -> isStringExpression(ee.getInner(), slots, params);
-            default -> false;
+            code.goto_(defaultLabel);
+        }
+    }
+
+    /**
+     * The value of an int case label: an int or char literal, possibly negated.
+     */
+    private static int intLabelValue(Expression label) {
+        return switch (label) {
+            case IntegerLiteralExpr ile -> ile.asNumber().intValue();
+            case CharLiteralExpr cle -> cle.asChar();
+            case UnaryExpr ue when ue.getOperator() == UnaryExpr.Operator.MINUS -> -intLabelValue(ue.getExpression());
+            case EnclosedExpr ee -> intLabelValue(ee.getInner());
+            default -> throw new UnsupportedOperationException("Unsupported case label: " + label);
         };
     }
 
     /**
-     * Resolve the return type Class of a method call expression.
+     * The constant an enum case label names, plain or qualified.
      */
-    private static <C, W, O> Class<?> resolveMethodReturnClass(MethodCallExpr mce, LocalSlotTable slots,
-                                                                 CompilerParameters<C, W, O> params) {
-        if (mce.getScope().isEmpty()) return null;
-        Expression scope = mce.getScope().get();
-        Class<?> scopeClass = resolveExpressionType(scope, slots, params);
-        if (scopeClass != null) {
-            Method m = findMethodByNameAndArgCount(scopeClass, mce.getNameAsString(), mce.getArguments().size());
-            if (m != null) return m.getReturnType();
+    private static String enumLabelName(Expression label, Class<?> enumClass) {
+        String name = switch (label) {
+            case NameExpr ne -> ne.getNameAsString();
+            case FieldAccessExpr fae -> fae.getNameAsString();
+            default -> throw new UnsupportedOperationException("Unsupported enum case label: " + label);
+        };
+        for (Object constant : enumClass.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return name;
+            }
         }
-        return null;
+        throw new UnsupportedOperationException("Not a constant of " + enumClass.getName() + ": " + name);
     }
 
     /**
-     * Emit string concatenation using StringBuilder.
-     * Flattens nested PLUS chains into a single StringBuilder sequence.
+     * The value of an arrow entry with a single expression.
      */
-    private static <C, W, O> void emitStringConcat(
+    private static Expression switchEntryValue(SwitchEntry entry) {
+        return ((ExpressionStmt) entry.getStatement(0)).getExpression();
+    }
+
+    /**
+     * The values a switch expression can produce: those of its arrow expressions, and those of the
+     * {@code yield}s that leave it rather than a nested switch expression.
+     */
+    private static List<Expression> switchValues(SwitchExpr se) {
+        List<Expression> values = new ArrayList<>();
+        for (SwitchEntry entry : se.getEntries()) {
+            if (entry.getType() == SwitchEntry.Type.EXPRESSION) {
+                values.add(switchEntryValue(entry));
+            } else {
+                for (Statement stmt : entry.getStatements()) {
+                    stmt.findAll(YieldStmt.class, ys -> ys.findAncestor(SwitchExpr.class).orElse(null) == se)
+                            .forEach(ys -> values.add(ys.getExpression()));
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The kind a switch expression leaves on the stack, unified over its values as for a conditional. Values
+     * may use locals the entries declare, so they are inferred against a copy of the slot table in which
+     * those locals are declared as {@link #emitExpressionForEffect} will declare them.
+     */
+    private static <C, W, O> TypeKind switchTypeKind(SwitchExpr se, LocalSlotTable slots,
+                                                     CompilerParameters<C, W, O> params) {
+        LocalSlotTable entrySlots = slots.copy();
+        for (SwitchEntry entry : se.getEntries()) {
+            for (VariableDeclarator declarator : entry.findAll(VariableDeclarator.class)) {
+                Type slotType = declarator.getType();
+                if (slotType.isVarType() && declarator.getInitializer().isPresent()) {
+                    slotType = inferTypeFromExpression(declarator.getInitializer().get(), entrySlots);
+                }
+                if (ClassfileTypeUtils.isBoxedWrapperType(slotType)) {
+                    slotType = ClassfileTypeUtils.toPrimitiveType(slotType);
+                }
+                entrySlots.allocate(declarator.getNameAsString(), slotType);
+            }
+        }
+        return unifiedTypeKind(switchValues(se), entrySlots, params);
+    }
+
+    // ── Expression emission ──────────────────────────────────────────────
+
+    static <C, W, O> void emitExpression(
             CodeBuilder code,
-            BinaryExpr be,
+            Expression expr,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        ClassDesc CD_StringBuilder = ClassDesc.of("java.lang.StringBuilder");
+        switch (expr) {
+            case IntegerLiteralExpr ile -> emitIntLiteral(code, ile);
+            case LongLiteralExpr lle -> emitLongLiteral(code, lle);
+            case DoubleLiteralExpr dle -> emitDoubleLiteral(code, dle);
+            case BooleanLiteralExpr ble -> emitBooleanLiteral(code, ble);
+            case StringLiteralExpr sle -> code.ldc(sle.getValue());
+            case NullLiteralExpr _ -> code.aconst_null();
+            case NameExpr ne -> emitNameExpr(code, ne, slots);
+            case EnclosedExpr ee -> emitExpression(code, ee.getInner(), slots, params);
+            case CastExpr ce -> emitCastExpr(code, ce, slots, params);
+            case UnaryExpr ue -> emitUnaryExpr(code, ue, slots, params);
+            case BinaryExpr be -> emitBinaryExpr(code, be, slots, params);
+            case MethodCallExpr mce -> emitMethodCallExpr(code, mce, slots, params);
+            case FieldAccessExpr fae -> emitFieldAccessExpr(code, fae, slots, params);
+            case ArrayAccessExpr aae -> emitArrayAccessExpr(code, aae, slots, params);
+            case ArrayCreationExpr ace -> emitArrayCreationExpr(code, ace, slots, params);
+            case ObjectCreationExpr oce -> emitObjectCreationExpr(code, oce, slots, params);
+            case AssignExpr ae -> emitAssignExprAsExpression(code, ae, slots, params);
+            case ConditionalExpr ce -> emitConditionalExpr(code, ce, slots, params);
+            case InstanceOfExpr ioe -> emitInstanceOfExpr(code, ioe, slots, params);
+            case SwitchExpr se -> emitSwitchExpr(code, se, slots, params);
+            case LambdaExpr _, MethodReferenceExpr _ -> emitFunctionalExpr(code, expr, null, slots, params);
+            default -> throw new UnsupportedOperationException(
+                    "Unsupported expression type: " + expr.getClass().getSimpleName()
+                    + " — " + expr);
+        }
+    }
 
-        // new StringBuilder()
-        code.new_(CD_StringBuilder);
-        code.dup();
-        code.invokespecial(CD_StringBuilder, INIT_NAME, MTD_void);
+    // ── Literal emission ──────────────────────────────────────────────────
 
-        // Flatten and append all operands
-        flattenAndAppend(code, be, slots, params, CD_StringBuilder);
+    private static void emitIntLiteral(CodeBuilder code, IntegerLiteralExpr ile) {
+        int value = ile.asNumber().intValue();
+        emitIntConstant(code, value);
+    }
 
-        // toString()
-        code.invokevirtual(CD_StringBuilder, "toString",
-                MethodTypeDesc.of(CD_String));
+    static void emitIntConstant(CodeBuilder code, int value) {
+        switch (value) {
+            case -1 -> code.iconst_m1();
+            case 0 -> code.iconst_0();
+            case 1 -> code.iconst_1();
+            case 2 -> code.iconst_2();
+            case 3 -> code.iconst_3();
+            case 4 -> code.iconst_4();
+            case 5 -> code.iconst_5();
+            default -> {
+                if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                    code.bipush(value);
+                } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                    code.sipush(value);
+                } else {
+                    code.ldc(value);
+                }
+            }
+        }
     }
 
-    /**
-     * Recursively flatten nested string PLUS chains and emit StringBuilder.append() for each operand.
-     */
-    private static <C, W, O> void flattenAndAppend(
-            CodeBuilder code,
-            Expression expr,
-            LocalSlotTable slots,
-            CompilerParameters<C, W, O> params,
-            ClassDesc CD_StringBuilder) {
+    private static void emitLongLiteral(CodeBuilder code, LongLiteralExpr lle) {
+        String text = lle.getValue();
+        // Strip trailing L/l
+        if (text.endsWith("L") || text.endsWith("l")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        long value = Long.parseLong(text);
+        if (value == 0L) {
+            code.lconst_0();
+        } else if (value == 1L) {
+            code.lconst_1();
+        } else {
+            code.ldc(value);
+        }
+    }
 
-        if (expr instanceof BinaryExpr be && be.getOperator() == BinaryExpr.Operator.PLUS
-                && (isStringExpression(be.getLeft(), slots, params)
-                    || isStringExpression(be.getRight(), slots, params))) {
-            // Recursive: flatten left and right
-            flattenAndAppend(code, be.getLeft(), slots, params, CD_StringBuilder);
-            flattenAndAppend(code, be.getRight(), slots, params, CD_StringBuilder);
+    private static void emitDoubleLiteral(CodeBuilder code, DoubleLiteralExpr dle) {
+        String text = dle.getValue();
+        // Strip trailing D/d/F/f if present
+        if (text.endsWith("D") || text.endsWith("d") || text.endsWith("F") || text.endsWith("f")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        double value = Double.parseDouble(text);
+        if (value == 0.0) {
+            code.dconst_0();
+        } else if (value == 1.0) {
+            code.dconst_1();
         } else {
-            // Leaf: emit the expression and append to StringBuilder
-            emitExpression(code, expr, slots, params);
-            TypeKind kind = inferTypeKind(expr, slots, params);
-            emitStringBuilderAppend(code, kind, CD_StringBuilder);
+            code.ldc(value);
         }
     }
 
-    /**
-     * Emit the appropriate StringBuilder.append() call for the value on the stack.
-     */
-    private static void emitStringBuilderAppend(CodeBuilder code, TypeKind kind, ClassDesc CD_StringBuilder) {
-        ClassDesc argDesc = switch (kind) {
-            case BOOLEAN -> CD_boolean; // StringBuilder.append(boolean) → "true"/"false"
-            case INT, BYTE, SHORT, CHAR -> CD_int;
-            case LONG -> CD_long;
-            case DOUBLE -> CD_double;
-            case FLOAT -> CD_float;
-            default -> CD_Object;
-        };
-        code.invokevirtual(CD_StringBuilder, "append",
-                MethodTypeDesc.of(CD_StringBuilder, argDesc));
+    private static void emitBooleanLiteral(CodeBuilder code, BooleanLiteralExpr ble) {
+        code.ldc(ble.getValue() ? 1 : 0);
     }
 
-    // ── Type widening helpers ─────────────────────────────────────────────
+    // ── Variable access ───────────────────────────────────────────────────
 
-    /**
-     * Determine the wider TypeKind for binary operations between two types.
-     * Rules: double > float > long > int (byte/short/char/boolean widen to int).
-     */
-    private static TypeKind widenTypeKind(TypeKind left, TypeKind right) {
-        if (left == TypeKind.DOUBLE || right == TypeKind.DOUBLE) return TypeKind.DOUBLE;
-        if (left == TypeKind.FLOAT || right == TypeKind.FLOAT) return TypeKind.FLOAT;
-        if (left == TypeKind.LONG || right == TypeKind.LONG) return TypeKind.LONG;
-        return TypeKind.INT;
+    private static void emitNameExpr(CodeBuilder code, NameExpr ne, LocalSlotTable slots) {
+        String name = ne.getNameAsString();
+        if (slots.contains(name)) {
+            slots.loadVar(code, name);
+        } else {
+            throw new UnsupportedOperationException("Unknown variable: " + name);
+        }
+    }
+
+    // ── Cast expression ───────────────────────────────────────────────────
+
+    private static <C, W, O> void emitCastExpr(
+            CodeBuilder code,
+            CastExpr ce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        emitExpression(code, ce.getExpression(), slots, params);
+
+        Type targetType = ce.getType();
+        if (targetType.isPrimitiveType()) {
+            TypeKind sourceKind = inferTypeKind(ce.getExpression(), slots, params);
+            TypeKind targetKind = ClassfileTypeUtils.toTypeKind(targetType);
+
+            if (sourceKind == TypeKind.REFERENCE) {
+                // Unbox: stack has boxed type (e.g., Object from Map.get), checkcast + unbox
+                String boxedName = boxedNameForPrimitive(targetType.asPrimitiveType());
+                ClassfileTypeUtils.emitCheckcastAndUnbox(code, boxedName);
+            } else {
+                // Primitive-to-primitive cast (e.g., (int) Math.pow(5,2) → d2i)
+                emitPrimitiveCast(code, sourceKind, targetKind);
+            }
+        } else {
+            // Reference cast
+            code.checkcast(ClassfileTypeUtils.toClassDesc(targetType));
+        }
     }
 
     /**
-     * Emit a widening conversion from one primitive type to another.
-     * No-op if the types are the same.
+     * Emit a primitive-to-primitive narrowing or widening conversion.
      */
-    private static void emitTypeWidening(CodeBuilder code, TypeKind from, TypeKind to) {
+    private static void emitPrimitiveCast(CodeBuilder code, TypeKind from, TypeKind to) {
         if (from == to) return;
         switch (from) {
-            case INT, BOOLEAN, BYTE, CHAR, SHORT -> {
+            case DOUBLE -> {
                 switch (to) {
-                    case LONG -> code.i2l();
-                    case FLOAT -> code.i2f();
-                    case DOUBLE -> code.i2d();
+                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.d2i();
+                    case LONG -> code.d2l();
+                    case FLOAT -> code.d2f();
+                    default -> {}
+                }
+            }
+            case FLOAT -> {
+                switch (to) {
+                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.f2i();
+                    case LONG -> code.f2l();
+                    case DOUBLE -> code.f2d();
                     default -> {}
                 }
             }
             case LONG -> {
                 switch (to) {
+                    case INT, BOOLEAN, BYTE, SHORT, CHAR -> code.l2i();
                     case FLOAT -> code.l2f();
                     case DOUBLE -> code.l2d();
                     default -> {}
                 }
             }
-            case FLOAT -> {
-                if (to == TypeKind.DOUBLE) code.f2d();
+            case INT, BOOLEAN, BYTE, SHORT, CHAR -> {
+                switch (to) {
+                    case LONG -> code.i2l();
+                    case FLOAT -> code.i2f();
+                    case DOUBLE -> code.i2d();
+                    default -> {}
+                }
             }
             default -> {}
         }
     }
 
-    // ── Arithmetic helpers ────────────────────────────────────────────────
+    // ── Unary expression ──────────────────────────────────────────────────
 
-    private static void emitAdd(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.iadd();
-            case LONG -> code.ladd();
-            case DOUBLE -> code.dadd();
-            case FLOAT -> code.fadd();
-            default -> throw new UnsupportedOperationException("Cannot add type: " + kind);
+    private static <C, W, O> void emitUnaryExpr(
+            CodeBuilder code,
+            UnaryExpr ue,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        switch (ue.getOperator()) {
+            case LOGICAL_COMPLEMENT -> {
+                // !expr → emit expr, then XOR with 1 to flip boolean
+                emitExpression(code, ue.getExpression(), slots, params);
+                code.iconst_1();
+                code.ixor();
+            }
+            case MINUS -> {
+                // -expr → emit expr, then negate
+                emitExpression(code, ue.getExpression(), slots, params);
+                TypeKind kind = inferTypeKind(ue.getExpression(), slots, params);
+                switch (kind) {
+                    case INT -> code.ineg();
+                    case LONG -> code.lneg();
+                    case DOUBLE -> code.dneg();
+                    case FLOAT -> code.fneg();
+                    default -> throw new UnsupportedOperationException(
+                            "Cannot negate type: " + kind);
+                }
+            }
+            case BITWISE_COMPLEMENT -> {
+                // ~expr → emit expr, XOR with -1
+                emitExpression(code, ue.getExpression(), slots, params);
+                TypeKind kind = inferTypeKind(ue.getExpression(), slots, params);
+                switch (kind) {
+                    case INT -> { code.iconst_m1(); code.ixor(); }
+                    case LONG -> { code.ldc(-1L); code.lxor(); }
+                    default -> throw new UnsupportedOperationException(
+                            "Cannot bitwise-complement type: " + kind);
+                }
+            }
+            case PREFIX_INCREMENT, PREFIX_DECREMENT, POSTFIX_INCREMENT, POSTFIX_DECREMENT ->
+                    emitIncrement(code, ue, slots, true);
+            default -> throw new UnsupportedOperationException(
+                    "Unsupported unary operator: " + ue.getOperator());
         }
     }
 
-    private static void emitSub(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.isub();
-            case LONG -> code.lsub();
-            case DOUBLE -> code.dsub();
-            case FLOAT -> code.fsub();
-            default -> throw new UnsupportedOperationException("Cannot subtract type: " + kind);
-        }
+    private static boolean isIncrementOrDecrement(UnaryExpr.Operator op) {
+        return switch (op) {
+            case PREFIX_INCREMENT, PREFIX_DECREMENT, POSTFIX_INCREMENT, POSTFIX_DECREMENT -> true;
+            default -> false;
+        };
     }
 
-    private static void emitMul(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.imul();
-            case LONG -> code.lmul();
-            case DOUBLE -> code.dmul();
-            case FLOAT -> code.fmul();
-            default -> throw new UnsupportedOperationException("Cannot multiply type: " + kind);
+    /**
+     * Emit {@code ++} or {@code --} on a local variable. When the value is not needed, as in a
+     * statement or a for loop update, an int local is updated in place with {@code iinc}.
+     */
+    private static void emitIncrement(CodeBuilder code, UnaryExpr ue, LocalSlotTable slots, boolean valueNeeded) {
+        if (!(ue.getExpression() instanceof NameExpr ne) || !slots.contains(ne.getNameAsString())) {
+            throw new UnsupportedOperationException("Unsupported increment target: " + ue.getExpression());
         }
-    }
+        String name = ne.getNameAsString();
+        TypeKind kind = slots.typeKind(name);
+        boolean increment = ue.getOperator() == UnaryExpr.Operator.PREFIX_INCREMENT
+                || ue.getOperator() == UnaryExpr.Operator.POSTFIX_INCREMENT;
 
-    private static void emitDiv(CodeBuilder code, TypeKind kind) {
+        if (kind == TypeKind.INT) {
+            if (valueNeeded && ue.isPostfix()) {
+                slots.loadVar(code, name);
+            }
+            code.iinc(slots.slot(name), increment ? 1 : -1);
+            if (valueNeeded && ue.isPrefix()) {
+                slots.loadVar(code, name);
+            }
+            return;
+        }
+
+        slots.loadVar(code, name);
+        if (valueNeeded && ue.isPostfix()) {
+            emitDup(code, kind);
+        }
         switch (kind) {
-            case INT -> code.idiv();
-            case LONG -> code.ldiv();
-            case DOUBLE -> code.ddiv();
-            case FLOAT -> code.fdiv();
-            default -> throw new UnsupportedOperationException("Cannot divide type: " + kind);
+            case LONG -> code.lconst_1();
+            case DOUBLE -> code.dconst_1();
+            case FLOAT -> code.fconst_1();
+            case BYTE, SHORT, CHAR -> code.iconst_1();
+            default -> throw new UnsupportedOperationException("Cannot increment type: " + kind);
+        }
+        if (increment) {
+            emitAdd(code, kind == TypeKind.BYTE || kind == TypeKind.SHORT || kind == TypeKind.CHAR ? TypeKind.INT : kind);
+        } else {
+            emitSub(code, kind == TypeKind.BYTE || kind == TypeKind.SHORT || kind == TypeKind.CHAR ? TypeKind.INT : kind);
+        }
+        switch (kind) {
+            case BYTE -> code.i2b();
+            case SHORT -> code.i2s();
+            case CHAR -> code.i2c();
+            default -> {}
+        }
+        if (valueNeeded && ue.isPrefix()) {
+            emitDup(code, kind);
         }
+        slots.storeVar(code, name);
     }
 
-    private static void emitRem(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.irem();
-            case LONG -> code.lrem();
-            case DOUBLE -> code.drem();
-            case FLOAT -> code.frem();
-            default -> throw new UnsupportedOperationException("Cannot modulo type: " + kind);
+    private static void emitDup(CodeBuilder code, TypeKind kind) {
+        if (kind == TypeKind.LONG || kind == TypeKind.DOUBLE) {
+            code.dup2();
+        } else {
+            code.dup();
         }
     }
 
-    // ── Bitwise helpers ──────────────────────────────────────────────────
+    // ── Binary expression ─────────────────────────────────────────────────
 
-    private static void emitBitwiseAnd(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.iand();
-            case LONG -> code.land();
-            default -> throw new UnsupportedOperationException("Cannot bitwise-AND type: " + kind);
+    private static <C, W, O> void emitBinaryExpr(
+            CodeBuilder code,
+            BinaryExpr be,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        BinaryExpr.Operator op = be.getOperator();
+
+        // Short-circuit: && and ||
+        if (op == BinaryExpr.Operator.AND) {
+            emitShortCircuitAnd(code, be, slots, params);
+            return;
+        }
+        if (op == BinaryExpr.Operator.OR) {
+            emitShortCircuitOr(code, be, slots, params);
+            return;
         }
-    }
 
-    private static void emitBitwiseOr(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.ior();
-            case LONG -> code.lor();
-            default -> throw new UnsupportedOperationException("Cannot bitwise-OR type: " + kind);
+        // Comparison operators (==, !=, >, <, >=, <=) — supports int, long, double, float
+        if (isComparisonOp(op)) {
+            emitComparison(code, be, slots, params);
+            return;
+        }
+
+        // String concatenation: "foo" + bar or bar + "foo"
+        if (op == BinaryExpr.Operator.PLUS) {
+            TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
+            TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
+            if (isStringExpression(be.getLeft(), slots, params)
+                    || isStringExpression(be.getRight(), slots, params)) {
+                emitStringConcat(code, be, slots, params);
+                return;
+            }
+        }
+
+        // Arithmetic/bitwise operators: determine the widened type, emit with widening
+        TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
+        TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
+        TypeKind opKind = widenTypeKind(leftKind, rightKind);
+
+        emitExpression(code, be.getLeft(), slots, params);
+        emitTypeWidening(code, leftKind, opKind);
+        emitExpression(code, be.getRight(), slots, params);
+        emitTypeWidening(code, rightKind, opKind);
+
+        switch (op) {
+            case PLUS -> emitAdd(code, opKind);
+            case MINUS -> emitSub(code, opKind);
+            case MULTIPLY -> emitMul(code, opKind);
+            case DIVIDE -> emitDiv(code, opKind);
+            case REMAINDER -> emitRem(code, opKind);
+            case BINARY_AND -> emitBitwiseAnd(code, opKind);
+            case BINARY_OR -> emitBitwiseOr(code, opKind);
+            case XOR -> emitBitwiseXor(code, opKind);
+            case LEFT_SHIFT -> emitShl(code, opKind);
+            case SIGNED_RIGHT_SHIFT -> emitShr(code, opKind);
+            case UNSIGNED_RIGHT_SHIFT -> emitUshr(code, opKind);
+            default -> throw new UnsupportedOperationException(
+                    "Unsupported binary operator: " + op);
         }
     }
 
-    private static void emitBitwiseXor(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.ixor();
-            case LONG -> code.lxor();
-            default -> throw new UnsupportedOperationException("Cannot bitwise-XOR type: " + kind);
+    private static <C, W, O> void emitShortCircuitAnd(
+            CodeBuilder code,
+            BinaryExpr be,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+        // left && right: if left is false, result is false (short-circuit)
+        var falseLabel = code.newLabel();
+        var endLabel = code.newLabel();
+
+        emitExpression(code, be.getLeft(), slots, params);
+        code.ifeq(falseLabel);         // if left == 0 (false), jump to false
+
+        emitExpression(code, be.getRight(), slots, params);
+        code.goto_(endLabel);
+
+        code.labelBinding(falseLabel);
+        code.iconst_0();                // push false
+
+        code.labelBinding(endLabel);
+    }
+
+    private static <C, W, O> void emitShortCircuitOr(
+            CodeBuilder code,
+            BinaryExpr be,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        var trueLabel = code.newLabel();
+        var endLabel = code.newLabel();
+
+        emitExpression(code, be.getLeft(), slots, params);
+        code.ifne(trueLabel);           // if left != 0 (true), jump to true
+
+        emitExpression(code, be.getRight(), slots, params);
+        code.goto_(endLabel);
+
+        code.labelBinding(trueLabel);
+        code.iconst_1();                // push true
+
+        code.labelBinding(endLabel);
+    }
+
+    // ── Instanceof emission ──────────────────────────────────────────────
+
+    /**
+     * Emit {@code x instanceof T}, or {@code x instanceof T v}, leaving a boolean on the stack.
+     * <p>
+     * A pattern binding gets its own slot, which is stored on both outcomes of the test: the cast value
+     * when it matches and {@code null} when it does not. Java only reads the binding where the match is
+     * definite, whether inside the {@code &&}, the then branch or after an {@code if (!(x instanceof T v)) return},
+     * so the {@code null} is never observed; it only keeps the slot typed as {@code T} in every frame that
+     * joins the two outcomes.
+     */
+    private static <C, W, O> void emitInstanceOfExpr(
+            CodeBuilder code,
+            InstanceOfExpr ioe,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        if (inferTypeKind(ioe.getExpression(), slots, params) != TypeKind.REFERENCE) {
+            throw new UnsupportedOperationException("instanceof on a primitive: " + ioe);
+        }
+        Class<?> testedClass = resolveInstanceOfClass(ioe.getType(), params);
+        ClassDesc testedDesc = classDescForJavaClass(testedClass);
+
+        emitExpression(code, ioe.getExpression(), slots, params);
+        if (ioe.getPattern().isEmpty()) {
+            code.instanceOf(testedDesc);
+            return;
         }
+
+        int slot = allocatePatternSlot(ioe.getPattern().get(), testedClass, slots);
+        var noMatchLabel = code.newLabel();
+        var endLabel = code.newLabel();
+
+        code.dup();
+        code.instanceOf(testedDesc);
+        code.ifeq(noMatchLabel);
+        code.checkcast(testedDesc);
+        code.astore(slot);
+        code.iconst_1();
+        code.goto_(endLabel);
+
+        code.labelBinding(noMatchLabel);
+        code.pop();
+        code.aconst_null();
+        code.astore(slot);
+        code.iconst_0();
+
+        code.labelBinding(endLabel);
     }
 
-    private static void emitShl(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.ishl();
-            case LONG -> code.lshl();
-            default -> throw new UnsupportedOperationException("Cannot left-shift type: " + kind);
+    private static <C, W, O> Class<?> resolveInstanceOfClass(Type type, CompilerParameters<C, W, O> params) {
+        Class<?> typeClass = resolveTypeClass(type, params);
+        if (typeClass == null) {
+            throw new UnsupportedOperationException("Cannot resolve instanceof type: " + type);
         }
+        return typeClass;
     }
 
-    private static void emitShr(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.ishr();
-            case LONG -> code.lshr();
-            default -> throw new UnsupportedOperationException("Cannot right-shift type: " + kind);
+    /**
+     * Allocate the local of a pattern binding, typed by the resolved class so that later uses of the
+     * binding resolve their members against it.
+     */
+    private static int allocatePatternSlot(PatternExpr pattern, Class<?> patternClass, LocalSlotTable slots) {
+        return slots.allocate(pattern.getNameAsString(), StaticJavaParser.parseType(patternClass.getCanonicalName()));
+    }
+
+    /**
+     * The slots to infer types against when an expression is inferred before its condition is emitted, as
+     * a conditional is: a copy with the condition's pattern bindings allocated, or the slots themselves
+     * when it has none.
+     */
+    private static <C, W, O> LocalSlotTable withPatternBindings(Expression condition, LocalSlotTable slots,
+                                                                CompilerParameters<C, W, O> params) {
+        List<InstanceOfExpr> tests = condition.findAll(InstanceOfExpr.class, ioe -> ioe.getPattern().isPresent());
+        if (tests.isEmpty() || params == null) {
+            return slots;
+        }
+        LocalSlotTable bound = slots.copy();
+        for (InstanceOfExpr test : tests) {
+            Class<?> patternClass = resolveTypeClass(test.getType(), params);
+            if (patternClass != null) {
+                allocatePatternSlot(test.getPattern().get(), patternClass, bound);
+            }
         }
+        return bound;
     }
 
-    private static void emitUshr(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT -> code.iushr();
-            case LONG -> code.lushr();
-            default -> throw new UnsupportedOperationException("Cannot unsigned-right-shift type: " + kind);
+    // ── Conditional expression emission ───────────────────────────────────
+
+    /**
+     * Emit {@code cond ? a : b}. Both branches leave the type from {@link #inferTypeKind} on the stack,
+     * so the frames at the join agree. Null guards, as lowered from {@code a!.b!.c}, take the
+     * {@code ifnull} chain instead.
+     */
+    private static <C, W, O> void emitConditionalExpr(
+            CodeBuilder code,
+            ConditionalExpr ce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        var endLabel = code.newLabel();
+
+        if (isNullGuard(ce)) {
+            var nullLabel = code.newLabel();
+            emitNullGuardChain(code, ce, nullLabel, slots, params);
+            code.goto_(endLabel);
+
+            code.labelBinding(nullLabel);
+            code.aconst_null();
+
+            code.labelBinding(endLabel);
+            return;
+        }
+
+        TypeKind kind = inferTypeKind(ce, slots, params);
+        var elseLabel = code.newLabel();
+
+        emitExpression(code, ce.getCondition(), slots, params);
+        code.ifeq(elseLabel);
+        emitConditionalBranch(code, ce.getThenExpr(), kind, slots, params);
+        code.goto_(endLabel);
+
+        code.labelBinding(elseLabel);
+        emitConditionalBranch(code, ce.getElseExpr(), kind, slots, params);
+
+        code.labelBinding(endLabel);
+    }
+
+    /**
+     * Emit one branch of a conditional, or one value of a switch expression, and convert it to the unified
+     * kind: boxing a primitive for a
+     * reference result, unboxing a wrapper or widening a primitive otherwise.
+     */
+    private static <C, W, O> void emitConditionalBranch(
+            CodeBuilder code,
+            Expression branch,
+            TypeKind kind,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        emitExpression(code, branch, slots, params);
+        TypeKind branchKind = inferTypeKind(branch, slots, params);
+        if (kind == TypeKind.REFERENCE) {
+            if (branchKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, branchKind);
+            }
+        } else if (branchKind == TypeKind.REFERENCE) {
+            Class<?> wrapper = resolveExpressionType(branch, slots, params);
+            ClassfileTypeUtils.emitUnboxing(code, wrapper.getName());
+            emitTypeWidening(code, typeKindForJavaClass(MethodType.methodType(wrapper).unwrap().returnType()), kind);
+        } else {
+            emitTypeWidening(code, branchKind, kind);
+        }
+    }
+
+    /**
+     * Emit the guarded value of a null guard {@code x != null ? <uses of x> : null}, jumping to the
+     * null label as soon as a link is null. A nested guard continues the same chain with the same null
+     * label, so {@code a!.b!.c} is one pass of {@code ifnull} jumps.
+     * <p>
+     * The transpiler binds each typed link to a pattern, {@code x instanceof T v ? <uses of v> : null}, so
+     * the link is evaluated once into the local of {@code v}. When {@code x} is already a {@code T} the test
+     * is an {@code ifnull} as well. A plain {@code x != null} guard is emitted as written.
+     */
+    private static <C, W, O> void emitNullGuardChain(
+            CodeBuilder code,
+            ConditionalExpr guard,
+            Label nullLabel,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        Expression guarded = nullGuardedExpression(guard);
+        Expression value = unwrapEnclosed(guard.getThenExpr());
+
+        if (unwrapEnclosed(guard.getCondition()) instanceof InstanceOfExpr ioe) {
+            PatternExpr pattern = ioe.getPattern().orElseThrow();
+            Class<?> patternClass = resolveInstanceOfClass(pattern.getType(), params);
+            Class<?> guardedClass = resolveExpressionType(guarded, slots, params);
+            emitExpression(code, guarded, slots, params);
+            int slot = allocatePatternSlot(pattern, patternClass, slots);
+            if (guardedClass != null && patternClass.isAssignableFrom(guardedClass)) {
+                code.dup();
+                code.astore(slot);
+                code.ifnull(nullLabel);
+            } else {
+                ClassDesc patternDesc = classDescForJavaClass(patternClass);
+                code.astore(slot);
+                code.aload(slot);
+                code.instanceOf(patternDesc);
+                code.ifeq(nullLabel);
+                code.aload(slot);
+                code.checkcast(patternDesc);
+                code.astore(slot);
+            }
+        } else {
+            emitExpression(code, guarded, slots, params);
+            code.ifnull(nullLabel);
+        }
+
+        if (value instanceof ConditionalExpr inner && isNullGuard(inner)) {
+            emitNullGuardChain(code, inner, nullLabel, slots, params);
+            return;
+        }
+        emitExpression(code, value, slots, params);
+        TypeKind valueKind = inferTypeKind(value, slots, params);
+        if (valueKind != TypeKind.REFERENCE) {
+            ClassfileTypeUtils.emitBoxing(code, valueKind);
+        }
+    }
+
+    /**
+     * Check for {@code x != null ? ... : null} or {@code x instanceof T v ? ... : null}, the shapes the
+     * transpiler lowers null-safe navigation to.
+     */
+    private static boolean isNullGuard(ConditionalExpr ce) {
+        return unwrapEnclosed(ce.getElseExpr()) instanceof NullLiteralExpr && nullGuardedExpression(ce) != null;
+    }
+
+    /**
+     * The {@code x} of a {@code x != null} or {@code x instanceof T v} condition, or null if the condition
+     * is not a null check.
+     */
+    private static Expression nullGuardedExpression(ConditionalExpr ce) {
+        if (unwrapEnclosed(ce.getCondition()) instanceof InstanceOfExpr ioe && ioe.getPattern().isPresent()) {
+            return unwrapEnclosed(ioe.getExpression());
+        }
+        if (unwrapEnclosed(ce.getCondition()) instanceof BinaryExpr be
+                && be.getOperator() == BinaryExpr.Operator.NOT_EQUALS) {
+            if (be.getRight() instanceof NullLiteralExpr && !(be.getLeft() instanceof NullLiteralExpr)) {
+                return unwrapEnclosed(be.getLeft());
+            }
+            if (be.getLeft() instanceof NullLiteralExpr && !(be.getRight() instanceof NullLiteralExpr)) {
+                return unwrapEnclosed(be.getRight());
+            }
+        }
+        return null;
+    }
+
+    private static Expression unwrapEnclosed(Expression expr) {
+        while (expr instanceof EnclosedExpr ee) {
+            expr = ee.getInner();
+        }
+        return expr;
+    }
+
+    /**
+     * The kind a conditional leaves on the stack, the unified kind of its two branches.
+     */
+    private static <C, W, O> TypeKind conditionalTypeKind(ConditionalExpr ce, LocalSlotTable slots,
+                                                          CompilerParameters<C, W, O> params) {
+        return unifiedTypeKind(List.of(ce.getThenExpr(), ce.getElseExpr()),
+                withPatternBindings(ce.getCondition(), slots, params), params);
+    }
+
+    /**
+     * The kind that values meeting at one join point unify to, following the Java rules for the common
+     * cases: primitives widen to the largest kind, primitives and wrappers unbox, and any other mix
+     * (including a {@code null} value) boxes to a reference.
+     */
+    private static <C, W, O> TypeKind unifiedTypeKind(List<Expression> values, LocalSlotTable slots,
+                                                      CompilerParameters<C, W, O> params) {
+        if (values.stream().anyMatch(value -> unwrapEnclosed(value) instanceof NullLiteralExpr)) {
+            return TypeKind.REFERENCE;
+        }
+        List<TypeKind> primitiveKinds = new ArrayList<>();
+        List<Expression> references = new ArrayList<>();
+        for (Expression value : values) {
+            TypeKind kind = inferTypeKind(value, slots, params);
+            if (kind == TypeKind.REFERENCE) {
+                references.add(value);
+            } else {
+                primitiveKinds.add(kind);
+            }
+        }
+        if (primitiveKinds.isEmpty()) {
+            return TypeKind.REFERENCE;
+        }
+        if (references.isEmpty()) {
+            return primitiveKinds.stream().allMatch(kind -> kind == TypeKind.BOOLEAN)
+                    ? TypeKind.BOOLEAN
+                    : primitiveKinds.stream().reduce(ClassfileEvaluatorEmitter::widenTypeKind).orElseThrow();
+        }
+        // Primitive and reference values: wrappers unbox, anything else is boxed
+        if (params == null) {
+            return TypeKind.REFERENCE;
+        }
+        List<Class<?>> referenceClasses = new ArrayList<>();
+        for (Expression reference : references) {
+            Class<?> referenceClass = resolveExpressionType(reference, slots, params);
+            if (referenceClass == null || !MethodType.methodType(referenceClass).hasWrappers()) {
+                return TypeKind.REFERENCE;
+            }
+            referenceClasses.add(referenceClass);
+        }
+        if (referenceClasses.contains(Boolean.class) || primitiveKinds.contains(TypeKind.BOOLEAN)) {
+            // boolean getters are typed INT, see typeKindForJavaClass
+            return referenceClasses.stream().allMatch(referenceClass -> referenceClass == Boolean.class)
+                    && primitiveKinds.stream().allMatch(kind -> kind == TypeKind.BOOLEAN || kind == TypeKind.INT)
+                    ? TypeKind.BOOLEAN
+                    : TypeKind.REFERENCE;
+        }
+        TypeKind kind = primitiveKinds.stream().reduce(ClassfileEvaluatorEmitter::widenTypeKind).orElseThrow();
+        for (Class<?> referenceClass : referenceClasses) {
+            kind = widenTypeKind(kind, typeKindForJavaClass(MethodType.methodType(referenceClass).unwrap().returnType()));
+        }
+        return kind;
+    }
+
+    private static boolean isComparisonOp(BinaryExpr.Operator op) {
+        return switch (op) {
+            case GREATER, LESS, GREATER_EQUALS, LESS_EQUALS, EQUALS, NOT_EQUALS -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Emit a comparison expression for any numeric type (int, long, double, float).
+     * For int: uses if_icmpXX instructions directly.
+     * For long/double/float: emits lcmp/dcmpg/fcmpg first, then ifeq/ifne/etc.
+     */
+    private static <C, W, O> void emitComparison(
+            CodeBuilder code,
+            BinaryExpr be,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        TypeKind leftKind = inferTypeKind(be.getLeft(), slots, params);
+        TypeKind rightKind = inferTypeKind(be.getRight(), slots, params);
+        TypeKind cmpKind = widenTypeKind(leftKind, rightKind);
+
+        var trueLabel = code.newLabel();
+        var endLabel = code.newLabel();
+
+        emitExpression(code, be.getLeft(), slots, params);
+        emitTypeWidening(code, leftKind, cmpKind);
+        emitExpression(code, be.getRight(), slots, params);
+        emitTypeWidening(code, rightKind, cmpKind);
+
+        switch (cmpKind) {
+            case INT, BOOLEAN -> {
+                // Direct int comparison with if_icmpXX
+                switch (be.getOperator()) {
+                    case GREATER -> code.if_icmpgt(trueLabel);
+                    case LESS -> code.if_icmplt(trueLabel);
+                    case GREATER_EQUALS -> code.if_icmpge(trueLabel);
+                    case LESS_EQUALS -> code.if_icmple(trueLabel);
+                    case EQUALS -> code.if_icmpeq(trueLabel);
+                    case NOT_EQUALS -> code.if_icmpne(trueLabel);
+                    default -> throw new IllegalStateException("Not a comparison: " + be.getOperator());
+                }
+            }
+            case LONG -> {
+                // lcmp pushes -1/0/+1, then branch on that int
+                code.lcmp();
+                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            }
+            case DOUBLE -> {
+                // dcmpg for NaN safety (NaN produces 1, so < returns false correctly)
+                code.dcmpg();
+                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            }
+            case FLOAT -> {
+                code.fcmpg();
+                emitIntBranchForComparison(code, be.getOperator(), trueLabel);
+            }
+            default -> throw new UnsupportedOperationException(
+                    "Cannot compare type: " + cmpKind);
+        }
+
+        code.iconst_0();               // false
+        code.goto_(endLabel);
+
+        code.labelBinding(trueLabel);
+        code.iconst_1();               // true
+
+        code.labelBinding(endLabel);
+    }
+
+    /**
+     * After lcmp/dcmpg/fcmpg, the stack has int -1/0/+1.
+     * Emit the appropriate branch for the comparison operator.
+     */
+    private static void emitIntBranchForComparison(CodeBuilder code,
+                                                    BinaryExpr.Operator op,
+                                                    java.lang.classfile.Label trueLabel) {
+        switch (op) {
+            case GREATER -> code.ifgt(trueLabel);
+            case LESS -> code.iflt(trueLabel);
+            case GREATER_EQUALS -> code.ifge(trueLabel);
+            case LESS_EQUALS -> code.ifle(trueLabel);
+            case EQUALS -> code.ifeq(trueLabel);
+            case NOT_EQUALS -> code.ifne(trueLabel);
+            default -> throw new IllegalStateException("Not a comparison: " + op);
+        }
+    }
+
+    // ── String concatenation emission ─────────────────────────────────────
+
+    /**
+     * Check if an expression evaluates to a String type.
+     */
+    private static <C, W, O> boolean isStringExpression(Expression expr, LocalSlotTable slots,
+                                                         CompilerParameters<C, W, O> params) {
+        return switch (expr) {
+            case StringLiteralExpr _ -> true;
+            case NameExpr ne -> {
+                if (slots.contains(ne.getNameAsString())) {
+                    Type t = slots.type(ne.getNameAsString());
+                    yield isStringType(t);
+                }
+                yield false;
+            }
+            case BinaryExpr be when be.getOperator() == BinaryExpr.Operator.PLUS ->
+                    isStringExpression(be.getLeft(), slots, params)
+                    || isStringExpression(be.getRight(), slots, params);
+            case MethodCallExpr mce -> {
+                // Check if method returns String via reflection
+                Class<?> retType = resolveMethodReturnClass(mce, slots, params);
+                yield retType == String.class;
+            }
+            case EnclosedExpr ee -> isStringExpression(ee.getInner(), slots, params);
+            case ArrayAccessExpr aae -> resolveExpressionType(aae, slots, params) == String.class;
+            case ConditionalExpr ce -> {
+                LocalSlotTable bound = withPatternBindings(ce.getCondition(), slots, params);
+                yield isStringExpression(ce.getThenExpr(), bound, params)
+                        && isStringExpression(ce.getElseExpr(), bound, params);
+            }
+            default -> false;
+        };
+    }
+
+    /**
+     * Resolve the return type Class of a method call expression.
+     */
+    private static <C, W, O> Class<?> resolveMethodReturnClass(MethodCallExpr mce, LocalSlotTable slots,
+                                                                 CompilerParameters<C, W, O> params) {
+        if (mce.getScope().isEmpty()) {
+            Method function = selectFunction(mce, slots, params);
+            return function != null ? function.getReturnType() : null;
+        }
+        ReifiedType scopeType = reifyExpressionType(mce.getScope().get(), slots, params);
+        if (scopeType != null) {
+            Method m = findMethodByNameAndArgCount(scopeType.raw(), mce.getNameAsString(), mce.getArguments().size());
+            if (m != null) return scopeType.resolve(m.getGenericReturnType()).raw();
+        }
+        return null;
+    }
+
+    /**
+     * Emit string concatenation using StringBuilder.
+     * Flattens nested PLUS chains into a single StringBuilder sequence.
+     */
+    private static <C, W, O> void emitStringConcat(
+            CodeBuilder code,
+            BinaryExpr be,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        ClassDesc CD_StringBuilder = ClassDesc.of("java.lang.StringBuilder");
+
+        // new StringBuilder()
+        code.new_(CD_StringBuilder);
+        code.dup();
+        code.invokespecial(CD_StringBuilder, INIT_NAME, MTD_void);
+
+        // Flatten and append all operands
+        flattenAndAppend(code, be, slots, params, CD_StringBuilder);
+
+        // toString()
+        code.invokevirtual(CD_StringBuilder, "toString",
+                MethodTypeDesc.of(CD_String));
+    }
+
+    /**
+     * Recursively flatten nested string PLUS chains and emit StringBuilder.append() for each operand.
+     */
+    private static <C, W, O> void flattenAndAppend(
+            CodeBuilder code,
+            Expression expr,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            ClassDesc CD_StringBuilder) {
+
+        if (expr instanceof BinaryExpr be && be.getOperator() == BinaryExpr.Operator.PLUS
+                && (isStringExpression(be.getLeft(), slots, params)
+                    || isStringExpression(be.getRight(), slots, params))) {
+            // Recursive: flatten left and right
+            flattenAndAppend(code, be.getLeft(), slots, params, CD_StringBuilder);
+            flattenAndAppend(code, be.getRight(), slots, params, CD_StringBuilder);
+        } else {
+            // Leaf: emit the expression and append to StringBuilder
+            emitExpression(code, expr, slots, params);
+            TypeKind kind = inferTypeKind(expr, slots, params);
+            emitStringBuilderAppend(code, kind, CD_StringBuilder);
+        }
+    }
+
+    /**
+     * Emit the appropriate StringBuilder.append() call for the value on the stack.
+     */
+    private static void emitStringBuilderAppend(CodeBuilder code, TypeKind kind, ClassDesc CD_StringBuilder) {
+        ClassDesc argDesc = switch (kind) {
+            case BOOLEAN -> CD_boolean; // StringBuilder.append(boolean) → "true"/"false"
+            case INT, BYTE, SHORT, CHAR -> CD_int;
+            case LONG -> CD_long;
+            case DOUBLE -> CD_double;
+            case FLOAT -> CD_float;
+            default -> CD_Object;
+        };
+        code.invokevirtual(CD_StringBuilder, "append",
+                MethodTypeDesc.of(CD_StringBuilder, argDesc));
+    }
+
+    // ── Type widening helpers ─────────────────────────────────────────────
+
+    /**
+     * Determine the wider TypeKind for binary operations between two types.
+     * Rules: double > float > long > int (byte/short/char/boolean widen to int).
+     */
+    private static TypeKind widenTypeKind(TypeKind left, TypeKind right) {
+        if (left == TypeKind.DOUBLE || right == TypeKind.DOUBLE) return TypeKind.DOUBLE;
+        if (left == TypeKind.FLOAT || right == TypeKind.FLOAT) return TypeKind.FLOAT;
+        if (left == TypeKind.LONG || right == TypeKind.LONG) return TypeKind.LONG;
+        return TypeKind.INT;
+    }
+
+    /**
+     * Emit a widening conversion from one primitive type to another.
+     * No-op if the types are the same.
+     */
+    private static void emitTypeWidening(CodeBuilder code, TypeKind from, TypeKind to) {
+        if (from == to) return;
+        switch (from) {
+            case INT, BOOLEAN, BYTE, CHAR, SHORT -> {
+                switch (to) {
+                    case LONG -> code.i2l();
+                    case FLOAT -> code.i2f();
+                    case DOUBLE -> code.i2d();
+                    default -> {}
+                }
+            }
+            case LONG -> {
+                switch (to) {
+                    case FLOAT -> code.l2f();
+                    case DOUBLE -> code.l2d();
+                    default -> {}
+                }
+            }
+            case FLOAT -> {
+                if (to == TypeKind.DOUBLE) code.f2d();
+            }
+            default -> {}
+        }
+    }
+
+    // ── Arithmetic helpers ────────────────────────────────────────────────
+
+    private static void emitAdd(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.iadd();
+            case LONG -> code.ladd();
+            case DOUBLE -> code.dadd();
+            case FLOAT -> code.fadd();
+            default -> throw new UnsupportedOperationException("Cannot add type: " + kind);
+        }
+    }
+
+    private static void emitSub(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.isub();
+            case LONG -> code.lsub();
+            case DOUBLE -> code.dsub();
+            case FLOAT -> code.fsub();
+            default -> throw new UnsupportedOperationException("Cannot subtract type: " + kind);
+        }
+    }
+
+    private static void emitMul(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.imul();
+            case LONG -> code.lmul();
+            case DOUBLE -> code.dmul();
+            case FLOAT -> code.fmul();
+            default -> throw new UnsupportedOperationException("Cannot multiply type: " + kind);
+        }
+    }
+
+    private static void emitDiv(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.idiv();
+            case LONG -> code.ldiv();
+            case DOUBLE -> code.ddiv();
+            case FLOAT -> code.fdiv();
+            default -> throw new UnsupportedOperationException("Cannot divide type: " + kind);
+        }
+    }
+
+    private static void emitRem(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.irem();
+            case LONG -> code.lrem();
+            case DOUBLE -> code.drem();
+            case FLOAT -> code.frem();
+            default -> throw new UnsupportedOperationException("Cannot modulo type: " + kind);
+        }
+    }
+
+    // ── Bitwise helpers ──────────────────────────────────────────────────
+
+    private static void emitBitwiseAnd(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.iand();
+            case LONG -> code.land();
+            default -> throw new UnsupportedOperationException("Cannot bitwise-AND type: " + kind);
+        }
+    }
+
+    private static void emitBitwiseOr(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.ior();
+            case LONG -> code.lor();
+            default -> throw new UnsupportedOperationException("Cannot bitwise-OR type: " + kind);
+        }
+    }
+
+    private static void emitBitwiseXor(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.ixor();
+            case LONG -> code.lxor();
+            default -> throw new UnsupportedOperationException("Cannot bitwise-XOR type: " + kind);
+        }
+    }
+
+    private static void emitShl(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.ishl();
+            case LONG -> code.lshl();
+            default -> throw new UnsupportedOperationException("Cannot left-shift type: " + kind);
+        }
+    }
+
+    private static void emitShr(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.ishr();
+            case LONG -> code.lshr();
+            default -> throw new UnsupportedOperationException("Cannot right-shift type: " + kind);
+        }
+    }
+
+    private static void emitUshr(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT -> code.iushr();
+            case LONG -> code.lushr();
+            default -> throw new UnsupportedOperationException("Cannot unsigned-right-shift type: " + kind);
+        }
+    }
+
+    // ── Method call emission ──────────────────────────────────────────────
+
+    private static <C, W, O> void emitMethodCallExpr(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String methodName = mce.getNameAsString();
+
+        // Scope-less __context* POJO setter helpers: __contexta(__context, a = 4)
+        if (mce.getScope().isEmpty() && methodName.startsWith("__context")) {
+            emitContextHelperCall(code, mce, slots, params);
+            return;
+        }
+
+        // Other scope-less calls: functions from the static imports or the generated superclass
+        if (mce.getScope().isEmpty()) {
+            emitFunctionCall(code, mce, slots, params);
+            return;
+        }
+
+        // Map.get("key") pattern: scope.get(StringLiteral)
+        if (mce.getScope().isPresent() && methodName.equals("get")
+                && mce.getArguments().size() == 1) {
+            Expression scope = mce.getScope().get();
+            Expression arg = mce.getArgument(0);
+
+            if (scope instanceof NameExpr scopeName && slots.contains(scopeName.getNameAsString())) {
+                TypeKind scopeKind = slots.typeKind(scopeName.getNameAsString());
+                if (scopeKind == TypeKind.REFERENCE) {
+                    // Could be Map.get(key) or List.get(index)
+                    emitExpression(code, scope, slots, params);
+                    emitExpression(code, arg, slots, params);
+
+                    if (arg instanceof StringLiteralExpr) {
+                        // Map.get(String) → invokeinterface Map.get(Object)Object
+                        code.invokeinterface(CD_Map, "get",
+                                MethodTypeDesc.of(CD_Object, CD_Object));
+                    } else if (arg instanceof IntegerLiteralExpr) {
+                        // List.get(int) → invokeinterface List.get(int)Object
+                        code.invokeinterface(CD_List, "get",
+                                MethodTypeDesc.of(CD_Object, CD_int));
+                    } else {
+                        // Generic: treat as Map.get(Object)
+                        code.invokeinterface(CD_Map, "get",
+                                MethodTypeDesc.of(CD_Object, CD_Object));
+                    }
+                    // List<Foo>.get(0) is a Foo
+                    ReifiedType scopeType = resolveVariableType(scopeName.getNameAsString(), slots, params);
+                    if (scopeType != null) {
+                        Class<?> getter = arg instanceof IntegerLiteralExpr ? List.class : Map.class;
+                        emitGenericReturnCast(code, findMethodByNameAndArgCount(getter, "get", 1), scopeType);
+                    }
+                    return;
+                }
+            }
+        }
+
+        // Static method calls on java.lang.Math
+        if (mce.getScope().isPresent() && isStaticMathScope(mce.getScope().get())) {
+            emitMathStaticCall(code, mce, slots, params);
+            return;
+        }
+
+        // Static method calls on org.mvel3.MVEL (putMap, setList)
+        if (mce.getScope().isPresent() && isStaticMvelScope(mce.getScope().get())) {
+            emitMvelStaticCall(code, mce, slots, params);
+            return;
+        }
+
+        // Static method calls on BigDecimal/BigInteger (valueOf, etc.)
+        if (mce.getScope().isPresent() && isStaticBigDecimalScope(mce.getScope().get())) {
+            emitBigDecimalStaticCall(code, mce, slots, params);
+            return;
+        }
+
+        // Static method calls on known JDK classes (Integer.rotateLeft, Double.parseDouble, etc.)
+        if (mce.getScope().isPresent() && isStaticKnownClassScope(mce.getScope().get())) {
+            emitKnownClassStaticCall(code, mce, slots, params);
+            return;
+        }
+
+        // POJO instance method call: scope.methodName(args...)
+        // Use reflection to resolve the actual method descriptor.
+        if (mce.getScope().isPresent()) {
+            Expression scope = mce.getScope().get();
+            if (scope instanceof NameExpr scopeName && slots.contains(scopeName.getNameAsString())) {
+                Class<?> scopeClass = resolveVariableClassWithLocals(scopeName.getNameAsString(), slots, params);
+                if (scopeClass != null) {
+                    emitReflectedMethodCall(code, mce, scopeClass, scopeName, slots, params);
+                    return;
+                }
+                // Fallback: no class info, use heuristic-based emission
+                emitHeuristicMethodCall(code, mce, scopeName, methodName, slots, params);
+                return;
+            }
+
+            // Chained method call: scope is itself a MethodCallExpr (e.g., _this.getSalary().add(...))
+            ReifiedType scopeReturnType = reifyExpressionType(scope, slots, params);
+            if (scopeReturnType != null) {
+                emitChainedMethodCall(code, mce, scope, scopeReturnType, slots, params);
+                return;
+            }
+        }
+
+        throw new UnsupportedOperationException(
+                "Unsupported method call: " + mce);
+    }
+
+    /**
+     * Emit a scope-less __context* POJO setter helper call.
+     * Pattern: __contexta(__context, a = 4) → invokestatic thisClass.__contexta(ContextType, int)int
+     * The AssignExpr argument both assigns to the local variable and pushes the value for the method arg.
+     */
+    private static <C, W, O> void emitContextHelperCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String helperName = mce.getNameAsString();
+
+        // Emit arguments: __context (arg 0) and the value expression (arg 1)
+        for (Expression arg : mce.getArguments()) {
+            emitExpression(code, arg, slots, params);
+        }
+
+        // Resolve the helper method descriptor.
+        // The helper is: static ReturnType __contextX(ContextType __context, ValueType v)
+        // Context type comes from the first arg (which is __context, a NameExpr in slot table).
+        // Value type comes from the second arg's inferred type.
+        ClassDesc contextClassDesc = classDescForJavaClass(params.contextDeclaration().type().getClazz());
+        TypeKind valueKind = inferTypeKind(mce.getArgument(1), slots, params);
+        ClassDesc valueDesc = typeKindToClassDesc(valueKind);
+
+        // The helper returns the same type as the value parameter
+        MethodTypeDesc helperMethodType = MethodTypeDesc.of(valueDesc, contextClassDesc, valueDesc);
+
+        // Compute thisClass from package + generated class name
+        ClassDesc thisClass = ClassDesc.of("org.mvel3." + params.generatedClassName());
+
+        code.invokestatic(thisClass, helperName, helperMethodType);
+    }
+
+    /**
+     * Convert a TypeKind to a ClassDesc for method descriptors.
+     */
+    private static ClassDesc typeKindToClassDesc(TypeKind kind) {
+        return switch (kind) {
+            case INT -> CD_int;
+            case LONG -> CD_long;
+            case DOUBLE -> CD_double;
+            case FLOAT -> CD_float;
+            case BOOLEAN -> CD_boolean;
+            case BYTE -> CD_byte;
+            case CHAR -> CD_char;
+            case SHORT -> CD_short;
+            default -> CD_Object;
+        };
+    }
+
+    /**
+     * Emit a type-appropriate return instruction for a primitive TypeKind.
+     */
+    private static void emitTypedReturn(CodeBuilder code, TypeKind kind) {
+        switch (kind) {
+            case INT, BOOLEAN, BYTE, CHAR, SHORT -> code.ireturn();
+            case LONG -> code.lreturn();
+            case DOUBLE -> code.dreturn();
+            case FLOAT -> code.freturn();
+            default -> code.areturn();
+        }
+    }
+
+    private static final ClassDesc CD_Math = ClassDesc.of("java.lang.Math");
+    private static final ClassDesc CD_MVEL = ClassDesc.of("org.mvel3.MVEL");
+
+    /**
+     * Emit a static method call on java.lang.Math.
+     * All Math methods take double args and return double.
+     */
+    private static <C, W, O> void emitMathStaticCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String methodName = mce.getNameAsString();
+        int argCount = mce.getArguments().size();
+
+        // Emit arguments, widening to double where needed
+        for (Expression arg : mce.getArguments()) {
+            emitExpression(code, arg, slots, params);
+            TypeKind kind = inferTypeKind(arg, slots, params);
+            if (kind == TypeKind.INT) {
+                code.i2d();
+            } else if (kind == TypeKind.FLOAT) {
+                code.f2d();
+            } else if (kind == TypeKind.LONG) {
+                code.l2d();
+            }
+        }
+
+        // Build method type: all doubles in, double out
+        ClassDesc[] argDescs = new ClassDesc[argCount];
+        Arrays.fill(argDescs, CD_double);
+        code.invokestatic(CD_Math, methodName, MethodTypeDesc.of(CD_double, argDescs));
+    }
+
+    /**
+     * Emit a static method call on org.mvel3.MVEL (putMap, setList).
+     */
+    private static <C, W, O> void emitMvelStaticCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String methodName = mce.getNameAsString();
+
+        if ("putMap".equals(methodName)) {
+            // MVEL.putMap(Map context, String key, Object value) → Object
+            // Arg 0: Map (reference, no boxing needed)
+            emitExpression(code, mce.getArgument(0), slots, params);
+            // Arg 1: String key (reference, no boxing needed)
+            emitExpression(code, mce.getArgument(1), slots, params);
+            // Arg 2: Object value (box if primitive)
+            emitExpression(code, mce.getArgument(2), slots, params);
+            TypeKind valKind = inferTypeKind(mce.getArgument(2), slots, params);
+            if (valKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, valKind);
+            }
+            code.invokestatic(CD_MVEL, "putMap",
+                    MethodTypeDesc.of(CD_Object, CD_Map, CD_String, CD_Object));
+        } else if ("setList".equals(methodName)) {
+            // MVEL.setList(List context, int index, Object value) → Object
+            // Arg 0: List (reference)
+            emitExpression(code, mce.getArgument(0), slots, params);
+            // Arg 1: int index (no boxing — stays as int)
+            emitExpression(code, mce.getArgument(1), slots, params);
+            // Arg 2: Object value (box if primitive)
+            emitExpression(code, mce.getArgument(2), slots, params);
+            TypeKind valKind = inferTypeKind(mce.getArgument(2), slots, params);
+            if (valKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, valKind);
+            }
+            code.invokestatic(CD_MVEL, "setList",
+                    MethodTypeDesc.of(CD_Object, CD_List, CD_int, CD_Object));
+        } else {
+            throw new UnsupportedOperationException(
+                    "Unsupported MVEL static method: " + methodName);
+        }
+    }
+
+    // ── BigDecimal / BigInteger static method emission ─────────────────────
+
+    /**
+     * Emit a static method call on BigDecimal or BigInteger (e.g., BigDecimal.valueOf(10)).
+     */
+    private static <C, W, O> void emitBigDecimalStaticCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        Expression scope = mce.getScope().get();
+        String className = scope instanceof NameExpr ne ? ne.getNameAsString() : scope.toString();
+        boolean isBigInteger = className.contains("BigInteger");
+        ClassDesc targetClass = isBigInteger
+                ? ClassDesc.of("java.math.BigInteger")
+                : CD_BigDecimal;
+
+        String methodName = mce.getNameAsString();
+
+        if ("valueOf".equals(methodName) && mce.getArguments().size() == 1) {
+            Expression arg = mce.getArgument(0);
+            emitExpression(code, arg, slots, params);
+            TypeKind argKind = inferTypeKind(arg, slots, params);
+            // BigDecimal.valueOf(long) and BigInteger.valueOf(long) both take long
+            if (argKind == TypeKind.INT || argKind == TypeKind.BOOLEAN || argKind == TypeKind.BYTE
+                    || argKind == TypeKind.SHORT || argKind == TypeKind.CHAR) {
+                code.i2l();
+            }
+            code.invokestatic(targetClass, "valueOf", MethodTypeDesc.of(targetClass, CD_long));
+            return;
+        }
+
+        // Generic fallback for other static methods: use reflection
+        emitReflectedStaticCall(code, targetClass, className, mce, slots, params);
+    }
+
+    /**
+     * Emit a static method call on a known JDK class using reflection to resolve the descriptor.
+     */
+    private static <C, W, O> void emitKnownClassStaticCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String className = ((NameExpr) mce.getScope().get()).getNameAsString();
+        Class<?> clazz = resolveClassName(className);
+        ClassDesc targetClass = clazz != null
+                ? classDescForJavaClass(clazz)
+                : ClassfileTypeUtils.classDescFromName(className);
+        emitReflectedStaticCall(code, targetClass, className, mce, slots, params);
+    }
+
+    /**
+     * Generic reflection-based static method call emitter.
+     */
+    private static <C, W, O> void emitReflectedStaticCall(
+            CodeBuilder code,
+            ClassDesc targetClassDesc,
+            String className,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String methodName = mce.getNameAsString();
+        int argCount = mce.getArguments().size();
+
+        // Resolve the class and find the static method
+        Class<?> clazz = resolveClassName(className);
+        if (clazz == null) {
+            throw new UnsupportedOperationException(
+                    "Cannot resolve class for static call: " + className + "." + methodName);
+        }
+
+        Method method = findStaticMethodByNameAndArgCount(clazz, methodName, argCount);
+        if (method == null) {
+            throw new UnsupportedOperationException(
+                    "Cannot find static method: " + className + "." + methodName + " with " + argCount + " arg(s)");
+        }
+
+        // Emit arguments with type conversion
+        Class<?>[] paramTypes = method.getParameterTypes();
+        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
+            Expression arg = mce.getArgument(i);
+            emitArgument(code, arg, paramTypes[i], slots, params);
+            TypeKind argKind = inferTypeKind(arg, slots, params);
+            // Widen primitive if needed (e.g., int → long, int → double)
+            if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
+                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
+                emitTypeWidening(code, argKind, targetKind);
+            } else if (!paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
+                // Method takes Object, we have a primitive → box it
+                ClassfileTypeUtils.emitBoxing(code, argKind);
+            }
+        }
+
+        ClassDesc returnDesc = classDescForJavaClass(method.getReturnType());
+        code.invokestatic(targetClassDesc, methodName,
+                MethodTypeDesc.of(returnDesc, paramDescs), clazz.isInterface());
+    }
+
+    /**
+     * Emit a chained method call where the scope is a complex expression
+     * (e.g., _this.getSalary().add(...) where scope is the MethodCallExpr _this.getSalary()).
+     */
+    private static <C, W, O> void emitChainedMethodCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            Expression scope,
+            ReifiedType scopeReturnType,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        String methodName = mce.getNameAsString();
+        int argCount = mce.getArguments().size();
+        Class<?> scopeReturnClass = scopeReturnType.raw();
+
+        Method method = findMethodByNameAndArgCount(scopeReturnClass, methodName, argCount);
+        if (method == null) {
+            throw new UnsupportedOperationException(
+                    "Cannot resolve chained method: " + scopeReturnClass.getName() + "." + methodName
+                    + " with " + argCount + " arg(s)");
+        }
+
+        // Emit the scope expression — puts the receiver object on the stack
+        emitExpression(code, scope, slots, params);
+
+        ClassDesc ownerDesc = classDescForJavaClass(scopeReturnClass);
+
+        // Emit arguments with type conversion
+        Class<?>[] paramTypes = method.getParameterTypes();
+        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
+            Expression arg = mce.getArgument(i);
+            emitArgument(code, arg, paramTypes[i], slots, params);
+            TypeKind argKind = inferTypeKind(arg, slots, params);
+            if (paramTypes[i] == Object.class && argKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, argKind);
+            } else if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
+                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
+                emitTypeWidening(code, argKind, targetKind);
+            }
+        }
+
+        ClassDesc returnDesc = classDescForJavaClass(method.getReturnType());
+
+        // Use invokeinterface for interface types, invokevirtual for classes
+        if (scopeReturnClass.isInterface()) {
+            code.invokeinterface(ownerDesc, methodName,
+                    MethodTypeDesc.of(returnDesc, paramDescs));
+        } else {
+            code.invokevirtual(ownerDesc, methodName,
+                    MethodTypeDesc.of(returnDesc, paramDescs));
+        }
+        emitGenericReturnCast(code, method, scopeReturnType);
+    }
+
+    /**
+     * Cast the erased value a generic method returned to the type its receiver's type arguments give it,
+     * as javac does: {@code foos.get(0)} is a {@code Foo} when {@code foos} is a {@code List<Foo>}.
+     */
+    private static void emitGenericReturnCast(CodeBuilder code, Method method, ReifiedType receiver) {
+        Class<?> erased = method.getReturnType();
+        Class<?> reified = receiver.resolve(method.getGenericReturnType()).raw();
+        if (reified != erased && !erased.isPrimitive() && erased.isAssignableFrom(reified)
+                && Modifier.isPublic(reified.getModifiers())) {
+            code.checkcast(classDescForJavaClass(reified));
         }
     }
 
-    // ── Method call emission ──────────────────────────────────────────────
+    // ── Object creation emission ──────────────────────────────────────────
 
-    private static <C, W, O> void emitMethodCallExpr(
+    private static <C, W, O> void emitObjectCreationExpr(
             CodeBuilder code,
-            MethodCallExpr mce,
+            ObjectCreationExpr oce,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String methodName = mce.getNameAsString();
-
-        // Scope-less __context* POJO setter helpers: __contexta(__context, a = 4)
-        if (mce.getScope().isEmpty() && methodName.startsWith("__context")) {
-            emitContextHelperCall(code, mce, slots, params);
-            return;
+        String typeName = oce.getType().getNameWithScope();
+        Class<?> clazz = resolveClassName(typeName);
+        if (clazz == null) {
+            throw new UnsupportedOperationException("Cannot resolve class: " + typeName);
         }
 
-        // Map.get("key") pattern: scope.get(StringLiteral)
-        if (mce.getScope().isPresent() && methodName.equals("get")
-                && mce.getArguments().size() == 1) {
-            Expression scope = mce.getScope().get();
-            Expression arg = mce.getArgument(0);
-
-            if (scope instanceof NameExpr scopeName && slots.contains(scopeName.getNameAsString())) {
-                TypeKind scopeKind = slots.typeKind(scopeName.getNameAsString());
-                if (scopeKind == TypeKind.REFERENCE) {
-                    // Could be Map.get(key) or List.get(index)
-                    emitExpression(code, scope, slots, params);
-                    emitExpression(code, arg, slots, params);
-
-                    if (arg instanceof StringLiteralExpr) {
-                        // Map.get(String) → invokeinterface Map.get(Object)Object
-                        code.invokeinterface(CD_Map, "get",
-                                MethodTypeDesc.of(CD_Object, CD_Object));
-                    } else if (arg instanceof IntegerLiteralExpr) {
-                        // List.get(int) → invokeinterface List.get(int)Object
-                        code.invokeinterface(CD_List, "get",
-                                MethodTypeDesc.of(CD_Object, CD_int));
-                    } else {
-                        // Generic: treat as Map.get(Object)
-                        code.invokeinterface(CD_Map, "get",
-                                MethodTypeDesc.of(CD_Object, CD_Object));
-                    }
-                    return;
-                }
-            }
-        }
+        ClassDesc classDesc = classDescForJavaClass(clazz);
+        code.new_(classDesc);
+        code.dup();
 
-        // Static method calls on java.lang.Math
-        if (mce.getScope().isPresent() && isStaticMathScope(mce.getScope().get())) {
-            emitMathStaticCall(code, mce, slots, params);
-            return;
+        // Find matching constructor by argument count
+        int argCount = oce.getArguments().size();
+        java.lang.reflect.Constructor<?> ctor = findConstructorByArgCount(clazz, argCount);
+        if (ctor == null) {
+            throw new UnsupportedOperationException(
+                    "Cannot find constructor for " + typeName + " with " + argCount + " arg(s)");
         }
 
-        // Static method calls on org.mvel3.MVEL (putMap, setList)
-        if (mce.getScope().isPresent() && isStaticMvelScope(mce.getScope().get())) {
-            emitMvelStaticCall(code, mce, slots, params);
-            return;
+        Class<?>[] paramTypes = ctor.getParameterTypes();
+        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
+            Expression arg = oce.getArgument(i);
+            emitArgument(code, arg, paramTypes[i], slots, params);
+            TypeKind argKind = inferTypeKind(arg, slots, params);
+            if (!paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, argKind);
+            } else if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
+                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
+                emitTypeWidening(code, argKind, targetKind);
+            }
         }
 
-        // Static method calls on BigDecimal/BigInteger (valueOf, etc.)
-        if (mce.getScope().isPresent() && isStaticBigDecimalScope(mce.getScope().get())) {
-            emitBigDecimalStaticCall(code, mce, slots, params);
-            return;
-        }
+        code.invokespecial(classDesc, INIT_NAME,
+                MethodTypeDesc.of(CD_void, paramDescs));
+    }
 
-        // Static method calls on known JDK classes (Integer.rotateLeft, Double.parseDouble, etc.)
-        if (mce.getScope().isPresent() && isStaticKnownClassScope(mce.getScope().get())) {
-            emitKnownClassStaticCall(code, mce, slots, params);
-            return;
-        }
+    // ── Lambda and method reference emission ─────────────────────────────
 
-        // POJO instance method call: scope.methodName(args...)
-        // Use reflection to resolve the actual method descriptor.
-        if (mce.getScope().isPresent()) {
-            Expression scope = mce.getScope().get();
-            if (scope instanceof NameExpr scopeName && slots.contains(scopeName.getNameAsString())) {
-                Class<?> scopeClass = resolveVariableClassWithLocals(scopeName.getNameAsString(), slots, params);
-                if (scopeClass != null) {
-                    emitReflectedMethodCall(code, mce, scopeClass, scopeName, slots, params);
-                    return;
-                }
-                // Fallback: no class info, use heuristic-based emission
-                emitHeuristicMethodCall(code, mce, scopeName, methodName, slots, params);
-                return;
-            }
+    /**
+     * Emit a call argument. A lambda or method reference takes its functional interface from the parameter
+     * it is passed to.
+     */
+    private static <C, W, O> void emitArgument(
+            CodeBuilder code,
+            Expression arg,
+            Class<?> paramType,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
 
-            // Chained method call: scope is itself a MethodCallExpr (e.g., _this.getSalary().add(...))
-            Class<?> scopeReturnClass = resolveExpressionType(scope, slots, params);
-            if (scopeReturnClass != null) {
-                emitChainedMethodCall(code, mce, scope, scopeReturnClass, slots, params);
-                return;
-            }
+        if (arg instanceof LambdaExpr || arg instanceof MethodReferenceExpr) {
+            emitFunctionalExpr(code, arg, paramType, slots, params);
+        } else {
+            emitExpression(code, arg, slots, params);
         }
-
-        throw new UnsupportedOperationException(
-                "Unsupported method call: " + mce);
     }
 
     /**
-     * Emit a scope-less __context* POJO setter helper call.
-     * Pattern: __contexta(__context, a = 4) → invokestatic thisClass.__contexta(ContextType, int)int
-     * The AssignExpr argument both assigns to the local variable and pushes the value for the method arg.
+     * Emit a lambda or method reference as javac does: an {@code invokedynamic} linked by
+     * {@link java.lang.invoke.LambdaMetafactory}, whose arguments are the captured values. A lambda body is
+     * emitted into a private static method, while a method reference links to the method it names. One that
+     * captures nothing is allocated once, when its call site is linked.
+     *
+     * @param target the functional interface, or null to take it from the symbol solver
      */
-    private static <C, W, O> void emitContextHelperCall(
+    private static <C, W, O> void emitFunctionalExpr(
             CodeBuilder code,
-            MethodCallExpr mce,
+            Expression expr,
+            Class<?> target,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String helperName = mce.getNameAsString();
+        if (target == null || !target.isInterface()) {
+            target = resolveFunctionalInterface(expr, params);
+        }
+        Method sam = findFunctionalMethod(target);
+        if (sam == null) {
+            throw new UnsupportedOperationException(
+                    "Not a functional interface: " + target.getName() + " for " + expr);
+        }
 
-        // Emit arguments: __context (arg 0) and the value expression (arg 1)
-        for (Expression arg : mce.getArguments()) {
-            emitExpression(code, arg, slots, params);
+        switch (expr) {
+            case LambdaExpr le -> emitLambdaExpr(code, le, target, sam, slots, params);
+            case MethodReferenceExpr mre -> emitMethodReferenceExpr(code, mre, target, sam, slots, params);
+            default -> throw new UnsupportedOperationException("Not a lambda or method reference: " + expr);
         }
+    }
 
-        // Resolve the helper method descriptor.
-        // The helper is: static ReturnType __contextX(ContextType __context, ValueType v)
-        // Context type comes from the first arg (which is __context, a NameExpr in slot table).
-        // Value type comes from the second arg's inferred type.
-        ClassDesc contextClassDesc = classDescForJavaClass(params.contextDeclaration().type().getClazz());
-        TypeKind valueKind = inferTypeKind(mce.getArgument(1), slots, params);
-        ClassDesc valueDesc = typeKindToClassDesc(valueKind);
+    private static <C, W, O> void emitLambdaExpr(
+            CodeBuilder code,
+            LambdaExpr le,
+            Class<?> target,
+            Method sam,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
 
-        // The helper returns the same type as the value parameter
-        MethodTypeDesc helperMethodType = MethodTypeDesc.of(valueDesc, contextClassDesc, valueDesc);
+        if (le.getParameters().size() != sam.getParameterCount()) {
+            throw new UnsupportedOperationException(
+                    "Lambda does not match " + target.getName() + "." + sam.getName() + ": " + le);
+        }
+        Class<?>[] paramClasses = new Class<?>[sam.getParameterCount()];
+        for (int i = 0; i < paramClasses.length; i++) {
+            paramClasses[i] = resolveLambdaParameterClass(le, i, target, sam, params);
+        }
 
-        // Compute thisClass from package + generated class name
-        ClassDesc thisClass = ClassDesc.of("org.mvel3." + params.generatedClassName());
+        // Captured variables are typed now: the body is emitted after eval, when a later local may reuse a name
+        List<String> captured = findCapturedVariables(le, slots);
+        List<Type> capturedTypes = new ArrayList<>();
+        ClassDesc[] capturedDescs = new ClassDesc[captured.size()];
+        for (int i = 0; i < captured.size(); i++) {
+            capturedTypes.add(slots.type(captured.get(i)));
+            capturedDescs[i] = capturedClassDesc(captured.get(i), slots, params);
+        }
 
-        code.invokestatic(thisClass, helperName, helperMethodType);
-    }
+        // The synthetic method takes the captured values, then the lambda parameters
+        Class<?> returnClass = sam.getReturnType();
+        ClassDesc[] implParams = new ClassDesc[captured.size() + paramClasses.length];
+        System.arraycopy(capturedDescs, 0, implParams, 0, capturedDescs.length);
+        for (int i = 0; i < paramClasses.length; i++) {
+            implParams[captured.size() + i] = classDescForJavaClass(paramClasses[i]);
+        }
+        MethodTypeDesc implType = MethodTypeDesc.of(classDescForJavaClass(returnClass), implParams);
 
-    /**
-     * Convert a TypeKind to a ClassDesc for method descriptors.
-     */
-    private static ClassDesc typeKindToClassDesc(TypeKind kind) {
-        return switch (kind) {
-            case INT -> CD_int;
-            case LONG -> CD_long;
-            case DOUBLE -> CD_double;
-            case FLOAT -> CD_float;
-            case BOOLEAN -> CD_boolean;
-            case BYTE -> CD_byte;
-            case CHAR -> CD_char;
-            case SHORT -> CD_short;
-            default -> CD_Object;
-        };
-    }
+        String implName = slots.syntheticMethods().add(le, implType, lambdaCode -> {
+            LocalSlotTable lambdaSlots = slots.forLambdaBody();
+            for (int i = 0; i < captured.size(); i++) {
+                lambdaSlots.allocate(captured.get(i), capturedTypes.get(i));
+            }
+            for (int i = 0; i < paramClasses.length; i++) {
+                lambdaSlots.allocate(le.getParameter(i).getNameAsString(), typeForClass(paramClasses[i]));
+            }
+            emitLambdaBody(lambdaCode, le.getBody(), returnClass, lambdaSlots, params);
+        });
 
-    /**
-     * Emit a type-appropriate return instruction for a primitive TypeKind.
-     */
-    private static void emitTypedReturn(CodeBuilder code, TypeKind kind) {
-        switch (kind) {
-            case INT, BOOLEAN, BYTE, CHAR, SHORT -> code.ireturn();
-            case LONG -> code.lreturn();
-            case DOUBLE -> code.dreturn();
-            case FLOAT -> code.freturn();
-            default -> code.areturn();
+        for (String name : captured) {
+            slots.loadVar(code, name);
         }
+        ClassDesc thisClass = ClassDesc.of("org.mvel3." + params.generatedClassName());
+        DirectMethodHandleDesc impl = MethodHandleDesc.ofMethod(
+                DirectMethodHandleDesc.Kind.STATIC, thisClass, implName, implType);
+        emitLambdaMetafactory(code, target, sam, capturedDescs, impl,
+                instantiatedMethodType(sam, paramClasses, returnClass));
     }
 
-    private static final ClassDesc CD_Math = ClassDesc.of("java.lang.Math");
-    private static final ClassDesc CD_MVEL = ClassDesc.of("org.mvel3.MVEL");
-
     /**
-     * Emit a static method call on java.lang.Math.
-     * All Math methods take double args and return double.
+     * Emit the body of a lambda, converting its value to the functional method's return type.
+     * A block body must return a reference, or nothing.
      */
-    private static <C, W, O> void emitMathStaticCall(
+    private static <C, W, O> void emitLambdaBody(
             CodeBuilder code,
-            MethodCallExpr mce,
+            Statement body,
+            Class<?> returnClass,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String methodName = mce.getNameAsString();
-        int argCount = mce.getArguments().size();
-
-        // Emit arguments, widening to double where needed
-        for (Expression arg : mce.getArguments()) {
-            emitExpression(code, arg, slots, params);
-            TypeKind kind = inferTypeKind(arg, slots, params);
-            if (kind == TypeKind.INT) {
-                code.i2d();
-            } else if (kind == TypeKind.FLOAT) {
-                code.f2d();
-            } else if (kind == TypeKind.LONG) {
-                code.l2d();
+        if (body instanceof ExpressionStmt es) {
+            Expression expr = es.getExpression();
+            if (returnClass == void.class) {
+                emitExpressionForEffect(code, expr, slots, params);
+                code.return_();
+                return;
+            }
+            emitExpression(code, expr, slots, params);
+            TypeKind kind = inferTypeKind(expr, slots, params);
+            if (!returnClass.isPrimitive()) {
+                ClassfileTypeUtils.emitBoxing(code, kind);
+                code.areturn();
+                return;
+            }
+            TypeKind returnKind = typeKindForJavaClass(returnClass);
+            if (kind == TypeKind.REFERENCE) {
+                // Unbox as the wrapper the expression has, then widen: an Integer can be returned as a long
+                Class<?> exprClass = resolveExpressionType(expr, slots, params);
+                Class<?> unboxed = exprClass != null
+                        ? MethodType.methodType(exprClass).unwrap().returnType()
+                        : returnClass;
+                if (!unboxed.isPrimitive()) {
+                    unboxed = returnClass;
+                }
+                ClassfileTypeUtils.emitCheckcastAndUnbox(code,
+                        MethodType.methodType(unboxed).wrap().returnType().getName());
+                kind = typeKindForJavaClass(unboxed);
             }
+            emitTypeWidening(code, kind, returnKind);
+            emitTypedReturn(code, returnKind);
+            return;
         }
 
-        // Build method type: all doubles in, double out
-        ClassDesc[] argDescs = new ClassDesc[argCount];
-        java.util.Arrays.fill(argDescs, CD_double);
-        code.invokestatic(CD_Math, methodName, MethodTypeDesc.of(CD_double, argDescs));
+        if (returnClass.isPrimitive() && returnClass != void.class) {
+            throw new UnsupportedOperationException("Block lambda returning " + returnClass + ": " + body);
+        }
+        List<Statement> stmts = ((BlockStmt) body).getStatements();
+        Deque<JumpTarget> jumps = new ArrayDeque<>();
+        for (Statement stmt : stmts) {
+            emitStatement(code, stmt, slots, params, returnClass, jumps);
+        }
+        if (returnClass == void.class && !endsWithJump(stmts)) {
+            code.return_();
+        }
     }
 
-    /**
-     * Emit a static method call on org.mvel3.MVEL (putMap, setList).
-     */
-    private static <C, W, O> void emitMvelStaticCall(
+    private static <C, W, O> void emitMethodReferenceExpr(
             CodeBuilder code,
-            MethodCallExpr mce,
+            MethodReferenceExpr mre,
+            Class<?> target,
+            Method sam,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String methodName = mce.getNameAsString();
-
-        if ("putMap".equals(methodName)) {
-            // MVEL.putMap(Map context, String key, Object value) → Object
-            // Arg 0: Map (reference, no boxing needed)
-            emitExpression(code, mce.getArgument(0), slots, params);
-            // Arg 1: String key (reference, no boxing needed)
-            emitExpression(code, mce.getArgument(1), slots, params);
-            // Arg 2: Object value (box if primitive)
-            emitExpression(code, mce.getArgument(2), slots, params);
-            TypeKind valKind = inferTypeKind(mce.getArgument(2), slots, params);
-            if (valKind != TypeKind.REFERENCE) {
-                ClassfileTypeUtils.emitBoxing(code, valKind);
+        String name = mre.getIdentifier();
+        int arity = sam.getParameterCount();
+        Class<?> typeScope = resolveMethodReferenceClass(mre.getScope(), slots, params);
+        Class<?>[] argClasses = instantiatedParameterClasses(mre, target, sam, params);
+
+        DirectMethodHandleDesc impl;
+        Class<?>[] implParams; // with the receiver first, for an unbound instance method
+        Class<?> implReturn;
+        ClassDesc[] capturedDescs = {};
+        if (typeScope != null && name.equals("new")) {
+            // Person::new
+            java.lang.reflect.Constructor<?> ctor = (java.lang.reflect.Constructor<?>) mostSpecific(
+                    applicable(List.of(typeScope.getConstructors()), arity, argClasses, mre), mre);
+            if (ctor == null) {
+                throw new UnsupportedOperationException("Cannot resolve constructor reference: " + mre);
             }
-            code.invokestatic(CD_MVEL, "putMap",
-                    MethodTypeDesc.of(CD_Object, CD_Map, CD_String, CD_Object));
-        } else if ("setList".equals(methodName)) {
-            // MVEL.setList(List context, int index, Object value) → Object
-            // Arg 0: List (reference)
-            emitExpression(code, mce.getArgument(0), slots, params);
-            // Arg 1: int index (no boxing — stays as int)
-            emitExpression(code, mce.getArgument(1), slots, params);
-            // Arg 2: Object value (box if primitive)
-            emitExpression(code, mce.getArgument(2), slots, params);
-            TypeKind valKind = inferTypeKind(mce.getArgument(2), slots, params);
-            if (valKind != TypeKind.REFERENCE) {
-                ClassfileTypeUtils.emitBoxing(code, valKind);
+            implParams = ctor.getParameterTypes();
+            implReturn = typeScope;
+            impl = MethodHandleDesc.ofConstructor(classDescForJavaClass(typeScope), classDescsFor(implParams));
+        } else if (typeScope != null) {
+            // Integer::parseInt, or Person::getName with the receiver as the first argument (JLS 15.13.1)
+            List<Method> named = methodsNamed(typeScope, name);
+            List<Executable> firstSearch = applicable(named, arity, argClasses, mre);
+            List<Executable> secondSearch = List.of();
+            if (arity > 0 && (argClasses[0] == null || typeScope.isAssignableFrom(argClasses[0]))) {
+                secondSearch = applicable(named, arity - 1, Arrays.copyOfRange(argClasses, 1, arity), mre);
             }
-            code.invokestatic(CD_MVEL, "setList",
-                    MethodTypeDesc.of(CD_Object, CD_List, CD_int, CD_Object));
+            Method first = (Method) mostSpecific(firstSearch, mre);
+            Method second = (Method) mostSpecific(secondSearch, mre);
+            Method method;
+            if (first != null && isStatic(first)
+                    && secondSearch.stream().allMatch(ClassfileEvaluatorEmitter::isStatic)) {
+                method = first;
+                implParams = method.getParameterTypes();
+                impl = MethodHandleDesc.ofMethod(
+                        typeScope.isInterface() ? DirectMethodHandleDesc.Kind.INTERFACE_STATIC
+                                                : DirectMethodHandleDesc.Kind.STATIC,
+                        classDescForJavaClass(typeScope), name, methodTypeDescFor(method));
+            } else {
+                if (second == null || isStatic(second)
+                        || firstSearch.stream().anyMatch(ClassfileEvaluatorEmitter::isStatic)) {
+                    throw new UnsupportedOperationException("Cannot resolve method reference: " + mre);
+                }
+                method = second;
+                implParams = new Class<?>[arity];
+                implParams[0] = typeScope;
+                System.arraycopy(method.getParameterTypes(), 0, implParams, 1, arity - 1);
+                impl = virtualMethodHandle(typeScope, method);
+            }
+            implReturn = method.getReturnType();
         } else {
-            throw new UnsupportedOperationException(
-                    "Unsupported MVEL static method: " + methodName);
+            // person::getName: the receiver is evaluated, and null-checked, where the reference is
+            Class<?> receiver = resolveExpressionType(mre.getScope(), slots, params);
+            Method method = receiver != null
+                    ? (Method) mostSpecific(applicable(methodsNamed(receiver, name), arity, argClasses, mre), mre)
+                    : null;
+            if (method == null || isStatic(method)) {
+                throw new UnsupportedOperationException("Cannot resolve method reference: " + mre);
+            }
+            emitExpression(code, mre.getScope(), slots, params);
+            code.dup();
+            code.invokestatic(CD_Objects, "requireNonNull", MethodTypeDesc.of(CD_Object, CD_Object));
+            code.pop();
+            capturedDescs = new ClassDesc[] {classDescForJavaClass(receiver)};
+            implParams = method.getParameterTypes();
+            implReturn = method.getReturnType();
+            impl = virtualMethodHandle(receiver, method);
         }
+
+        if (implReturn == void.class && sam.getReturnType() != void.class) {
+            throw new UnsupportedOperationException("Method reference to a void method: " + mre);
+        }
+        emitLambdaMetafactory(code, target, sam, capturedDescs, impl,
+                instantiatedMethodType(sam, implParams, implReturn));
     }
 
-    // ── BigDecimal / BigInteger static method emission ─────────────────────
+    private static void emitLambdaMetafactory(
+            CodeBuilder code,
+            Class<?> target,
+            Method sam,
+            ClassDesc[] capturedDescs,
+            DirectMethodHandleDesc impl,
+            MethodTypeDesc instantiatedType) {
+
+        code.invokedynamic(DynamicCallSiteDesc.of(
+                BSM_LAMBDA_METAFACTORY,
+                sam.getName(),
+                MethodTypeDesc.of(classDescForJavaClass(target), capturedDescs),
+                methodTypeDescFor(sam),
+                impl,
+                instantiatedType));
+    }
 
     /**
-     * Emit a static method call on BigDecimal or BigInteger (e.g., BigDecimal.valueOf(10)).
+     * The functional method's type as the implementation specializes it: a reference type narrows to the
+     * implementation's, boxed, while a primitive stays as the interface declares it.
      */
-    private static <C, W, O> void emitBigDecimalStaticCall(
-            CodeBuilder code,
-            MethodCallExpr mce,
-            LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
+    private static MethodTypeDesc instantiatedMethodType(Method sam, Class<?>[] implParams, Class<?> implReturn) {
+        Class<?>[] samParams = sam.getParameterTypes();
+        ClassDesc[] paramDescs = new ClassDesc[samParams.length];
+        for (int i = 0; i < samParams.length; i++) {
+            paramDescs[i] = classDescForJavaClass(specializedType(samParams[i], implParams[i]));
+        }
+        return MethodTypeDesc.of(classDescForJavaClass(specializedType(sam.getReturnType(), implReturn)),
+                paramDescs);
+    }
 
-        Expression scope = mce.getScope().get();
-        String className = scope instanceof NameExpr ne ? ne.getNameAsString() : scope.toString();
-        boolean isBigInteger = className.contains("BigInteger");
-        ClassDesc targetClass = isBigInteger
-                ? ClassDesc.of("java.math.BigInteger")
-                : CD_BigDecimal;
+    private static Class<?> specializedType(Class<?> declared, Class<?> impl) {
+        if (declared.isPrimitive()) {
+            return declared;
+        }
+        Class<?> boxed = MethodType.methodType(impl).wrap().returnType();
+        return declared.isAssignableFrom(boxed) ? boxed : declared;
+    }
 
-        String methodName = mce.getNameAsString();
+    private static DirectMethodHandleDesc virtualMethodHandle(Class<?> owner, Method method) {
+        return MethodHandleDesc.ofMethod(
+                owner.isInterface() ? DirectMethodHandleDesc.Kind.INTERFACE_VIRTUAL
+                                    : DirectMethodHandleDesc.Kind.VIRTUAL,
+                classDescForJavaClass(owner), method.getName(), methodTypeDescFor(method));
+    }
 
-        if ("valueOf".equals(methodName) && mce.getArguments().size() == 1) {
-            Expression arg = mce.getArgument(0);
-            emitExpression(code, arg, slots, params);
-            TypeKind argKind = inferTypeKind(arg, slots, params);
-            // BigDecimal.valueOf(long) and BigInteger.valueOf(long) both take long
-            if (argKind == TypeKind.INT || argKind == TypeKind.BOOLEAN || argKind == TypeKind.BYTE
-                    || argKind == TypeKind.SHORT || argKind == TypeKind.CHAR) {
-                code.i2l();
-            }
-            code.invokestatic(targetClass, "valueOf", MethodTypeDesc.of(targetClass, CD_long));
-            return;
+    private static MethodTypeDesc methodTypeDescFor(Method method) {
+        return MethodTypeDesc.of(classDescForJavaClass(method.getReturnType()),
+                classDescsFor(method.getParameterTypes()));
+    }
+
+    private static ClassDesc[] classDescsFor(Class<?>[] classes) {
+        ClassDesc[] descs = new ClassDesc[classes.length];
+        for (int i = 0; i < classes.length; i++) {
+            descs[i] = classDescForJavaClass(classes[i]);
         }
+        return descs;
+    }
 
-        // Generic fallback for other static methods: use reflection
-        emitReflectedStaticCall(code, targetClass, className, mce, slots, params);
+    /**
+     * Resolve the functional interface of a lambda or method reference that is not a call argument, such as
+     * the initializer of a local, from the symbol solver.
+     */
+    private static <C, W, O> Class<?> resolveFunctionalInterface(Expression expr, CompilerParameters<C, W, O> params) {
+        try {
+            ResolvedType type = expr.calculateResolvedType();
+            if (type.isReferenceType()) {
+                Class<?> target = resolveTypeClass(
+                        StaticJavaParser.parseClassOrInterfaceType(type.asReferenceType().getQualifiedName()), params);
+                if (target != null && target.isInterface()) {
+                    return target;
+                }
+            }
+        } catch (RuntimeException e) {
+            // the symbol solver cannot type it
+        }
+        throw new UnsupportedOperationException("Cannot resolve the functional interface of " + expr);
     }
 
     /**
-     * Emit a static method call on a known JDK class using reflection to resolve the descriptor.
+     * Find the single abstract method of a functional interface. The public methods of Object, which an
+     * interface such as {@link Comparator} redeclares, do not count.
      */
-    private static <C, W, O> void emitKnownClassStaticCall(
-            CodeBuilder code,
-            MethodCallExpr mce,
-            LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
+    private static Method findFunctionalMethod(Class<?> target) {
+        Method sam = null;
+        for (Method m : target.getMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers()) || isObjectMethod(m)) {
+                continue;
+            }
+            if (sam != null) {
+                return null;
+            }
+            sam = m;
+        }
+        return sam;
+    }
 
-        String className = ((NameExpr) mce.getScope().get()).getNameAsString();
-        ClassDesc targetClass = ClassfileTypeUtils.classDescFromName(className);
-        emitReflectedStaticCall(code, targetClass, className, mce, slots, params);
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException _) {
+            return false;
+        }
     }
 
     /**
-     * Generic reflection-based static method call emitter.
+     * The class of a lambda parameter: its declared type, or else the type argument that the symbol solver
+     * infers for the functional method's parameter, as {@code Person} for {@code p} in
+     * {@code people.stream().filter(p -> ...)}. Without either, it is the erasure of that parameter.
      */
-    private static <C, W, O> void emitReflectedStaticCall(
-            CodeBuilder code,
-            ClassDesc targetClassDesc,
-            String className,
-            MethodCallExpr mce,
-            LocalSlotTable slots,
-            CompilerParameters<C, W, O> params) {
+    private static <C, W, O> Class<?> resolveLambdaParameterClass(
+            LambdaExpr le, int index, Class<?> target, Method sam, CompilerParameters<C, W, O> params) {
+
+        Type declared = le.getParameter(index).getType();
+        if (!declared.isUnknownType() && !declared.isVarType()) {
+            Class<?> clazz = declared.isPrimitiveType()
+                    ? primitiveClass(declared.asPrimitiveType())
+                    : resolveTypeClass(declared, params);
+            if (clazz == null) {
+                throw new UnsupportedOperationException("Cannot resolve lambda parameter: " + le.getParameter(index));
+            }
+            return clazz;
+        }
 
-        String methodName = mce.getNameAsString();
-        int argCount = mce.getArguments().size();
+        Class<?> inferred = inferParameterClass(le, index, target, sam, params);
+        return inferred != null ? inferred : sam.getParameterTypes()[index];
+    }
 
-        // Resolve the class and find the static method
-        Class<?> clazz = resolveClassName(className);
-        if (clazz == null) {
-            throw new UnsupportedOperationException(
-                    "Cannot resolve class for static call: " + className + "." + methodName);
+    /**
+     * The type argument that the symbol solver infers for a functional method's parameter declared as a type
+     * variable of the interface, or null when it is not one or cannot be inferred.
+     */
+    private static <C, W, O> Class<?> inferParameterClass(
+            Expression expr, int index, Class<?> target, Method sam, CompilerParameters<C, W, O> params) {
+
+        if (!(sam.getGenericParameterTypes()[index] instanceof TypeVariable<?> variable)
+                || variable.getGenericDeclaration() != target) {
+            return null;
+        }
+        Class<?> erased = sam.getParameterTypes()[index];
+        try {
+            ResolvedType functionalType = expr.calculateResolvedType();
+            if (functionalType.isReferenceType()) {
+                for (Pair<ResolvedTypeParameterDeclaration, ResolvedType> typeArgument
+                        : functionalType.asReferenceType().getTypeParametersMap()) {
+                    if (!typeArgument.a.getName().equals(variable.getName())) {
+                        continue;
+                    }
+                    ResolvedType argument = typeArgument.b;
+                    if (argument.isWildcard() && argument.asWildcard().isBounded()) {
+                        argument = argument.asWildcard().getBoundedType();
+                    }
+                    if (argument.isReferenceType()) {
+                        Class<?> clazz = resolveTypeClass(StaticJavaParser.parseClassOrInterfaceType(
+                                argument.asReferenceType().getQualifiedName()), params);
+                        if (clazz != null && erased.isAssignableFrom(clazz)) {
+                            return clazz;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // the symbol solver cannot infer it
         }
+        return null;
+    }
 
-        Method method = findStaticMethodByNameAndArgCount(clazz, methodName, argCount);
-        if (method == null) {
-            throw new UnsupportedOperationException(
-                    "Cannot find static method: " + className + "." + methodName + " with " + argCount + " arg(s)");
+    /**
+     * The classes of the functional method's parameters as the target type instantiates them, as
+     * {@code Integer} for the {@code T} of {@code Function<Integer, String>}. An element is null when the
+     * parameter is a type variable whose argument cannot be inferred, since its erasure could pick the wrong
+     * overload.
+     */
+    private static <C, W, O> Class<?>[] instantiatedParameterClasses(
+            Expression expr, Class<?> target, Method sam, CompilerParameters<C, W, O> params) {
+
+        java.lang.reflect.Type[] generic = sam.getGenericParameterTypes();
+        Class<?>[] classes = sam.getParameterTypes().clone();
+        for (int i = 0; i < classes.length; i++) {
+            if (generic[i] instanceof TypeVariable<?> || generic[i] instanceof GenericArrayType) {
+                classes[i] = inferParameterClass(expr, i, target, sam, params);
+            }
         }
+        return classes;
+    }
 
-        // Emit arguments with type conversion
-        Class<?>[] paramTypes = method.getParameterTypes();
-        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
-        for (int i = 0; i < paramTypes.length; i++) {
-            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
-            Expression arg = mce.getArgument(i);
-            emitExpression(code, arg, slots, params);
-            TypeKind argKind = inferTypeKind(arg, slots, params);
-            // Widen primitive if needed (e.g., int → long, int → double)
-            if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
-                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
-                emitTypeWidening(code, argKind, targetKind);
-            } else if (!paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
-                // Method takes Object, we have a primitive → box it
-                ClassfileTypeUtils.emitBoxing(code, argKind);
+    /**
+     * The class a method reference names, as in {@code Person::getAge}, or null when its scope is a value,
+     * as in {@code person::getName}. A simple name is a value when a local has it.
+     */
+    private static <C, W, O> Class<?> resolveMethodReferenceClass(
+            Expression scope, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
+        return switch (scope) {
+            case TypeExpr te -> {
+                Class<?> clazz = resolveTypeClass(te.getType(), params);
+                if (clazz == null) {
+                    throw new UnsupportedOperationException("Cannot resolve method reference type: " + te);
+                }
+                yield clazz;
+            }
+            case NameExpr ne when !slots.contains(ne.getNameAsString()) ->
+                    resolveTypeClass(StaticJavaParser.parseClassOrInterfaceType(ne.getNameAsString()), params);
+            case FieldAccessExpr fae ->
+                    resolveTypeClass(StaticJavaParser.parseClassOrInterfaceType(fae.toString()), params);
+            default -> null;
+        };
+    }
+
+    /**
+     * The locals of the enclosing method that a lambda body reads, in order of first use. Java requires them
+     * to be effectively final, so they are passed by value.
+     */
+    private static List<String> findCapturedVariables(LambdaExpr le, LocalSlotTable slots) {
+        Set<String> declared = new HashSet<>();
+        le.getParameters().forEach(p -> declared.add(p.getNameAsString()));
+        le.getBody().findAll(Parameter.class).forEach(p -> declared.add(p.getNameAsString()));
+        le.getBody().findAll(VariableDeclarator.class).forEach(v -> declared.add(v.getNameAsString()));
+        le.getBody().findAll(PatternExpr.class).forEach(p -> declared.add(p.getNameAsString()));
+
+        Set<String> captured = new LinkedHashSet<>();
+        for (NameExpr ne : le.getBody().findAll(NameExpr.class)) {
+            String name = ne.getNameAsString();
+            if (slots.contains(name) && !declared.contains(name)) {
+                captured.add(name);
             }
         }
+        return List.copyOf(captured);
+    }
 
-        ClassDesc returnDesc = classDescForJavaClass(method.getReturnType());
-        code.invokestatic(targetClassDesc, methodName,
-                MethodTypeDesc.of(returnDesc, paramDescs));
+    /**
+     * The class of a captured local, as the synthetic method declares its parameter. It must be exact: the
+     * body calls methods on it.
+     */
+    private static <C, W, O> ClassDesc capturedClassDesc(
+            String name, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
+        if (name.equals(params.contextDeclaration().name())) {
+            return classDescForType(params.contextDeclaration().type());
+        }
+        Type type = slots.type(name);
+        if (type.isPrimitiveType()) {
+            return ClassfileTypeUtils.toClassDesc(type);
+        }
+        Class<?> clazz = resolveTypeClass(type, params);
+        if (clazz == null) {
+            throw new UnsupportedOperationException("Cannot resolve the type of captured variable: " + name);
+        }
+        return classDescForJavaClass(clazz);
     }
 
     /**
-     * Emit a chained method call where the scope is a complex expression
-     * (e.g., _this.getSalary().add(...) where scope is the MethodCallExpr _this.getSalary()).
+     * The type a lambda parameter is declared with in the lambda body's slot table.
      */
-    private static <C, W, O> void emitChainedMethodCall(
+    private static Type typeForClass(Class<?> clazz) {
+        if (clazz.getCanonicalName() == null) {
+            throw new UnsupportedOperationException("Cannot name lambda parameter type: " + clazz.getName());
+        }
+        return StaticJavaParser.parseType(clazz.getCanonicalName());
+    }
+
+    private static Class<?> primitiveClass(PrimitiveType type) {
+        return switch (type.getType()) {
+            case BOOLEAN -> boolean.class;
+            case CHAR -> char.class;
+            case BYTE -> byte.class;
+            case SHORT -> short.class;
+            case INT -> int.class;
+            case LONG -> long.class;
+            case FLOAT -> float.class;
+            case DOUBLE -> double.class;
+        };
+    }
+
+    // ── AssignExpr as expression (e.g., in return stmts) ──────────────────
+
+    /**
+     * Emit an AssignExpr used as an expression (not a statement).
+     * E.g., {@code return x += 1;} — performs the assignment and leaves the result on the stack.
+     */
+    private static <C, W, O> void emitAssignExprAsExpression(
             CodeBuilder code,
-            MethodCallExpr mce,
-            Expression scope,
-            Class<?> scopeReturnClass,
+            AssignExpr ae,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String methodName = mce.getNameAsString();
-        int argCount = mce.getArguments().size();
-
-        Method method = findMethodByNameAndArgCount(scopeReturnClass, methodName, argCount);
-        if (method == null) {
-            throw new UnsupportedOperationException(
-                    "Cannot resolve chained method: " + scopeReturnClass.getName() + "." + methodName
-                    + " with " + argCount + " arg(s)");
+        if (ae.getTarget() instanceof ArrayAccessExpr target) {
+            emitArrayElementAssign(code, ae, target, slots, params, true);
+            return;
+        }
+        // Perform the assignment (same as emitAssignExpr)
+        emitAssignExpr(code, ae, slots, params);
+        // Load the result back onto the stack
+        if (ae.getTarget() instanceof NameExpr ne) {
+            slots.loadVar(code, ne.getNameAsString());
         }
+    }
 
-        // Emit the scope expression — puts the receiver object on the stack
-        emitExpression(code, scope, slots, params);
+    // ── Field access emission ─────────────────────────────────────────────
 
-        ClassDesc ownerDesc = classDescForJavaClass(scopeReturnClass);
+    private static <C, W, O> void emitFieldAccessExpr(
+            CodeBuilder code,
+            FieldAccessExpr fae,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
 
-        // Emit arguments with type conversion
-        Class<?>[] paramTypes = method.getParameterTypes();
-        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
-        for (int i = 0; i < paramTypes.length; i++) {
-            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
-            Expression arg = mce.getArgument(i);
-            emitExpression(code, arg, slots, params);
-            TypeKind argKind = inferTypeKind(arg, slots, params);
-            if (paramTypes[i] == Object.class && argKind != TypeKind.REFERENCE) {
-                ClassfileTypeUtils.emitBoxing(code, argKind);
-            } else if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
-                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
-                emitTypeWidening(code, argKind, targetKind);
-            }
-        }
+        String full = fae.toString();
 
-        ClassDesc returnDesc = classDescForJavaClass(method.getReturnType());
+        // Static field constants
+        if ("java.math.MathContext.DECIMAL128".equals(full)) {
+            code.getstatic(CD_MathContext, "DECIMAL128", CD_MathContext);
+            return;
+        }
 
-        // Use invokeinterface for interface types, invokevirtual for classes
-        if (scopeReturnClass.isInterface()) {
-            code.invokeinterface(ownerDesc, methodName,
-                    MethodTypeDesc.of(returnDesc, paramDescs));
-        } else {
-            code.invokevirtual(ownerDesc, methodName,
-                    MethodTypeDesc.of(returnDesc, paramDescs));
+        // array.length
+        if ("length".equals(fae.getNameAsString())) {
+            resolveArrayExpressionClass(fae.getScope(), slots, params);
+            emitExpression(code, fae.getScope(), slots, params);
+            code.arraylength();
+            return;
         }
+
+        // FieldAccessExpr is also used as a class-name scope for static method calls
+        // (e.g. java.lang.Math, org.mvel3.MVEL). Those are handled by the parent
+        // MethodCallExpr. If we reach here, it's a standalone field access.
+        throw new UnsupportedOperationException(
+                "Field access not yet supported: " + fae);
     }
 
-    // ── Object creation emission ──────────────────────────────────────────
+    // ── Array emission ───────────────────────────────────────────────────
 
-    private static <C, W, O> void emitObjectCreationExpr(
+    /**
+     * Emit {@code array[index]} with the load instruction for the component type, as {@code iaload} for an
+     * {@code int[]}, so that primitive elements are never boxed.
+     */
+    private static <C, W, O> void emitArrayAccessExpr(
             CodeBuilder code,
-            ObjectCreationExpr oce,
+            ArrayAccessExpr aae,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String typeName = oce.getType().getNameWithScope();
-        Class<?> clazz = resolveClassName(typeName);
-        if (clazz == null) {
-            throw new UnsupportedOperationException("Cannot resolve class: " + typeName);
-        }
-
-        ClassDesc classDesc = classDescForJavaClass(clazz);
-        code.new_(classDesc);
-        code.dup();
-
-        // Find matching constructor by argument count
-        int argCount = oce.getArguments().size();
-        java.lang.reflect.Constructor<?> ctor = findConstructorByArgCount(clazz, argCount);
-        if (ctor == null) {
-            throw new UnsupportedOperationException(
-                    "Cannot find constructor for " + typeName + " with " + argCount + " arg(s)");
-        }
+        Class<?> arrayClass = resolveArrayExpressionClass(aae.getName(), slots, params);
+        emitExpression(code, aae.getName(), slots, params);
+        emitArrayIndex(code, aae.getIndex(), slots, params);
+        code.arrayLoad(TypeKind.from(arrayClass.getComponentType()));
+    }
 
-        Class<?>[] paramTypes = ctor.getParameterTypes();
-        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
-        for (int i = 0; i < paramTypes.length; i++) {
-            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
-            Expression arg = oce.getArgument(i);
-            emitExpression(code, arg, slots, params);
-            TypeKind argKind = inferTypeKind(arg, slots, params);
-            if (!paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
-                ClassfileTypeUtils.emitBoxing(code, argKind);
-            } else if (paramTypes[i].isPrimitive() && argKind != TypeKind.REFERENCE) {
-                TypeKind targetKind = typeKindForJavaClass(paramTypes[i]);
-                emitTypeWidening(code, argKind, targetKind);
+    /**
+     * Emit {@code array[index] = value}, or a compound {@code array[index] op= value}, with the store
+     * instruction for the component type. A compound assignment reloads the element through {@code dup2}
+     * and narrows the result back to the component type, as javac does.
+     *
+     * @param leaveValue whether to leave the assigned value on the stack, for an assignment used as an expression
+     */
+    private static <C, W, O> void emitArrayElementAssign(
+            CodeBuilder code,
+            AssignExpr ae,
+            ArrayAccessExpr target,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params,
+            boolean leaveValue) {
+
+        Class<?> component = resolveArrayExpressionClass(target.getName(), slots, params).getComponentType();
+        TypeKind elementKind = TypeKind.from(component);
+        Expression value = ae.getValue();
+        TypeKind valueKind = inferTypeKind(value, slots, params);
+
+        emitExpression(code, target.getName(), slots, params);
+        emitArrayIndex(code, target.getIndex(), slots, params);
+
+        if (ae.getOperator() == AssignExpr.Operator.ASSIGN) {
+            emitArgument(code, value, component, slots, params);
+            emitValueConversion(code, valueKind, component);
+        } else {
+            if (!component.isPrimitive() || valueKind == TypeKind.REFERENCE) {
+                throw new UnsupportedOperationException("Compound assignment to a " + component.getName()
+                        + " element: " + ae);
+            }
+            // byte, char and short elements are operated on as int
+            TypeKind kind = widenTypeKind(elementKind, TypeKind.INT);
+            TypeKind opKind = isShift(ae.getOperator()) ? kind : widenTypeKind(kind, valueKind);
+            code.dup2();
+            code.arrayLoad(elementKind);
+            emitTypeWidening(code, elementKind, opKind);
+            emitExpression(code, value, slots, params);
+            if (isShift(ae.getOperator())) {
+                emitPrimitiveCast(code, valueKind, TypeKind.INT);
+            } else {
+                emitTypeWidening(code, valueKind, opKind);
+            }
+            emitCompoundOperator(code, ae.getOperator(), opKind);
+            // int[] a; a[0] += 1.5 stores (int) (a[0] + 1.5)
+            emitPrimitiveCast(code, opKind, kind);
+            switch (elementKind) {
+                case BYTE -> code.i2b();
+                case CHAR -> code.i2c();
+                case SHORT -> code.i2s();
+                default -> {}
             }
         }
 
-        code.invokespecial(classDesc, INIT_NAME,
-                MethodTypeDesc.of(CD_void, paramDescs));
+        if (leaveValue) {
+            if (elementKind == TypeKind.LONG || elementKind == TypeKind.DOUBLE) {
+                code.dup2_x2();
+            } else {
+                code.dup_x2();
+            }
+        }
+        code.arrayStore(elementKind);
     }
 
-    // ── AssignExpr as expression (e.g., in return stmts) ──────────────────
-
     /**
-     * Emit an AssignExpr used as an expression (not a statement).
-     * E.g., {@code return x += 1;} — performs the assignment and leaves the result on the stack.
+     * Emit an array index or dimension, which is an int.
      */
-    private static <C, W, O> void emitAssignExprAsExpression(
+    private static <C, W, O> void emitArrayIndex(
             CodeBuilder code,
-            AssignExpr ae,
+            Expression index,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        // Perform the assignment (same as emitAssignExpr)
-        emitAssignExpr(code, ae, slots, params);
-        // Load the result back onto the stack
-        if (ae.getTarget() instanceof NameExpr ne) {
-            slots.loadVar(code, ne.getNameAsString());
+        emitExpression(code, index, slots, params);
+        TypeKind kind = inferTypeKind(index, slots, params);
+        if (kind == TypeKind.REFERENCE) {
+            ClassfileTypeUtils.emitCheckcastAndUnbox(code, "java.lang.Integer");
+        } else if (kind == TypeKind.LONG) {
+            throw new UnsupportedOperationException("Array index is not an int: " + index);
         }
     }
 
-    // ── Field access emission ─────────────────────────────────────────────
+    /**
+     * Emit {@code new T[n]}, {@code new T[n][m]} or {@code new T[]{...}}: {@code newarray} for a primitive
+     * component, {@code anewarray} for a reference one and {@code multianewarray} for several dimensions.
+     */
+    private static <C, W, O> void emitArrayCreationExpr(
+            CodeBuilder code,
+            ArrayCreationExpr ace,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
 
-    private static <C, W, O> void emitFieldAccessExpr(
+        Class<?> arrayClass = requireArrayClass((ArrayType) ace.createdType(), params);
+        if (ace.getInitializer().isPresent()) {
+            emitArrayInitializer(code, ace.getInitializer().get(), arrayClass, slots, params);
+            return;
+        }
+
+        // new int[2][] creates only the outer array
+        List<Expression> dimensions = ace.getLevels().stream()
+                .flatMap(level -> level.getDimension().stream())
+                .toList();
+        for (Expression dimension : dimensions) {
+            emitArrayIndex(code, dimension, slots, params);
+        }
+        if (dimensions.size() == 1) {
+            emitNewArray(code, arrayClass.getComponentType());
+        } else {
+            code.multianewarray(classDescForJavaClass(arrayClass), dimensions.size());
+        }
+    }
+
+    /**
+     * Emit an array initializer, {@code {1, 2, 3}}, as a new array of the given class with each value stored
+     * in turn. A nested initializer creates a sub-array.
+     */
+    private static <C, W, O> void emitArrayInitializer(
             CodeBuilder code,
-            FieldAccessExpr fae,
+            ArrayInitializerExpr aie,
+            Class<?> arrayClass,
             LocalSlotTable slots,
             CompilerParameters<C, W, O> params) {
 
-        String full = fae.toString();
+        Class<?> component = arrayClass.getComponentType();
+        TypeKind elementKind = TypeKind.from(component);
+        emitIntConstant(code, aie.getValues().size());
+        emitNewArray(code, component);
+        for (int i = 0; i < aie.getValues().size(); i++) {
+            Expression value = aie.getValues().get(i);
+            code.dup();
+            emitIntConstant(code, i);
+            if (value instanceof ArrayInitializerExpr nested && component.isArray()) {
+                emitArrayInitializer(code, nested, component, slots, params);
+            } else {
+                emitArgument(code, value, component, slots, params);
+                emitValueConversion(code, inferTypeKind(value, slots, params), component);
+            }
+            code.arrayStore(elementKind);
+        }
+    }
 
-        // Static field constants
-        if ("java.math.MathContext.DECIMAL128".equals(full)) {
-            code.getstatic(CD_MathContext, "DECIMAL128", CD_MathContext);
-            return;
+    private static void emitNewArray(CodeBuilder code, Class<?> component) {
+        if (component.isPrimitive()) {
+            code.newarray(TypeKind.from(component));
+        } else {
+            code.anewarray(classDescForJavaClass(component));
         }
+    }
 
-        // FieldAccessExpr is also used as a class-name scope for static method calls
-        // (e.g. java.lang.Math, org.mvel3.MVEL). Those are handled by the parent
-        // MethodCallExpr. If we reach here, it's a standalone field access.
-        throw new UnsupportedOperationException(
-                "Field access not yet supported: " + fae);
+    /**
+     * The array class an expression evaluates to.
+     *
+     * @throws UnsupportedOperationException if the expression is not known to be an array
+     */
+    private static <C, W, O> Class<?> resolveArrayExpressionClass(
+            Expression expr, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
+        Class<?> arrayClass = resolveExpressionType(expr, slots, params);
+        if (arrayClass == null || !arrayClass.isArray()) {
+            throw new UnsupportedOperationException("Not an array: " + expr);
+        }
+        return arrayClass;
+    }
+
+    /**
+     * Resolve an array type as written, as {@code int[]} or {@code Foo[][]}, to its Class.
+     * Returns null if its element type cannot be loaded.
+     */
+    private static <C, W, O> Class<?> resolveArrayClass(ArrayType type, CompilerParameters<C, W, O> params) {
+        Type component = type.getComponentType();
+        Class<?> componentClass = switch (component) {
+            case PrimitiveType pt -> primitiveClass(pt);
+            case ArrayType at -> resolveArrayClass(at, params);
+            default -> resolveTypeClass(component, params);
+        };
+        return componentClass != null ? componentClass.arrayType() : null;
+    }
+
+    private static <C, W, O> Class<?> requireArrayClass(ArrayType type, CompilerParameters<C, W, O> params) {
+        Class<?> arrayClass = resolveArrayClass(type, params);
+        if (arrayClass == null) {
+            throw new UnsupportedOperationException("Cannot resolve array type: " + type);
+        }
+        return arrayClass;
     }
 
     // ── Reflection-based POJO method call ────────────────────────────────
@@ -1700,17 +3865,209 @@ public final class ClassfileEvaluatorEmitter {
      */
     private static <C, W, O> Class<?> resolveVariableClassWithLocals(
             String varName, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
-        Class<?> fromParams = resolveVariableClass(varName, params);
-        if (fromParams != null) return fromParams;
+        ReifiedType type = resolveVariableType(varName, slots, params);
+        return type != null ? type.raw() : null;
+    }
+
+    /**
+     * Resolve the type of a variable with its type arguments: a declaration's, reified once for the class,
+     * or else a local's as declared in the transpiled source.
+     */
+    private static <C, W, O> ReifiedType resolveVariableType(
+            String varName, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
+        ReifiedType declared = slots.declaredType(varName);
+        if (declared != null) return declared;
         if (slots.contains(varName)) {
-            Type slotType = slots.type(varName);
-            if (slotType.isClassOrInterfaceType()) {
-                return resolveClassName(slotType.asClassOrInterfaceType().getNameWithScope());
+            Type type = slots.type(varName);
+            if (type.isArrayType()) {
+                Class<?> arrayClass = resolveArrayClass(type.asArrayType(), params);
+                return arrayClass != null ? ReifiedType.of(arrayClass) : null;
+            }
+            return ReifiedType.of(type, t -> resolveTypeClass(t, params));
+        }
+        return null;
+    }
+
+    /**
+     * Reify the types of the context and the declared variables, generics included, once for the class.
+     */
+    private static <C, W, O> Map<String, ReifiedType> reifyDeclarations(CompilerParameters<C, W, O> params) {
+        Map<String, ReifiedType> types = new HashMap<>();
+        if (!params.contextDeclaration().type().isVoid()) {
+            types.put(params.contextDeclaration().name(),
+                    ReifiedType.of(params.contextDeclaration().type(), t -> resolveTypeClass(t, params)));
+        }
+        for (Declaration<?> decl : params.variableDeclarations()) {
+            types.putIfAbsent(decl.name(), ReifiedType.of(decl.type(), t -> resolveTypeClass(t, params)));
+        }
+        return types;
+    }
+
+    /**
+     * The scope-less calls in a method body, other than the {@code __context*} setter helpers: calls to
+     * functions from the static imports or the generated superclass.
+     */
+    private static List<MethodCallExpr> findFunctionCalls(BlockStmt body) {
+        return body.findAll(MethodCallExpr.class,
+                mce -> mce.getScope().isEmpty() && !mce.getNameAsString().startsWith("__context"));
+    }
+
+    /**
+     * Find a scope-less call that names no function the transpiler resolved from the static imports or the
+     * generated superclass. A lambda body is a static method, so a call in one must name a static function.
+     *
+     * @return null if every such call is resolved
+     */
+    private static MethodCallExpr findUnresolvedFunctionCall(BlockStmt body, TranspiledResult result) {
+        List<MethodCallExpr> calls = findFunctionCalls(body);
+        if (calls.isEmpty()) return null;
+        Map<String, Set<ResolvedMethodDeclaration>> resolved;
+        try {
+            resolved = result.getTranspilerContext().getResolvedStaticMethods();
+        } catch (RuntimeException e) {
+            return calls.get(0);
+        }
+        for (MethodCallExpr call : calls) {
+            Set<ResolvedMethodDeclaration> declarations = resolved.get(call.getNameAsString());
+            if (declarations == null || declarations.isEmpty()) return call;
+            if (call.findAncestor(LambdaExpr.class).isPresent()
+                    && !declarations.stream().allMatch(ResolvedMethodDeclaration::isStatic)) {
+                return call;
             }
         }
         return null;
     }
 
+    /**
+     * Load the functions the scope-less calls in the body name, once for the class, from the declarations
+     * the transpiler resolved them to.
+     */
+    private static <C, W, O> Map<String, List<Method>> resolveFunctions(
+            BlockStmt body, TranspiledResult result, CompilerParameters<C, W, O> params) {
+        if (findFunctionCalls(body).isEmpty()) return Map.of();
+        Map<String, Set<ResolvedMethodDeclaration>> resolved = result.getTranspilerContext().getResolvedStaticMethods();
+        Map<String, List<Method>> functions = new HashMap<>();
+        for (Map.Entry<String, Set<ResolvedMethodDeclaration>> entry : resolved.entrySet()) {
+            for (ResolvedMethodDeclaration declaration : entry.getValue()) {
+                Class<?> declaring = resolveTypeClass(StaticJavaParser.parseClassOrInterfaceType(
+                        declaration.declaringType().getQualifiedName()), params);
+                if (declaring == null) continue;
+                for (Method m : declaring.getMethods()) {
+                    if (m.getName().equals(entry.getKey())
+                            && m.getParameterCount() == declaration.getNumberOfParams()
+                            && Modifier.isStatic(m.getModifiers()) == declaration.isStatic()) {
+                        List<Method> overloads = functions.computeIfAbsent(entry.getKey(), _ -> new ArrayList<>());
+                        if (!overloads.contains(m)) overloads.add(m);
+                    }
+                }
+            }
+        }
+        return functions;
+    }
+
+    /**
+     * The class the evaluator extends: the generated superclass, whose methods scope-less calls may name,
+     * or Object.
+     */
+    private static <C, W, O> ClassDesc resolveSuperclass(CompilerParameters<C, W, O> params) {
+        if (params.generatedSuperName() == null) return CD_Object;
+        Class<?> superclass = resolveTypeClass(
+                StaticJavaParser.parseClassOrInterfaceType(params.generatedSuperName()), params);
+        if (superclass == null) {
+            throw new UnsupportedOperationException("Cannot resolve generated superclass: " + params.generatedSuperName());
+        }
+        return classDescForJavaClass(superclass);
+    }
+
+    /**
+     * Select the overload a scope-less call invokes: the one taking as many arguments whose parameters best
+     * agree with the arguments being primitive or not, as {@code isEven(int)} over {@code isEven(Integer)}
+     * for {@code isEven(1)}.
+     *
+     * @return null if no overload takes the arguments
+     */
+    private static <C, W, O> Method selectFunction(MethodCallExpr mce, LocalSlotTable slots,
+                                                   CompilerParameters<C, W, O> params) {
+        Method selected = null;
+        int selectedScore = -1;
+        for (Method candidate : slots.functions(mce.getNameAsString())) {
+            if (candidate.getParameterCount() != mce.getArguments().size()) continue;
+            Class<?>[] paramTypes = candidate.getParameterTypes();
+            int score = 0;
+            for (int i = 0; i < paramTypes.length; i++) {
+                boolean primitiveArg = inferTypeKind(mce.getArgument(i), slots, params) != TypeKind.REFERENCE;
+                if (paramTypes[i].isPrimitive() == primitiveArg) score++;
+            }
+            if (score > selectedScore) {
+                selected = candidate;
+                selectedScore = score;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Emit a scope-less call: {@code invokestatic} for a function from the static imports or a static
+     * method of the generated superclass, {@code invokevirtual} on {@code this} for an inherited instance
+     * method.
+     */
+    private static <C, W, O> void emitFunctionCall(
+            CodeBuilder code,
+            MethodCallExpr mce,
+            LocalSlotTable slots,
+            CompilerParameters<C, W, O> params) {
+
+        Method function = selectFunction(mce, slots, params);
+        if (function == null) {
+            throw new UnsupportedOperationException("Cannot resolve function: " + mce);
+        }
+        boolean isStatic = Modifier.isStatic(function.getModifiers());
+        if (!isStatic) {
+            // A lambda body is a static method, with no this to call on
+            if (mce.findAncestor(LambdaExpr.class).isPresent()) {
+                throw new UnsupportedOperationException("Instance function in a lambda body: " + mce);
+            }
+            code.aload(0);
+        }
+
+        Class<?>[] paramTypes = function.getParameterTypes();
+        ClassDesc[] paramDescs = new ClassDesc[paramTypes.length];
+        for (int i = 0; i < paramTypes.length; i++) {
+            paramDescs[i] = classDescForJavaClass(paramTypes[i]);
+            Expression arg = mce.getArgument(i);
+            emitArgument(code, arg, paramTypes[i], slots, params);
+            emitValueConversion(code, inferTypeKind(arg, slots, params), paramTypes[i]);
+        }
+
+        Class<?> declaring = function.getDeclaringClass();
+        ClassDesc ownerDesc = classDescForJavaClass(declaring);
+        MethodTypeDesc mtd = MethodTypeDesc.of(classDescForJavaClass(function.getReturnType()), paramDescs);
+        if (isStatic) {
+            code.invokestatic(ownerDesc, function.getName(), mtd, declaring.isInterface());
+        } else if (declaring.isInterface()) {
+            code.invokeinterface(ownerDesc, function.getName(), mtd);
+        } else {
+            code.invokevirtual(ownerDesc, function.getName(), mtd);
+        }
+    }
+
+    /**
+     * Convert an emitted value to the parameter or array component type it is passed or stored as: unbox a
+     * reference into a primitive, widen a primitive, or box a primitive into a reference.
+     */
+    private static void emitValueConversion(CodeBuilder code, TypeKind argKind, Class<?> paramType) {
+        if (!paramType.isPrimitive()) {
+            if (argKind != TypeKind.REFERENCE) {
+                ClassfileTypeUtils.emitBoxing(code, argKind);
+            }
+        } else if (argKind == TypeKind.REFERENCE) {
+            ClassfileTypeUtils.emitCheckcastAndUnbox(code,
+                    MethodType.methodType(paramType).wrap().returnType().getName());
+        } else {
+            emitTypeWidening(code, argKind, typeKindForJavaClass(paramType));
+        }
+    }
+
     /**
      * Check if an expression is a method call that returns void.
      * Used to avoid popping when there's nothing on the stack.
@@ -1718,12 +4075,16 @@ public final class ClassfileEvaluatorEmitter {
     private static <C, W, O> boolean isVoidMethodCall(Expression expr, LocalSlotTable slots,
                                                         CompilerParameters<C, W, O> params) {
         if (!(expr instanceof MethodCallExpr mce)) return false;
-        if (mce.getScope().isEmpty()) return false;
-        Expression scope = mce.getScope().get();
-        Class<?> scopeClass = null;
-        if (scope instanceof NameExpr scopeName) {
-            scopeClass = resolveVariableClassWithLocals(scopeName.getNameAsString(), slots, params);
+        if (mce.getScope().isEmpty()) {
+            if (mce.getNameAsString().startsWith("__context")) return false;
+            Method function = selectFunction(mce, slots, params);
+            return function != null && function.getReturnType() == void.class;
         }
+        Expression scope = mce.getScope().get();
+        Class<?> scopeClass = scope instanceof NameExpr scopeName
+                ? resolveVariableClassWithLocals(scopeName.getNameAsString(), slots, params)
+                // Chained calls, as $p.getAddresses().clear() in a modify block
+                : resolveExpressionType(scope, slots, params);
         if (scopeClass == null) return false;
         Method m = findMethodByNameAndArgCount(scopeClass, mce.getNameAsString(), mce.getArguments().size());
         return m != null && m.getReturnType() == void.class;
@@ -1765,7 +4126,7 @@ public final class ClassfileEvaluatorEmitter {
 
             // Emit argument
             Expression arg = mce.getArgument(i);
-            emitExpression(code, arg, slots, params);
+            emitArgument(code, arg, paramTypes[i], slots, params);
 
             // Convert the emitted value to match the parameter type
             TypeKind argKind = inferTypeKind(arg, slots, params);
@@ -1788,6 +4149,10 @@ public final class ClassfileEvaluatorEmitter {
         } else {
             code.invokevirtual(scopeDesc, methodName, mtd);
         }
+        ReifiedType scopeType = resolveVariableType(scopeName.getNameAsString(), slots, params);
+        if (scopeType != null) {
+            emitGenericReturnCast(code, method, scopeType);
+        }
     }
 
     /**
@@ -1855,6 +4220,126 @@ public final class ClassfileEvaluatorEmitter {
         return null;
     }
 
+    private static List<Method> methodsNamed(Class<?> clazz, String methodName) {
+        List<Method> methods = new ArrayList<>();
+        for (Method m : clazz.getMethods()) {
+            if (m.getName().equals(methodName)) {
+                methods.add(m);
+            }
+        }
+        return methods;
+    }
+
+    private static boolean isStatic(Executable executable) {
+        return Modifier.isStatic(executable.getModifiers());
+    }
+
+    /**
+     * The candidates of a method reference that are applicable to the functional method's parameter classes,
+     * by strict invocation if any is, else by loose invocation, as javac does (JLS 15.12.2.2-3). A null class
+     * is a type argument that could not be inferred: the only candidate of that arity is then taken as is,
+     * and several are left for javac to choose from. Variable arity invocation is also left to javac.
+     */
+    private static List<Executable> applicable(List<? extends Executable> candidates, int arity,
+                                               Class<?>[] argClasses, MethodReferenceExpr mre) {
+        List<Executable> sameArity = new ArrayList<>();
+        for (Executable candidate : candidates) {
+            if (candidate.getParameterCount() == arity) {
+                sameArity.add(candidate);
+            }
+        }
+        if (Arrays.asList(argClasses).contains(null)) {
+            if (sameArity.size() > 1) {
+                throw new UnsupportedOperationException("Cannot infer the parameter types to choose an overload: " + mre);
+            }
+            return sameArity;
+        }
+        for (boolean loose : new boolean[] {false, true}) {
+            List<Executable> applicable = new ArrayList<>();
+            for (Executable candidate : sameArity) {
+                if (isApplicable(candidate.getParameterTypes(), argClasses, loose)) {
+                    applicable.add(candidate);
+                }
+            }
+            if (!applicable.isEmpty()) {
+                return applicable;
+            }
+        }
+        return List.of();
+    }
+
+    private static boolean isApplicable(Class<?>[] paramClasses, Class<?>[] argClasses, boolean loose) {
+        for (int i = 0; i < paramClasses.length; i++) {
+            Class<?> param = paramClasses[i];
+            Class<?> arg = argClasses[i];
+            if (isSubtype(arg, param)) {
+                continue;
+            }
+            if (!loose || arg.isPrimitive() == param.isPrimitive()) {
+                return false;
+            }
+            // Boxing then widening reference, or unboxing then widening primitive
+            Class<?> converted = arg.isPrimitive()
+                    ? MethodType.methodType(arg).wrap().returnType()
+                    : MethodType.methodType(arg).unwrap().returnType();
+            if (converted == arg || !isSubtype(converted, param)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Subtyping among types, with the primitive widening order of JLS 4.10.1 for primitives.
+     */
+    private static boolean isSubtype(Class<?> sub, Class<?> sup) {
+        if (sub == sup) {
+            return true;
+        }
+        if (sub.isPrimitive() != sup.isPrimitive()) {
+            return false;
+        }
+        if (!sub.isPrimitive()) {
+            return sup.isAssignableFrom(sub);
+        }
+        if (sub == boolean.class || sup == boolean.class || sup == char.class || sub == void.class) {
+            return false;
+        }
+        List<Class<?>> widening = List.of(byte.class, short.class, int.class, long.class, float.class, double.class);
+        int from = sub == char.class ? widening.indexOf(int.class) : widening.indexOf(sub);
+        return from <= widening.indexOf(sup);
+    }
+
+    /**
+     * The most specific of the applicable candidates (JLS 15.12.2.5), or null when there are none. Methods
+     * with the same parameters, such as a bridge and the method it bridges, are the one with the most specific
+     * return type. Ambiguity is left to javac.
+     */
+    private static Executable mostSpecific(List<Executable> applicable, MethodReferenceExpr mre) {
+        List<Executable> maximal = new ArrayList<>();
+        for (Executable candidate : applicable) {
+            if (applicable.stream().allMatch(other -> other == candidate
+                    || isApplicable(other.getParameterTypes(), candidate.getParameterTypes(), false)
+                    || !isApplicable(candidate.getParameterTypes(), other.getParameterTypes(), false))) {
+                maximal.add(candidate);
+            }
+        }
+        if (maximal.size() <= 1) {
+            return maximal.isEmpty() ? null : maximal.getFirst();
+        }
+        Executable chosen = maximal.getFirst();
+        for (Executable candidate : maximal) {
+            if (!Arrays.equals(candidate.getParameterTypes(), chosen.getParameterTypes())) {
+                throw new UnsupportedOperationException("Ambiguous method reference: " + mre);
+            }
+            if (candidate instanceof Method m && chosen instanceof Method c
+                    && c.getReturnType().isAssignableFrom(m.getReturnType()) && !m.isBridge()) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
     /**
      * Find a public constructor by argument count.
      */
@@ -1873,62 +4358,127 @@ public final class ClassfileEvaluatorEmitter {
     private static Class<?> resolveClassName(String name) {
         // Try as-is (fully qualified)
         try { return Class.forName(name); } catch (ClassNotFoundException _) {}
+        // Try as a canonical name of a nested class (Outer.Inner)
+        if (name.contains(".")) {
+            try { return Class.forName(ClassfileTypeUtils.toBinaryName(name)); } catch (ClassNotFoundException _) {}
+        }
         // Try java.lang package
         try { return Class.forName("java.lang." + name); } catch (ClassNotFoundException _) {}
         // Try java.math package (BigDecimal, BigInteger, MathContext)
         try { return Class.forName("java.math." + name); } catch (ClassNotFoundException _) {}
         // Try java.util package (List, Map, etc.)
         try { return Class.forName("java.util." + name); } catch (ClassNotFoundException _) {}
+        // Try java.util.stream package (Collectors)
+        try { return Class.forName("java.util.stream." + name); } catch (ClassNotFoundException _) {}
         return null;
     }
 
+    /**
+     * Resolve a type as written in the expression, which may be a simple name brought in by the
+     * compiler parameter imports, to a Class. Returns null if it cannot be loaded.
+     */
+    private static <C, W, O> Class<?> resolveTypeClass(Type type, CompilerParameters<C, W, O> params) {
+        if (!type.isClassOrInterfaceType()) {
+            return null;
+        }
+        String name = type.asClassOrInterfaceType().getNameWithScope();
+        ClassLoader classLoader = params.classLoader() != null
+                ? params.classLoader()
+                : ClassfileEvaluatorEmitter.class.getClassLoader();
+        if (!name.contains(".")) {
+            for (String imported : params.imports()) {
+                String candidate = imported.endsWith(".*")
+                        ? imported.substring(0, imported.length() - 1) + name
+                        : imported.endsWith("." + name) ? imported : null;
+                if (candidate != null) {
+                    try {
+                        return Class.forName(ClassfileTypeUtils.toBinaryName(candidate), false, classLoader);
+                    } catch (ClassNotFoundException _) {}
+                }
+            }
+        } else {
+            try {
+                return Class.forName(ClassfileTypeUtils.toBinaryName(name), false, classLoader);
+            } catch (ClassNotFoundException _) {}
+        }
+        return resolveClassName(name);
+    }
+
     /**
      * Resolve the Java Class that an expression evaluates to at runtime.
      * Used for chained method calls where we need to know the intermediate type.
      */
     private static <C, W, O> Class<?> resolveExpressionType(
             Expression expr, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
+        ReifiedType type = reifyExpressionType(expr, slots, params);
+        return type != null ? type.raw() : null;
+    }
+
+    /**
+     * Resolve the type an expression evaluates to, with its type arguments, so that a generic method's
+     * return type is resolved against its receiver: {@code foos.get(0)} is a {@code Foo}.
+     */
+    private static <C, W, O> ReifiedType reifyExpressionType(
+            Expression expr, LocalSlotTable slots, CompilerParameters<C, W, O> params) {
         return switch (expr) {
-            case NameExpr ne -> {
-                // Check compiler params first (context + declared variables)
-                Class<?> fromParams = resolveVariableClass(ne.getNameAsString(), params);
-                if (fromParams != null) yield fromParams;
-                // Check local slot table
-                if (slots.contains(ne.getNameAsString())) {
-                    Type slotType = slots.type(ne.getNameAsString());
-                    if (slotType.isClassOrInterfaceType()) {
-                        yield resolveClassName(slotType.asClassOrInterfaceType().getNameWithScope());
-                    }
-                }
-                yield null;
-            }
+            case NameExpr ne -> resolveVariableType(ne.getNameAsString(), slots, params);
             case MethodCallExpr mce -> {
-                if (mce.getScope().isEmpty()) yield null;
+                if (mce.getScope().isEmpty()) {
+                    Method function = selectFunction(mce, slots, params);
+                    yield function != null ? ReifiedType.of(function.getReturnType()) : null;
+                }
                 Expression scope = mce.getScope().get();
                 // Static method calls: resolve return type directly
-                if (isStaticBigDecimalScope(scope)) {
+                if (isStaticBigDecimalScope(scope) || isStaticKnownClassScope(scope)) {
                     String className = scope instanceof NameExpr ne ? ne.getNameAsString() : scope.toString();
                     Class<?> clazz = resolveClassName(className);
                     if (clazz != null) {
                         Method m = findStaticMethodByNameAndArgCount(clazz, mce.getNameAsString(), mce.getArguments().size());
-                        if (m != null) yield m.getReturnType();
+                        if (m != null) yield ReifiedType.of(m.getReturnType());
                     }
                 }
                 // Instance method calls: resolve the scope type, then find the method
-                Class<?> scopeClass = resolveExpressionType(scope, slots, params);
-                if (scopeClass != null) {
-                    Method m = findMethodByNameAndArgCount(scopeClass, mce.getNameAsString(), mce.getArguments().size());
-                    if (m != null) yield m.getReturnType();
+                ReifiedType scopeType = reifyExpressionType(scope, slots, params);
+                if (scopeType != null) {
+                    Method m = findMethodByNameAndArgCount(scopeType.raw(), mce.getNameAsString(), mce.getArguments().size());
+                    if (m != null) yield scopeType.resolve(m.getGenericReturnType());
                 }
                 yield null;
             }
             case CastExpr ce -> {
                 Type castType = ce.getType();
                 if (castType.isClassOrInterfaceType()) {
-                    yield resolveClassName(castType.asClassOrInterfaceType().getNameWithScope());
+                    yield ReifiedType.of(castType, t -> resolveTypeClass(t, params));
+                }
+                if (castType.isArrayType()) {
+                    Class<?> arrayClass = resolveArrayClass(castType.asArrayType(), params);
+                    yield arrayClass != null ? ReifiedType.of(arrayClass) : null;
                 }
                 yield null;
             }
+            case ArrayAccessExpr aae -> {
+                ReifiedType arrayType = reifyExpressionType(aae.getName(), slots, params);
+                yield arrayType != null && arrayType.raw().isArray()
+                        ? ReifiedType.of(arrayType.raw().getComponentType())
+                        : null;
+            }
+            case ArrayCreationExpr ace -> {
+                Class<?> arrayClass = resolveArrayClass((ArrayType) ace.createdType(), params);
+                yield arrayClass != null ? ReifiedType.of(arrayClass) : null;
+            }
+            case EnclosedExpr ee -> reifyExpressionType(ee.getInner(), slots, params);
+            case ConditionalExpr ce -> {
+                // A null guard has the type of its guarded value, boxed; otherwise both branches must agree
+                LocalSlotTable bound = withPatternBindings(ce.getCondition(), slots, params);
+                ReifiedType thenType = reifyExpressionType(ce.getThenExpr(), bound, params);
+                if (thenType != null && isNullGuard(ce)) {
+                    yield thenType.raw().isPrimitive()
+                            ? ReifiedType.of(MethodType.methodType(thenType.raw()).wrap().returnType())
+                            : thenType;
+                }
+                ReifiedType elseType = reifyExpressionType(ce.getElseExpr(), bound, params);
+                yield thenType != null && elseType != null && thenType.raw() == elseType.raw() ? thenType : null;
+            }
             default -> null;
         };
     }
@@ -1957,7 +4507,12 @@ public final class ClassfileEvaluatorEmitter {
     // ── Assignment emission ───────────────────────────────────────────────
 
     private static boolean isSupportedAssign(AssignExpr ae) {
-        if (!(ae.getTarget() instanceof NameExpr)) return false;
+        boolean supportedTarget = switch (ae.getTarget()) {
+            case NameExpr _ -> true;
+            case ArrayAccessExpr aae -> isSupportedExpression(aae.getName()) && isSupportedExpression(aae.getIndex());
+            default -> false;
+        };
+        if (!supportedTarget) return false;
         if (!isSupportedExpression(ae.getValue())) return false;
         return switch (ae.getOperator()) {
             case ASSIGN, PLUS, MINUS, MULTIPLY, DIVIDE, REMAINDER,
@@ -1974,7 +4529,10 @@ public final class ClassfileEvaluatorEmitter {
             CompilerParameters<C, W, O> params) {
 
         String targetName;
-        if (ae.getTarget() instanceof NameExpr ne) {
+        if (ae.getTarget() instanceof ArrayAccessExpr target) {
+            emitArrayElementAssign(code, ae, target, slots, params, false);
+            return;
+        } else if (ae.getTarget() instanceof NameExpr ne) {
             targetName = ne.getNameAsString();
         } else {
             throw new UnsupportedOperationException(
@@ -1991,29 +4549,65 @@ public final class ClassfileEvaluatorEmitter {
             emitExpression(code, ae.getValue(), slots, params);
             slots.storeVar(code, targetName);
         } else {
-            // Compound assignment: a op= expr → load a, emit expr, op, store a
+            // Compound assignment: a op= expr is a = (T) (a op expr), computed in the promoted type (JLS 15.26.2)
             TypeKind kind = slots.typeKind(targetName);
+            TypeKind valueKind = inferTypeKind(ae.getValue(), slots, params);
+            // byte, char and short locals are operated on as int
+            TypeKind promoted = kind == TypeKind.REFERENCE ? kind : widenTypeKind(kind, TypeKind.INT);
+            TypeKind opKind = isShift(ae.getOperator()) || valueKind == TypeKind.REFERENCE
+                    ? promoted
+                    : widenTypeKind(promoted, valueKind);
             slots.loadVar(code, targetName);
+            emitTypeWidening(code, kind, opKind);
             emitExpression(code, ae.getValue(), slots, params);
-            switch (ae.getOperator()) {
-                case PLUS -> emitAdd(code, kind);
-                case MINUS -> emitSub(code, kind);
-                case MULTIPLY -> emitMul(code, kind);
-                case DIVIDE -> emitDiv(code, kind);
-                case REMAINDER -> emitRem(code, kind);
-                case BINARY_AND -> emitBitwiseAnd(code, kind);
-                case BINARY_OR -> emitBitwiseOr(code, kind);
-                case XOR -> emitBitwiseXor(code, kind);
-                case LEFT_SHIFT -> emitShl(code, kind);
-                case SIGNED_RIGHT_SHIFT -> emitShr(code, kind);
-                case UNSIGNED_RIGHT_SHIFT -> emitUshr(code, kind);
-                default -> throw new UnsupportedOperationException(
-                        "Unsupported compound assignment: " + ae.getOperator());
+            if (valueKind != TypeKind.REFERENCE) {
+                if (isShift(ae.getOperator())) {
+                    // the shift distance is an int, even for a long local
+                    emitPrimitiveCast(code, valueKind, TypeKind.INT);
+                } else {
+                    emitTypeWidening(code, valueKind, opKind);
+                }
+            }
+            emitCompoundOperator(code, ae.getOperator(), opKind);
+            // int i; i *= 1.5 stores (int) (i * 1.5)
+            emitPrimitiveCast(code, opKind, promoted);
+            switch (kind) {
+                case BYTE -> code.i2b();
+                case CHAR -> code.i2c();
+                case SHORT -> code.i2s();
+                default -> {}
             }
             slots.storeVar(code, targetName);
         }
     }
 
+    /**
+     * Emit the arithmetic of a compound assignment operator on the two values on the stack.
+     */
+    private static void emitCompoundOperator(CodeBuilder code, AssignExpr.Operator operator, TypeKind kind) {
+        switch (operator) {
+            case PLUS -> emitAdd(code, kind);
+            case MINUS -> emitSub(code, kind);
+            case MULTIPLY -> emitMul(code, kind);
+            case DIVIDE -> emitDiv(code, kind);
+            case REMAINDER -> emitRem(code, kind);
+            case BINARY_AND -> emitBitwiseAnd(code, kind);
+            case BINARY_OR -> emitBitwiseOr(code, kind);
+            case XOR -> emitBitwiseXor(code, kind);
+            case LEFT_SHIFT -> emitShl(code, kind);
+            case SIGNED_RIGHT_SHIFT -> emitShr(code, kind);
+            case UNSIGNED_RIGHT_SHIFT -> emitUshr(code, kind);
+            default -> throw new UnsupportedOperationException(
+                    "Unsupported compound assignment: " + operator);
+        }
+    }
+
+    private static boolean isShift(AssignExpr.Operator op) {
+        return op == AssignExpr.Operator.LEFT_SHIFT
+                || op == AssignExpr.Operator.SIGNED_RIGHT_SHIFT
+                || op == AssignExpr.Operator.UNSIGNED_RIGHT_SHIFT;
+    }
+
     // ── AST support checking ──────────────────────────────────────────────
 
     private static boolean isSupportedStatement(Statement stmt) {
@@ -2024,6 +4618,17 @@ public final class ClassfileEvaluatorEmitter {
             case IfStmt is -> isSupportedExpression(is.getCondition())
                     && isSupportedStatement(is.getThenStmt())
                     && is.getElseStmt().map(ClassfileEvaluatorEmitter::isSupportedStatement).orElse(true);
+            case ForStmt fs -> fs.getInitialization().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression)
+                    && fs.getCompare().map(ClassfileEvaluatorEmitter::isSupportedExpression).orElse(true)
+                    && fs.getUpdate().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression)
+                    && isSupportedStatement(fs.getBody());
+            case WhileStmt ws -> isSupportedExpression(ws.getCondition()) && isSupportedStatement(ws.getBody());
+            case DoStmt ds -> isSupportedExpression(ds.getCondition()) && isSupportedStatement(ds.getBody());
+            case ForEachStmt fes -> isSupportedExpression(fes.getIterable()) && isSupportedStatement(fes.getBody());
+            case LabeledStmt ls -> isSupportedStatement(ls.getStatement());
+            case SwitchStmt ss -> isSupportedSwitch(ss.getSelector(), ss.getEntries());
+            case YieldStmt ys -> isSupportedExpression(ys.getExpression());
+            case BreakStmt _, ContinueStmt _ -> true;
             case EmptyStmt _ -> true;
             default -> false;
         };
@@ -2045,11 +4650,42 @@ public final class ClassfileEvaluatorEmitter {
             case BinaryExpr be -> isSupportedBinary(be);
             case MethodCallExpr mce -> isSupportedMethodCall(mce);
             case FieldAccessExpr fae -> isSupportedFieldAccess(fae);
+            case ArrayAccessExpr aae -> isSupportedExpression(aae.getName()) && isSupportedExpression(aae.getIndex());
+            case ArrayCreationExpr ace -> ace.getLevels().stream().allMatch(level ->
+                            level.getDimension().map(ClassfileEvaluatorEmitter::isSupportedExpression).orElse(true))
+                    && ace.getInitializer().map(ClassfileEvaluatorEmitter::isSupportedExpression).orElse(true);
+            case ArrayInitializerExpr aie -> aie.getValues().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression);
             case ObjectCreationExpr oce -> isSupportedObjectCreation(oce);
             case VariableDeclarationExpr vde ->
                     vde.getVariables().stream().allMatch(v ->
                             v.getInitializer().map(ClassfileEvaluatorEmitter::isSupportedExpression).orElse(true));
             case AssignExpr ae -> isSupportedAssign(ae);
+            case ConditionalExpr ce -> isSupportedExpression(isNullGuard(ce) ? nullGuardedExpression(ce) : ce.getCondition())
+                    && isSupportedExpression(ce.getThenExpr())
+                    && isSupportedExpression(ce.getElseExpr());
+            case InstanceOfExpr ioe -> isSupportedExpression(ioe.getExpression());
+            case SwitchExpr se -> isSupportedSwitch(se.getSelector(), se.getEntries());
+            case LambdaExpr le -> isSupportedStatement(le.getBody());
+            case MethodReferenceExpr _ -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Check a switch over constants: patterns, {@code case null} and {@code throw} entries fall back to javac.
+     */
+    private static boolean isSupportedSwitch(Expression selector, List<SwitchEntry> entries) {
+        return isSupportedExpression(selector) && entries.stream().allMatch(entry ->
+                entry.getType() != SwitchEntry.Type.THROWS_STATEMENT
+                        && entry.getLabels().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedCaseLabel)
+                        && entry.getStatements().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedStatement));
+    }
+
+    private static boolean isSupportedCaseLabel(Expression label) {
+        return switch (label) {
+            case IntegerLiteralExpr _, CharLiteralExpr _, StringLiteralExpr _, NameExpr _, FieldAccessExpr _ -> true;
+            case UnaryExpr ue -> ue.getOperator() == UnaryExpr.Operator.MINUS && ue.getExpression() instanceof IntegerLiteralExpr;
+            case EnclosedExpr ee -> isSupportedCaseLabel(ee.getInner());
             default -> false;
         };
     }
@@ -2057,6 +4693,8 @@ public final class ClassfileEvaluatorEmitter {
     private static boolean isSupportedUnary(UnaryExpr ue) {
         return switch (ue.getOperator()) {
             case LOGICAL_COMPLEMENT, MINUS, BITWISE_COMPLEMENT -> isSupportedExpression(ue.getExpression());
+            case PREFIX_INCREMENT, PREFIX_DECREMENT, POSTFIX_INCREMENT, POSTFIX_DECREMENT ->
+                    ue.getExpression() instanceof NameExpr;
             default -> false;
         };
     }
@@ -2079,10 +4717,10 @@ public final class ClassfileEvaluatorEmitter {
     }
 
     private static boolean isSupportedMethodCall(MethodCallExpr mce) {
-        // Scope-less __context* calls: POJO setter helpers generated by the transpiler
+        // Scope-less calls: __context* POJO setter helpers generated by the transpiler, or functions
+        // from the static imports or the generated superclass (resolved by findUnresolvedFunctionCall)
         if (mce.getScope().isEmpty()) {
-            return mce.getNameAsString().startsWith("__context")
-                    && mce.getArguments().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression);
+            return mce.getArguments().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression);
         }
         if (!mce.getArguments().stream().allMatch(ClassfileEvaluatorEmitter::isSupportedExpression)) {
             return false;
@@ -2110,7 +4748,8 @@ public final class ClassfileEvaluatorEmitter {
         String full = fae.toString();
         // Static field constants (e.g., java.math.MathContext.DECIMAL128)
         if ("java.math.MathContext.DECIMAL128".equals(full)) return true;
-        return false;
+        // array.length: whether the scope is an array is only known at emit time
+        return "length".equals(fae.getNameAsString()) && isSupportedExpression(fae.getScope());
     }
 
     private static boolean isSupportedObjectCreation(ObjectCreationExpr oce) {
@@ -2160,7 +4799,7 @@ public final class ClassfileEvaluatorEmitter {
         if (scope instanceof NameExpr ne) {
             return switch (ne.getNameAsString()) {
                 case "Integer", "Long", "Double", "Float", "Short", "Byte",
-                     "Character", "Boolean", "String" -> true;
+                     "Character", "Boolean", "String", "Comparator", "Collectors" -> true;
                 default -> false;
             };
         }
@@ -2239,6 +4878,15 @@ public final class ClassfileEvaluatorEmitter {
                         && mce.getArguments().size() == 2) {
                     yield inferTypeKind(mce.getArgument(1), slots, params);
                 }
+                // Scope-less functions: a boolean result stays BOOLEAN, so that concatenation appends true/false
+                if (mce.getScope().isEmpty() && !mce.getNameAsString().startsWith("__context")) {
+                    Method function = selectFunction(mce, slots, params);
+                    if (function != null) {
+                        yield function.getReturnType() == boolean.class
+                                ? TypeKind.BOOLEAN
+                                : typeKindForJavaClass(function.getReturnType());
+                    }
+                }
                 // Math static calls return double
                 if (mce.getScope().isPresent() && isStaticMathScope(mce.getScope().get())) {
                     yield TypeKind.DOUBLE;
@@ -2289,14 +4937,28 @@ public final class ClassfileEvaluatorEmitter {
                 }
                 yield TypeKind.REFERENCE;
             }
+            case FieldAccessExpr fae when "length".equals(fae.getNameAsString()) -> TypeKind.INT;
             case FieldAccessExpr _ -> TypeKind.REFERENCE;
+            case ArrayAccessExpr aae -> {
+                Class<?> elementClass = params != null ? resolveExpressionType(aae, slots, params) : null;
+                if (elementClass == null) yield TypeKind.REFERENCE;
+                // A boolean element stays BOOLEAN, so that concatenation appends true/false
+                yield elementClass == boolean.class ? TypeKind.BOOLEAN : typeKindForJavaClass(elementClass);
+            }
             case ObjectCreationExpr _ -> TypeKind.REFERENCE;
             case AssignExpr ae -> {
                 if (ae.getTarget() instanceof NameExpr ne && slots.contains(ne.getNameAsString())) {
                     yield slots.typeKind(ne.getNameAsString());
                 }
+                if (ae.getTarget() instanceof ArrayAccessExpr aae) {
+                    yield inferTypeKind(aae, slots, params);
+                }
                 yield inferTypeKind(ae.getValue(), slots, params);
             }
+            case ConditionalExpr ce -> conditionalTypeKind(ce, slots, params);
+            case InstanceOfExpr _ -> TypeKind.BOOLEAN;
+            case SwitchExpr se -> switchTypeKind(se, slots, params);
+            case LambdaExpr _, MethodReferenceExpr _ -> TypeKind.REFERENCE;
             default -> TypeKind.REFERENCE;
         };
     }
@@ -2327,6 +4989,10 @@ public final class ClassfileEvaluatorEmitter {
         if (expr instanceof CastExpr ce) {
             return ce.getType();
         }
+        // var a = new int[3]: the created array type
+        if (expr instanceof ArrayCreationExpr ace) {
+            return ace.createdType();
+        }
         TypeKind kind = inferTypeKind(expr, slots);
         return switch (kind) {
             case INT -> PrimitiveType.intType();
@@ -2408,7 +5074,9 @@ public final class ClassfileEvaluatorEmitter {
             BooleanLiteralExpr.class, StringLiteralExpr.class, NullLiteralExpr.class,
             CharLiteralExpr.class, NameExpr.class, EnclosedExpr.class, CastExpr.class,
             UnaryExpr.class, BinaryExpr.class, MethodCallExpr.class,
-            VariableDeclarationExpr.class, AssignExpr.class
+            VariableDeclarationExpr.class, AssignExpr.class, ConditionalExpr.class, InstanceOfExpr.class,
+            SwitchExpr.class, LambdaExpr.class, MethodReferenceExpr.class,
+            ArrayAccessExpr.class, ArrayCreationExpr.class, ArrayInitializerExpr.class
     );
 
     // ── Phase 2 audit: diagnose why canEmit() rejected ───────────────────
@@ -2433,7 +5101,10 @@ public final class ClassfileEvaluatorEmitter {
                         + " → " + stmt.toString().trim();
             }
         }
-        if (!containsReturn(body)) return "no return statement";
+        if (!method.getType().isVoidType() && !containsReturn(body)) return "no return statement";
+
+        MethodCallExpr unresolved = findUnresolvedFunctionCall(body, result);
+        if (unresolved != null) return "unresolved function call: " + unresolved;
 
         return null; // emittable
     }
@@ -2457,6 +5128,20 @@ public final class ClassfileEvaluatorEmitter {
                  CharLiteralExpr _, NameExpr _ -> null;
             case EnclosedExpr ee -> findUnsupported(ee.getInner());
             case CastExpr ce -> findUnsupported(ce.getExpression());
+            case ConditionalExpr ce -> {
+                String r = findUnsupported(isNullGuard(ce) ? nullGuardedExpression(ce) : ce.getCondition());
+                if (r == null) r = findUnsupported(ce.getThenExpr());
+                if (r == null) r = findUnsupported(ce.getElseExpr());
+                yield r;
+            }
+            case InstanceOfExpr ioe -> findUnsupported(ioe.getExpression());
+            case SwitchExpr se -> isSupportedSwitch(se.getSelector(), se.getEntries())
+                    ? null
+                    : "SwitchExpr: " + se;
+            case LambdaExpr le -> isSupportedStatement(le.getBody())
+                    ? null
+                    : "LambdaExpr: " + le;
+            case MethodReferenceExpr _ -> null;
             case UnaryExpr ue -> {
                 if (!isSupportedUnary(ue))
                     yield "UnaryExpr(" + ue.getOperator() + "): " + ue;
@@ -2489,7 +5174,7 @@ public final class ClassfileEvaluatorEmitter {
             case AssignExpr ae -> {
                 if (ae.getOperator() != AssignExpr.Operator.ASSIGN)
                     yield "AssignExpr(compound " + ae.getOperator() + "): " + ae;
-                if (!(ae.getTarget() instanceof NameExpr))
+                if (!(ae.getTarget() instanceof NameExpr) && !(ae.getTarget() instanceof ArrayAccessExpr))
                     yield "AssignExpr(non-name target " + ae.getTarget().getClass().getSimpleName() + "): " + ae;
                 yield findUnsupported(ae.getValue());
             }
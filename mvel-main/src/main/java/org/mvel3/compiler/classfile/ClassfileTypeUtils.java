@@ -129,7 +129,7 @@ public final class ClassfileTypeUtils {
             case "Void", "java.lang.Void" -> ClassDesc.of("java.lang.Void");
             default -> {
                 if (name.contains(".")) {
-                    yield ClassDesc.of(name);
+                    yield ClassDesc.of(toBinaryName(name));
                 }
                 // Simple name without package — assume java.lang
                 yield ClassDesc.of("java.lang." + name);
@@ -137,6 +137,26 @@ public final class ClassfileTypeUtils {
         };
     }
 
+    /**
+     * Turns a canonical name, as printed in source, into a binary name: nested classes are separated with '$'.
+     * Following Java naming conventions, the first segment starting with an upper case letter is taken as the
+     * top level class, and any segment after it as a nested class.
+     */
+    static String toBinaryName(String canonicalName) {
+        int start = 0;
+        while (start < canonicalName.length()) {
+            int end = canonicalName.indexOf('.', start);
+            if (end < 0) {
+                return canonicalName;
+            }
+            if (Character.isUpperCase(canonicalName.charAt(start))) {
+                return canonicalName.substring(0, end) + canonicalName.substring(end).replace('.', '$');
+            }
+            start = end + 1;
+        }
+        return canonicalName;
+    }
+
     /**
      * Get the TypeKind for a JavaParser primitive type.
      */
@@ -0,0 +1,140 @@
+package org.mvel3.compiler.classfile;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.classfile.TypeKind;
+import java.lang.classfile.instruction.SwitchCase;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.reflect.AccessFlag;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static java.lang.constant.ConstantDescs.*;
+
+/**
+ * Emits the {@link org.mvel3.ShapedContext} subclass of a {@link org.mvel3.ContextShape}: a field per slot,
+ * {@code s0}, {@code s1}, ..., and for each field type a getter and a setter that {@code tableswitch} on the
+ * slot to the field. A slot of another type falls through to {@code ShapedContext.wrongSlot}.
+ * <p>
+ * The class is defined as a hidden class, so only ever referred to through {@code ShapedContext}; an
+ * evaluator's call site sees one class per shape, so the JIT inlines the accessor down to the field.
+ */
+public final class ContextShapeEmitter {
+
+    private ContextShapeEmitter() {}
+
+    private static final ClassDesc CD_ShapedContext = ClassDesc.of("org.mvel3.ShapedContext");
+    private static final ClassDesc CD_ContextShape = ClassDesc.of("org.mvel3.ContextShape");
+    private static final MethodTypeDesc MTD_INIT = MethodTypeDesc.of(CD_void, CD_ContextShape);
+    private static final MethodTypeDesc MTD_WRONG_SLOT = MethodTypeDesc.of(
+            ClassDesc.of("java.lang.IllegalArgumentException"), CD_int, CD_String);
+
+    /** The field types a slot can have, in the order their accessors are emitted. */
+    private static final List<Class<?>> FIELD_TYPES = List.of(
+            boolean.class, int.class, long.class, double.class, Object.class);
+
+    /**
+     * Emit the subclass for the given slot field types, each as returned by
+     * {@link org.mvel3.ContextShape#fieldType(Class)}.
+     *
+     * @return byte[] for {@code Lookup.defineHiddenClass()} from a class in {@code org.mvel3}
+     */
+    public static byte[] emit(List<Class<?>> fieldTypes) {
+        ClassDesc thisClass = ClassDesc.of("org.mvel3.ShapedContext$Shape");
+
+        return ClassFile.of().build(thisClass, cb -> {
+            cb.withFlags(AccessFlag.PUBLIC, AccessFlag.FINAL);
+            cb.withSuperclass(CD_ShapedContext);
+
+            for (int slot = 0; slot < fieldTypes.size(); slot++) {
+                cb.withField("s" + slot, descOf(fieldTypes.get(slot)), ClassFile.ACC_PRIVATE);
+            }
+
+            cb.withMethodBody(INIT_NAME, MTD_INIT, ClassFile.ACC_PUBLIC, code -> {
+                code.aload(0);
+                code.aload(1);
+                code.invokespecial(CD_ShapedContext, INIT_NAME, MTD_INIT);
+                code.return_();
+            });
+
+            // create(): new Shape(shape())
+            cb.withMethodBody("create", MethodTypeDesc.of(CD_ShapedContext), ClassFile.ACC_PROTECTED, code -> {
+                code.new_(thisClass);
+                code.dup();
+                code.aload(0);
+                code.invokevirtual(CD_ShapedContext, "shape", MethodTypeDesc.of(CD_ContextShape));
+                code.invokespecial(thisClass, INIT_NAME, MTD_INIT);
+                code.areturn();
+            });
+
+            for (Class<?> fieldType : FIELD_TYPES) {
+                List<Integer> typeSlots = new ArrayList<>();
+                for (int slot = 0; slot < fieldTypes.size(); slot++) {
+                    if (fieldTypes.get(slot) == fieldType) {
+                        typeSlots.add(slot);
+                    }
+                }
+                ClassDesc fieldDesc = descOf(fieldType);
+                TypeKind kind = TypeKind.from(fieldDesc);
+                String suffix = accessorSuffix(fieldType);
+
+                cb.withMethodBody("get" + suffix, MethodTypeDesc.of(fieldDesc, CD_int), ClassFile.ACC_PUBLIC,
+                        code -> emitSlotSwitch(code, typeSlots, fieldType, slot -> {
+                            code.aload(0);
+                            code.getfield(thisClass, "s" + slot, fieldDesc);
+                            code.return_(kind);
+                        }));
+
+                cb.withMethodBody("set" + suffix, MethodTypeDesc.of(CD_ShapedContext, CD_int, fieldDesc),
+                        ClassFile.ACC_PUBLIC,
+                        code -> emitSlotSwitch(code, typeSlots, fieldType, slot -> {
+                            code.aload(0);
+                            code.loadLocal(kind, 2);
+                            code.putfield(thisClass, "s" + slot, fieldDesc);
+                            code.aload(0);
+                            code.areturn();
+                        }));
+            }
+        });
+    }
+
+    /**
+     * Switch on the slot argument to the case for each of the given slots; any other slot throws.
+     */
+    private static void emitSlotSwitch(CodeBuilder code, List<Integer> slots, Class<?> fieldType,
+                                       IntConsumer caseBody) {
+        Label wrongSlot = code.newLabel();
+        if (!slots.isEmpty()) {
+            List<SwitchCase> cases = new ArrayList<>();
+            List<Label> labels = new ArrayList<>();
+            for (int slot : slots) {
+                Label label = code.newLabel();
+                cases.add(SwitchCase.of(slot, label));
+                labels.add(label);
+            }
+            code.iload(1);
+            code.tableswitch(slots.getFirst(), slots.getLast(), wrongSlot, cases);
+            for (int i = 0; i < slots.size(); i++) {
+                code.labelBinding(labels.get(i));
+                caseBody.accept(slots.get(i));
+            }
+        }
+        code.labelBinding(wrongSlot);
+        code.iload(1);
+        code.ldc(fieldType.getSimpleName());
+        code.invokestatic(CD_ShapedContext, "wrongSlot", MTD_WRONG_SLOT);
+        code.athrow();
+    }
+
+    private static ClassDesc descOf(Class<?> fieldType) {
+        return fieldType.describeConstable().orElseThrow();
+    }
+
+    private static String accessorSuffix(Class<?> fieldType) {
+        String name = fieldType.getSimpleName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,33 @@
+package org.mvel3.compiler.classfile;
+
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Bootstrap for the switch maps of enum switches emitted by {@link ClassfileEvaluatorEmitter}.
+ * <p>
+ * Like javac's {@code $SwitchMap}, a switch map takes the {@code ordinal()} of the selector to the 1-based
+ * index of its case label, and to 0 when no label names the constant. It is resolved once per evaluator
+ * class through a dynamic constant, so an evaluator persisted to disk stays correct when the enum's
+ * constants are reordered.
+ */
+public final class EnumSwitchMaps {
+
+    private EnumSwitchMaps() {}
+
+    /**
+     * Build the switch map for the given case labels. Constants that no longer exist are skipped, as javac does.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static int[] switchMap(MethodHandles.Lookup lookup, String name, Class<?> type,
+                                  Class<?> enumClass, String... constants) {
+        int[] map = new int[enumClass.getEnumConstants().length];
+        for (int i = 0; i < constants.length; i++) {
+            try {
+                map[Enum.valueOf((Class) enumClass, constants[i]).ordinal()] = i + 1;
+            } catch (IllegalArgumentException e) {
+                // the constant was removed since the evaluator was emitted: its label never matches
+            }
+        }
+        return map;
+    }
+}
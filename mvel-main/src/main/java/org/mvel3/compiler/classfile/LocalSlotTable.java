@@ -5,20 +5,29 @@ import com.github.javaparser.ast.type.Type;
 
 import java.lang.classfile.CodeBuilder;
 import java.lang.classfile.TypeKind;
+import java.lang.reflect.Method;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Tracks local variable name → (slot, type) mappings for Classfile API bytecode emission.
  * <p>
- * Slot 0 is always {@code this}, slot 1 is always {@code __context} (the eval parameter).
+ * In the eval method, slot 0 is always {@code this}, slot 1 is always {@code __context} (the eval parameter).
+ * A lambda body is a static method, whose slots start at 0 with its captured variables and parameters.
  * Long and double types consume two consecutive slots per JVM spec.
+ * <p>
+ * The declared variables' types, generics included, are reified once for the class and shared by every table,
+ * as are the functions that scope-less calls resolve to.
  */
 public final class LocalSlotTable {
 
     private record Entry(int slot, Type type) {}
 
     private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final SyntheticMethods syntheticMethods;
+    private final Map<String, ReifiedType> declaredTypes;
+    private final Map<String, List<Method>> functions;
     private int nextSlot;
 
     /**
@@ -28,6 +37,14 @@ public final class LocalSlotTable {
      * @param contextType      the JavaParser Type of the context parameter
      */
     public LocalSlotTable(String contextParamName, Type contextType) {
+        this(contextParamName, contextType, new SyntheticMethods(), Map.of(), Map.of());
+    }
+
+    LocalSlotTable(String contextParamName, Type contextType, SyntheticMethods syntheticMethods,
+                   Map<String, ReifiedType> declaredTypes, Map<String, List<Method>> functions) {
+        this.syntheticMethods = syntheticMethods;
+        this.declaredTypes = declaredTypes;
+        this.functions = functions;
         // slot 0: this (reference, 1 slot)
         nextSlot = 1;
         // slot 1: context parameter
@@ -35,6 +52,61 @@ public final class LocalSlotTable {
         nextSlot = 2; // context is always a reference type (1 slot)
     }
 
+    private LocalSlotTable(LocalSlotTable other) {
+        entries.putAll(other.entries);
+        syntheticMethods = other.syntheticMethods;
+        declaredTypes = other.declaredTypes;
+        functions = other.functions;
+        nextSlot = other.nextSlot;
+    }
+
+    private LocalSlotTable(SyntheticMethods syntheticMethods, Map<String, ReifiedType> declaredTypes,
+                           Map<String, List<Method>> functions) {
+        this.syntheticMethods = syntheticMethods;
+        this.declaredTypes = declaredTypes;
+        this.functions = functions;
+        nextSlot = 0;
+    }
+
+    /**
+     * Copy this table, so that locals can be declared ahead of emission to infer types against them.
+     */
+    public LocalSlotTable copy() {
+        return new LocalSlotTable(this);
+    }
+
+    /**
+     * Create an empty table for the static method a lambda body is emitted into, which adds its own lambdas to
+     * the same class.
+     */
+    public LocalSlotTable forLambdaBody() {
+        return new LocalSlotTable(syntheticMethods, declaredTypes, functions);
+    }
+
+    /**
+     * The synthetic methods of the class being emitted.
+     */
+    SyntheticMethods syntheticMethods() {
+        return syntheticMethods;
+    }
+
+    /**
+     * The reified type of a declared variable, or of the context.
+     *
+     * @return null if no declaration has the name
+     */
+    ReifiedType declaredType(String name) {
+        return declaredTypes.get(name);
+    }
+
+    /**
+     * The overloads a scope-less call to the named function may invoke, from the static imports or the
+     * generated superclass.
+     */
+    List<Method> functions(String name) {
+        return functions.getOrDefault(name, List.of());
+    }
+
     /**
      * Allocate a new local variable slot. Longs and doubles consume 2 slots.
      *
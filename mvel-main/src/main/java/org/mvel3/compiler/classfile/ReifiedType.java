@@ -0,0 +1,149 @@
+package org.mvel3.compiler.classfile;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A class with the type arguments it is declared with, such as {@code List<Foo>}, so that the types of
+ * its members survive erasure: {@code get} on a {@code List<Foo>} returns a {@code Foo}.
+ * <p>
+ * A wildcard argument stands for its upper bound. A type variable that no argument binds, as on a raw
+ * type, stands for its erasure.
+ */
+record ReifiedType(Class<?> raw, List<ReifiedType> arguments) {
+
+    static ReifiedType of(Class<?> raw) {
+        return new ReifiedType(raw, List.of());
+    }
+
+    /**
+     * Reify a declared type, parsing its generics string, as {@code "<Foo>"} for {@code List<Foo>}.
+     * Generics that do not parse, or name a class that cannot be resolved, leave the type raw.
+     *
+     * @param resolver resolves a class name as written, which may be a simple name brought in by an import
+     */
+    static ReifiedType of(org.mvel3.Type<?> type, Function<ClassOrInterfaceType, Class<?>> resolver) {
+        Class<?> clazz = type.getClazz();
+        if (type.getGenerics().isEmpty() || clazz.getCanonicalName() == null) {
+            return of(clazz);
+        }
+        try {
+            ReifiedType parsed = of(StaticJavaParser.parseType(clazz.getCanonicalName() + type.getGenerics()), resolver);
+            return parsed != null ? new ReifiedType(clazz, parsed.arguments()) : of(clazz);
+        } catch (ParseProblemException e) {
+            return of(clazz);
+        }
+    }
+
+    /**
+     * Reify a class or interface type as written in the transpiled source.
+     *
+     * @return null for a primitive or array type, or when the class cannot be resolved
+     */
+    static ReifiedType of(Type type, Function<ClassOrInterfaceType, Class<?>> resolver) {
+        if (!type.isClassOrInterfaceType()) {
+            return null;
+        }
+        ClassOrInterfaceType classType = type.asClassOrInterfaceType();
+        Class<?> clazz = resolver.apply(classType);
+        if (clazz == null) {
+            return null;
+        }
+        List<ReifiedType> arguments = new ArrayList<>();
+        for (Type argument : classType.getTypeArguments().orElse(new NodeList<>())) {
+            Type bound = argument.isWildcardType()
+                    ? argument.asWildcardType().getExtendedType().map(Type.class::cast).orElse(null)
+                    : argument;
+            ReifiedType reified = bound != null ? of(bound, resolver) : null;
+            arguments.add(reified != null ? reified : of(Object.class));
+        }
+        return new ReifiedType(clazz, List.copyOf(arguments));
+    }
+
+    /**
+     * The type that a member declared with the given generic type has on this type, as a method's
+     * {@link java.lang.reflect.Method#getGenericReturnType() generic return type}.
+     */
+    ReifiedType resolve(java.lang.reflect.Type generic) {
+        return switch (generic) {
+            case Class<?> c -> of(c);
+            case ParameterizedType p -> {
+                List<ReifiedType> resolved = new ArrayList<>();
+                for (java.lang.reflect.Type argument : p.getActualTypeArguments()) {
+                    resolved.add(resolve(argument));
+                }
+                yield new ReifiedType((Class<?>) p.getRawType(), List.copyOf(resolved));
+            }
+            case TypeVariable<?> v -> typeArgument(v);
+            case WildcardType w -> resolve(w.getUpperBounds()[0]);
+            default -> of(erasure(generic));
+        };
+    }
+
+    /**
+     * This type viewed as one of its supertypes, with the type arguments it passes on, as
+     * {@code Iterable<Foo>} for {@code List<Foo>}.
+     *
+     * @return null if the target is not a supertype
+     */
+    ReifiedType asSuper(Class<?> target) {
+        if (raw == target) {
+            return this;
+        }
+        if (!target.isAssignableFrom(raw)) {
+            return null;
+        }
+        List<java.lang.reflect.Type> supertypes = new ArrayList<>(List.of(raw.getGenericInterfaces()));
+        if (raw.getGenericSuperclass() != null) {
+            supertypes.add(raw.getGenericSuperclass());
+        }
+        for (java.lang.reflect.Type supertype : supertypes) {
+            ReifiedType view = resolve(supertype).asSuper(target);
+            if (view != null) {
+                return view;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The argument this type binds a type variable of its class, or of a supertype, to.
+     * A method's own type variables are not bound, and stand for their erasure.
+     */
+    private ReifiedType typeArgument(TypeVariable<?> variable) {
+        if (variable.getGenericDeclaration() instanceof Class<?> declaring) {
+            ReifiedType view = asSuper(declaring);
+            TypeVariable<?>[] parameters = declaring.getTypeParameters();
+            if (view != null && view.arguments.size() == parameters.length) {
+                for (int i = 0; i < parameters.length; i++) {
+                    if (parameters[i].equals(variable)) {
+                        return view.arguments.get(i);
+                    }
+                }
+            }
+        }
+        return of(erasure(variable));
+    }
+
+    private static Class<?> erasure(java.lang.reflect.Type type) {
+        return switch (type) {
+            case Class<?> c -> c;
+            case ParameterizedType p -> (Class<?>) p.getRawType();
+            case TypeVariable<?> v -> erasure(v.getBounds()[0]);
+            case WildcardType w -> erasure(w.getUpperBounds()[0]);
+            case GenericArrayType g -> erasure(g.getGenericComponentType()).arrayType();
+            default -> Object.class;
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package org.mvel3.compiler.classfile;
+
+import com.github.javaparser.ast.Node;
+
+import java.lang.classfile.ClassBuilder;
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.MethodTypeDesc;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The private static methods that lambda bodies are emitted into, as javac's {@code lambda$eval$N}.
+ * <p>
+ * They are collected while the eval method is emitted and added to the class once it is complete. A lambda
+ * nested in another is collected while its enclosing body is emitted, so is added after it. Each lambda is
+ * named once, so a method body that the Classfile API emits again yields the same methods.
+ */
+final class SyntheticMethods {
+
+    private record SyntheticMethod(String name, MethodTypeDesc type, Consumer<CodeBuilder> body) {}
+
+    private final List<SyntheticMethod> methods = new ArrayList<>();
+    private final Map<Node, SyntheticMethod> byLambda = new IdentityHashMap<>();
+
+    /**
+     * Collect the method for a lambda body.
+     *
+     * @return the name of the method
+     */
+    String add(Node lambda, MethodTypeDesc type, Consumer<CodeBuilder> body) {
+        return byLambda.computeIfAbsent(lambda, _ -> {
+            SyntheticMethod method = new SyntheticMethod("lambda$eval$" + methods.size(), type, body);
+            methods.add(method);
+            return method;
+        }).name();
+    }
+
+    /**
+     * Add the collected methods, and those collected while emitting them, to the class.
+     */
+    void emitAll(ClassBuilder cb) {
+        for (int i = 0; i < methods.size(); i++) {
+            SyntheticMethod method = methods.get(i);
+            cb.withMethodBody(method.name(), method.type(),
+                    ClassFile.ACC_PRIVATE | ClassFile.ACC_STATIC | ClassFile.ACC_SYNTHETIC,
+                    method.body());
+        }
+    }
+}
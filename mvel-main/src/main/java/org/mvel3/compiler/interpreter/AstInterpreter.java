@@ -0,0 +1,1525 @@
+package org.mvel3.compiler.interpreter;
+
+import com.github.javaparser.ast.ArrayCreationLevel;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.nodeTypes.NodeWithArguments;
+import com.github.javaparser.ast.stmt.*;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.resolution.types.ResolvedType;
+import org.mvel3.CompilerParameters;
+import org.mvel3.ExpressionEvaluationException;
+import org.mvel3.transpiler.TranspiledResult;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tree-walking interpreter over the rewritten JavaParser AST produced by
+ * {@link org.mvel3.transpiler.MVELToJavaRewriter}.
+ * <p>
+ * Executing the AST directly skips class generation entirely, so an evaluator is available as soon as
+ * transpilation finishes. Values are held boxed, with the same numeric promotion, casting and assignment
+ * conversion rules as the Java code the AST would compile to. Methods, fields and constructors are resolved
+ * through reflection. Like javac, overloads are chosen from the static types of the arguments, which the
+ * symbol solver infers once when the interpreter is created. The choice is then cached per call site.
+ * <p>
+ * Only a subset of the AST is supported, see {@link #canInterpret(TranspiledResult, CompilerParameters)}.
+ * Anything else (lambdas, switch, try, labeled jumps, calls into a generated super class) is left to the
+ * bytecode tiers.
+ * <p>
+ * Instances are immutable apart from their resolution caches, which are concurrent, so one interpreter can
+ * be executed by several threads at once.
+ */
+public final class AstInterpreter {
+
+    private static final Object VOID = new Object();
+
+    private final MethodDeclaration method;
+
+    private final String contextName;
+
+    private final Class<?> returnClass;
+
+    private final Map<String, List<MethodDeclaration>> helperMethods;
+
+    private final ClassResolver classResolver;
+
+    private final Map<String, List<Class<?>>> staticImportClasses;
+
+    private final Map<MethodKey, Executable> executableCache = new ConcurrentHashMap<>();
+
+    /** Keyed by the call or creation expression itself: the same text can have other argument types elsewhere. */
+    private final Map<Expression, CallSite> callSites;
+
+    private AstInterpreter(MethodDeclaration method, Map<String, List<MethodDeclaration>> helperMethods,
+                           ClassResolver classResolver, Map<String, List<Class<?>>> staticImportClasses,
+                           Map<Expression, CallSite> callSites) {
+        this.method = method;
+        this.contextName = method.getParameter(0).getNameAsString();
+        this.helperMethods = helperMethods;
+        this.classResolver = classResolver;
+        this.staticImportClasses = staticImportClasses;
+        this.callSites = callSites;
+        this.returnClass = method.getType().isVoidType() ? null : classResolver.resolve(method.getType());
+    }
+
+    /**
+     * Prepare an interpreter for the transpiled result, or return {@code null} if it uses anything the
+     * interpreter does not support.
+     */
+    public static <C, W, O> AstInterpreter create(CompilerParameters<C, W, O> params, TranspiledResult result) {
+        if (!canInterpret(result, params)) {
+            return null;
+        }
+
+        CompilationUnit unit = result.getUnit();
+        ClassResolver classResolver = new ClassResolver(unit, params.classLoader());
+
+        Map<String, List<MethodDeclaration>> helperMethods = new HashMap<>();
+        MethodDeclaration evalMethod = null;
+        for (MethodDeclaration md : unit.findAll(MethodDeclaration.class)) {
+            if (md.getNameAsString().equals(params.generatedMethodName()) && !md.isStatic()) {
+                evalMethod = md;
+            } else if (md.isStatic()) {
+                helperMethods.computeIfAbsent(md.getNameAsString(), k -> new ArrayList<>()).add(md);
+            }
+        }
+        if (evalMethod == null || evalMethod.getParameters().size() != 1 || evalMethod.getBody().isEmpty()) {
+            return null;
+        }
+
+        Map<String, List<Class<?>>> staticImportClasses = new HashMap<>();
+        for (ImportDeclaration id : unit.getImports()) {
+            if (!id.isStatic()) {
+                continue;
+            }
+            String name = id.getNameAsString();
+            String className = id.isAsterisk() ? name : name.substring(0, Math.max(0, name.lastIndexOf('.')));
+            String member = id.isAsterisk() ? "*" : name.substring(name.lastIndexOf('.') + 1);
+            Class<?> clazz = classResolver.resolveOrNull(className);
+            if (clazz == null) {
+                return null;
+            }
+            staticImportClasses.computeIfAbsent(member, k -> new ArrayList<>()).add(clazz);
+        }
+
+        try {
+            Map<Expression, CallSite> callSites = resolveCallSites(unit, classResolver);
+            if (callSites == null) {
+                return null;
+            }
+            AstInterpreter interpreter = new AstInterpreter(evalMethod, helperMethods, classResolver, staticImportClasses,
+                                                            callSites);
+            return interpreter.link() ? interpreter : null;
+        } catch (ExpressionEvaluationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Infer the static type of every argument of every method call and object creation with the symbol solver,
+     * as the transpiler does, or return null if one cannot be inferred. The static type of an instance call's
+     * receiver is inferred too, where it declares a method of that name; otherwise the call resolves against the
+     * receiver's runtime class.
+     */
+    private static Map<Expression, CallSite> resolveCallSites(CompilationUnit unit, ClassResolver classResolver) {
+        Map<Expression, CallSite> callSites = new IdentityHashMap<>();
+        List<Expression> calls = new ArrayList<>(unit.findAll(MethodCallExpr.class));
+        calls.addAll(unit.findAll(ObjectCreationExpr.class));
+
+        for (Expression call : calls) {
+            List<Expression> arguments = ((NodeWithArguments<?>) call).getArguments();
+            Class<?>[] argClasses = new Class<?>[arguments.size()];
+            for (int i = 0; i < argClasses.length; i++) {
+                try {
+                    argClasses[i] = staticClass(arguments.get(i).calculateResolvedType(), classResolver);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+            callSites.put(call, new CallSite(receiverClass(call, classResolver), argClasses));
+        }
+        return callSites;
+    }
+
+    private static Class<?> receiverClass(Expression call, ClassResolver classResolver) {
+        if (!(call instanceof MethodCallExpr mce) || mce.getScope().isEmpty()) {
+            return null;
+        }
+        Class<?> receiverClass;
+        try {
+            ResolvedType type = mce.getScope().get().calculateResolvedType();
+            if (!type.isReferenceType() && !type.isTypeVariable()) {
+                return null;
+            }
+            receiverClass = staticClass(type, classResolver);
+        } catch (RuntimeException e) {
+            // a type name, for a static call, or a type the interpreter cannot load
+            return null;
+        }
+        for (Method method : receiverClass.getMethods()) {
+            if (method.getName().equals(mce.getNameAsString())) {
+                return receiverClass;
+            }
+        }
+        // for instance Object's methods called on an interface type
+        return null;
+    }
+
+    /**
+     * The erased class of a static type, or null for the type of {@code null}.
+     */
+    private static Class<?> staticClass(ResolvedType type, ClassResolver classResolver) {
+        if (type.isNull()) {
+            return null;
+        }
+        if (type.isPrimitive()) {
+            return classResolver.resolve(new PrimitiveType(PrimitiveType.Primitive.valueOf(type.asPrimitive().name())));
+        }
+        if (type.isArray()) {
+            return staticClass(type.asArrayType().getComponentType(), classResolver).arrayType();
+        }
+        if (type.isReferenceType()) {
+            return classResolver.resolve(type.asReferenceType().getQualifiedName());
+        }
+        ResolvedType erased = type.erasure();
+        if (erased == type) {
+            throw new ExpressionEvaluationException("Unsupported static type in interpreter: " + type.describe());
+        }
+        return staticClass(erased, classResolver);
+    }
+
+    /**
+     * Check whether every statement and expression in the transpiled unit is supported, without resolving
+     * any types.
+     */
+    public static <C, W, O> boolean canInterpret(TranspiledResult result, CompilerParameters<C, W, O> params) {
+        if (params.generatedSuperName() != null) {
+            // inherited instance methods need a real instance of the generated class
+            return false;
+        }
+        for (MethodDeclaration md : result.getUnit().findAll(MethodDeclaration.class)) {
+            if (md.getBody().isEmpty() || !isSupportedStatement(md.getBody().get())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Execute the eval method body against the given context.
+     */
+    public Object execute(Object context) {
+        Frame frame = new Frame();
+        frame.declare(contextName, null, context);
+        Completion completion = executeStatement(method.getBody().get(), frame);
+        if (completion == Completion.RETURN) {
+            return returnClass != null ? coerce(frame.returnValue, returnClass) : null;
+        }
+        return null;
+    }
+
+    // ── Linking ───────────────────────────────────────────────────────────
+
+    /**
+     * Resolve every declared type once, so unknown classes fail before the evaluator is handed out and
+     * member lookups on declared variables can be checked by name. Anything that would be a javac error
+     * makes the expression ineligible, letting the bytecode tiers report it.
+     */
+    private boolean link() {
+        Map<String, Class<?>> declared = new HashMap<>();
+        declared.put(contextName, classResolver.resolve(method.getParameter(0).getType()));
+
+        for (VariableDeclarator vd : method.findAll(VariableDeclarator.class)) {
+            if (!vd.getType().isVarType()) {
+                declared.put(vd.getNameAsString(), classResolver.resolve(vd.getType()));
+            }
+        }
+        for (CastExpr ce : method.findAll(CastExpr.class)) {
+            classResolver.resolve(ce.getType());
+        }
+        for (ObjectCreationExpr oce : method.findAll(ObjectCreationExpr.class)) {
+            classResolver.resolve(oce.getType());
+        }
+
+        for (FieldAccessExpr fae : method.findAll(FieldAccessExpr.class)) {
+            if (fae.getScope() instanceof NameExpr ne && declared.containsKey(ne.getNameAsString())) {
+                Class<?> clazz = declared.get(ne.getNameAsString());
+                if (clazz != null && !clazz.isArray() && findField(clazz, fae.getNameAsString()) == null) {
+                    return false;
+                }
+            }
+        }
+        for (MethodCallExpr mce : method.findAll(MethodCallExpr.class)) {
+            if (mce.getScope().isEmpty()) {
+                if (!helperMethods.containsKey(mce.getNameAsString())
+                    && !staticImportClasses.containsKey(mce.getNameAsString())
+                    && !staticImportClasses.containsKey("*")) {
+                    return false;
+                }
+            } else if (mce.getScope().get() instanceof NameExpr ne && declared.containsKey(ne.getNameAsString())) {
+                Class<?> clazz = declared.get(ne.getNameAsString());
+                if (clazz != null && !clazz.isInterface() && !hasMethod(clazz, mce.getNameAsString(), mce.getArguments().size())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasMethod(Class<?> clazz, String name, int argCount) {
+        for (Method m : clazz.getMethods()) {
+            if (m.getName().equals(name)
+                && (m.getParameterCount() == argCount || (m.isVarArgs() && argCount >= m.getParameterCount() - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ── Statement execution ───────────────────────────────────────────────
+
+    private enum Completion { NORMAL, RETURN, BREAK, CONTINUE }
+
+    private Completion executeStatement(Statement stmt, Frame frame) {
+        switch (stmt) {
+            case BlockStmt bs -> {
+                for (Statement s : bs.getStatements()) {
+                    Completion c = executeStatement(s, frame);
+                    if (c != Completion.NORMAL) {
+                        return c;
+                    }
+                }
+                return Completion.NORMAL;
+            }
+            case ExpressionStmt es -> {
+                evaluate(es.getExpression(), frame);
+                return Completion.NORMAL;
+            }
+            case ReturnStmt rs -> {
+                frame.returnValue = rs.getExpression().map(e -> evaluate(e, frame)).orElse(null);
+                return Completion.RETURN;
+            }
+            case IfStmt is -> {
+                if (asBoolean(evaluate(is.getCondition(), frame))) {
+                    return executeStatement(is.getThenStmt(), frame);
+                }
+                return is.getElseStmt().map(s -> executeStatement(s, frame)).orElse(Completion.NORMAL);
+            }
+            case WhileStmt ws -> {
+                while (asBoolean(evaluate(ws.getCondition(), frame))) {
+                    Completion c = executeStatement(ws.getBody(), frame);
+                    if (c == Completion.BREAK) {
+                        break;
+                    }
+                    if (c == Completion.RETURN) {
+                        return c;
+                    }
+                }
+                return Completion.NORMAL;
+            }
+            case DoStmt ds -> {
+                do {
+                    Completion c = executeStatement(ds.getBody(), frame);
+                    if (c == Completion.BREAK) {
+                        break;
+                    }
+                    if (c == Completion.RETURN) {
+                        return c;
+                    }
+                } while (asBoolean(evaluate(ds.getCondition(), frame)));
+                return Completion.NORMAL;
+            }
+            case ForStmt fs -> {
+                fs.getInitialization().forEach(e -> evaluate(e, frame));
+                while (fs.getCompare().isEmpty() || asBoolean(evaluate(fs.getCompare().get(), frame))) {
+                    Completion c = executeStatement(fs.getBody(), frame);
+                    if (c == Completion.BREAK) {
+                        break;
+                    }
+                    if (c == Completion.RETURN) {
+                        return c;
+                    }
+                    fs.getUpdate().forEach(e -> evaluate(e, frame));
+                }
+                return Completion.NORMAL;
+            }
+            case ForEachStmt fes -> {
+                VariableDeclarator vd = fes.getVariable().getVariable(0);
+                Class<?> varClass = vd.getType().isVarType() ? null : classResolver.resolve(vd.getType());
+                Object iterable = evaluate(fes.getIterable(), frame);
+                if (iterable == null) {
+                    throw new NullPointerException("Cannot iterate over null: " + fes.getIterable());
+                }
+                if (iterable.getClass().isArray()) {
+                    int length = Array.getLength(iterable);
+                    for (int i = 0; i < length; i++) {
+                        frame.declare(vd.getNameAsString(), varClass, Array.get(iterable, i));
+                        Completion c = executeStatement(fes.getBody(), frame);
+                        if (c == Completion.BREAK) {
+                            break;
+                        }
+                        if (c == Completion.RETURN) {
+                            return c;
+                        }
+                    }
+                } else {
+                    for (Object element : (Iterable<?>) iterable) {
+                        frame.declare(vd.getNameAsString(), varClass, element);
+                        Completion c = executeStatement(fes.getBody(), frame);
+                        if (c == Completion.BREAK) {
+                            break;
+                        }
+                        if (c == Completion.RETURN) {
+                            return c;
+                        }
+                    }
+                }
+                return Completion.NORMAL;
+            }
+            case BreakStmt _ -> {
+                return Completion.BREAK;
+            }
+            case ContinueStmt _ -> {
+                return Completion.CONTINUE;
+            }
+            case EmptyStmt _ -> {
+                return Completion.NORMAL;
+            }
+            default -> throw new ExpressionEvaluationException("Unsupported statement in interpreter: " + stmt);
+        }
+    }
+
+    // ── Expression evaluation ─────────────────────────────────────────────
+
+    private Object evaluate(Expression expr, Frame frame) {
+        return switch (expr) {
+            // 2147483648 is only legal as the operand of unary minus, where it wraps to Integer.MIN_VALUE
+            case IntegerLiteralExpr ile -> ile.asNumber().intValue();
+            case LongLiteralExpr lle -> lle.asNumber().longValue();
+            case DoubleLiteralExpr dle -> isFloatLiteral(dle) ? (Object) (float) dle.asDouble() : (Object) dle.asDouble();
+            case BooleanLiteralExpr ble -> ble.getValue();
+            case CharLiteralExpr cle -> cle.asChar();
+            // javac interns literals, keep identity comparisons between them consistent
+            case StringLiteralExpr sle -> sle.asString().intern();
+            case TextBlockLiteralExpr tble -> tble.asString().intern();
+            case NullLiteralExpr _ -> null;
+            case ClassExpr ce -> classResolver.resolve(ce.getType());
+            case NameExpr ne -> evaluateName(ne, frame);
+            case EnclosedExpr ee -> evaluate(ee.getInner(), frame);
+            case CastExpr ce -> cast(evaluate(ce.getExpression(), frame), classResolver.resolve(ce.getType()));
+            case InstanceOfExpr ioe -> {
+                Object value = evaluate(ioe.getExpression(), frame);
+                yield classResolver.resolve(ioe.getType()).isInstance(value);
+            }
+            case ConditionalExpr ce -> asBoolean(evaluate(ce.getCondition(), frame))
+                                       ? evaluate(ce.getThenExpr(), frame)
+                                       : evaluate(ce.getElseExpr(), frame);
+            case UnaryExpr ue -> evaluateUnary(ue, frame);
+            case BinaryExpr be -> evaluateBinary(be, frame);
+            case AssignExpr ae -> evaluateAssign(ae, frame);
+            case VariableDeclarationExpr vde -> {
+                for (VariableDeclarator vd : vde.getVariables()) {
+                    Class<?> varClass = vd.getType().isVarType() ? null : classResolver.resolve(vd.getType());
+                    Object value = null;
+                    if (vd.getInitializer().isPresent()) {
+                        Expression init = vd.getInitializer().get();
+                        value = init instanceof ArrayInitializerExpr aie
+                                ? createArray(varClass.getComponentType(), aie, frame)
+                                : evaluate(init, frame);
+                    }
+                    frame.declare(vd.getNameAsString(), varClass, value);
+                }
+                yield VOID;
+            }
+            case MethodCallExpr mce -> evaluateMethodCall(mce, frame);
+            case FieldAccessExpr fae -> evaluateFieldAccess(fae, frame);
+            case ObjectCreationExpr oce -> {
+                Class<?> clazz = classResolver.resolve(oce.getType());
+                Object[] args = evaluateArguments(oce.getArguments(), frame);
+                Constructor<?> ctor = (Constructor<?>) findExecutable(clazz, "<init>", oce, false);
+                yield invoke(ctor, null, args);
+            }
+            case ArrayAccessExpr aae -> {
+                Object array = evaluate(aae.getName(), frame);
+                int index = asInt(evaluate(aae.getIndex(), frame));
+                yield Array.get(array, index);
+            }
+            case ArrayCreationExpr ace -> evaluateArrayCreation(ace, frame);
+            default -> throw new ExpressionEvaluationException("Unsupported expression in interpreter: " + expr);
+        };
+    }
+
+    private static boolean isFloatLiteral(DoubleLiteralExpr dle) {
+        String value = dle.getValue();
+        char last = value.charAt(value.length() - 1);
+        return last == 'f' || last == 'F';
+    }
+
+    private Object evaluateName(NameExpr ne, Frame frame) {
+        String name = ne.getNameAsString();
+        if (frame.contains(name)) {
+            return frame.get(name);
+        }
+        List<Class<?>> importers = staticImportClasses.getOrDefault(name, staticImportClasses.get("*"));
+        if (importers != null) {
+            for (Class<?> clazz : importers) {
+                Field field = findField(clazz, name);
+                if (field != null && Modifier.isStatic(field.getModifiers())) {
+                    return getField(field, null);
+                }
+            }
+        }
+        throw new ExpressionEvaluationException("Unknown variable in interpreter: " + name);
+    }
+
+    // ── Unary and binary operators ────────────────────────────────────────
+
+    private Object evaluateUnary(UnaryExpr ue, Frame frame) {
+        switch (ue.getOperator()) {
+            case LOGICAL_COMPLEMENT:
+                return !asBoolean(evaluate(ue.getExpression(), frame));
+            case PLUS:
+                return promote(evaluate(ue.getExpression(), frame));
+            case MINUS: {
+                Object value = promote(evaluate(ue.getExpression(), frame));
+                return switch (value) {
+                    case Integer i -> -i;
+                    case Long l -> -l;
+                    case Float f -> -f;
+                    case Double d -> -d;
+                    default -> throw new ExpressionEvaluationException("Bad operand for unary -: " + value);
+                };
+            }
+            case BITWISE_COMPLEMENT: {
+                Object value = promote(evaluate(ue.getExpression(), frame));
+                return value instanceof Long l ? (Object) ~l : (Object) ~asInt(value);
+            }
+            case PREFIX_INCREMENT:
+            case PREFIX_DECREMENT:
+            case POSTFIX_INCREMENT:
+            case POSTFIX_DECREMENT: {
+                boolean increment = ue.getOperator() == UnaryExpr.Operator.PREFIX_INCREMENT
+                                    || ue.getOperator() == UnaryExpr.Operator.POSTFIX_INCREMENT;
+                LValue target = lvalue(ue.getExpression(), frame);
+                Object old = target.get();
+                Object updated = arithmetic(increment ? BinaryExpr.Operator.PLUS : BinaryExpr.Operator.MINUS, old, 1);
+                updated = target.set(updated);
+                return ue.isPrefix() ? updated : old;
+            }
+            default:
+                throw new ExpressionEvaluationException("Unsupported unary operator in interpreter: " + ue.getOperator());
+        }
+    }
+
+    private Object evaluateBinary(BinaryExpr be, Frame frame) {
+        BinaryExpr.Operator op = be.getOperator();
+        if (op == BinaryExpr.Operator.AND) {
+            return asBoolean(evaluate(be.getLeft(), frame)) && asBoolean(evaluate(be.getRight(), frame));
+        }
+        if (op == BinaryExpr.Operator.OR) {
+            return asBoolean(evaluate(be.getLeft(), frame)) || asBoolean(evaluate(be.getRight(), frame));
+        }
+        Object left = evaluate(be.getLeft(), frame);
+        Object right = evaluate(be.getRight(), frame);
+        return binary(op, left, right);
+    }
+
+    private static Object binary(BinaryExpr.Operator op, Object left, Object right) {
+        return switch (op) {
+            case EQUALS -> equalsOp(left, right);
+            case NOT_EQUALS -> !equalsOp(left, right);
+            case LESS, GREATER, LESS_EQUALS, GREATER_EQUALS -> compare(op, left, right);
+            case PLUS -> (left instanceof String || right instanceof String)
+                         ? String.valueOf(left) + right
+                         : arithmetic(op, left, right);
+            case BINARY_AND, BINARY_OR, XOR -> (left instanceof Boolean l && right instanceof Boolean r)
+                                               ? logical(op, l, r)
+                                               : arithmetic(op, left, right);
+            case LEFT_SHIFT, SIGNED_RIGHT_SHIFT, UNSIGNED_RIGHT_SHIFT -> shift(op, left, right);
+            default -> arithmetic(op, left, right);
+        };
+    }
+
+    private static boolean logical(BinaryExpr.Operator op, boolean left, boolean right) {
+        return switch (op) {
+            case BINARY_AND -> left & right;
+            case BINARY_OR -> left | right;
+            default -> left ^ right;
+        };
+    }
+
+    private static boolean equalsOp(Object left, Object right) {
+        if (numericKind(left) >= 0 && numericKind(right) >= 0) {
+            return compareNumeric(left, right) == 0 && !isNaN(left) && !isNaN(right);
+        }
+        if (left instanceof Boolean l && right instanceof Boolean r) {
+            return l.booleanValue() == r.booleanValue();
+        }
+        return left == right;
+    }
+
+    private static boolean isNaN(Object value) {
+        return (value instanceof Double d && d.isNaN()) || (value instanceof Float f && f.isNaN());
+    }
+
+    private static boolean compare(BinaryExpr.Operator op, Object left, Object right) {
+        if (isNaN(left) || isNaN(right)) {
+            return false;
+        }
+        int c = compareNumeric(left, right);
+        return switch (op) {
+            case LESS -> c < 0;
+            case GREATER -> c > 0;
+            case LESS_EQUALS -> c <= 0;
+            default -> c >= 0;
+        };
+    }
+
+    private static int compareNumeric(Object left, Object right) {
+        return switch (Math.max(numericKind(left), numericKind(right))) {
+            case KIND_INT -> Integer.compare(asInt(left), asInt(right));
+            case KIND_LONG -> Long.compare(asLong(left), asLong(right));
+            case KIND_FLOAT -> Float.compare(asFloat(left), asFloat(right)) == 0 ? 0 : (asFloat(left) < asFloat(right) ? -1 : 1);
+            case KIND_DOUBLE -> Double.compare(asDouble(left), asDouble(right)) == 0 ? 0 : (asDouble(left) < asDouble(right) ? -1 : 1);
+            default -> throw new ExpressionEvaluationException("Bad operands for comparison: " + left + ", " + right);
+        };
+    }
+
+    private static Object arithmetic(BinaryExpr.Operator op, Object left, Object right) {
+        int kind = Math.max(KIND_INT, Math.max(numericKind(left), numericKind(right)));
+        if (numericKind(left) < 0 || numericKind(right) < 0) {
+            if (left == null || right == null) {
+                throw new NullPointerException("Null operand for " + op.asString());
+            }
+            throw new ExpressionEvaluationException("Bad operands for " + op.asString() + ": " + left + ", " + right);
+        }
+        switch (kind) {
+            case KIND_INT: {
+                int l = asInt(left);
+                int r = asInt(right);
+                return switch (op) {
+                    case PLUS -> l + r;
+                    case MINUS -> l - r;
+                    case MULTIPLY -> l * r;
+                    case DIVIDE -> l / r;
+                    case REMAINDER -> l % r;
+                    case BINARY_AND -> l & r;
+                    case BINARY_OR -> l | r;
+                    case XOR -> l ^ r;
+                    default -> throw new ExpressionEvaluationException("Unsupported operator: " + op.asString());
+                };
+            }
+            case KIND_LONG: {
+                long l = asLong(left);
+                long r = asLong(right);
+                return switch (op) {
+                    case PLUS -> l + r;
+                    case MINUS -> l - r;
+                    case MULTIPLY -> l * r;
+                    case DIVIDE -> l / r;
+                    case REMAINDER -> l % r;
+                    case BINARY_AND -> l & r;
+                    case BINARY_OR -> l | r;
+                    case XOR -> l ^ r;
+                    default -> throw new ExpressionEvaluationException("Unsupported operator: " + op.asString());
+                };
+            }
+            case KIND_FLOAT: {
+                float l = asFloat(left);
+                float r = asFloat(right);
+                return switch (op) {
+                    case PLUS -> l + r;
+                    case MINUS -> l - r;
+                    case MULTIPLY -> l * r;
+                    case DIVIDE -> l / r;
+                    case REMAINDER -> l % r;
+                    default -> throw new ExpressionEvaluationException("Unsupported operator: " + op.asString());
+                };
+            }
+            default: {
+                double l = asDouble(left);
+                double r = asDouble(right);
+                return switch (op) {
+                    case PLUS -> l + r;
+                    case MINUS -> l - r;
+                    case MULTIPLY -> l * r;
+                    case DIVIDE -> l / r;
+                    case REMAINDER -> l % r;
+                    default -> throw new ExpressionEvaluationException("Unsupported operator: " + op.asString());
+                };
+            }
+        }
+    }
+
+    private static Object shift(BinaryExpr.Operator op, Object left, Object right) {
+        // the type of a shift is the promoted type of the left operand only
+        int distance = (int) asLong(right);
+        if (promote(left) instanceof Long l) {
+            return switch (op) {
+                case LEFT_SHIFT -> l << distance;
+                case SIGNED_RIGHT_SHIFT -> l >> distance;
+                default -> l >>> distance;
+            };
+        }
+        int i = asInt(left);
+        return switch (op) {
+            case LEFT_SHIFT -> i << distance;
+            case SIGNED_RIGHT_SHIFT -> i >> distance;
+            default -> i >>> distance;
+        };
+    }
+
+    // ── Assignment ────────────────────────────────────────────────────────
+
+    private Object evaluateAssign(AssignExpr ae, Frame frame) {
+        LValue target = lvalue(ae.getTarget(), frame);
+        Object value;
+        if (ae.getOperator() == AssignExpr.Operator.ASSIGN) {
+            value = ae.getValue() instanceof ArrayInitializerExpr aie
+                    ? createArray(target.type().getComponentType(), aie, frame)
+                    : evaluate(ae.getValue(), frame);
+        } else {
+            // compound assignment: E1 op= E2 is E1 = (T) (E1 op E2)
+            Object current = target.get();
+            Object operand = evaluate(ae.getValue(), frame);
+            value = binary(ae.getOperator().toBinaryOperator().orElseThrow(), current, operand);
+            if (target.type() == null && current != null) {
+                value = coerce(value, current.getClass());
+            }
+        }
+        return target.set(value);
+    }
+
+    private interface LValue {
+        Object get();
+
+        /** Stores the value after assignment conversion and returns the stored value. */
+        Object set(Object value);
+
+        Class<?> type();
+    }
+
+    private LValue lvalue(Expression expr, Frame frame) {
+        switch (expr) {
+            case EnclosedExpr ee:
+                return lvalue(ee.getInner(), frame);
+            case NameExpr ne: {
+                String name = ne.getNameAsString();
+                if (!frame.contains(name)) {
+                    throw new ExpressionEvaluationException("Unknown variable in interpreter: " + name);
+                }
+                return new LValue() {
+                    public Object get() { return frame.get(name); }
+                    public Object set(Object value) { return frame.set(name, value); }
+                    public Class<?> type() { return frame.type(name); }
+                };
+            }
+            case FieldAccessExpr fae: {
+                Object scope = null;
+                Class<?> owner = scopeAsClass(fae.getScope(), frame);
+                if (owner == null) {
+                    scope = evaluate(fae.getScope(), frame);
+                    if (scope == null) {
+                        throw new NullPointerException("Cannot assign field \"" + fae.getNameAsString() + "\" of null: " + fae.getScope());
+                    }
+                    owner = scope.getClass();
+                }
+                Field field = findField(owner, fae.getNameAsString());
+                if (field == null) {
+                    throw new ExpressionEvaluationException("Unknown field in interpreter: " + owner.getName() + "." + fae.getNameAsString());
+                }
+                Object target = scope;
+                return new LValue() {
+                    public Object get() { return getField(field, target); }
+                    public Object set(Object value) {
+                        Object converted = coerce(value, field.getType());
+                        try {
+                            field.set(target, converted);
+                        } catch (IllegalAccessException e) {
+                            throw new ExpressionEvaluationException("Cannot assign field " + field, e);
+                        }
+                        return converted;
+                    }
+                    public Class<?> type() { return field.getType(); }
+                };
+            }
+            case ArrayAccessExpr aae: {
+                Object array = evaluate(aae.getName(), frame);
+                int index = asInt(evaluate(aae.getIndex(), frame));
+                Class<?> componentType = array.getClass().getComponentType();
+                return new LValue() {
+                    public Object get() { return Array.get(array, index); }
+                    public Object set(Object value) {
+                        Object converted = coerce(value, componentType);
+                        Array.set(array, index, converted);
+                        return converted;
+                    }
+                    public Class<?> type() { return componentType; }
+                };
+            }
+            default:
+                throw new ExpressionEvaluationException("Unsupported assignment target in interpreter: " + expr);
+        }
+    }
+
+    // ── Arrays ────────────────────────────────────────────────────────────
+
+    private Object evaluateArrayCreation(ArrayCreationExpr ace, Frame frame) {
+        Class<?> elementClass = classResolver.resolve(ace.getElementType());
+        if (ace.getInitializer().isPresent()) {
+            Class<?> componentClass = elementClass;
+            for (int i = 1; i < ace.getLevels().size(); i++) {
+                componentClass = componentClass.arrayType();
+            }
+            return createArray(componentClass, ace.getInitializer().get(), frame);
+        }
+        List<Integer> dims = new ArrayList<>();
+        for (ArrayCreationLevel level : ace.getLevels()) {
+            if (level.getDimension().isEmpty()) {
+                break;
+            }
+            dims.add(asInt(evaluate(level.getDimension().get(), frame)));
+        }
+        Class<?> componentClass = elementClass;
+        for (int i = dims.size(); i < ace.getLevels().size(); i++) {
+            componentClass = componentClass.arrayType();
+        }
+        return Array.newInstance(componentClass, dims.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private Object createArray(Class<?> componentClass, ArrayInitializerExpr aie, Frame frame) {
+        Object array = Array.newInstance(componentClass, aie.getValues().size());
+        for (int i = 0; i < aie.getValues().size(); i++) {
+            Expression value = aie.getValues().get(i);
+            Object element = value instanceof ArrayInitializerExpr nested
+                             ? createArray(componentClass.getComponentType(), nested, frame)
+                             : coerce(evaluate(value, frame), componentClass);
+            Array.set(array, i, element);
+        }
+        return array;
+    }
+
+    // ── Field access ──────────────────────────────────────────────────────
+
+    private Object evaluateFieldAccess(FieldAccessExpr fae, Frame frame) {
+        Class<?> owner = scopeAsClass(fae.getScope(), frame);
+        if (owner != null) {
+            Field field = findField(owner, fae.getNameAsString());
+            if (field != null && Modifier.isStatic(field.getModifiers())) {
+                return getField(field, null);
+            }
+            throw new ExpressionEvaluationException("Unknown static field in interpreter: " + owner.getName() + "." + fae.getNameAsString());
+        }
+
+        Object scope = evaluate(fae.getScope(), frame);
+        if (scope == null) {
+            throw new NullPointerException("Cannot read field \"" + fae.getNameAsString() + "\" because \"" + fae.getScope() + "\" is null");
+        }
+        if (scope.getClass().isArray() && fae.getNameAsString().equals("length")) {
+            return Array.getLength(scope);
+        }
+        Field field = findField(scope.getClass(), fae.getNameAsString());
+        if (field == null) {
+            throw new ExpressionEvaluationException("Unknown field in interpreter: " + scope.getClass().getName() + "." + fae.getNameAsString());
+        }
+        return getField(field, scope);
+    }
+
+    /**
+     * Returns the class a scope expression names, or null if it denotes a value. Local variables shadow
+     * class names, as in Java.
+     */
+    private Class<?> scopeAsClass(Expression scope, Frame frame) {
+        if (scope instanceof NameExpr ne) {
+            if (frame.contains(ne.getNameAsString())) {
+                return null;
+            }
+            return classResolver.resolveOrNull(ne.getNameAsString());
+        }
+        if (scope instanceof FieldAccessExpr fae && isQualifiedName(fae)) {
+            Expression leftmost = fae;
+            while (leftmost instanceof FieldAccessExpr f) {
+                leftmost = f.getScope();
+            }
+            if (frame.contains(((NameExpr) leftmost).getNameAsString())) {
+                return null;
+            }
+            return classResolver.resolveOrNull(fae.toString());
+        }
+        if (scope instanceof TypeExpr te) {
+            return classResolver.resolve(te.getType());
+        }
+        return null;
+    }
+
+    private static boolean isQualifiedName(Expression expr) {
+        while (expr instanceof FieldAccessExpr fae) {
+            expr = fae.getScope();
+        }
+        return expr instanceof NameExpr;
+    }
+
+    private static Field findField(Class<?> clazz, String name) {
+        try {
+            Field field = clazz.getField(name);
+            return Modifier.isPublic(field.getDeclaringClass().getModifiers()) ? field : null;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static Object getField(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new ExpressionEvaluationException("Cannot read field " + field, e);
+        }
+    }
+
+    // ── Method calls ──────────────────────────────────────────────────────
+
+    private Object evaluateMethodCall(MethodCallExpr mce, Frame frame) {
+        String name = mce.getNameAsString();
+
+        if (mce.getScope().isEmpty()) {
+            Object[] args = evaluateArguments(mce.getArguments(), frame);
+            List<MethodDeclaration> helpers = helperMethods.get(name);
+            if (helpers != null) {
+                for (MethodDeclaration helper : helpers) {
+                    if (helper.getParameters().size() == args.length) {
+                        return invokeHelper(helper, args);
+                    }
+                }
+            }
+            List<Class<?>> importers = staticImportClasses.getOrDefault(name, staticImportClasses.get("*"));
+            if (importers != null) {
+                for (Class<?> clazz : importers) {
+                    Executable method = findExecutableOrNull(clazz, name, callSites.get(mce).argClasses, true);
+                    if (method != null) {
+                        return invoke(method, null, args);
+                    }
+                }
+            }
+            throw new ExpressionEvaluationException("Unknown method in interpreter: " + name);
+        }
+
+        Class<?> owner = scopeAsClass(mce.getScope().get(), frame);
+        if (owner != null) {
+            Object[] args = evaluateArguments(mce.getArguments(), frame);
+            return invoke(findExecutable(owner, name, mce, true), null, args);
+        }
+
+        Object target = evaluate(mce.getScope().get(), frame);
+        Object[] args = evaluateArguments(mce.getArguments(), frame);
+        if (target == null) {
+            throw new NullPointerException("Cannot invoke \"" + name + "()\" because \"" + mce.getScope().get() + "\" is null");
+        }
+        // resolved on the static type as javac does, then dispatched virtually by the invocation
+        Class<?> receiverClass = callSites.get(mce).receiverClass;
+        if (receiverClass == null || !receiverClass.isInstance(target)) {
+            receiverClass = target.getClass();
+        }
+        return invoke(findExecutable(receiverClass, name, mce, false), target, args);
+    }
+
+    private Object invokeHelper(MethodDeclaration helper, Object[] args) {
+        Frame helperFrame = new Frame();
+        for (int i = 0; i < args.length; i++) {
+            Parameter p = helper.getParameter(i);
+            helperFrame.declare(p.getNameAsString(), classResolver.resolve(p.getType()), args[i]);
+        }
+        executeStatement(helper.getBody().get(), helperFrame);
+        return helper.getType().isVoidType() ? null : coerce(helperFrame.returnValue, classResolver.resolve(helper.getType()));
+    }
+
+    private Object[] evaluateArguments(List<Expression> arguments, Frame frame) {
+        Object[] args = new Object[arguments.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = evaluate(arguments.get(i), frame);
+        }
+        return args;
+    }
+
+    /**
+     * The executable a call site invokes on the given class. The last one is kept on the call site, so a call
+     * whose receiver keeps the same class is resolved once.
+     */
+    private Executable findExecutable(Class<?> clazz, String name, Expression call, boolean isStatic) {
+        CallSite site = callSites.get(call);
+        Resolved last = site.last;
+        if (last != null && last.owner() == clazz) {
+            return last.executable();
+        }
+        Executable executable = findExecutableOrNull(clazz, name, site.argClasses, isStatic);
+        if (executable == null) {
+            throw new ExpressionEvaluationException("No applicable " + (name.equals("<init>") ? "constructor" : "method " + name)
+                                                    + " on " + clazz.getName() + " for " + site.argClasses.length + " argument(s)");
+        }
+        site.last = new Resolved(clazz, executable);
+        return executable;
+    }
+
+    /**
+     * Choose the most specific applicable executable for the static argument classes, trying strict invocation,
+     * then loose invocation with boxing, then variable arity invocation, as javac does (JLS 15.12.2).
+     */
+    private Executable findExecutableOrNull(Class<?> clazz, String name, Class<?>[] argClasses, boolean isStatic) {
+        MethodKey key = new MethodKey(clazz, name, isStatic, argClasses);
+        Executable cached = executableCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Executable best = null;
+        Executable[] candidates = name.equals("<init>") ? clazz.getConstructors() : clazz.getMethods();
+        for (int phase = 0; best == null && phase < 3; phase++) {
+            for (Executable candidate : candidates) {
+                if (!name.equals("<init>") && (!candidate.getName().equals(name) || Modifier.isStatic(candidate.getModifiers()) != isStatic)) {
+                    continue;
+                }
+                if ((phase == 2 && !candidate.isVarArgs())
+                    || !isApplicable(candidate.getParameterTypes(), argClasses, phase == 2, phase > 0)) {
+                    continue;
+                }
+                if (best == null || isMoreSpecific(candidate.getParameterTypes(), best.getParameterTypes())) {
+                    best = candidate;
+                }
+            }
+        }
+        if (best instanceof Method m) {
+            best = accessibleMethod(m);
+        }
+        if (best != null) {
+            executableCache.put(key, best);
+        }
+        return best;
+    }
+
+    private static boolean isApplicable(Class<?>[] params, Class<?>[] args, boolean varArgs, boolean loose) {
+        if (!varArgs && params.length != args.length) {
+            return false;
+        }
+        if (varArgs && args.length < params.length - 1) {
+            return false;
+        }
+        int fixed = varArgs ? params.length - 1 : params.length;
+        for (int i = 0; i < fixed; i++) {
+            if (!isAssignable(params[i], args[i], loose)) {
+                return false;
+            }
+        }
+        if (varArgs) {
+            Class<?> component = params[params.length - 1].getComponentType();
+            for (int i = fixed; i < args.length; i++) {
+                if (!isAssignable(component, args[i], loose)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a value of the static class {@code arg} (null for the null type) can be passed to {@code param}:
+     * by widening only, or also by boxing or unboxing when {@code loose}.
+     */
+    private static boolean isAssignable(Class<?> param, Class<?> arg, boolean loose) {
+        if (arg == null) {
+            return !param.isPrimitive();
+        }
+        if (param.isPrimitive() == arg.isPrimitive()) {
+            return param.isPrimitive() ? isWidening(arg, param) : param.isAssignableFrom(arg);
+        }
+        if (!loose) {
+            return false;
+        }
+        return param.isPrimitive() ? isWidening(unboxed(arg), param) : param.isAssignableFrom(boxed(arg));
+    }
+
+    private static boolean isMoreSpecific(Class<?>[] candidate, Class<?>[] best) {
+        if (candidate.length != best.length) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length; i++) {
+            if (!isAssignable(best[i], candidate[i], false)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Methods inherited by a non-public class (for instance a JDK collection implementation) are not accessible
+     * through that class; find the same method on a public superclass or interface.
+     */
+    private static Method accessibleMethod(Method method) {
+        if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return method;
+        }
+        Method found = accessibleMethod(method.getDeclaringClass(), method.getName(), method.getParameterTypes());
+        return found != null ? found : method;
+    }
+
+    private static Method accessibleMethod(Class<?> clazz, String name, Class<?>[] params) {
+        if (clazz == null) {
+            return null;
+        }
+        if (Modifier.isPublic(clazz.getModifiers())) {
+            try {
+                return clazz.getMethod(name, params);
+            } catch (NoSuchMethodException e) {
+                // keep looking
+            }
+        }
+        for (Class<?> iface : clazz.getInterfaces()) {
+            Method m = accessibleMethod(iface, name, params);
+            if (m != null) {
+                return m;
+            }
+        }
+        return accessibleMethod(clazz.getSuperclass(), name, params);
+    }
+
+    private static Object invoke(Executable executable, Object target, Object[] args) {
+        Object[] actual = args;
+        if (executable.isVarArgs()) {
+            Class<?>[] params = executable.getParameterTypes();
+            int fixed = params.length - 1;
+            boolean passArray = args.length == params.length
+                                && (args[fixed] == null || params[fixed].isInstance(args[fixed]));
+            if (!passArray) {
+                actual = new Object[params.length];
+                System.arraycopy(args, 0, actual, 0, fixed);
+                Object varArray = Array.newInstance(params[fixed].getComponentType(), args.length - fixed);
+                for (int i = fixed; i < args.length; i++) {
+                    Array.set(varArray, i - fixed, coerce(args[i], params[fixed].getComponentType()));
+                }
+                actual[fixed] = varArray;
+            }
+        }
+        Class<?>[] params = executable.getParameterTypes();
+        for (int i = 0; i < actual.length; i++) {
+            if (params[i].isPrimitive()) {
+                actual[i] = coerce(actual[i], params[i]);
+            }
+        }
+        try {
+            if (executable instanceof Constructor<?> ctor) {
+                return ctor.newInstance(actual);
+            }
+            return ((Method) executable).invoke(target, actual);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new ExpressionEvaluationException(cause.getMessage(), cause);
+        } catch (IllegalAccessException | InstantiationException | IllegalArgumentException e) {
+            throw new ExpressionEvaluationException("Cannot invoke " + executable + ": " + e.getMessage(), e);
+        }
+    }
+
+    private record MethodKey(Class<?> owner, String name, boolean isStatic, List<Class<?>> argClasses) {
+        MethodKey(Class<?> owner, String name, boolean isStatic, Class<?>[] argClasses) {
+            this(owner, name, isStatic, java.util.Arrays.asList(argClasses));
+        }
+    }
+
+    private static final class CallSite {
+        private final Class<?> receiverClass;
+
+        private final Class<?>[] argClasses;
+
+        private volatile Resolved last;
+
+        CallSite(Class<?> receiverClass, Class<?>[] argClasses) {
+            this.receiverClass = receiverClass;
+            this.argClasses = argClasses;
+        }
+    }
+
+    private record Resolved(Class<?> owner, Executable executable) {
+    }
+
+    // ── Conversions ───────────────────────────────────────────────────────
+
+    private static final int KIND_INT = 0;
+    private static final int KIND_LONG = 1;
+    private static final int KIND_FLOAT = 2;
+    private static final int KIND_DOUBLE = 3;
+
+    private static int numericKind(Object value) {
+        return switch (value) {
+            case Integer _, Short _, Byte _, Character _ -> KIND_INT;
+            case Long _ -> KIND_LONG;
+            case Float _ -> KIND_FLOAT;
+            case Double _ -> KIND_DOUBLE;
+            case null, default -> -1;
+        };
+    }
+
+    /** Unary numeric promotion: byte, short and char become int. */
+    private static Object promote(Object value) {
+        return switch (value) {
+            case Short s -> (int) s;
+            case Byte b -> (int) b;
+            case Character c -> (int) c;
+            case null -> throw new NullPointerException("Null numeric operand");
+            default -> value;
+        };
+    }
+
+    private static boolean asBoolean(Object value) {
+        if (value instanceof Boolean b) {
+            return b;
+        }
+        if (value == null) {
+            throw new NullPointerException("Null boolean operand");
+        }
+        throw new ExpressionEvaluationException("Expected a boolean value but got " + value.getClass().getName());
+    }
+
+    private static int asInt(Object value) {
+        return value instanceof Character c ? c : ((Number) promote(value)).intValue();
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Character c ? c : ((Number) promote(value)).longValue();
+    }
+
+    private static float asFloat(Object value) {
+        return value instanceof Character c ? c : ((Number) promote(value)).floatValue();
+    }
+
+    private static double asDouble(Object value) {
+        return value instanceof Character c ? c : ((Number) promote(value)).doubleValue();
+    }
+
+    private static Class<?> unboxed(Class<?> clazz) {
+        if (clazz == Integer.class) return int.class;
+        if (clazz == Long.class) return long.class;
+        if (clazz == Double.class) return double.class;
+        if (clazz == Float.class) return float.class;
+        if (clazz == Boolean.class) return boolean.class;
+        if (clazz == Character.class) return char.class;
+        if (clazz == Short.class) return short.class;
+        if (clazz == Byte.class) return byte.class;
+        return clazz;
+    }
+
+    private static Class<?> boxed(Class<?> clazz) {
+        if (clazz == int.class) return Integer.class;
+        if (clazz == long.class) return Long.class;
+        if (clazz == double.class) return Double.class;
+        if (clazz == float.class) return Float.class;
+        if (clazz == boolean.class) return Boolean.class;
+        if (clazz == char.class) return Character.class;
+        if (clazz == short.class) return Short.class;
+        if (clazz == byte.class) return Byte.class;
+        return clazz;
+    }
+
+    private static boolean isWidening(Class<?> from, Class<?> to) {
+        if (from == to) {
+            return true;
+        }
+        if (!from.isPrimitive() || from == boolean.class || to == boolean.class) {
+            return false;
+        }
+        return switch (from.getName()) {
+            case "byte" -> to == short.class || to == int.class || to == long.class || to == float.class || to == double.class;
+            case "short", "char" -> to == int.class || to == long.class || to == float.class || to == double.class;
+            case "int" -> to == long.class || to == float.class || to == double.class;
+            case "long" -> to == float.class || to == double.class;
+            case "float" -> to == double.class;
+            default -> false;
+        };
+    }
+
+    /**
+     * Assignment conversion of a boxed value to the given declared type. Numeric values are converted to the
+     * target primitive or its box; everything else is returned unchanged.
+     */
+    private static Object coerce(Object value, Class<?> type) {
+        if (value == null || type == null || type.isInstance(value)) {
+            return value;
+        }
+        if (numericKind(value) < 0) {
+            return value;
+        }
+        Class<?> primitive = unboxed(type);
+        if (!primitive.isPrimitive() || primitive == boolean.class) {
+            return value;
+        }
+        return convert(value, primitive);
+    }
+
+    private static Object convert(Object value, Class<?> primitive) {
+        return switch (primitive.getName()) {
+            case "int" -> asInt(value);
+            case "long" -> asLong(value);
+            case "double" -> asDouble(value);
+            case "float" -> asFloat(value);
+            case "short" -> (short) asInt(value);
+            case "byte" -> (byte) asInt(value);
+            case "char" -> (char) asInt(value);
+            default -> value;
+        };
+    }
+
+    private static Object cast(Object value, Class<?> type) {
+        if (type.isPrimitive()) {
+            if (value == null) {
+                throw new NullPointerException("Cannot cast null to " + type.getName());
+            }
+            if (type == boolean.class) {
+                return asBoolean(value);
+            }
+            if (numericKind(value) < 0) {
+                throw new ClassCastException(value.getClass().getName() + " cannot be cast to " + type.getName());
+            }
+            return convert(value, type);
+        }
+        if (value != null && !type.isInstance(value)) {
+            throw new ClassCastException(value.getClass().getName() + " cannot be cast to " + type.getName());
+        }
+        return value;
+    }
+
+    // ── Frame ─────────────────────────────────────────────────────────────
+
+    /**
+     * Local variables of one invocation. Java forbids shadowing between nested blocks, so a flat map per
+     * invocation is enough.
+     */
+    private static final class Frame {
+        private final Map<String, Object> values = new HashMap<>();
+
+        private final Map<String, Class<?>> types = new HashMap<>();
+
+        private Object returnValue;
+
+        void declare(String name, Class<?> type, Object value) {
+            types.put(name, type);
+            values.put(name, coerce(value, type));
+        }
+
+        boolean contains(String name) {
+            return values.containsKey(name);
+        }
+
+        Object get(String name) {
+            return values.get(name);
+        }
+
+        Class<?> type(String name) {
+            return types.get(name);
+        }
+
+        Object set(String name, Object value) {
+            Object converted = coerce(value, types.get(name));
+            values.put(name, converted);
+            return converted;
+        }
+    }
+
+    // ── Class resolution ──────────────────────────────────────────────────
+
+    /**
+     * Resolves AST type names against the unit's imports and package, java.lang and the compilation class
+     * loader. Results, including misses, are cached.
+     */
+    private static final class ClassResolver {
+        private final ClassLoader classLoader;
+
+        private final String packageName;
+
+        private final Map<String, String> singleImports = new HashMap<>();
+
+        private final List<String> wildcardImports = new ArrayList<>();
+
+        private final Map<String, Optional<Class<?>>> cache = new ConcurrentHashMap<>();
+
+        ClassResolver(CompilationUnit unit, ClassLoader classLoader) {
+            this.classLoader = classLoader != null ? classLoader : AstInterpreter.class.getClassLoader();
+            this.packageName = unit.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+            for (ImportDeclaration id : unit.getImports()) {
+                if (id.isStatic()) {
+                    continue;
+                }
+                String name = id.getNameAsString();
+                if (id.isAsterisk()) {
+                    wildcardImports.add(name);
+                } else {
+                    singleImports.put(name.substring(name.lastIndexOf('.') + 1), name);
+                }
+            }
+        }
+
+        Class<?> resolve(Type type) {
+            return switch (type) {
+                case PrimitiveType pt -> switch (pt.getType()) {
+                    case BOOLEAN -> boolean.class;
+                    case CHAR -> char.class;
+                    case BYTE -> byte.class;
+                    case SHORT -> short.class;
+                    case INT -> int.class;
+                    case LONG -> long.class;
+                    case FLOAT -> float.class;
+                    case DOUBLE -> double.class;
+                };
+                case ArrayType at -> resolve(at.getComponentType()).arrayType();
+                case ClassOrInterfaceType cit -> resolve(cit.getNameWithScope());
+                default -> {
+                    if (type.isVoidType()) {
+                        yield Void.TYPE;
+                    }
+                    throw new ExpressionEvaluationException("Unsupported type in interpreter: " + type);
+                }
+            };
+        }
+
+        Class<?> resolve(String name) {
+            Class<?> clazz = resolveOrNull(name);
+            if (clazz == null) {
+                throw new ExpressionEvaluationException("Cannot resolve class in interpreter: " + name);
+            }
+            return clazz;
+        }
+
+        Class<?> resolveOrNull(String name) {
+            return cache.computeIfAbsent(name, n -> Optional.ofNullable(lookup(n))).orElse(null);
+        }
+
+        private Class<?> lookup(String name) {
+            int dot = name.indexOf('.');
+            String first = dot < 0 ? name : name.substring(0, dot);
+            String rest = dot < 0 ? "" : name.substring(dot);
+
+            Class<?> clazz = load(name);
+            if (clazz == null && singleImports.containsKey(first)) {
+                clazz = load(singleImports.get(first) + rest);
+            }
+            if (clazz == null && !packageName.isEmpty()) {
+                clazz = load(packageName + "." + name);
+            }
+            if (clazz == null) {
+                clazz = load("java.lang." + name);
+            }
+            for (int i = 0; clazz == null && i < wildcardImports.size(); i++) {
+                clazz = load(wildcardImports.get(i) + "." + name);
+            }
+            return clazz;
+        }
+
+        /** Loads a dotted name, treating trailing segments as nested classes when needed. */
+        private Class<?> load(String name) {
+            String candidate = name;
+            while (true) {
+                try {
+                    return Class.forName(candidate, false, classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    int lastDot = candidate.lastIndexOf('.');
+                    if (lastDot < 0) {
+                        return null;
+                    }
+                    candidate = candidate.substring(0, lastDot) + '$' + candidate.substring(lastDot + 1);
+                }
+            }
+        }
+    }
+
+    // ── AST support checking ──────────────────────────────────────────────
+
+    private static boolean isSupportedStatement(Statement stmt) {
+        return switch (stmt) {
+            case BlockStmt bs -> bs.getStatements().stream().allMatch(AstInterpreter::isSupportedStatement);
+            case ExpressionStmt es -> isSupportedExpression(es.getExpression());
+            case ReturnStmt rs -> rs.getExpression().map(AstInterpreter::isSupportedExpression).orElse(true);
+            case IfStmt is -> isSupportedExpression(is.getCondition())
+                              && isSupportedStatement(is.getThenStmt())
+                              && is.getElseStmt().map(AstInterpreter::isSupportedStatement).orElse(true);
+            case WhileStmt ws -> isSupportedExpression(ws.getCondition()) && isSupportedStatement(ws.getBody());
+            case DoStmt ds -> isSupportedExpression(ds.getCondition()) && isSupportedStatement(ds.getBody());
+            case ForStmt fs -> fs.getInitialization().stream().allMatch(AstInterpreter::isSupportedExpression)
+                               && fs.getCompare().map(AstInterpreter::isSupportedExpression).orElse(true)
+                               && fs.getUpdate().stream().allMatch(AstInterpreter::isSupportedExpression)
+                               && isSupportedStatement(fs.getBody());
+            case ForEachStmt fes -> fes.getVariable().getVariables().size() == 1
+                                    && isSupportedExpression(fes.getIterable())
+                                    && isSupportedStatement(fes.getBody());
+            case BreakStmt bs -> bs.getLabel().isEmpty();
+            case ContinueStmt cs -> cs.getLabel().isEmpty();
+            case EmptyStmt _ -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isSupportedExpression(Expression expr) {
+        return switch (expr) {
+            case IntegerLiteralExpr _, LongLiteralExpr _, DoubleLiteralExpr _, BooleanLiteralExpr _,
+                 CharLiteralExpr _, StringLiteralExpr _, TextBlockLiteralExpr _, NullLiteralExpr _,
+                 ClassExpr _, NameExpr _ -> true;
+            case EnclosedExpr ee -> isSupportedExpression(ee.getInner());
+            case CastExpr ce -> !ce.getType().isIntersectionType() && isSupportedExpression(ce.getExpression());
+            case InstanceOfExpr ioe -> ioe.getPattern().isEmpty() && isSupportedExpression(ioe.getExpression());
+            case ConditionalExpr ce -> isSupportedExpression(ce.getCondition())
+                                       && isSupportedExpression(ce.getThenExpr())
+                                       && isSupportedExpression(ce.getElseExpr());
+            case UnaryExpr ue -> isSupportedExpression(ue.getExpression());
+            case BinaryExpr be -> isSupportedExpression(be.getLeft()) && isSupportedExpression(be.getRight());
+            case AssignExpr ae -> (ae.getTarget() instanceof NameExpr || ae.getTarget() instanceof FieldAccessExpr
+                                   || ae.getTarget() instanceof ArrayAccessExpr)
+                                  && isSupportedExpression(ae.getTarget()) && isSupportedValue(ae.getValue());
+            case VariableDeclarationExpr vde -> vde.getVariables().stream().allMatch(
+                    v -> v.getInitializer().map(AstInterpreter::isSupportedValue).orElse(true)
+                         && (!v.getType().isVarType() || v.getInitializer().map(i -> !(i instanceof ArrayInitializerExpr)).orElse(false)));
+            case MethodCallExpr mce -> mce.getTypeArguments().isEmpty()
+                                       && mce.getScope().map(AstInterpreter::isSupportedScope).orElse(true)
+                                       && mce.getArguments().stream().allMatch(AstInterpreter::isSupportedExpression);
+            case FieldAccessExpr fae -> isSupportedScope(fae.getScope());
+            case ObjectCreationExpr oce -> oce.getScope().isEmpty() && oce.getAnonymousClassBody().isEmpty()
+                                           && oce.getArguments().stream().allMatch(AstInterpreter::isSupportedExpression);
+            case ArrayAccessExpr aae -> isSupportedExpression(aae.getName()) && isSupportedExpression(aae.getIndex());
+            case ArrayCreationExpr ace -> ace.getLevels().stream().allMatch(
+                    l -> l.getDimension().map(AstInterpreter::isSupportedExpression).orElse(true))
+                                          && ace.getInitializer().map(AstInterpreter::isSupportedValue).orElse(true);
+            default -> false;
+        };
+    }
+
+    private static boolean isSupportedValue(Expression expr) {
+        if (expr instanceof ArrayInitializerExpr aie) {
+            return aie.getValues().stream().allMatch(AstInterpreter::isSupportedValue);
+        }
+        return isSupportedExpression(expr);
+    }
+
+    private static boolean isSupportedScope(Expression scope) {
+        return scope instanceof TypeExpr || isSupportedExpression(scope);
+    }
+}
@@ -0,0 +1,127 @@
+package org.mvel3.compiler.interpreter;
+
+import org.mvel3.CompilerParameters;
+import org.mvel3.Evaluator;
+import org.mvel3.MVELCompiler;
+import org.mvel3.ResultSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Evaluator} that starts out interpreting the rewritten AST with an {@link AstInterpreter} and, once it has
+ * been invoked {@code threshold} times, compiles the expression to bytecode on a background executor. When the
+ * compiled evaluator is ready every later call is delegated to it; calls in the meantime keep interpreting.
+ * <p>
+ * Promotion is attempted once. If compilation fails, the failure is logged and the evaluator stays interpreted.
+ */
+public final class TieredEvaluator<C, W, O> implements Evaluator<C, W, O> {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredEvaluator.class);
+
+    /**
+     * Number of interpreted invocations before an expression is compiled, unless configured otherwise.
+     */
+    public static final int DEFAULT_THRESHOLD = 64;
+
+    private final CompilerParameters<C, W, O> parameters;
+
+    private final AstInterpreter interpreter;
+
+    private final int threshold;
+
+    private final Executor executor;
+
+    private final AtomicInteger invocations = new AtomicInteger();
+
+    private volatile Evaluator<C, W, O> compiled;
+
+    public TieredEvaluator(CompilerParameters<C, W, O> parameters, AstInterpreter interpreter, int threshold, Executor executor) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold must be greater than zero, got " + threshold);
+        }
+        this.parameters = parameters;
+        this.interpreter = interpreter;
+        this.threshold = threshold;
+        this.executor = executor != null ? executor : DefaultExecutor.INSTANCE;
+    }
+
+    @Override
+    public O eval(C c) {
+        Evaluator<C, W, O> delegate = compiled;
+        if (delegate != null) {
+            return delegate.eval(c);
+        }
+        // only the call that reaches the threshold schedules promotion, later ones just count past it
+        if (invocations.incrementAndGet() == threshold) {
+            scheduleTierUp();
+        }
+        return (O) interpreter.execute(c);
+    }
+
+    @Override
+    public void evalAll(List<? extends C> inputs, ResultSink<? super C, ? super O> sink) {
+        Evaluator<C, W, O> delegate = compiled;
+        if (delegate != null) {
+            delegate.evalAll(inputs, sink);
+        } else {
+            Evaluator.super.evalAll(inputs, sink);
+        }
+    }
+
+    @Override
+    public List<C> filter(Collection<? extends C> inputs) {
+        Evaluator<C, W, O> delegate = compiled;
+        return delegate != null ? delegate.filter(inputs) : Evaluator.super.filter(inputs);
+    }
+
+    /**
+     * True once calls are served by the compiled evaluator.
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Compiled evaluator, or null while still interpreting.
+     */
+    public Evaluator<C, W, O> getCompiled() {
+        return compiled;
+    }
+
+    public int getInvocationCount() {
+        return invocations.get();
+    }
+
+    private void scheduleTierUp() {
+        try {
+            executor.execute(this::tierUp);
+        } catch (RejectedExecutionException e) {
+            log.debug("Tier-up rejected by executor, staying interpreted: {}", parameters.expression());
+        }
+    }
+
+    private void tierUp() {
+        try {
+            compiled = new MVELCompiler().compile(parameters);
+            log.debug("Tiered up to compiled evaluator: {}", parameters.expression());
+        } catch (RuntimeException | LinkageError e) {
+            log.warn("Tier-up compilation failed, staying interpreted: {} | reason: {}", parameters.expression(), e.getMessage());
+        }
+    }
+
+    private static final class DefaultExecutor {
+        private static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "mvel3-tier-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
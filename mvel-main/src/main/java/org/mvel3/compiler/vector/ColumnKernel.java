@@ -0,0 +1,15 @@
+package org.mvel3.compiler.vector;
+
+import org.mvel3.Columns;
+
+/**
+ * A kernel emitted by {@link VectorKernelEmitter}.
+ */
+interface ColumnKernel {
+
+    /**
+     * Evaluates rows {@code [0, bound)} of the batch into {@code out}, a {@code long[]} bitset or a
+     * {@code double[]}. {@code bound} must be a multiple of the kernel's lane count.
+     */
+    void run(Columns columns, int bound, Object out);
+}
@@ -0,0 +1,44 @@
+package org.mvel3.compiler.vector;
+
+import org.mvel3.CompilerParameters;
+import org.mvel3.ContextType;
+import org.mvel3.Evaluator;
+import org.mvel3.transpiler.TranspiledResult;
+
+/**
+ * Optional backend that evaluates the rows of a {@link org.mvel3.ContextType#COLUMNS} evaluator several at a time
+ * with the Vector API, see {@link VectorKernelEmitter}.
+ * <p>
+ * It is enabled with {@code -Dmvel3.compiler.vector=true}, and needs the incubating {@code jdk.incubator.vector}
+ * module to be resolved, with {@code --add-modules jdk.incubator.vector}, which this module does not require. Without both, and for any expression it
+ * cannot lower, columns evaluators keep their scalar row loop. Nothing in this class touches the Vector API, so it
+ * is safe to load when the module is absent.
+ */
+public final class VectorBackend {
+
+    private VectorBackend() {}
+
+    /** Whether the {@code jdk.incubator.vector} module is resolved. */
+    public static final boolean AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    public static final boolean ENABLED = AVAILABLE &&
+            "true".equalsIgnoreCase(System.getProperty("mvel3.compiler.vector"));
+
+    /**
+     * Returns an evaluator running the rows of the columns batch through a Vector API kernel, or null when the
+     * module is not available, this is not a columns evaluator or its row expression cannot be lowered.
+     */
+    public static <T, K, R> Evaluator<T, K, R> lower(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
+        if (!AVAILABLE || info.contextType() != ContextType.COLUMNS) {
+            return null;
+        }
+        return VectorKernelEmitter.lower(info, transpiled);
+    }
+
+    /**
+     * Whether the given evaluator runs a Vector API kernel, as returned by {@link #lower} when it succeeds.
+     */
+    public static boolean isLowered(Evaluator<?, ?, ?> evaluator) {
+        return evaluator instanceof VectorizedEvaluator;
+    }
+}
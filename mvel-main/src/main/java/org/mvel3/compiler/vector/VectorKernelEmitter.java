@@ -0,0 +1,521 @@
+package org.mvel3.compiler.vector;
+
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.DoubleLiteralExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LongLiteralExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.LabeledStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import org.mvel3.CompilerParameters;
+import org.mvel3.Evaluator;
+import org.mvel3.transpiler.TranspiledResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessFlag;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.constant.ConstantDescs.*;
+
+/**
+ * Lowers the row expression of a columns evaluator to the Vector API. The emitted {@link ColumnKernel} loads a chunk
+ * of rows from each column into a vector, one row per lane, computes the expression lanewise and stores the chunk:
+ * the bits of the resulting mask into the {@code long[]} bitset, or its lanes into the {@code double[]}.
+ * <p>
+ * Only arithmetic, comparisons and boolean logic over {@code int}, {@code long}, {@code double} and {@code boolean}
+ * columns and literals are lowered, with Java's binary numeric promotion. Integer division is not, as a lane divided
+ * by zero throws even when a {@code &&} guards it. For any other node {@link #lower} returns null, and the scalar
+ * row loop is used.
+ * <p>
+ * All vectors of a kernel have the same number of lanes, so conversions never change the lane count: the preferred
+ * number for {@code double} when a {@code long} or {@code double} is involved, else for {@code int}. Masks are all
+ * kept in the {@code int} species.
+ * <p>
+ * The module does not require {@code jdk.incubator.vector}, so that compiling it does not warn about an incubating
+ * module: kernels refer to the Vector API only in their bytecode, and the module reads it once it is resolved.
+ */
+public final class VectorKernelEmitter {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorKernelEmitter.class);
+
+    private static final String VECTOR_PACKAGE = "jdk.incubator.vector.";
+    private static final ClassDesc CD_Vector = ClassDesc.of(VECTOR_PACKAGE + "Vector");
+    private static final ClassDesc CD_IntVector = ClassDesc.of(VECTOR_PACKAGE + "IntVector");
+    private static final ClassDesc CD_LongVector = ClassDesc.of(VECTOR_PACKAGE + "LongVector");
+    private static final ClassDesc CD_DoubleVector = ClassDesc.of(VECTOR_PACKAGE + "DoubleVector");
+    private static final ClassDesc CD_VectorMask = ClassDesc.of(VECTOR_PACKAGE + "VectorMask");
+    private static final ClassDesc CD_VectorSpecies = ClassDesc.of(VECTOR_PACKAGE + "VectorSpecies");
+    private static final ClassDesc CD_VectorOperators = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators");
+    private static final ClassDesc CD_Unary = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators$Unary");
+    private static final ClassDesc CD_Binary = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators$Binary");
+    private static final ClassDesc CD_Associative = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators$Associative");
+    private static final ClassDesc CD_Comparison = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators$Comparison");
+    private static final ClassDesc CD_Conversion = ClassDesc.of(VECTOR_PACKAGE + "VectorOperators$Conversion");
+
+    private static final ClassDesc CD_Columns = ClassDesc.of("org.mvel3.Columns");
+    private static final ClassDesc CD_ColumnKernel = ClassDesc.of("org.mvel3.compiler.vector.ColumnKernel");
+
+    private static final MethodTypeDesc MTD_MASK_MASK = MethodTypeDesc.of(CD_VectorMask, CD_VectorMask);
+
+    /** The vector shapes there are species constants for, as {@code IntVector.SPECIES_256}. */
+    private static final Set<Integer> SHAPE_BITS = Set.of(64, 128, 256, 512);
+
+    private final CompilerParameters<?, ?, ?> info;
+
+    /** The columns the expression reads, by variable name, with their slot in the batch. */
+    private final Map<String, Integer> columns = new LinkedHashMap<>();
+
+    /** Whether a long or double is involved, which sets the lane count to that of double. */
+    private boolean wide;
+
+    private int lanes;
+
+    private VectorKernelEmitter(CompilerParameters<?, ?, ?> info) {
+        this.info = info;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, K, R> Evaluator<T, K, R> lower(CompilerParameters<T, K, R> info, TranspiledResult transpiled) {
+        Class<?> outClass = info.outType().getClazz();
+        boolean bitset = outClass == long[].class;
+        Expression rowExpr = findRowExpression(transpiled.getBlock(), bitset);
+        if (rowExpr == null) {
+            return null;
+        }
+
+        VectorKernelEmitter emitter = new VectorKernelEmitter(info);
+        Class<?> rowType = emitter.laneType(rowExpr);
+        if (rowType == null || (rowType == boolean.class) != bitset) {
+            log.debug("Not vectorized, unsupported row expression: {}", rowExpr);
+            return null;
+        }
+        if (!bitset) {
+            emitter.wide = true;
+        }
+        emitter.lanes = emitter.wide ? VectorModule.DOUBLE_LANES : VectorModule.INT_LANES;
+        if (!SHAPE_BITS.contains(emitter.lanes * 32) || (emitter.wide && !SHAPE_BITS.contains(emitter.lanes * 64))) {
+            log.debug("Not vectorized, no species for {} lanes", emitter.lanes);
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClass(emitter.emit(rowExpr, bitset), true);
+            ColumnKernel kernel = (ColumnKernel) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+            log.debug("Vector API kernel with {} lanes used for expression: {}", emitter.lanes, info.expression());
+            return (Evaluator<T, K, R>) new VectorizedEvaluator<>(kernel, emitter.lanes, bitset);
+        } catch (Throwable e) {
+            log.debug("Vector API kernel failed for: {} | reason: {}", info.expression(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the expression computed for each row in the loop generated for a columns evaluator: the condition that
+     * sets the row's bit, or the value stored for the row. Returns null unless the row does nothing but read its
+     * inputs and compute that single expression.
+     */
+    private static Expression findRowExpression(BlockStmt block, boolean bitset) {
+        for (Statement stmt : block.getStatements()) {
+            if (stmt instanceof LabeledStmt labeled && labeled.getStatement() instanceof ForStmt loop &&
+                loop.getBody() instanceof BlockStmt body) {
+                List<Statement> rowStmts = body.getStatements();
+                int first = 0;
+                while (first < rowStmts.size() && isColumnRead(rowStmts.get(first))) {
+                    first++;
+                }
+                if (first != rowStmts.size() - 1 || !(rowStmts.get(first) instanceof BlockStmt write) ||
+                    write.getStatements().isEmpty()) {
+                    return null;
+                }
+
+                Statement head = write.getStatement(0);
+                if (bitset && head instanceof IfStmt ifStmt) {
+                    return ifStmt.getCondition();
+                }
+                if (!bitset && head instanceof ExpressionStmt exprStmt &&
+                    exprStmt.getExpression() instanceof AssignExpr assign &&
+                    assign.getTarget() instanceof ArrayAccessExpr) {
+                    return assign.getValue();
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /** {@code int influence = __influence[__row];} */
+    private static boolean isColumnRead(Statement stmt) {
+        return stmt instanceof ExpressionStmt exprStmt &&
+               exprStmt.getExpression() instanceof VariableDeclarationExpr declaration &&
+               declaration.getVariables().size() == 1 &&
+               declaration.getVariable(0).getInitializer()
+                       .filter(init -> init instanceof ArrayAccessExpr access &&
+                                       access.getName() instanceof NameExpr column &&
+                                       column.getNameAsString().equals("__" + declaration.getVariable(0).getNameAsString()))
+                       .isPresent();
+    }
+
+    // ── Type analysis ─────────────────────────────────────────────────────
+
+    /**
+     * The lane type of an expression, {@code boolean} for a mask, or null when it cannot be lowered.
+     */
+    private Class<?> laneType(Expression expr) {
+        Class<?> type = switch (expr) {
+            case EnclosedExpr enclosed -> laneType(enclosed.getInner());
+            case NameExpr name -> columnType(name.getNameAsString());
+            case IntegerLiteralExpr _ -> int.class;
+            case LongLiteralExpr _ -> long.class;
+            case DoubleLiteralExpr dle -> isFloat(dle) ? null : double.class;
+            case UnaryExpr unary -> unaryType(unary);
+            case BinaryExpr binary -> binaryType(binary);
+            default -> null;
+        };
+        if (type == long.class || type == double.class) {
+            wide = true;
+        }
+        return type;
+    }
+
+    private Class<?> columnType(String name) {
+        int slot = info.indexOf(name);
+        if (slot < 0) {
+            return null;
+        }
+        Class<?> type = info.variableDeclarations().get(slot).type().getClazz();
+        if (type != boolean.class && type != int.class && type != long.class && type != double.class) {
+            return null;
+        }
+        columns.put(name, slot);
+        return type;
+    }
+
+    private Class<?> unaryType(UnaryExpr unary) {
+        Class<?> operand = laneType(unary.getExpression());
+        if (operand == null) {
+            return null;
+        }
+        return switch (unary.getOperator()) {
+            case LOGICAL_COMPLEMENT -> operand == boolean.class ? boolean.class : null;
+            case MINUS, PLUS -> operand != boolean.class ? operand : null;
+            default -> null;
+        };
+    }
+
+    private Class<?> binaryType(BinaryExpr binary) {
+        Class<?> left = laneType(binary.getLeft());
+        Class<?> right = laneType(binary.getRight());
+        if (left == null || right == null) {
+            return null;
+        }
+        boolean logical = left == boolean.class && right == boolean.class;
+        boolean numeric = left != boolean.class && right != boolean.class;
+        return switch (binary.getOperator()) {
+            case AND, OR -> logical ? boolean.class : null;
+            case EQUALS, NOT_EQUALS -> logical || numeric ? boolean.class : null;
+            case LESS, GREATER, LESS_EQUALS, GREATER_EQUALS -> numeric ? boolean.class : null;
+            case PLUS, MINUS, MULTIPLY -> numeric ? promote(left, right) : null;
+            case DIVIDE -> numeric && promote(left, right) == double.class ? double.class : null;
+            default -> null;
+        };
+    }
+
+    private static Class<?> promote(Class<?> left, Class<?> right) {
+        if (left == double.class || right == double.class) {
+            return double.class;
+        }
+        if (left == long.class || right == long.class) {
+            return long.class;
+        }
+        return int.class;
+    }
+
+    private static boolean isFloat(DoubleLiteralExpr dle) {
+        String text = dle.getValue();
+        return text.endsWith("f") || text.endsWith("F");
+    }
+
+    // ── Kernel emission ───────────────────────────────────────────────────
+
+    /**
+     * Emits the kernel class. {@code run(Columns columns, int bound, Object out)}:
+     * <pre>{@code
+     * int[] influence = (int[]) columns.column(0);
+     * long[] bits = (long[]) out;
+     * for (int row = 0; row < bound; row += LANES) {
+     *     bits[row >>> 6] |= IntVector.fromArray(SPECIES, influence, row).compare(GT, 50).toLong() << (row & 63);
+     * }
+     * }</pre>
+     */
+    private byte[] emit(Expression rowExpr, boolean bitset) {
+        ClassDesc thisClass = ClassDesc.of("org.mvel3.compiler.vector.VectorKernel");
+
+        return ClassFile.of().build(thisClass, cb -> {
+            cb.withFlags(AccessFlag.PUBLIC, AccessFlag.FINAL);
+            cb.withInterfaceSymbols(CD_ColumnKernel);
+
+            cb.withMethodBody(INIT_NAME, MTD_void, ClassFile.ACC_PUBLIC, code -> {
+                code.aload(0);
+                code.invokespecial(CD_Object, INIT_NAME, MTD_void);
+                code.return_();
+            });
+
+            cb.withMethodBody("run", MethodTypeDesc.of(CD_void, CD_Columns, CD_int, CD_Object), ClassFile.ACC_PUBLIC,
+                    code -> {
+                        // 0 this, 1 columns, 2 bound, 3 out
+                        int outSlot = 4;
+                        int rowSlot = 5;
+                        Map<String, Integer> columnSlots = new LinkedHashMap<>();
+                        int next = 6;
+                        for (Map.Entry<String, Integer> column : columns.entrySet()) {
+                            Class<?> type = info.variableDeclarations().get(column.getValue()).type().getClazz();
+                            code.aload(1);
+                            code.ldc(column.getValue());
+                            code.invokevirtual(CD_Columns, "column", MethodTypeDesc.of(CD_Object, CD_int));
+                            code.checkcast(arrayDesc(type));
+                            code.astore(next);
+                            columnSlots.put(column.getKey(), next++);
+                        }
+                        code.aload(3);
+                        code.checkcast(bitset ? CD_long.arrayType() : CD_double.arrayType());
+                        code.astore(outSlot);
+
+                        Label loop = code.newLabel();
+                        Label end = code.newLabel();
+                        code.iconst_0();
+                        code.istore(rowSlot);
+                        code.labelBinding(loop);
+                        code.iload(rowSlot);
+                        code.iload(2);
+                        code.if_icmpge(end);
+
+                        if (bitset) {
+                            // bits[row >>> 6] |= mask.toLong() << (row & 63)
+                            code.aload(outSlot);
+                            code.iload(rowSlot);
+                            code.bipush(6);
+                            code.iushr();
+                            code.dup2();
+                            code.laload();
+                            emitLanes(code, rowExpr, rowSlot, columnSlots);
+                            code.invokevirtual(CD_VectorMask, "toLong", MethodTypeDesc.of(CD_long));
+                            code.iload(rowSlot);
+                            code.bipush(63);
+                            code.iand();
+                            code.lshl();
+                            code.lor();
+                            code.lastore();
+                        } else {
+                            // ((DoubleVector) value).intoArray(values, row)
+                            emitLanesAs(code, rowExpr, double.class, rowSlot, columnSlots);
+                            code.checkcast(CD_DoubleVector);
+                            code.aload(outSlot);
+                            code.iload(rowSlot);
+                            code.invokevirtual(CD_DoubleVector, "intoArray",
+                                    MethodTypeDesc.of(CD_void, CD_double.arrayType(), CD_int));
+                        }
+
+                        code.iinc(rowSlot, lanes);
+                        code.goto_(loop);
+                        code.labelBinding(end);
+                        code.return_();
+                    });
+        });
+    }
+
+    /**
+     * Pushes the lanes of an expression for the chunk of rows starting at {@code row}: a {@code VectorMask} in the
+     * {@code int} species for a boolean, else a {@code Vector} in the species of its lane type.
+     */
+    private void emitLanes(CodeBuilder code, Expression expr, int rowSlot, Map<String, Integer> columnSlots) {
+        switch (expr) {
+            case EnclosedExpr enclosed -> emitLanes(code, enclosed.getInner(), rowSlot, columnSlots);
+            case NameExpr name -> {
+                Class<?> type = laneType(name);
+                loadSpecies(code, type == boolean.class ? int.class : type);
+                code.aload(columnSlots.get(name.getNameAsString()));
+                code.iload(rowSlot);
+                if (type == boolean.class) {
+                    code.invokestatic(CD_VectorMask, "fromArray",
+                            MethodTypeDesc.of(CD_VectorMask, CD_VectorSpecies, CD_boolean.arrayType(), CD_int));
+                } else {
+                    ClassDesc vectorDesc = vectorDesc(type);
+                    code.invokestatic(vectorDesc, "fromArray",
+                            MethodTypeDesc.of(vectorDesc, CD_VectorSpecies, arrayDesc(type), CD_int));
+                }
+            }
+            case IntegerLiteralExpr ile -> emitBroadcast(code, int.class, ile.asNumber().intValue());
+            case LongLiteralExpr lle -> emitBroadcast(code, long.class, lle.asNumber().longValue());
+            case DoubleLiteralExpr dle -> emitBroadcast(code, double.class, dle.asDouble());
+            case UnaryExpr unary -> {
+                emitLanes(code, unary.getExpression(), rowSlot, columnSlots);
+                switch (unary.getOperator()) {
+                    case LOGICAL_COMPLEMENT ->
+                            code.invokevirtual(CD_VectorMask, "not", MethodTypeDesc.of(CD_VectorMask));
+                    case MINUS -> {
+                        code.getstatic(CD_VectorOperators, "NEG", CD_Unary);
+                        code.invokevirtual(CD_Vector, "lanewise", MethodTypeDesc.of(CD_Vector, CD_Unary));
+                    }
+                    default -> {} // PLUS
+                }
+            }
+            case BinaryExpr binary -> emitBinary(code, binary, rowSlot, columnSlots);
+            default -> throw new IllegalStateException("Not lowered: " + expr);
+        }
+    }
+
+    private void emitBinary(CodeBuilder code, BinaryExpr binary, int rowSlot, Map<String, Integer> columnSlots) {
+        Class<?> left = laneType(binary.getLeft());
+        Class<?> right = laneType(binary.getRight());
+
+        if (left == boolean.class) {
+            emitLanes(code, binary.getLeft(), rowSlot, columnSlots);
+            emitLanes(code, binary.getRight(), rowSlot, columnSlots);
+            switch (binary.getOperator()) {
+                case AND -> code.invokevirtual(CD_VectorMask, "and", MTD_MASK_MASK);
+                case OR -> code.invokevirtual(CD_VectorMask, "or", MTD_MASK_MASK);
+                case EQUALS -> code.invokevirtual(CD_VectorMask, "eq", MTD_MASK_MASK);
+                case NOT_EQUALS -> {
+                    code.invokevirtual(CD_VectorMask, "eq", MTD_MASK_MASK);
+                    code.invokevirtual(CD_VectorMask, "not", MethodTypeDesc.of(CD_VectorMask));
+                }
+                default -> throw new IllegalStateException("Not lowered: " + binary);
+            }
+            return;
+        }
+
+        Class<?> type = promote(left, right);
+        String comparison = switch (binary.getOperator()) {
+            case EQUALS -> "EQ";
+            case NOT_EQUALS -> "NE";
+            case LESS -> "LT";
+            case GREATER -> "GT";
+            case LESS_EQUALS -> "LE";
+            case GREATER_EQUALS -> "GE";
+            default -> null;
+        };
+
+        // left.compare(op, right) or left.lanewise(op, right), the operator between the two operands
+        emitLanesAs(code, binary.getLeft(), type, rowSlot, columnSlots);
+        if (comparison != null) {
+            code.getstatic(CD_VectorOperators, comparison, CD_Comparison);
+            emitLanesAs(code, binary.getRight(), type, rowSlot, columnSlots);
+            code.invokevirtual(CD_Vector, "compare", MethodTypeDesc.of(CD_VectorMask, CD_Comparison, CD_Vector));
+            if (type != int.class) {
+                loadSpecies(code, int.class);
+                code.invokevirtual(CD_VectorMask, "cast", MethodTypeDesc.of(CD_VectorMask, CD_VectorSpecies));
+            }
+        } else {
+            switch (binary.getOperator()) {
+                case PLUS -> code.getstatic(CD_VectorOperators, "ADD", CD_Associative);
+                case MINUS -> code.getstatic(CD_VectorOperators, "SUB", CD_Binary);
+                case MULTIPLY -> code.getstatic(CD_VectorOperators, "MUL", CD_Associative);
+                case DIVIDE -> code.getstatic(CD_VectorOperators, "DIV", CD_Binary);
+                default -> throw new IllegalStateException("Not lowered: " + binary);
+            }
+            emitLanesAs(code, binary.getRight(), type, rowSlot, columnSlots);
+            code.invokevirtual(CD_Vector, "lanewise", MethodTypeDesc.of(CD_Vector, CD_Binary, CD_Vector));
+        }
+    }
+
+    /**
+     * Pushes the lanes of a numeric expression, converted to the given lane type.
+     */
+    private void emitLanesAs(CodeBuilder code, Expression expr, Class<?> type, int rowSlot,
+                             Map<String, Integer> columnSlots) {
+        emitLanes(code, expr, rowSlot, columnSlots);
+        Class<?> from = laneType(expr);
+        if (from == type) {
+            return;
+        }
+        String conversion = (from == int.class ? "I2" : "L2") + (type == long.class ? "L" : "D");
+        code.getstatic(CD_VectorOperators, conversion, CD_Conversion);
+        loadSpecies(code, type);
+        code.iconst_0();
+        code.invokevirtual(CD_Vector, "convertShape",
+                MethodTypeDesc.of(CD_Vector, CD_Conversion, CD_VectorSpecies, CD_int));
+    }
+
+    private void emitBroadcast(CodeBuilder code, Class<?> type, Number value) {
+        ClassDesc vectorDesc = vectorDesc(type);
+        ClassDesc elementDesc = type.describeConstable().orElseThrow();
+        loadSpecies(code, type);
+        if (type == int.class) {
+            code.ldc(value.intValue());
+        } else if (type == long.class) {
+            code.ldc(value.longValue());
+        } else {
+            code.ldc(value.doubleValue());
+        }
+        code.invokestatic(vectorDesc, "broadcast", MethodTypeDesc.of(vectorDesc, CD_VectorSpecies, elementDesc));
+    }
+
+    /** {@code IntVector.SPECIES_256} and so on, for the kernel's lane count. */
+    private void loadSpecies(CodeBuilder code, Class<?> type) {
+        int bits = lanes * (type == int.class ? 32 : 64);
+        code.getstatic(vectorDesc(type), "SPECIES_" + bits, CD_VectorSpecies);
+    }
+
+    private static ClassDesc vectorDesc(Class<?> type) {
+        if (type == int.class) {
+            return CD_IntVector;
+        }
+        return type == long.class ? CD_LongVector : CD_DoubleVector;
+    }
+
+    private static ClassDesc arrayDesc(Class<?> type) {
+        return type.describeConstable().orElseThrow().arrayType();
+    }
+
+    /**
+     * The resolved {@code jdk.incubator.vector} module, made readable to this one, and its preferred lane counts.
+     * Only initialized once the module is known to be {@link VectorBackend#AVAILABLE}.
+     */
+    private static final class VectorModule {
+
+        /** {@code IntVector.SPECIES_PREFERRED.length()} */
+        static final int INT_LANES;
+
+        /** {@code DoubleVector.SPECIES_PREFERRED.length()} */
+        static final int DOUBLE_LANES;
+
+        static {
+            Module vector = ModuleLayer.boot().findModule("jdk.incubator.vector").orElseThrow();
+            VectorKernelEmitter.class.getModule().addReads(vector);
+            try {
+                INT_LANES = preferredLength("IntVector");
+                DOUBLE_LANES = preferredLength("DoubleVector");
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unsupported jdk.incubator.vector module", e);
+            }
+        }
+
+        private static int preferredLength(String vectorClass) throws ReflectiveOperationException {
+            Object species = Class.forName(VECTOR_PACKAGE + vectorClass).getField("SPECIES_PREFERRED").get(null);
+            return (int) Class.forName(VECTOR_PACKAGE + "VectorSpecies").getMethod("length").invoke(species);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.mvel3.compiler.vector;
+
+import org.mvel3.Columns;
+import org.mvel3.Evaluator;
+
+import java.lang.reflect.Array;
+
+/**
+ * Columns evaluator running a {@link ColumnKernel} over every whole chunk of rows. The last rows, fewer than a
+ * chunk, are copied into columns padded to a whole chunk, so that the kernel never reads past a column.
+ */
+final class VectorizedEvaluator<R> implements Evaluator<Columns, Void, R> {
+
+    private final ColumnKernel kernel;
+    private final int lanes;
+    private final boolean bitset;
+
+    VectorizedEvaluator(ColumnKernel kernel, int lanes, boolean bitset) {
+        this.kernel = kernel;
+        this.lanes = lanes;
+        this.bitset = bitset;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public R eval(Columns columns) {
+        int length = columns.length();
+        int bound = length & -lanes;
+        Object out = bitset ? columns.bits() : columns.doubles();
+        kernel.run(columns, bound, out);
+        if (bound < length) {
+            evalTail(columns, bound, length - bound, out);
+        }
+        return (R) out;
+    }
+
+    private void evalTail(Columns columns, int from, int rows, Object out) {
+        Object[] padded = new Object[columns.columnCount()];
+        for (int slot = 0; slot < padded.length; slot++) {
+            Object column = columns.column(slot);
+            padded[slot] = Array.newInstance(column.getClass().getComponentType(), lanes);
+            System.arraycopy(column, from, padded[slot], 0, rows);
+        }
+        Columns tail = new Columns(lanes, padded);
+
+        if (bitset) {
+            // from is a multiple of the lane count, which divides 64, so the tail fits in one word
+            long[] bits = new long[1];
+            kernel.run(tail, lanes, bits);
+            ((long[]) out)[from >>> 6] |= (bits[0] & (-1L >>> (64 - rows))) << (from & 63);
+        } else {
+            double[] values = new double[lanes];
+            kernel.run(tail, lanes, values);
+            System.arraycopy(values, 0, out, from, rows);
+        }
+    }
+}
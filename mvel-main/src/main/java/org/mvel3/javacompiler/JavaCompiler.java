@@ -46,13 +46,18 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.stream.Stream;
 import java.util.jar.JarEntry;
 
 /**
@@ -118,33 +123,21 @@ public class JavaCompiler {
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
         javax.tools.JavaCompiler compiler = getJavaCompiler();
 
-        try (StandardJavaFileManager jFileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
-            try {
-                jFileManager.setLocation(StandardLocation.CLASS_PATH, pSettings.getClasspathLocations());
-                // Use a temporary directory for CLASS_OUTPUT instead of target/classes to prevent
-                // javac from detecting module-info.class and entering module mode, which would
-                // break in-memory compilation of transpiled sources.
-                File tempOutput = Files.createTempDirectory("mvel-compile").toFile();
-                tempOutput.deleteOnExit();
-                jFileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(tempOutput));
-            } catch (IOException e) {
-                log.warn("Failed to set classpath on file manager. Compilation may fail: {}", e.getMessage());
+        PooledFileManager pooled = FileManagerPool.borrow(compiler, pSettings.getClasspathLocations());
+        try {
+            MemoryFileManager fileManager = new MemoryFileManager( pooled.fileManager, pClassLoader );
+            final List<JavaFileObject> units = new ArrayList<>();
+            for (final String sourcePath : pResourcePaths) {
+                units.add( new CompilationUnit(PortablePath.of(sourcePath), pReader ));
             }
 
-            try (MemoryFileManager fileManager = new MemoryFileManager( jFileManager, pClassLoader )) {
-                final List<JavaFileObject> units = new ArrayList<>();
-                for (final String sourcePath : pResourcePaths) {
-                    units.add( new CompilationUnit(PortablePath.of(sourcePath), pReader ));
-                }
-
-                Iterable<String> options = new JavaCompilerSettings( pSettings ).toOptionsList();
+            Iterable<String> options = new JavaCompilerSettings( pSettings ).toOptionsList();
 
-                if ( compiler.getTask( null, fileManager, diagnostics, options, null, units ).call() ) {
-                    for (CompilationOutput compilationOutput : fileManager.getOutputs()) {
-                        pStore.write( compilationOutput.getBinaryName().replace( '.', '/' ) + ".class", compilationOutput.toByteArray() );
-                    }
-                    return new CompilationResult( new CompilationProblem[0] );
+            if ( compiler.getTask( null, fileManager, diagnostics, options, null, units ).call() ) {
+                for (CompilationOutput compilationOutput : fileManager.getOutputs()) {
+                    pStore.write( compilationOutput.getBinaryName().replace( '.', '/' ) + ".class", compilationOutput.toByteArray() );
                 }
+                return new CompilationResult( new CompilationProblem[0] );
             }
 
             List<Diagnostic<? extends JavaFileObject>> problems = diagnostics.getDiagnostics();
@@ -154,28 +147,138 @@ public class JavaCompiler {
             }
 
             return new CompilationResult( result );
-        } catch (IOException e) {
-            throw new KieMemoryCompilerException("javac compilation failed due to I/O error: " + e.getMessage(), e);
+        } finally {
+            FileManagerPool.release(pooled);
         }
     }
 
     private javax.tools.JavaCompiler getJavaCompiler() {
-        javax.tools.JavaCompiler compiler = null;
-        Throwable cause = null;
-        try {
-            compiler = ToolProvider.getSystemJavaCompiler();
-        } catch (Throwable ex) {
-            cause = ex;
-        }
+        javax.tools.JavaCompiler compiler = SystemCompilerHolder.COMPILER;
         if (compiler != null) {
             return compiler;
         }
         String message = "Cannot find the System's Java compiler. " +
                          "Please use JDK instead of JRE or add drools-ecj dependency to use in memory Eclipse compiler";
-        if (cause == null) {
+        if (SystemCompilerHolder.CAUSE == null) {
             throw new KieMemoryCompilerException(message);
         } else {
-            throw new KieMemoryCompilerException(message, cause);
+            throw new KieMemoryCompilerException(message, SystemCompilerHolder.CAUSE);
+        }
+    }
+
+    private static class SystemCompilerHolder {
+        private static final javax.tools.JavaCompiler COMPILER;
+        private static final Throwable CAUSE;
+
+        static {
+            javax.tools.JavaCompiler compiler = null;
+            Throwable cause = null;
+            try {
+                compiler = ToolProvider.getSystemJavaCompiler();
+            } catch (Throwable ex) {
+                cause = ex;
+            }
+            COMPILER = compiler;
+            CAUSE = cause;
+        }
+    }
+
+    /**
+     * A standard file manager opens and indexes the platform modules and the class path, which is most of the fixed
+     * cost of a javac run. They are not thread safe, so rather than one per compilation, idle ones are pooled and
+     * each compilation borrows one for its duration. At most one idle manager per processor is kept; any other is
+     * closed when released, which releases its open jars.
+     */
+    private static class FileManagerPool {
+        private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+        private static final Queue<PooledFileManager> IDLE = new ArrayBlockingQueue<>(MAX_IDLE);
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(FileManagerPool::closeIdle, "mvel-javac-file-managers"));
+        }
+
+        static PooledFileManager borrow(javax.tools.JavaCompiler compiler, List<File> classpath) {
+            PooledFileManager pooled = IDLE.poll();
+            if (pooled == null) {
+                pooled = new PooledFileManager(compiler.getStandardFileManager(null, null, null));
+            }
+            pooled.configure(classpath);
+            return pooled;
+        }
+
+        static void release(PooledFileManager pooled) {
+            if (!IDLE.offer(pooled)) {
+                pooled.close();
+            }
+        }
+
+        private static void closeIdle() {
+            PooledFileManager pooled;
+            while ((pooled = IDLE.poll()) != null) {
+                pooled.close();
+            }
+        }
+    }
+
+    private static class PooledFileManager {
+        private final StandardJavaFileManager fileManager;
+        private List<File> classpath;
+        private boolean configured;
+
+        PooledFileManager(StandardJavaFileManager fileManager) {
+            this.fileManager = fileManager;
+        }
+
+        void configure(List<File> classpath) {
+            if (configured && Objects.equals(this.classpath, classpath)) {
+                return;
+            }
+            try {
+                fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+                // Point CLASS_OUTPUT at an empty directory instead of target/classes to prevent javac from
+                // detecting module-info.class and entering module mode, which would break in-memory compilation of
+                // transpiled sources. Outputs are captured in memory, so one directory serves every compilation.
+                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(OutputDirectoryHolder.DIRECTORY));
+                this.classpath = classpath;
+                this.configured = true;
+            } catch (IOException e) {
+                log.warn("Failed to set classpath on file manager. Compilation may fail: {}", e.getMessage());
+            }
+        }
+
+        void close() {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                log.debug("Failed to close javac file manager: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static class OutputDirectoryHolder {
+        private static final File DIRECTORY = createDirectory();
+
+        private static File createDirectory() {
+            try {
+                Path directory = Files.createTempDirectory("mvel-compile");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(directory), "mvel-javac-output-cleanup"));
+                return directory.toFile();
+            } catch (IOException e) {
+                throw new KieMemoryCompilerException("Failed to create javac output directory: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Deletes the directory with anything javac may have left in it, which deleteOnExit would not.
+         */
+        private static void delete(Path directory) {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                walk.sorted((a, b) -> b.getNameCount() - a.getNameCount())
+                    .forEach(path -> path.toFile().delete());
+            } catch (IOException e) {
+                log.debug("Failed to delete javac output directory {}: {}", directory, e.getMessage());
+            }
         }
     }
 
@@ -345,6 +448,12 @@ public class JavaCompiler {
             this.classLoader = classLoader;
         }
 
+        @Override
+        public void close() throws IOException {
+            // the delegate is pooled and outlives this compilation
+            flush();
+        }
+
         @Override
         public String inferBinaryName(Location location, JavaFileObject file) {
             return file instanceof DroolsJavaFileObject ? ((DroolsJavaFileObject) file).getBinaryName() : super.inferBinaryName(location, file);
@@ -26,6 +26,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -70,12 +71,15 @@ public class KieMemoryCompiler {
                                                ClassLoader classLoader, JavaCompilerSettings compilerSettings,
                                                Path outputDirectory) {
         Map<String, byte[]> byteCode = compileNoLoad(classNameSourceMap, classLoader, compilerSettings);
-        List<Path> persistedFiles = persistByteCode(byteCode, outputDirectory);
+        List<Path> persistedFiles = persist(byteCode, outputDirectory);
         classManager.define(byteCode);
         return persistedFiles;
     }
 
-    private static List<Path> persistByteCode(Map<String, byte[]> byteCode, Path outputDirectory) {
+    /**
+     * Writes the given bytecode to class files under the output directory.
+     */
+    public static List<Path> persist(Map<String, byte[]> byteCode, Path outputDirectory) {
         List<Path> persistedFiles = new ArrayList<>();
         byteCode.forEach((className, bytes) -> {
             String fileName = className.replace('.', '/') + ".class";
@@ -132,6 +136,88 @@ public class KieMemoryCompiler {
         return toReturn;
     }
 
+    /**
+     * Outcome of {@link #compileBatch(Map, ClassLoader)}: the bytecode of every class that compiled, including
+     * nested classes, and a failure for each source that did not.
+     */
+    public record BatchResult(Map<String, byte[]> byteCode, Map<String, KieMemoryCompilerException> failures) {
+
+        /**
+         * Returns the bytecode of the given top level class and of its nested classes.
+         */
+        public Map<String, byte[]> classesOf(String className) {
+            Map<String, byte[]> classes = new HashMap<>();
+            byteCode.forEach((name, bytes) -> {
+                if (name.equals(className) || name.startsWith(className + "$")) {
+                    classes.put(name, bytes);
+                }
+            });
+            return classes;
+        }
+    }
+
+    /**
+     * Compiles many independent sources with as few javac runs as possible. All sources are compiled together;
+     * when some of them have errors, those are reported against their own class, and the remaining sources are
+     * compiled again, so one broken source does not fail the others.
+     * <b>classNameSourceMap</b>' key must be the <b>FQDN</b> of the class to compile
+     */
+    public static BatchResult compileBatch(Map<String, String> classNameSourceMap, ClassLoader classLoader) {
+        Map<String, String> pending = new LinkedHashMap<>(classNameSourceMap);
+        Map<String, KieMemoryCompilerException> failures = new HashMap<>();
+
+        JavaConfiguration javaConfiguration = new JavaConfiguration();
+        javaConfiguration.setJavaLanguageLevel(findJavaVersion());
+        JavaCompiler compiler = JavaCompilerFactory.loadCompiler(javaConfiguration);
+
+        while (!pending.isEmpty()) {
+            MemoryResourceReader reader = new MemoryResourceReader();
+            MemoryResourceStore store = new MemoryResourceStore();
+            String[] classNames = new String[pending.size()];
+
+            int i = 0;
+            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                classNames[i] = toJavaSource( entry.getKey() );
+                reader.add( classNames[i], entry.getValue().getBytes());
+                i++;
+            }
+
+            CompilationResult res = compiler.compile( classNames, reader, store, classLoader);
+            if (res.getErrors().length == 0) {
+                Map<String, byte[]> byteCode = new HashMap<>();
+                for (Map.Entry<PortablePath, byte[]> entry : store.getResources().entrySet()) {
+                    byteCode.put(toClassName( entry.getKey().asString() ), entry.getValue());
+                }
+                return new BatchResult(byteCode, failures);
+            }
+
+            Map<String, List<CompilationProblem>> errorsByClass = new HashMap<>();
+            boolean unattributed = false;
+            for (CompilationProblem error : res.getErrors()) {
+                String className = toClassName( error.getFileName().replace(".java", "") );
+                if (pending.containsKey(className)) {
+                    errorsByClass.computeIfAbsent(className, k -> new ArrayList<>()).add(error);
+                } else {
+                    unattributed = true;
+                }
+            }
+
+            if (unattributed || errorsByClass.isEmpty()) {
+                // errors that cannot be blamed on one source fail the whole batch
+                String diagnostics = Arrays.toString(res.getErrors());
+                pending.forEach((className, source) -> failures.put(className, new KieMemoryCompilerException(diagnostics, source)));
+                return new BatchResult(Map.of(), failures);
+            }
+
+            errorsByClass.forEach((className, errors) -> {
+                String source = pending.remove(className);
+                failures.put(className, new KieMemoryCompilerException(errors.toString(), source));
+            });
+        }
+
+        return new BatchResult(Map.of(), failures);
+    }
+
     private static String toJavaSource( String s ) {
         return s.replace( '.', '/' ) + ".java";
     }
@@ -22,6 +22,16 @@ public final class LambdaKey {
         this.methodSignatureInfo = methodSignatureInfo;
     }
 
+    /**
+     * Restores a persisted key, whose hash was computed when it was first created.
+     */
+    LambdaKey(String methodSignature, String normalisedBody, int hash, MethodSignatureInfo methodSignatureInfo) {
+        this.methodSignature = methodSignature;
+        this.normalisedBody = normalisedBody;
+        this.hash = hash;
+        this.methodSignatureInfo = methodSignatureInfo;
+    }
+
     public String getMethodSignature() {
         return methodSignature;
     }
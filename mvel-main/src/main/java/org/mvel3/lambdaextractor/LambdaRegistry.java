@@ -1,7 +1,6 @@
 package org.mvel3.lambdaextractor;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -10,19 +9,23 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.body.MethodDeclaration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Lambda Registry that supports subtype overload detection.
  * <p>
+ * Registration is striped by {@link LambdaKey} hash: keys with the same hash, which are the only ones that can be
+ * equal or subtype overloads of each other, are registered under the same lock, while threads compiling unrelated
+ * lambdas proceed in parallel. Lookups by logical or physical ID do not lock at all.
+ * <p>
  * TODO: Review persist/load logic not to miss the new changes.
  */
 public enum LambdaRegistry {
@@ -34,13 +37,17 @@ public enum LambdaRegistry {
     public static final boolean PERSISTENCE_ENABLED = Boolean.parseBoolean(System.getProperty("mvel3.compiler.lambda.persistence", "true"));
     public static final Path DEFAULT_PERSISTENCE_PATH = Path.of(System.getProperty("mvel3.compiler.lambda.persistence.path", "target/generated-classes/mvel"));
     private static final Path REGISTRY_FILE = Path.of(System.getProperty("mvel3.compiler.lambda.registry.file",
-                                                                         DEFAULT_PERSISTENCE_PATH.resolve("lambda-registry.dat").toString()));
+                                                                         DEFAULT_PERSISTENCE_PATH.resolve("lambda-registry.journal").toString()));
+
+    static final RegistryJournal JOURNAL = new RegistryJournal(REGISTRY_FILE);
 
-    // This version has to be incremented when the registry file format changes
-    private static final String REGISTRY_VERSION = "v1";
+    // the line-based registry file written before the journal, imported into the journal on first start
+    private static final Path LEGACY_REGISTRY_FILE = REGISTRY_FILE.resolveSibling("lambda-registry.dat");
+    private static final String LEGACY_REGISTRY_VERSION = "v1";
 
     static {
         if (PERSISTENCE_ENABLED) {
+            importLegacyRegistry(LEGACY_REGISTRY_FILE, JOURNAL);
             INSTANCE.loadFromDisk();
         }
         if (Boolean.getBoolean("mvel3.compiler.lambda.resetOnTestStartup")) {
@@ -51,7 +58,7 @@ public enum LambdaRegistry {
     // LambdaKey -> entry (physical ID + optional persisted path)
     private final Map<LambdaKey, RegistryEntry> entriesByKey = new ConcurrentHashMap<>();
 
-    // hash -> LambdaKeys (group of conflicting hashes)
+    // hash -> LambdaKeys (group of conflicting hashes), only accessed holding the stripe of the hash
     private final Map<Integer, List<LambdaKey>> hashToKeys = new ConcurrentHashMap<>();
 
     // physical ID -> entry
@@ -64,42 +71,84 @@ public enum LambdaRegistry {
 
     private final AtomicInteger nextLogicalId = new AtomicInteger(0);
 
+    // persisted entries not decoded yet, by physical ID and by LambdaKey hash; see materialize()
+    private final Map<Integer, RegistryJournal.EntryRef> unloadedByPhysicalId = new ConcurrentHashMap<>();
+
+    private final Map<Integer, List<RegistryJournal.EntryRef>> unloadedByHash = new ConcurrentHashMap<>();
+
+    // the journal as mapped at startup, which unloaded entries are decoded from
+    private volatile RegistryJournal.Mapped mappedJournal;
+
+    // nesting depth of beginBatch() calls; journal records are flushed when it returns to zero. Guarded by this
+    private int batchDepth;
+
+    // must be a power of two
+    private static final int STRIPE_COUNT = 64;
+
+    private final ReentrantLock[] stripes = createStripes();
+
+    // superseded journal records tolerated beyond twice the live ones before compacting on load
+    private static final int COMPACTION_SLACK = 64;
+
     private LambdaRegistry() {
         // singleton
     }
 
-    public synchronized int getNextLogicalId() {
+    private static ReentrantLock[] createStripes() {
+        ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    private ReentrantLock stripeFor(int hash) {
+        // spread the high bits, as the murmur hash of similar bodies may only differ there
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
+    }
+
+    public int getNextLogicalId() {
         return nextLogicalId.getAndIncrement();
     }
 
-    public synchronized int registerLambda(int logicalId, LambdaKey key) {
-        if (reuseIfSubtypeOverload(logicalId, key)) {
-            // all work done in the method. Just return the mapped physical ID.
-            return logicalToPhysical.get(logicalId);
-        }
+    public int registerLambda(int logicalId, LambdaKey key) {
+        return registerLambda(logicalId, key, LambdaRegistry.class.getClassLoader());
+    }
 
-        hashToKeys.computeIfAbsent(key.hashCode(), h -> new ArrayList<>())
-                .add(key);
+    /**
+     * Registers a lambda compiled against the given class loader, which the signature types of persisted lambdas
+     * with the same hash are resolved with.
+     */
+    public int registerLambda(int logicalId, LambdaKey key, ClassLoader classLoader) {
+        ReentrantLock stripe = stripeFor(key.hashCode());
+        stripe.lock();
+        try {
+            materializeHash(key.hashCode(), classLoader);
+            RegistryEntry entry = entriesByKey.get(key);
+            if (entry == null) {
+                if (reuseIfSubtypeOverload(logicalId, key)) {
+                    // all work done in the method. Just return the mapped physical ID.
+                    return logicalToPhysical.get(logicalId);
+                }
+                entry = new RegistryEntry(key, nextPhysicalId.getAndIncrement());
+                entriesByKey.put(key, entry);
+                entriesByPhysicalId.put(entry.physicalId, entry);
+                hashToKeys.computeIfAbsent(key.hashCode(), h -> new ArrayList<>())
+                        .add(key);
+            }
 
-        RegistryEntry entry = entriesByKey.get(key);
-        if (entry == null) {
-            entry = new RegistryEntry(key, nextPhysicalId.getAndIncrement());
-            entriesByKey.put(key, entry);
-            entriesByPhysicalId.put(entry.physicalId, entry);
-        } else {
-            entriesByPhysicalId.putIfAbsent(entry.physicalId, entry);
+            logicalToPhysical.put(logicalId, entry.physicalId);
+            return entry.physicalId;
+        } finally {
+            stripe.unlock();
         }
-
-        logicalToPhysical.put(logicalId, entry.physicalId);
-        return entry.physicalId;
     }
 
+    /**
+     * Called holding the stripe of the key hash, with no exact match registered, so that checking for a subtype
+     * overload and reusing its entry is atomic with respect to other registrations of the same body.
+     */
     private boolean reuseIfSubtypeOverload(int logicalId, LambdaKey key) {
-        if (entriesByKey.containsKey(key)) {
-            // exact match found, no need to check further
-            // TODO: This check is not optimal, can be optimized by refactoring this method and registerLambda
-            return false;
-        }
         List<LambdaKey> targetLambdaKeys = hashToKeys.get(key.hashCode());
         if (targetLambdaKeys == null || targetLambdaKeys.isEmpty()) {
             return false;
@@ -148,27 +197,66 @@ public enum LambdaRegistry {
         return allParamsAssignable;
     }
 
-    public synchronized int getPhysicalId(int logicalId) {
+    public int getPhysicalId(int logicalId) {
         return logicalToPhysical.get(logicalId);
     }
 
-    public synchronized void registerPhysicalPath(int physicalId, Path path) {
+    public void registerPhysicalPath(int physicalId, Path path) {
+        materializePhysicalId(physicalId);
         RegistryEntry entry = entriesByPhysicalId.get(physicalId);
         if (entry == null) {
             throw new IllegalStateException("Unknown physical ID " + physicalId);
         }
         entry.path = path;
         if (PERSISTENCE_ENABLED) {
-            persistToDisk(); // TODO: We may call this explicitly at the end of whole build
+            synchronized (this) {
+                JOURNAL.append(RegistryJournal.Entry.of(entry.physicalId, path, entry.key));
+                if (batchDepth == 0) {
+                    flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Defers writing registered paths to disk until the matching {@link #endBatch()}, so that persisting many
+     * lambdas costs a single journal write and fsync. Batches may nest.
+     */
+    public synchronized void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch started by {@link #beginBatch()}, flushing the journal when the outermost batch ends.
+     */
+    public synchronized void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("endBatch() without beginBatch()");
+        }
+        if (--batchDepth == 0) {
+            flush();
         }
     }
 
-    public synchronized Path getPhysicalPath(int physicalId) {
+    /**
+     * Writes registered but not yet persisted paths to the journal.
+     */
+    public synchronized void flush() {
+        if (JOURNAL.pendingCount() == 0) {
+            return;
+        }
+        JOURNAL.append(new RegistryJournal.Counters(nextPhysicalId.get(), nextLogicalId.get()));
+        JOURNAL.flush();
+    }
+
+    public Path getPhysicalPath(int physicalId) {
+        materializePhysicalId(physicalId);
         RegistryEntry entry = entriesByPhysicalId.get(physicalId);
         return entry == null ? null : entry.path;
     }
 
-    public synchronized boolean isPersisted(int physicalId) {
+    public boolean isPersisted(int physicalId) {
+        materializePhysicalId(physicalId);
         RegistryEntry entry = entriesByPhysicalId.get(physicalId);
         return entry != null && entry.path != null && Files.exists(entry.path);
     }
@@ -178,6 +266,19 @@ public enum LambdaRegistry {
      * Intended for use in test setup to ensure a clean slate.
      */
     public synchronized void resetAndRemoveAllPersistedFiles() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            resetAndRemoveAllPersistedFilesLocked();
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    private void resetAndRemoveAllPersistedFilesLocked() {
         LOG.info("Clean up Lambda Registry and persisted files at {}", DEFAULT_PERSISTENCE_PATH);
         if (Files.exists(DEFAULT_PERSISTENCE_PATH)) {
             try (Stream<Path> walk = Files.walk(DEFAULT_PERSISTENCE_PATH)) {
@@ -194,6 +295,10 @@ public enum LambdaRegistry {
             }
         }
 
+        JOURNAL.clearPending();
+        unloadedByPhysicalId.clear();
+        unloadedByHash.clear();
+        mappedJournal = null;
         hashToKeys.clear();
         entriesByKey.clear();
         entriesByPhysicalId.clear();
@@ -202,83 +307,90 @@ public enum LambdaRegistry {
         nextLogicalId.set(0);
     }
 
+    /**
+     * Indexes the persisted entries by physical ID and hash without decoding them; they are materialized when
+     * first looked up, so startup time does not depend on how many lambdas were persisted.
+     */
     private void loadFromDisk() {
-        if (!Files.exists(REGISTRY_FILE)) {
+        RegistryJournal.Mapped mapped = JOURNAL.map();
+        Map<Integer, RegistryJournal.EntryRef> latest = latestEntries(mapped);
+
+        if (mapped.recordCount() > 2 * latest.size() + COMPACTION_SLACK) {
+            List<RegistryJournal.Record> live = new ArrayList<>();
+            if (mapped.counters() != null) {
+                live.add(mapped.counters());
+            }
+            latest.values().forEach(ref -> live.add(mapped.read(ref)));
+            LOG.info("Compacting lambda registry journal {} to {} records", JOURNAL.file(), live.size());
+            JOURNAL.compact(live);
+            loadFromDisk();
             return;
         }
-        try (BufferedReader reader = Files.newBufferedReader(REGISTRY_FILE, StandardCharsets.UTF_8)) {
-            String versionLine = reader.readLine();
-            if (!REGISTRY_VERSION.equals(versionLine)) {
-                return;
-            }
-            String countersLine = reader.readLine();
-            if (countersLine != null) {
-                String[] counters = countersLine.split("\\|", -1);
-                if (counters.length >= 2) {
-                    nextPhysicalId.set(parseIntSafe(counters[0], nextPhysicalId.get()));
-                    nextLogicalId.set(parseIntSafe(counters[1], nextLogicalId.get()));
-                }
-            }
 
-            String line;
-            int maxPhysicalId = -1;
-            while ((line = reader.readLine()) != null) {
-                if (line.isBlank()) {
-                    continue;
-                }
-                String[] parts = line.split("\\|", -1);
-                if (parts.length < 4) {
-                    continue;
-                }
-                int physicalId = parseIntSafe(parts[0], -1);
-                if (physicalId < 0) {
-                    continue;
-                }
-                String pathString = decode(parts[1]);
-                String methodSignature = decode(parts[2]);
-                String normalisedBody = decode(parts[3]);
-                MethodDeclaration methodDeclaration = StaticJavaParser.parseMethodDeclaration(
-                        methodSignature + " " + normalisedBody);
-                LambdaKey key = LambdaUtils.createLambdaKeyFromMethodDeclaration(methodDeclaration);
-
-                RegistryEntry entry = new RegistryEntry(key, physicalId);
-                if (!pathString.isEmpty()) {
-                    entry.path = Path.of(pathString);
-                }
-                entriesByKey.put(key, entry);
-                entriesByPhysicalId.put(physicalId, entry);
-                hashToKeys.computeIfAbsent(key.hashCode(), h -> new ArrayList<>()).add(key);
-                maxPhysicalId = Math.max(maxPhysicalId, physicalId);
-            }
-            nextPhysicalId.set(Math.max(nextPhysicalId.get(), maxPhysicalId + 1));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load lambda registry from " + REGISTRY_FILE, e);
+        if (mapped.counters() != null) {
+            nextPhysicalId.set(mapped.counters().nextPhysicalId());
+            nextLogicalId.set(mapped.counters().nextLogicalId());
         }
+        int maxPhysicalId = -1;
+        for (RegistryJournal.EntryRef ref : latest.values()) {
+            unloadedByPhysicalId.put(ref.physicalId(), ref);
+            unloadedByHash.computeIfAbsent(ref.hash(), h -> new ArrayList<>()).add(ref);
+            maxPhysicalId = Math.max(maxPhysicalId, ref.physicalId());
+        }
+        nextPhysicalId.set(Math.max(nextPhysicalId.get(), maxPhysicalId + 1));
+        mappedJournal = mapped;
     }
 
-    private void persistToDisk() {
-        try {
-            Files.createDirectories(REGISTRY_FILE.getParent());
-            try (BufferedWriter writer = Files.newBufferedWriter(REGISTRY_FILE, StandardCharsets.UTF_8)) {
-                writer.write(REGISTRY_VERSION);
-                writer.newLine();
-                writer.write(nextPhysicalId.get() + "|" + nextLogicalId.get());
-                writer.newLine();
-
-                List<RegistryEntry> entries = entriesByPhysicalId.values().stream()
-                        .filter(e -> e.path != null)
-                        .sorted((a, b) -> Integer.compare(a.physicalId, b.physicalId))
-                        .collect(Collectors.toList());
-
-                for (RegistryEntry entry : entries) {
-                    writer.write(entry.physicalId + "|" + encode(entry.path.toString()) + "|" +
-                                         encode(entry.key.getMethodSignature()) + "|" + encode(entry.key.getNormalisedBody()));
-                    writer.newLine();
+    /**
+     * Imports the entries of a registry file in the former line-based format into the journal, unless the journal
+     * already exists, then deletes the former file. Lambdas persisted by an earlier version so keep their physical
+     * IDs. Their signature types are not loaded here, but when a lambda with the same hash is registered.
+     *
+     * @return the number of imported entries
+     */
+    static int importLegacyRegistry(Path legacyFile, RegistryJournal journal) {
+        if (!Files.exists(legacyFile)) {
+            return 0;
+        }
+        int imported = 0;
+        if (!Files.exists(journal.file())) {
+            try (BufferedReader reader = Files.newBufferedReader(legacyFile, StandardCharsets.UTF_8)) {
+                if (LEGACY_REGISTRY_VERSION.equals(reader.readLine())) {
+                    int nextPhysicalId = 0;
+                    int nextLogicalId = 0;
+                    String[] counters = String.valueOf(reader.readLine()).split("\\|", -1);
+                    if (counters.length >= 2) {
+                        nextPhysicalId = parseIntSafe(counters[0], 0);
+                        nextLogicalId = parseIntSafe(counters[1], 0);
+                    }
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] parts = line.split("\\|", -1);
+                        int physicalId = parts.length < 4 ? -1 : parseIntSafe(parts[0], -1);
+                        if (physicalId < 0 || parts[1].isEmpty()) {
+                            continue;
+                        }
+                        journal.append(LambdaUtils.createJournalEntry(physicalId, Path.of(decode(parts[1])),
+                                StaticJavaParser.parseMethodDeclaration(decode(parts[2]) + " " + decode(parts[3]))));
+                        nextPhysicalId = Math.max(nextPhysicalId, physicalId + 1);
+                        imported++;
+                    }
+                    journal.append(new RegistryJournal.Counters(nextPhysicalId, nextLogicalId));
+                    journal.flush();
                 }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Failed to import lambda registry {} into {}", legacyFile, journal.file(), e);
+                journal.clearPending();
+                return 0;
             }
+        }
+        try {
+            Files.delete(legacyFile);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to persist lambda registry to " + REGISTRY_FILE, e);
+            LOG.warn("Failed to delete lambda registry {}", legacyFile, e);
         }
+        LOG.info("Imported {} lambdas from {} into {}, and deleted it", imported, legacyFile, journal.file());
+        return imported;
     }
 
     private static int parseIntSafe(String value, int defaultValue) {
@@ -289,14 +401,92 @@ public enum LambdaRegistry {
         }
     }
 
-    private static String encode(String value) {
-        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
-    }
-
     private static String decode(String value) {
         return new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
     }
 
+    private static Map<Integer, RegistryJournal.EntryRef> latestEntries(RegistryJournal.Mapped mapped) {
+        // a later record for the same physical ID supersedes the earlier one
+        Map<Integer, RegistryJournal.EntryRef> latest = new TreeMap<>();
+        for (RegistryJournal.EntryRef ref : mapped.entries()) {
+            latest.put(ref.physicalId(), ref);
+        }
+        return latest;
+    }
+
+    /**
+     * Called holding the stripe of the hash. Entries whose signature types the class loader does not find stay
+     * unloaded, for a lambda compiled against another class loader.
+     */
+    private void materializeHash(int hash, ClassLoader classLoader) {
+        List<RegistryJournal.EntryRef> refs = unloadedByHash.remove(hash);
+        if (refs == null) {
+            return;
+        }
+        List<RegistryJournal.EntryRef> unresolved = new ArrayList<>();
+        for (RegistryJournal.EntryRef ref : refs) {
+            if (unloadedByPhysicalId.remove(ref.physicalId(), ref) && !materialize(ref, classLoader)) {
+                unloadedByPhysicalId.put(ref.physicalId(), ref);
+                unresolved.add(ref);
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            unloadedByHash.put(hash, unresolved);
+        }
+    }
+
+    /**
+     * Physical IDs come from {@link #registerLambda}, which has materialized their hash group already, so this
+     * resolves with the class loader of the registry.
+     */
+    private void materializePhysicalId(int physicalId) {
+        RegistryJournal.EntryRef ref = unloadedByPhysicalId.get(physicalId);
+        if (ref == null) {
+            return;
+        }
+        // materialize the whole hash group under its stripe, so a concurrent lookup waits until the entry is there
+        ReentrantLock stripe = stripeFor(ref.hash());
+        stripe.lock();
+        try {
+            materializeHash(ref.hash(), LambdaRegistry.class.getClassLoader());
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Decodes a persisted entry from the mapped journal and registers it, as if it had been compiled this run.
+     *
+     * @return false when a signature type is not found by the class loader
+     */
+    private boolean materialize(RegistryJournal.EntryRef ref, ClassLoader classLoader) {
+        RegistryJournal.Entry persisted = mappedJournal.read(ref);
+        LambdaKey key;
+        try {
+            key = LambdaUtils.restoreLambdaKey(persisted.methodSignature(), persisted.normalisedBody(), persisted.hash(),
+                                               persisted.returnType(), persisted.methodName(), persisted.parameterTypes(),
+                                               classLoader);
+        } catch (ClassNotFoundException e) {
+            LOG.debug("Not loading persisted lambda {} yet, its signature type is not found by {}: {}",
+                      ref.physicalId(), classLoader, e.getMessage());
+            return false;
+        }
+
+        RegistryEntry entry = new RegistryEntry(key, ref.physicalId());
+        entry.path = Path.of(persisted.path());
+        entriesByKey.put(key, entry);
+        entriesByPhysicalId.put(ref.physicalId(), entry);
+        hashToKeys.computeIfAbsent(key.hashCode(), h -> new ArrayList<>()).add(key);
+        return true;
+    }
+
+    /**
+     * Number of persisted entries not materialized yet.
+     */
+    int unloadedCount() {
+        return unloadedByPhysicalId.size();
+    }
+
     private static final class RegistryEntry {
 
         private final LambdaKey key;
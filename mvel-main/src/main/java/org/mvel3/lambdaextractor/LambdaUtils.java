@@ -1,6 +1,8 @@
 package org.mvel3.lambdaextractor;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -43,13 +45,21 @@ public class LambdaUtils {
      * Helper method to create a LambdaKey from a method declaration AST node
      */
     public static LambdaKey createLambdaKeyFromMethodDeclaration(MethodDeclaration methodDeclaration) {
+        return createLambdaKeyFromMethodDeclaration(methodDeclaration, LambdaUtils.class.getClassLoader());
+    }
+
+    /**
+     * Helper method to create a LambdaKey from a method declaration AST node, resolving its signature types with
+     * the class loader the method is compiled against
+     */
+    public static LambdaKey createLambdaKeyFromMethodDeclaration(MethodDeclaration methodDeclaration, ClassLoader classLoader) {
         MethodDeclaration normalizedMethodDeclaration = VariableNameNormalizerVisitor.normalize(methodDeclaration);
         String methodSignature = normalizedMethodDeclaration.getDeclarationAsString(true, true, true);
         BlockStmt normalizedBody = normalizedMethodDeclaration.getBody().orElseThrow(() -> new IllegalStateException("MethodDeclaration has no body"));
         String normalizedStr = normalizedBody.toString();
         Type returnType = methodDeclaration.getType();
-        Class<?> returnClass = resolveType(returnType);
-        List<Class<?>> parameterTypes = methodDeclaration.getParameters().stream().<Class<?>>map(p -> resolveType(p.getType())).toList();
+        Class<?> returnClass = resolveType(returnType, classLoader);
+        List<Class<?>> parameterTypes = methodDeclaration.getParameters().stream().<Class<?>>map(p -> resolveType(p.getType(), classLoader)).toList();
         LambdaKey.MethodSignatureInfo methodSignatureInfo =
                 new LambdaKey.MethodSignatureInfo(
                         returnClass,
@@ -59,7 +69,7 @@ public class LambdaUtils {
         return new LambdaKey(methodSignature, normalizedStr, methodSignatureInfo);
     }
 
-    private static Class<?> resolveType(Type type) {
+    private static Class<?> resolveType(Type type, ClassLoader classLoader) {
         // this resolution relies on the mvel implementation that FQCN is retained in source code
         // to be generic resolution, SymbolResolver will be required, but it would be slow
         // TODO: support generic types and arrays e.g. using Type.getCanonicalGenericsName()
@@ -68,19 +78,66 @@ public class LambdaUtils {
             return PRIMITIVES.get(fqcn);
         }
         try {
-            return Class.forName(fqcn);
+            return Class.forName(fqcn, false, classLoader);
         } catch (ClassNotFoundException e) {
             try {
                 // replace the last `.` with `$` to handle inner class
                 int lastDot = fqcn.lastIndexOf('.');
                 String possibleInnerClassName = fqcn.substring(0, lastDot) + '$' + fqcn.substring(lastDot + 1);
-                return Class.forName(possibleInnerClassName);
+                return Class.forName(possibleInnerClassName, false, classLoader);
             } catch (ClassNotFoundException ex) {
                 throw new RuntimeException(ex); // we may change this to a warning
             }
         }
     }
 
+    /**
+     * Rebuilds a LambdaKey persisted by the {@link LambdaRegistry}, resolving the binary names of its signature
+     * types with the given class loader, without parsing the method.
+     */
+    static LambdaKey restoreLambdaKey(String methodSignature, String normalisedBody, int hash, String returnType,
+                                      String methodName, List<String> parameterTypes, ClassLoader classLoader) throws ClassNotFoundException {
+        List<Class<?>> parameterClasses = new ArrayList<>(parameterTypes.size());
+        for (String parameterType : parameterTypes) {
+            parameterClasses.add(classForName(parameterType, classLoader));
+        }
+        LambdaKey.MethodSignatureInfo methodSignatureInfo =
+                new LambdaKey.MethodSignatureInfo(classForName(returnType, classLoader), methodName, parameterClasses);
+        return new LambdaKey(methodSignature, normalisedBody, hash, methodSignatureInfo);
+    }
+
+    private static Class<?> classForName(String binaryName, ClassLoader classLoader) throws ClassNotFoundException {
+        Class<?> primitive = PRIMITIVES.get(binaryName);
+        if (primitive != null) {
+            return primitive;
+        }
+        try {
+            return Class.forName(binaryName, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            // entries imported by createJournalEntry record an inner class by its source name
+            int lastDot = binaryName.lastIndexOf('.');
+            if (lastDot < 0) {
+                throw e;
+            }
+            return Class.forName(binaryName.substring(0, lastDot) + '$' + binaryName.substring(lastDot + 1), false, classLoader);
+        }
+    }
+
+    /**
+     * Creates the journal entry of a method declaration without loading its signature types, which are recorded by
+     * their source names and resolved when the entry is restored with the class loader of a compilation.
+     */
+    static RegistryJournal.Entry createJournalEntry(int physicalId, Path path, MethodDeclaration methodDeclaration) {
+        MethodDeclaration normalizedMethodDeclaration = VariableNameNormalizerVisitor.normalize(methodDeclaration);
+        String methodSignature = normalizedMethodDeclaration.getDeclarationAsString(true, true, true);
+        String normalizedStr = normalizedMethodDeclaration.getBody()
+                .orElseThrow(() -> new IllegalStateException("MethodDeclaration has no body")).toString();
+        return new RegistryJournal.Entry(physicalId, calculateHash(normalizedStr), path.toString(), methodSignature,
+                                         normalizedStr, methodDeclaration.getType().asString(),
+                                         methodDeclaration.getNameAsString(),
+                                         methodDeclaration.getParameters().stream().map(p -> p.getType().asString()).toList());
+    }
+
     /**
      * Helper method to create a LambdaKey from a method declaration string
      */
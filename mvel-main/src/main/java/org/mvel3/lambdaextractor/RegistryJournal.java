@@ -0,0 +1,388 @@
+package org.mvel3.lambdaextractor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only binary journal backing the {@link LambdaRegistry}.
+ * <p>
+ * The file starts with a magic number and a format version, followed by records laid out as
+ * {@code [int length][int crc32][byte type][payload]}. Records are buffered by {@link #append(Record)} and
+ * written by {@link #flush()} in a single write followed by a single fsync, so the cost of persisting a batch
+ * of lambdas no longer depends on how many were persisted before. On startup {@link #map()} memory maps the
+ * journal and checks its records in order; a torn record at the end, left by a crash during a write, is
+ * dropped and truncated.
+ * <p>
+ * An entry starts with its physical ID and murmur hash, so mapping only indexes those and leaves the strings
+ * to be decoded when the registry first looks the entry up. Entries also carry the resolved signature
+ * metadata, so no Java source has to be parsed to rebuild a {@link LambdaKey}.
+ * <p>
+ * Replaying keeps superseded records, such as the counters written with every flush, so {@link #compact}
+ * rewrites the journal with only the live ones.
+ */
+final class RegistryJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RegistryJournal.class);
+
+    private static final int MAGIC = 0x4D564C4A; // "MVLJ"
+
+    // This version has to be incremented when the record format changes
+    static final short VERSION = 3;
+
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+
+    private static final byte TYPE_ENTRY = 1;
+
+    private static final byte TYPE_COUNTERS = 2;
+
+    sealed interface Record permits Entry, Counters {
+    }
+
+    /**
+     * A persisted lambda: its physical ID, class file and the {@link LambdaKey} it was compiled from, with the
+     * key's hash and the binary names of its signature types.
+     */
+    record Entry(int physicalId, int hash, String path, String methodSignature, String normalisedBody,
+                 String returnType, String methodName, List<String> parameterTypes) implements Record {
+
+        static Entry of(int physicalId, Path path, LambdaKey key) {
+            LambdaKey.MethodSignatureInfo info = key.getMethodSignatureInfo();
+            return new Entry(physicalId, key.hashCode(), path.toString(), key.getMethodSignature(), key.getNormalisedBody(),
+                             info.returnType.getName(), info.methodName,
+                             info.parameterTypes.stream().map(Class::getName).toList());
+        }
+    }
+
+    /**
+     * Location of an entry in a {@link Mapped} journal, from which {@link Mapped#read(EntryRef)} decodes it.
+     */
+    record EntryRef(int physicalId, int hash, int offset) {
+    }
+
+    /**
+     * The records of a journal as found by {@link #map()}: counters are decoded, entries only located.
+     */
+    static final class Mapped {
+        private final ByteBuffer buffer;
+        private final List<EntryRef> entries;
+        private final Counters counters;
+        private final int recordCount;
+
+        private Mapped(ByteBuffer buffer, List<EntryRef> entries, Counters counters, int recordCount) {
+            this.buffer = buffer;
+            this.entries = entries;
+            this.counters = counters;
+            this.recordCount = recordCount;
+        }
+
+        /**
+         * Entries in journal order; a later entry for the same physical ID supersedes an earlier one.
+         */
+        List<EntryRef> entries() {
+            return entries;
+        }
+
+        /**
+         * The last counters written, or null if none were.
+         */
+        Counters counters() {
+            return counters;
+        }
+
+        int recordCount() {
+            return recordCount;
+        }
+
+        Entry read(EntryRef ref) {
+            return (Entry) decode(buffer.duplicate().position(ref.offset()));
+        }
+    }
+
+    record Counters(int nextPhysicalId, int nextLogicalId) implements Record {
+    }
+
+    private final Path file;
+
+    private final List<byte[]> pending = new ArrayList<>();
+
+    // set when the file is missing or unreadable, so the next flush starts it afresh
+    private boolean rewriteHeader = true;
+
+    RegistryJournal(Path file) {
+        this.file = file;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    synchronized void append(Record record) {
+        pending.add(encode(record));
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    synchronized void clearPending() {
+        pending.clear();
+        rewriteHeader = true;
+    }
+
+    /**
+     * Writes all buffered records with one write and one fsync.
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int size = rewriteHeader ? HEADER_SIZE : 0;
+        for (byte[] record : pending) {
+            size += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (rewriteHeader) {
+            buffer.putInt(MAGIC).putShort(VERSION);
+        }
+        for (byte[] record : pending) {
+            buffer.put(record);
+        }
+        buffer.flip();
+
+        try {
+            Files.createDirectories(file.getParent());
+            StandardOpenOption mode = rewriteHeader ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to lambda registry journal " + file, e);
+        }
+        pending.clear();
+        rewriteHeader = false;
+    }
+
+    /**
+     * Reads all records in the order they were written. A journal from another format version is ignored.
+     */
+    synchronized List<Record> replay() {
+        Mapped mapped = map();
+        List<Record> records = new ArrayList<>(mapped.recordCount);
+        // map() has checked every record left in the buffer
+        ByteBuffer buffer = mapped.buffer.duplicate().position(HEADER_SIZE);
+        while (buffer.remaining() > 0) {
+            int length = buffer.getInt();
+            buffer.getInt();
+            int start = buffer.position();
+            records.add(decode(buffer.duplicate().position(start)));
+            buffer.position(start + length);
+        }
+        return records;
+    }
+
+    /**
+     * Memory maps the journal and locates its records, checking each one. A journal from another format version
+     * is ignored.
+     */
+    synchronized Mapped map() {
+        ByteBuffer empty = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).flip();
+        if (!Files.exists(file)) {
+            rewriteHeader = true;
+            return new Mapped(empty, List.of(), null, 0);
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load lambda registry journal " + file, e);
+        }
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            LOG.info("Ignoring lambda registry journal {} written in another format", file);
+            rewriteHeader = true;
+            return new Mapped(empty, List.of(), null, 0);
+        }
+        rewriteHeader = false;
+
+        List<EntryRef> entries = new ArrayList<>();
+        Counters counters = null;
+        int recordCount = 0;
+        while (buffer.remaining() > 0) {
+            int start = buffer.position();
+            int payload = checkRecord(buffer);
+            if (payload < 0) {
+                LOG.warn("Truncating torn lambda registry journal record at offset {} of {}", start, file);
+                // keep a heap copy of the valid part, as a mapped file is not truncated everywhere
+                ByteBuffer valid = ByteBuffer.allocate(start).put(buffer.duplicate().position(0).limit(start)).flip();
+                truncate(start);
+                return new Mapped(valid, entries, counters, recordCount);
+            }
+            recordCount++;
+            ByteBuffer record = buffer.duplicate().position(payload);
+            switch (record.get()) {
+                case TYPE_ENTRY -> entries.add(new EntryRef(record.getInt(), record.getInt(), payload));
+                case TYPE_COUNTERS -> counters = new Counters(record.getInt(), record.getInt());
+                default -> throw new IllegalStateException("checked record of unknown type");
+            }
+        }
+        return new Mapped(buffer.position(0), entries, counters, recordCount);
+    }
+
+    /**
+     * Atomically replaces the journal with the given records, dropping any pending ones.
+     */
+    synchronized void compact(Collection<? extends Record> records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).array());
+        for (Record record : records) {
+            out.writeBytes(encode(record));
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compact lambda registry journal " + file, e);
+        }
+        pending.clear();
+        rewriteHeader = false;
+    }
+
+    private void truncate(int size) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to truncate lambda registry journal " + file, e);
+        }
+    }
+
+    private static byte[] encode(Record record) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            switch (record) {
+                case Entry entry -> {
+                    out.writeByte(TYPE_ENTRY);
+                    out.writeInt(entry.physicalId());
+                    out.writeInt(entry.hash());
+                    writeString(out, entry.path());
+                    writeString(out, entry.methodSignature());
+                    writeString(out, entry.normalisedBody());
+                    writeString(out, entry.returnType());
+                    writeString(out, entry.methodName());
+                    out.writeInt(entry.parameterTypes().size());
+                    for (String parameterType : entry.parameterTypes()) {
+                        writeString(out, parameterType);
+                    }
+                }
+                case Counters counters -> {
+                    out.writeByte(TYPE_COUNTERS);
+                    out.writeInt(counters.nextPhysicalId());
+                    out.writeInt(counters.nextLogicalId());
+                }
+            }
+        } catch (IOException e) {
+            // cannot happen, the stream is in memory
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length)
+                         .putInt(bytes.length)
+                         .putInt((int) crc.getValue())
+                         .put(bytes)
+                         .array();
+    }
+
+    /**
+     * Checks the next record and moves past it, returning the offset of its payload, or -1 if it is incomplete
+     * or corrupt.
+     */
+    private static int checkRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return -1;
+        }
+        int payload = buffer.position();
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(payload + length));
+        if ((int) crc.getValue() != checksum) {
+            return -1;
+        }
+        byte type = buffer.get(payload);
+        if (type != TYPE_ENTRY && type != TYPE_COUNTERS) {
+            return -1;
+        }
+        buffer.position(payload + length);
+        return payload;
+    }
+
+    /**
+     * Decodes the record whose payload starts at the buffer position.
+     */
+    private static Record decode(ByteBuffer payload) {
+        return switch (payload.get()) {
+            case TYPE_ENTRY -> {
+                int physicalId = payload.getInt();
+                int hash = payload.getInt();
+                String path = readString(payload);
+                String methodSignature = readString(payload);
+                String normalisedBody = readString(payload);
+                String returnType = readString(payload);
+                String methodName = readString(payload);
+                String[] parameterTypes = new String[payload.getInt()];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = readString(payload);
+                }
+                yield new Entry(physicalId, hash, path, methodSignature, normalisedBody, returnType, methodName, List.of(parameterTypes));
+            }
+            case TYPE_COUNTERS -> new Counters(payload.getInt(), payload.getInt());
+            default -> throw new IllegalStateException("Unknown lambda registry journal record type");
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
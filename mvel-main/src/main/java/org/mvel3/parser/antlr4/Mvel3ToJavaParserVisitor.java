@@ -2719,8 +2719,9 @@ public class Mvel3ToJavaParserVisitor extends Mvel3ParserBaseVisitor<Node> {
 
         if (outcomeCtx.block() != null) {
             entryType = isArrow ? SwitchEntry.Type.BLOCK : SwitchEntry.Type.STATEMENT_GROUP;
+            // A BLOCK entry holds the block itself as its only statement, as JavaParser models it
             BlockStmt block = (BlockStmt) visit(outcomeCtx.block());
-            statements.addAll(block.getStatements());
+            statements.add(block);
         } else {
             // blockStatement*
             if (isArrow) {
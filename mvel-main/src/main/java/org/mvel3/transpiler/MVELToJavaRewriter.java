@@ -18,12 +18,14 @@ import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.InstanceOfExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.LiteralStringValueExpr;
 import com.github.javaparser.ast.expr.LongLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.PatternExpr;
 import com.github.javaparser.ast.expr.SimpleName;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.expr.TextBlockLiteralExpr;
@@ -36,6 +38,7 @@ import com.github.javaparser.ast.stmt.Statement;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.PrimitiveType;
 import com.github.javaparser.ast.type.PrimitiveType.Primitive;
+import com.github.javaparser.ast.type.ReferenceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.resolution.MethodUsage;
 import com.github.javaparser.resolution.Solver;
@@ -50,6 +53,9 @@ import com.github.javaparser.resolution.types.ResolvedTypeVariable;
 import com.github.javaparser.utils.Pair;
 import org.mvel3.MVELBuilder;
 import org.mvel3.MVEL;
+import org.mvel3.Columns;
+import org.mvel3.ContextShape;
+import org.mvel3.ShapedContext;
 import org.mvel3.parser.ast.expr.AbstractContextStatement;
 import org.mvel3.parser.ast.expr.BigDecimalLiteralExpr;
 import org.mvel3.parser.ast.expr.BigIntegerLiteralExpr;
@@ -71,6 +77,7 @@ import org.mvel3.transpiler.context.TranspilerContext;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -132,6 +139,12 @@ public class MVELToJavaRewriter {
     ResolvedType withContextType;
     boolean isModifyWithContext;
 
+    private static final String NULL_SAFE_VAR_PREFIX = "__nullSafe";
+
+    // Null-safe guards created by wrapNullSafe, bound to pattern variables by bindNullSafeScopes
+    private final Set<ConditionalExpr> nullSafeGuards = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int nullSafeVarCount;
+
     public MVELToJavaRewriter(TranspilerContext context) {
         this.context = context;
         Solver solver = context.getFacade().getSymbolSolver();
@@ -662,7 +675,11 @@ public class MVELToJavaRewriter {
 
         List<ResolvedType> argTypes = Arrays.asList(new ResolvedType[methodCall.getArguments().size()]);
         for (int i = 0; i < methodCall.getArguments().size(); i++ ) {
-            argTypes.set(i, methodCall.getArguments().get(i).calculateResolvedType());
+            Expression arg = methodCall.getArguments().get(i);
+            // lambdas and method references take their type from the parameter, so they are never coerced
+            if (!arg.isLambdaExpr() && !arg.isMethodReferenceExpr()) {
+                argTypes.set(i, arg.calculateResolvedType());
+            }
         }
 
         class Holder {
@@ -757,7 +774,7 @@ public class MVELToJavaRewriter {
 
         int coercionCount = 0;
         for(int i = startIndex; i < endIndex; i++) {
-            if (!isAssignableBy(paramType, argTypes.get(i))) {
+            if (argTypes.get(i) != null && !isAssignableBy(paramType, argTypes.get(i))) {
                 // else try coercion
                 Expression result = coercer.coerce(argTypes.get(i), methodCall.getArguments().get(i), paramType);
                 if (result == null) {
@@ -993,6 +1010,33 @@ public class MVELToJavaRewriter {
                             setMethod.addArgument(new IntegerLiteralExpr(context.getEvaluatorInfo().indexOf(nameExpr.getNameAsString())));
                             setMethod.addArgument(assignExpr);
                         }
+                    } else if (Columns.class.isAssignableFrom(ctxClass)) {
+                        // columns are read only, so the assignment only updates the variable for the current row
+                    } else if (ShapedContext.class.isAssignableFrom(ctxClass)) {
+                        int slot = context.getEvaluatorInfo().indexOf(nameExpr.getNameAsString());
+                        Class<?> varClass = context.getEvaluatorInfo().variableDeclarations().get(slot).type().getClazz();
+
+                        // a = 5 becomes context.setInt(i, a = 5);
+                        MethodCallExpr setMethod = new MethodCallExpr(new NameExpr(new SimpleName(ctxDeclr.name())), ContextShape.setterName(varClass));
+                        assignExpr.replace(setMethod);
+                        setMethod.setArguments(NodeList.nodeList(new IntegerLiteralExpr(slot), assignExpr));
+
+                        if (!(setMethod.getParentNode().get() instanceof ExpressionStmt)) {
+                            // This assigment is part of some expression, so read the new value back from the context
+                            // return a = 5 becomes return context.setInt(i, a = 5).getInt(i);
+                            MethodCallExpr getMethod = new MethodCallExpr(null, ContextShape.getterName(varClass),
+                                                                          NodeList.nodeList(new IntegerLiteralExpr(slot)));
+                            setMethod.replace(getMethod);
+                            getMethod.setScope(setMethod);
+                            if (ContextShape.fieldType(varClass) != varClass) {
+                                Type castType = handleParserResult(context.getParser().parseType(
+                                        context.getEvaluatorInfo().variableDeclarations().get(slot).type().getCanonicalGenericsName()));
+                                CastExpr castExpr = new CastExpr();
+                                getMethod.replace(castExpr);
+                                castExpr.setType(castType);
+                                castExpr.setExpression(getMethod);
+                            }
+                        }
                     } else {
                         // pojo
                         // @TOOD I need to call the generated method below. But ideally only if it's part of some parent.
@@ -1308,7 +1352,7 @@ public class MVELToJavaRewriter {
 
         ResolvedType type;
         try {
-            type = n.getScope().calculateResolvedType();
+            type = boundOfConstraint(n.getScope().calculateResolvedType());
         } catch (Exception e) {
             // If 'n' is a package reference (e.g. java.util.List), resolution will fail.
             // This is expected — we return the node unchanged.
@@ -1362,20 +1406,28 @@ public class MVELToJavaRewriter {
     }
 
     private Expression wrapNullSafe(Expression scopeExpression, Function<Expression, Expression> onNotNull) {
-        return wrapNullSafeInternal(scopeExpression.clone(), onNotNull);
+        return wrapNullSafeInternal(scopeExpression, onNotNull);
     }
 
     private Expression wrapNullSafeInternal(Expression currentScope, Function<Expression, Expression> onNotNull) {
         if (currentScope instanceof ConditionalExpr conditionalExpr && isNullSafeConditional(currentScope)) {
-            Expression wrappedThen = wrapNullSafeInternal(conditionalExpr.getThenExpr().clone(), onNotNull);
+            Expression innerThen = conditionalExpr.getThenExpr();
+            while (innerThen instanceof EnclosedExpr enclosed) {
+                innerThen = enclosed.getInner();
+            }
+            Expression wrappedThen = wrapNullSafeInternal(innerThen, onNotNull);
             if (wrappedThen instanceof ConditionalExpr) {
                 wrappedThen = new EnclosedExpr(wrappedThen);
             }
-            return new ConditionalExpr(
+            ConditionalExpr wrapped = new ConditionalExpr(
                 conditionalExpr.getCondition().clone(),
                 wrappedThen,
                 conditionalExpr.getElseExpr().clone()
             );
+            if (nullSafeGuards.contains(conditionalExpr)) {
+                nullSafeGuards.add(wrapped);
+            }
+            return wrapped;
         }
 
         Expression conditionScope = currentScope.clone();
@@ -1384,12 +1436,81 @@ public class MVELToJavaRewriter {
             new NullLiteralExpr(),
             BinaryExpr.Operator.NOT_EQUALS
         );
-        Expression thenExpr = onNotNull.apply(currentScope);
-        return new ConditionalExpr(
+        Expression thenExpr = onNotNull.apply(currentScope.clone());
+        ConditionalExpr guard = new ConditionalExpr(
             condition,
             thenExpr,
             new NullLiteralExpr()
         );
+        if (!conditionScope.isNameExpr()) {
+            nullSafeGuards.add(guard);
+        }
+        return guard;
+    }
+
+    /**
+     * Rewrites the null-safe guards {@code s != null ? s.x() : null} created for this body into
+     * {@code s instanceof T v ? v.x() : null}, so that each link of a chain like {@code a!.b!.c} is
+     * evaluated once. This runs after the rewrite, as the symbol solver cannot resolve pattern variables
+     * inside a conditional expression: every scope type is resolved first, before any guard is changed.
+     * A guard whose scope type cannot be written as a pattern type keeps the plain null check.
+     */
+    public void bindNullSafeScopes(Node body) {
+        // Outer guards come first, so variables are numbered in source order
+        List<Map.Entry<ConditionalExpr, ReferenceType>> patternTypes = new ArrayList<>();
+        for (ConditionalExpr guard : body.findAll(ConditionalExpr.class, nullSafeGuards::contains)) {
+            if (!isNullSafeConditional(guard) || !guard.getCondition().asBinaryExpr().getRight().isNullLiteralExpr()) {
+                continue;
+            }
+            Expression scope = guard.getCondition().asBinaryExpr().getLeft();
+            try {
+                ResolvedType scopeType = scope.calculateResolvedType();
+                if (isPatternType(scopeType)) {
+                    patternTypes.add(Map.entry(guard, (ReferenceType) resolvedTypeToType(scopeType)));
+                }
+            } catch (RuntimeException e) {
+                logger.trace("Null-safe scope type not resolvable for '{}': {}", scope, e.getMessage());
+            }
+        }
+        nullSafeGuards.clear();
+
+        for (Map.Entry<ConditionalExpr, ReferenceType> entry : patternTypes) {
+            ConditionalExpr guard = entry.getKey();
+            Expression scope = guard.getCondition().asBinaryExpr().getLeft();
+            SimpleName varName = new SimpleName(NULL_SAFE_VAR_PREFIX + nullSafeVarCount++);
+
+            // Nested guards are rewritten in any order: their scopes are matched structurally
+            Expression thenExpr = guard.getThenExpr();
+            if (thenExpr.equals(scope)) {
+                guard.setThenExpr(new NameExpr(varName));
+            } else {
+                for (Expression occurrence : thenExpr.findAll(Expression.class, scope::equals)) {
+                    occurrence.replace(new NameExpr(varName.clone()));
+                }
+            }
+            ReferenceType patternType = entry.getValue();
+            guard.setCondition(new InstanceOfExpr(
+                scope.clone(),
+                patternType.clone(),
+                new PatternExpr(new NodeList<>(), patternType, varName)
+            ));
+        }
+    }
+
+    /**
+     * Whether a type can be written after {@code instanceof}: a class type whose type arguments are
+     * neither type variables nor wildcards, so the pattern never needs an unchecked cast.
+     */
+    private static boolean isPatternType(ResolvedType type) {
+        if (!type.isReferenceType()) {
+            return false;
+        }
+        for (ResolvedType typeArgument : type.asReferenceType().typeParametersValues()) {
+            if (!isPatternType(typeArgument)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private boolean isNullSafeConditional(Expression expression) {
@@ -1446,7 +1567,7 @@ public class MVELToJavaRewriter {
         ResolvedReferenceTypeDeclaration d;
 
         try {
-            ResolvedType type = n.getScope().calculateResolvedType();
+            ResolvedType type = boundOfConstraint(n.getScope().calculateResolvedType());
             if ( languageFeatures.autoWrapPrimitiveWithMethod && type.isPrimitive()) {
                 type = context.getFacade().getSymbolSolver().classToResolvedType(type.asPrimitive().getBoxTypeClass());
             }
@@ -1470,6 +1591,14 @@ public class MVELToJavaRewriter {
         return findGetterSetter(getterSetter, n.getNameAsString(), x, d);
     }
 
+    /**
+     * An implicitly typed lambda parameter, as in {@code people.stream().filter(p -> p.age > 10)}, resolves to a
+     * constraint such as {@code ? super Person}; its members are those of the bound.
+     */
+    private static ResolvedType boundOfConstraint(ResolvedType type) {
+        return type.isConstraint() ? type.asConstraintType().getBound() : type;
+    }
+
     public static MethodUsage findGetterSetter(String getterSetter, String name, int x, ResolvedReferenceTypeDeclaration d) {
         String is = null;
         if (getterSetter.equals("get")) {
@@ -18,7 +18,6 @@ package org.mvel3.transpiler;
 
 import com.github.javaparser.ParseProblemException;
 import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.github.javaparser.ast.CompilationUnit;
@@ -32,16 +31,11 @@ import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 import com.github.javaparser.ast.stmt.Statement;
-import com.github.javaparser.resolution.TypeSolver;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import org.mvel3.ContentType;
 import org.mvel3.CompilerParameters;
-import org.mvel3.parser.MvelParser;
 import org.mvel3.parser.printer.PrintUtil;
 import org.mvel3.transpiler.context.TranspilerContext;
-
-import static com.github.javaparser.ParserConfiguration.LanguageLevel.JAVA_15;
+import org.mvel3.transpiler.context.TranspilerEnvironment;
 
 public class MVELTranspiler {
     private static final Logger logger = LoggerFactory.getLogger(MVELTranspiler.class);
@@ -57,16 +51,9 @@ public class MVELTranspiler {
 
     public static <T, K, R>  TranspiledResult transpile(CompilerParameters<T, K, R> evalInfo, EvalPre evalPre) {
 
-        TypeSolver typeSolver = new ReflectionTypeSolver(false);
-        JavaSymbolSolver solver = new JavaSymbolSolver(typeSolver);
-
-        ParserConfiguration conf = new ParserConfiguration();
-        conf.setLanguageLevel(JAVA_15);
-        conf.setSymbolResolver(solver);
-
-        MvelParser parser = MvelParser.Factory.get(conf);
+        TranspilerEnvironment environment = TranspilerEnvironment.forClassLoader(evalInfo.classLoader());
 
-        TranspilerContext context = new TranspilerContext(parser, typeSolver, evalInfo);
+        TranspilerContext context = new TranspilerContext(environment, evalInfo);
 
         MVELTranspiler mvelTranspiler = new MVELTranspiler(context);
 
@@ -160,6 +147,7 @@ public class MVELTranspiler {
         if (ENABLE_REWRITE) {
             MVELToJavaRewriter rewriter = new MVELToJavaRewriter(context);
             rewriter.rewriteChildren(method.getBody().get());
+            rewriter.bindNullSafeScopes(method.getBody().get());
         }
 
 //        // Inject the "return" if one is needed and it's missing and it's a statement expression.
@@ -65,11 +65,19 @@ public class TranspilerContext<T, K, R> {
     private Map<String, Set<ResolvedMethodDeclaration>> resolvedStaticMethods;
 
     public TranspilerContext(MvelParser parser, TypeSolver typeSolver, CompilerParameters<T, K, R> evaluatorInfo) {
+        this(parser, typeSolver, JavaParserFacade.get(typeSolver), evaluatorInfo);
+    }
+
+    public TranspilerContext(TranspilerEnvironment environment, CompilerParameters<T, K, R> evaluatorInfo) {
+        this(environment.getParser(), environment.getTypeSolver(), environment.createFacade(), evaluatorInfo);
+    }
+
+    private TranspilerContext(MvelParser parser, TypeSolver typeSolver, JavaParserFacade facade, CompilerParameters<T, K, R> evaluatorInfo) {
         this.parser = parser;
         this.typeSolver = typeSolver;
         this.parserConfiguration = parser.getParserConfiguration();
         this.symbolResolver = (JavaSymbolSolver) parserConfiguration.getSymbolResolver().get();
-        this.facade = JavaParserFacade.get(typeSolver);
+        this.facade = facade;
         this.coercer = new CoerceRewriter(this);
         this.overloader = new OverloadRewriter(this);
         this.evaluatorInfo = evaluatorInfo;
@@ -0,0 +1,189 @@
+package org.mvel3.transpiler.context;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ClassLoaderTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.mvel3.parser.MvelParser;
+
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.javaparser.ParserConfiguration.LanguageLevel.JAVA_15;
+
+/**
+ * The long-lived, per {@link ClassLoader} part of transpilation: type solver, symbol solver, parser configuration
+ * and parser. A {@link TranspilerContext} is created per compilation, an environment is shared by every compilation
+ * against the same class loader, so that resolved types stay warm between them.
+ * <p>
+ * The type solver caches its resolved (and unresolved) names in a concurrent map, and the parser creates its
+ * ANTLR lexer and parser per call, so an environment can be used by several compiling threads at once. The
+ * {@link JavaParserFacade}, which is not thread safe, is not part of the environment: each transpilation creates
+ * its own with {@link #createFacade()}. The facade the symbol solver looks up internally through
+ * {@link JavaParserFacade#get(TypeSolver)} is owned by the type solver, so those lookups neither lock nor rebuild it.
+ * <p>
+ * Environments are held softly and keyed weakly by class loader, so neither is kept alive by this registry alone.
+ */
+public final class TranspilerEnvironment {
+
+    private static final ClassLoader DEFAULT_CLASS_LOADER = ReflectionTypeSolver.class.getClassLoader();
+
+    private static final TranspilerEnvironment DEFAULT = new TranspilerEnvironment(DEFAULT_CLASS_LOADER);
+
+    private static final Map<ClassLoader, SoftReference<TranspilerEnvironment>> ENVIRONMENTS = new WeakHashMap<>();
+
+    private final ClassLoader classLoader;
+
+    private final CachingTypeSolver typeSolver;
+
+    private final JavaSymbolSolver symbolSolver;
+
+    private final ParserConfiguration parserConfiguration;
+
+    private final MvelParser parser;
+
+    /**
+     * Returns the shared environment for the given class loader, creating it on first use. A null class loader
+     * resolves against the class loader that loaded JavaParser, which was the behaviour before environments existed.
+     */
+    public static TranspilerEnvironment forClassLoader(ClassLoader classLoader) {
+        if (classLoader == null || classLoader == DEFAULT_CLASS_LOADER) {
+            return DEFAULT;
+        }
+
+        synchronized (ENVIRONMENTS) {
+            SoftReference<TranspilerEnvironment> ref = ENVIRONMENTS.get(classLoader);
+            TranspilerEnvironment environment = ref != null ? ref.get() : null;
+            if (environment == null) {
+                environment = new TranspilerEnvironment(classLoader);
+                ENVIRONMENTS.put(classLoader, new SoftReference<>(environment));
+            }
+            return environment;
+        }
+    }
+
+    /**
+     * Drops the shared environment of the given class loader, for instance when its classes are being redefined.
+     */
+    public static void release(ClassLoader classLoader) {
+        if (classLoader == null || classLoader == DEFAULT_CLASS_LOADER) {
+            DEFAULT.typeSolver.clear();
+            return;
+        }
+        synchronized (ENVIRONMENTS) {
+            ENVIRONMENTS.remove(classLoader);
+        }
+    }
+
+    private TranspilerEnvironment(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.typeSolver = new CachingTypeSolver(classLoader);
+        this.symbolSolver = new JavaSymbolSolver(typeSolver);
+
+        this.parserConfiguration = new ParserConfiguration();
+        parserConfiguration.setLanguageLevel(JAVA_15);
+        parserConfiguration.setSymbolResolver(symbolSolver);
+
+        this.parser = MvelParser.Factory.get(parserConfiguration);
+    }
+
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public TypeSolver getTypeSolver() {
+        return typeSolver;
+    }
+
+    public JavaSymbolSolver getSymbolSolver() {
+        return symbolSolver;
+    }
+
+    public ParserConfiguration getParserConfiguration() {
+        return parserConfiguration;
+    }
+
+    public MvelParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Creates a facade over this environment's type solver, for the use of a single transpilation.
+     */
+    public JavaParserFacade createFacade() {
+        return JavaParserFacade.create(typeSolver);
+    }
+
+    /**
+     * Number of type names, resolved or not, currently cached by this environment's type solver.
+     */
+    public int cachedTypeCount() {
+        return typeSolver.cache.size();
+    }
+
+    /**
+     * Class loader type solver with a thread-safe cache of solved names. Types the given class loader cannot see,
+     * such as MVEL's own helpers when compiling against an isolated loader, are resolved against the default loader.
+     */
+    private static final class CachingTypeSolver extends ClassLoaderTypeSolver implements JavaParserFacade.Provider {
+
+        private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> cache = new ConcurrentHashMap<>();
+
+        private final ClassLoaderTypeSolver fallback;
+
+        private volatile JavaParserFacade facade;
+
+        private CachingTypeSolver(ClassLoader classLoader) {
+            super(classLoader);
+            if (classLoader != DEFAULT_CLASS_LOADER) {
+                fallback = new ClassLoaderTypeSolver(DEFAULT_CLASS_LOADER);
+                // resolved declarations must refer back to this solver as their root
+                fallback.setParent(this);
+            } else {
+                fallback = null;
+            }
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            // not computeIfAbsent: inner class resolution recurses into this method for the outer name
+            SymbolReference<ResolvedReferenceTypeDeclaration> ref = cache.get(name);
+            if (ref == null) {
+                ref = super.tryToSolveType(name);
+                if (!ref.isSolved() && fallback != null) {
+                    ref = fallback.tryToSolveType(name);
+                }
+                SymbolReference<ResolvedReferenceTypeDeclaration> existing = cache.putIfAbsent(name, ref);
+                if (existing != null) {
+                    ref = existing;
+                }
+            }
+            return ref;
+        }
+
+        @Override
+        public JavaParserFacade getFacade() {
+            JavaParserFacade facade = this.facade;
+            if (facade == null) {
+                synchronized (this) {
+                    facade = this.facade;
+                    if (facade == null) {
+                        facade = JavaParserFacade.create(this);
+                        this.facade = facade;
+                    }
+                }
+            }
+            return facade;
+        }
+
+        private void clear() {
+            cache.clear();
+        }
+    }
+}
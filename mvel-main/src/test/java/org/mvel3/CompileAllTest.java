@@ -0,0 +1,117 @@
+package org.mvel3;
+
+import org.junit.jupiter.api.Test;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompileAllTest {
+
+    private static CompilerParameters<Map<String, Object>, Void, Integer> parameters(String expression) {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("a", Type.type(int.class));
+        types.put("b", Type.type(int.class));
+        return MVEL.<Object>map(Declaration.from(types))
+                   .<Integer>out(Integer.class)
+                   .expression(expression)
+                   .build();
+    }
+
+    private static CompilerParameters<Map<String, Object>, Void, Integer> blockParameters(String block) {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("a", Type.type(int.class));
+        types.put("b", Type.type(int.class));
+        return MVEL.<Object>map(Declaration.from(types))
+                   .<Integer>out(Integer.class)
+                   .block(block)
+                   .build();
+    }
+
+    private static Map<String, Object> vars(int a, int b) {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", a);
+        vars.put("b", b);
+        return vars;
+    }
+
+    @Test
+    void resultsFollowInputOrder() {
+        List<CompilerParameters<?, ?, ?>> parameters = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            parameters.add(parameters("a * b + " + i));
+        }
+
+        List<CompilationResult<?, ?, ?>> results = new MVEL().compileAll(parameters, 4);
+
+        assertThat(results).hasSize(16);
+        for (int i = 0; i < 16; i++) {
+            CompilationResult<?, ?, ?> result = results.get(i);
+            assertThat(result.index()).isEqualTo(i);
+            assertThat(result.parameters()).isSameAs(parameters.get(i));
+            assertThat(result.isSuccess()).isTrue();
+
+            Evaluator<Map<String, Object>, Void, Integer> evaluator = (Evaluator<Map<String, Object>, Void, Integer>) result.getOrThrow();
+            assertThat(evaluator.eval(vars(2, 3))).isEqualTo(6 + i);
+        }
+    }
+
+    @Test
+    void failuresAreReportedPerExpression() {
+        List<CompilerParameters<?, ?, ?>> parameters = List.of(parameters("a + b"),
+                                                               parameters("a.noSuchMethod()"),
+                                                               parameters("a - b"));
+
+        List<CompilationResult<?, ?, ?>> results = new MVEL().compileAll(parameters, 2);
+
+        assertThat(results.get(0).isSuccess()).isTrue();
+        assertThat(results.get(2).isSuccess()).isTrue();
+
+        CompilationResult<?, ?, ?> failed = results.get(1);
+        assertThat(failed.isSuccess()).isFalse();
+        assertThat(failed.evaluator()).isNull();
+        assertThat(failed.error()).isNotNull();
+        assertThatThrownBy(failed::getOrThrow).isSameAs(failed.error());
+    }
+
+    @Test
+    void cachedEvaluatorsAreReusedAndNewOnesStored() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+
+        Evaluator<Map<String, Object>, Void, Integer> precompiled = mvel.compile(parameters("a + b"));
+
+        List<CompilationResult<?, ?, ?>> results = mvel.compileAll(List.of(parameters("a + b"), parameters("a * b")), 2);
+
+        assertThat(results.get(0).evaluator()).isSameAs(precompiled);
+        assertThat(cache.getIfPresent(parameters("a * b"))).isSameAs(results.get(1).evaluator());
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void javacFallbacksAreCompiledTogether() {
+        // try statements are not handled by the Classfile emitter, so these all go through one javac batch
+        List<CompilerParameters<?, ?, ?>> parameters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            parameters.add(blockParameters("int t = " + i + "; try { t += a * b; } catch (RuntimeException e) { t = -1; } return t;"));
+        }
+        parameters.add(blockParameters("int t = 0; try { t += a * b; } catch (RuntimeException e) { t = -1; } return t;"));
+
+        List<CompilationResult<?, ?, ?>> results = new MVEL().compileAll(parameters, 4);
+
+        for (int i = 0; i < results.size(); i++) {
+            Evaluator<Map<String, Object>, Void, Integer> evaluator = (Evaluator<Map<String, Object>, Void, Integer>) results.get(i).getOrThrow();
+            assertThat(evaluator.eval(vars(2, 3))).isEqualTo(6 + i % 8);
+        }
+    }
+
+    @Test
+    void emptyInputGivesEmptyResult() {
+        assertThat(new MVEL().compileAll(List.of())).isEmpty();
+    }
+}
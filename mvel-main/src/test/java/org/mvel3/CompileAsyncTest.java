@@ -0,0 +1,122 @@
+package org.mvel3;
+
+import org.junit.jupiter.api.Test;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mvel3.MVELCompilerTest.getImports;
+
+class CompileAsyncTest {
+
+    private static Map<String, Type<?>> fooBarTypes() {
+        Map<String, Type<?>> types = new LinkedHashMap<>();
+        types.put("foo", Type.type(Foo.class));
+        types.put("bar", Type.type(Bar.class));
+        return types;
+    }
+
+    private static Map<String, Object> fooBarVars() {
+        Map<String, Object> vars = new HashMap<>();
+        Foo foo = new Foo();
+        foo.setName("xxx");
+        vars.put("foo", foo);
+
+        Bar bar = new Bar();
+        bar.setName("yyy");
+        vars.put("bar", bar);
+        return vars;
+    }
+
+    private static CompilerParameters<Map<String, Object>, Void, String> parameters(String expression) {
+        return MVEL.<Object>map(Declaration.from(fooBarTypes()))
+                   .<String>out(String.class)
+                   .expression(expression)
+                   .imports(getImports())
+                   .build();
+    }
+
+    @Test
+    void compileAsyncCompletesWithEvaluator() throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            CompletableFuture<Evaluator<Map<String, Object>, Void, String>> future = MVEL.<Object>map(Declaration.from(fooBarTypes()))
+                                                                                        .<String>out(String.class)
+                                                                                        .expression("foo.getName() + bar.getName()")
+                                                                                        .imports(getImports())
+                                                                                        .compileAsync(executor);
+
+            assertThat(future.get().eval(fooBarVars())).isEqualTo("xxxyyy");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void duplicateInFlightRequestsAreCoalesced() {
+        LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+        MVEL mvel = new MVEL();
+
+        CompletableFuture<Evaluator<Map<String, Object>, Void, String>> first = mvel.compileAsync(parameters("foo.getName()"), tasks::add);
+        CompletableFuture<Evaluator<Map<String, Object>, Void, String>> second = mvel.compileAsync(parameters("foo.getName()"), tasks::add);
+
+        // one compilation queued, each caller with a future of its own
+        assertThat(tasks).hasSize(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(first).isNotDone();
+
+        // cancelling one caller's future leaves the shared compilation to the other
+        second.cancel(true);
+        tasks.poll().run();
+        assertThat(second).isCancelled();
+        assertThat(first.join().eval(fooBarVars())).isEqualTo("xxx");
+
+        // once finished, a new request compiles again rather than reusing the completed future
+        CompletableFuture<Evaluator<Map<String, Object>, Void, String>> third = mvel.compileAsync(parameters("foo.getName()"), tasks::add);
+        assertThat(third).isNotSameAs(first);
+        assertThat(tasks).hasSize(1);
+
+        tasks.poll().run();
+        assertThat(third.join().eval(fooBarVars())).isEqualTo("xxx");
+    }
+
+    @Test
+    void compileAllAsyncKeepsInputOrderAndReportsFailuresPerExpression() {
+        List<CompilerParameters<?, ?, ?>> parameters = new ArrayList<>();
+        parameters.add(parameters("foo.getName()"));
+        parameters.add(parameters("foo.noSuchMethod()"));
+        parameters.add(parameters("bar.getName()"));
+
+        List<CompletableFuture<Evaluator<?, ?, ?>>> futures = new MVEL().compileAllAsync(parameters);
+        assertThat(futures).hasSize(3);
+
+        Evaluator<Map<String, Object>, Void, String> foo = (Evaluator<Map<String, Object>, Void, String>) futures.get(0).join();
+        Evaluator<Map<String, Object>, Void, String> bar = (Evaluator<Map<String, Object>, Void, String>) futures.get(2).join();
+        assertThat(foo.eval(fooBarVars())).isEqualTo("xxx");
+        assertThat(bar.eval(fooBarVars())).isEqualTo("yyy");
+
+        assertThatThrownBy(() -> futures.get(1).join()).isInstanceOf(CompletionException.class);
+    }
+
+    @Test
+    void rejectedSubmissionFailsTheFuture() {
+        CompletableFuture<Evaluator<Map<String, Object>, Void, String>> future = new MVEL().compileAsync(parameters("bar.getName()"), command -> {
+            throw new RejectedExecutionException("closed");
+        });
+
+        assertThat(future).isCompletedExceptionally();
+        assertThat(InFlightCompilations.pending()).isZero();
+    }
+}
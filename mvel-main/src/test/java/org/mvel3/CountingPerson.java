@@ -0,0 +1,23 @@
+package org.mvel3;
+
+/**
+ * A {@link Person} that counts calls to {@link #getAddress()}, standing in for a computed property.
+ */
+public class CountingPerson extends Person {
+
+    private int addressCalls;
+
+    public CountingPerson(String name) {
+        super(name);
+    }
+
+    @Override
+    public Address getAddress() {
+        addressCalls++;
+        return super.getAddress();
+    }
+
+    public int getAddressCalls() {
+        return addressCalls;
+    }
+}
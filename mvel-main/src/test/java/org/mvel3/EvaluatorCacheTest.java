@@ -0,0 +1,168 @@
+package org.mvel3;
+
+import org.junit.jupiter.api.Test;
+import org.mvel3.compiler.interpreter.TieredEvaluator;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mvel3.MVELCompilerTest.getImports;
+
+class EvaluatorCacheTest {
+
+    private static Map<String, Type<?>> fooBarTypes() {
+        Map<String, Type<?>> types = new LinkedHashMap<>();
+        types.put("foo", Type.type(Foo.class));
+        types.put("bar", Type.type(Bar.class));
+        return types;
+    }
+
+    private static Map<String, Object> fooBarVars() {
+        Map<String, Object> vars = new HashMap<>();
+        Foo foo = new Foo();
+        foo.setName("xxx");
+        vars.put("foo", foo);
+
+        Bar bar = new Bar();
+        bar.setName("yyy");
+        vars.put("bar", bar);
+        return vars;
+    }
+
+    @Test
+    void identicalExpressionReturnsCachedEvaluator() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+
+        Evaluator<Map<String, Object>, Void, String> first = mvel.compileMapExpression("foo.getName() + bar.getName()", String.class, getImports(), fooBarTypes());
+        Evaluator<Map<String, Object>, Void, String> second = mvel.compileMapExpression("foo.getName() + bar.getName()", String.class, getImports(), fooBarTypes());
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.eval(fooBarVars())).isEqualTo("xxxyyy");
+
+        EvaluatorCache.Stats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.size()).isEqualTo(1);
+    }
+
+    @Test
+    void declarationAndImportOrderDoNotAffectKey() {
+        EvaluatorCache cache = new EvaluatorCache();
+
+        Map<String, Type<?>> reversed = new LinkedHashMap<>();
+        reversed.put("bar", Type.type(Bar.class));
+        reversed.put("foo", Type.type(Foo.class));
+
+        Evaluator<Map<String, Object>, Void, String> first = MVEL.<Object>map(Declaration.from(fooBarTypes()))
+                                                                 .<String>out(String.class)
+                                                                 .expression("foo.getName() + bar.getName()")
+                                                                 .imports(getImports())
+                                                                 .cache(cache)
+                                                                 .compile();
+
+        Evaluator<Map<String, Object>, Void, String> second = MVEL.<Object>map(Declaration.from(reversed))
+                                                                  .<String>out(String.class)
+                                                                  .expression("foo.getName() + bar.getName()")
+                                                                  .imports(Set.copyOf(getImports()))
+                                                                  .cache(cache)
+                                                                  .compile();
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void differentOutTypeIsADifferentEntry() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+
+        Evaluator<Map<String, Object>, Void, String> asString = mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes());
+        Evaluator<Map<String, Object>, Void, Object> asObject = mvel.compileMapExpression("foo.getName()", Object.class, getImports(), fooBarTypes());
+
+        assertThat(asObject).isNotSameAs(asString);
+        assertThat(cache.stats().misses()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        EvaluatorCache cache = new EvaluatorCache(2);
+        MVEL mvel = new MVEL(cache);
+
+        Evaluator<Map<String, Object>, Void, String> foo = mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes());
+        mvel.compileMapExpression("bar.getName()", String.class, getImports(), fooBarTypes());
+
+        // touch foo, so bar becomes the eldest
+        assertThat(mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes())).isSameAs(foo);
+
+        mvel.compileMapExpression("foo.getName() + bar.getName()", String.class, getImports(), fooBarTypes());
+
+        EvaluatorCache.Stats stats = cache.stats();
+        assertThat(stats.evictions()).isEqualTo(1);
+        assertThat(stats.size()).isEqualTo(2);
+
+        assertThat(mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes())).isSameAs(foo);
+        assertThat(cache.stats().hits()).isEqualTo(2);
+    }
+
+    @Test
+    void differentClassManagersAreDifferentEntries() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+        ClassManager first = new ClassManager();
+        ClassManager second = new ClassManager();
+
+        Evaluator<Map<String, Object>, Void, String> firstEvaluator = mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes(),
+                                                                                                 first, ClassLoader.getSystemClassLoader());
+        Evaluator<Map<String, Object>, Void, String> secondEvaluator = mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes(),
+                                                                                                  second, ClassLoader.getSystemClassLoader());
+
+        assertThat(secondEvaluator).isNotSameAs(firstEvaluator);
+        assertThat(mvel.compileMapExpression("foo.getName()", String.class, getImports(), fooBarTypes(),
+                                             first, ClassLoader.getSystemClassLoader())).isSameAs(firstEvaluator);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void parametersWithoutClassManagerShareAnEntry() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+
+        // built without a cache, so each build() gets a default manager of its own
+        CompilerParameters<Map<String, Object>, Void, String> first = MVEL.<Object>map(Declaration.from(fooBarTypes()))
+                                                                          .<String>out(String.class)
+                                                                          .expression("foo.getName()")
+                                                                          .imports(getImports())
+                                                                          .build();
+        CompilerParameters<Map<String, Object>, Void, String> second = MVEL.<Object>map(Declaration.from(fooBarTypes()))
+                                                                           .<String>out(String.class)
+                                                                           .expression("foo.getName()")
+                                                                           .imports(getImports())
+                                                                           .build();
+        assertThat(second.classManager()).isNotSameAs(first.classManager());
+
+        assertThat(mvel.compile(second)).isSameAs(mvel.compile(first));
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void interpretedEvaluatorIsNotReturnedForCompilation() {
+        EvaluatorCache cache = new EvaluatorCache();
+        MVEL mvel = new MVEL(cache);
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("a", 1);
+        vars.put("b", 2);
+        // one-shot evaluation caches an evaluator that interprets until it tiers up
+        assertThat(mvel.executeExpression("a + b", getImports(), vars, Integer.class)).isEqualTo(3);
+
+        Evaluator<Map<String, Object>, Void, Integer> compiled = mvel.compileMapExpression("a + b", Integer.class, getImports(), MVEL.getTypeMap(vars));
+        assertThat(compiled).isNotInstanceOf(TieredEvaluator.class);
+        assertThat(compiled.eval(vars)).isEqualTo(3);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+}
@@ -1,7 +1,12 @@
 package org.mvel3;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class GeneratedParentClass {
 
+    private final List<Object> updated = new ArrayList<>();
+
     public String instanceMethod(int i) {
         return "instance_int" + String.valueOf(i);
     }
@@ -10,4 +15,12 @@ public class GeneratedParentClass {
         return "static_int" + String.valueOf(i);
     }
 
+    public void update(Object fact) {
+        updated.add(fact);
+    }
+
+    public List<Object> getUpdated() {
+        return updated;
+    }
+
 }
@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class MVELCompilerTest {
 
@@ -258,6 +259,123 @@ class MVELCompilerTest {
         assertThat(evaluator.eval(List.of(foo, bar))).isEqualTo("xxxyyy");
     }
 
+    @Test
+    void testShapedEvaluator() {
+        ContextShape shape = ContextShape.of(Declaration.of("influence", int.class),
+                                             Declaration.of("atWar", boolean.class),
+                                             Declaration.of("ratio", double.class),
+                                             Declaration.of("level", byte.class),
+                                             Declaration.of("foo", Foo.class));
+
+        Foo foo = new Foo();
+        foo.setName("xxx");
+
+        ShapedContext context = shape.newContext()
+                                     .setInt(shape.slot("influence"), 75)
+                                     .setBoolean(shape.slot("atWar"), false)
+                                     .setDouble(shape.slot("ratio"), 0.5)
+                                     .setInt(shape.slot("level"), 3)
+                                     .setObject(shape.slot("foo"), foo);
+
+        Evaluator<ShapedContext, Void, String> evaluator = MVEL.shaped(shape).<String>out(String.class)
+                                                               .expression("foo.getName() + (influence * ratio + level) + !atWar")
+                                                               .imports(getImports()).compile();
+
+        assertThat(evaluator.eval(context)).isEqualTo("xxx40.5true");
+        assertThat(shape.newContext().getInt(shape.slot("influence"))).isZero();
+    }
+
+    @Test
+    void testShapedEvaluatorReturns() {
+        ContextShape shape = ContextShape.of(Declaration.of("a", int.class),
+                                             Declaration.of("b", long.class),
+                                             Declaration.of("c", short.class),
+                                             Declaration.of("d", int.class));
+
+        ShapedContext context = shape.newContext().setInt(0, 1).setLong(1, 2L).setInt(2, 3).setInt(3, -1);
+
+        Evaluator<ShapedContext, Void, Integer> evaluator = MVEL.shaped(shape).<Integer>out(Integer.class)
+                                                                .block("a = 4; b = 5L; c = (short) (a + c); return d = a + c;")
+                                                                .imports(getImports()).compile();
+        assertThat((int) evaluator.eval(context)).isEqualTo(11);
+
+        assertThat(context.getInt(0)).isEqualTo(4);
+        assertThat(context.getLong(1)).isEqualTo(5L);
+        assertThat(context.getInt(2)).isEqualTo(7);
+        assertThat(context.getInt(3)).isEqualTo(11);
+    }
+
+    @Test
+    void testColumnsEvaluator() {
+        int[] influence = new int[70];
+        boolean[] atWar = new boolean[70];
+        String[] names = new String[70];
+        for (int i = 0; i < influence.length; i++) {
+            influence[i] = i;
+            atWar[i] = i % 2 == 0;
+            names[i] = "f" + i;
+        }
+
+        Evaluator<Columns, Void, long[]> predicate = MVEL.columns(Declaration.of("influence", int.class),
+                                                                  Declaration.of("atWar", boolean.class))
+                                                         .<long[]>out(long[].class)
+                                                         .expression("influence > 60 && !atWar")
+                                                         .imports(getImports()).compile();
+
+        long[] bits = predicate.eval(new Columns(influence.length, influence, atWar));
+        assertThat(bits).hasSize(2);
+        assertThat(bits[0]).isEqualTo(1L << 61 | 1L << 63);
+        assertThat(bits[1]).isEqualTo(1L << (65 - 64) | 1L << (67 - 64) | 1L << (69 - 64));
+
+        Evaluator<Columns, Void, double[]> score = MVEL.columns(Declaration.of("influence", int.class),
+                                                                Declaration.of("atWar", boolean.class),
+                                                                Declaration.of("name", String.class))
+                                                       .<double[]>out(double[].class)
+                                                       .block("if (atWar) { return -1; } for (int i = 0; i < 2; i++) { influence++; } " +
+                                                              "return influence * 0.5 + name.length();")
+                                                       .imports(getImports()).compile();
+
+        Columns columns = new Columns(3, influence, atWar, names);
+        assertThat(score.eval(columns)).startsWith(-1.0, 3.5, -1.0);
+        assertThat(influence[1]).isEqualTo(1);
+    }
+
+    @Test
+    void testColumnsEvaluatorRowWithoutReturn() {
+        int[] influence = {10, 70, 20, 90};
+
+        Evaluator<Columns, Void, double[]> score = MVEL.columns(Declaration.of("influence", int.class))
+                                                       .<double[]>out(double[].class)
+                                                       .block("if (influence > 50) { return influence * 0.5; }")
+                                                       .imports(getImports()).compile();
+
+        Columns columns = new Columns(influence.length, influence);
+        assertThat(score.eval(columns)).startsWith(0.0, 35.0, 0.0, 45.0);
+
+        influence[0] = 80;
+        influence[1] = 30;
+        assertThat(score.eval(columns)).startsWith(40.0, 0.0, 0.0, 45.0);
+
+        Evaluator<Columns, Void, long[]> predicate = MVEL.columns(Declaration.of("influence", int.class))
+                                                         .<long[]>out(long[].class)
+                                                         .block("if (influence > 50) { return true; }")
+                                                         .imports(getImports()).compile();
+
+        assertThat(predicate.eval(columns)).containsExactly(1L | 1L << 3);
+    }
+
+    @Test
+    void testShapedContextWrongSlot() {
+        ContextShape shape = ContextShape.of(Declaration.of("a", int.class), Declaration.of("s", String.class));
+        ShapedContext context = shape.newContext();
+
+        assertThatThrownBy(() -> context.getLong(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> context.setInt(1, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> shape.slot("b")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ContextShape.of(Declaration.of("a", int.class), Declaration.of("a", long.class)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void testListEvaluatorWithGenerics() {
         Declaration[] types = new Declaration[]{new Declaration("foos", List.class, "<Foo>")};
@@ -1,5 +1,7 @@
 package org.mvel3;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -159,6 +161,61 @@ class MVELPersistenceTest {
         assertThat(Files.exists(firstFiles.get(0))).isTrue();
     }
 
+    @Test
+    void emittedEvaluatorIsLoadedFromDisk() {
+        CompilerParameters<MyPerson, Void, Boolean> evalInfo = MVEL.<MyPerson>pojo(MyPerson.class,
+                                                                                   Declaration.of("age", int.class)
+                )
+                .<Boolean>out(Boolean.class)
+                .expression("age > 20")
+                .imports(getImports()).classManager(new ClassManager())
+                .build();
+
+        MVELCompiler compiler = new MVELCompiler();
+        assertThat(compiler.loadPersistedEmitted(evalInfo)).isNull();
+
+        compiler.compile(evalInfo);
+
+        List<Path> files = listClassFiles();
+        assertThat(files).hasSize(1);
+        assertThat(files.get(0).getParent().getFileName()).hasToString("emitted");
+        assertThat(Files.exists(DEFAULT_PERSISTENCE_PATH.resolve("emitted-index.dat"))).isTrue();
+
+        Evaluator<MyPerson, Void, Boolean> persisted = compiler.loadPersistedEmitted(evalInfo);
+        assertThat(persisted).isNotNull();
+        assertThat(persisted.eval(new MyPerson("a", 30))).isTrue();
+        assertThat(persisted.eval(new MyPerson("b", 10))).isFalse();
+    }
+
+    @Test
+    void emittedEvaluatorIsNotLoadedOnceReferencedClassesChanged() throws Exception {
+        CompilerParameters<MyPerson, Void, Boolean> evalInfo = MVEL.<MyPerson>pojo(MyPerson.class,
+                                                                                   Declaration.of("age", int.class)
+                )
+                .<Boolean>out(Boolean.class)
+                .expression("age > 20")
+                .imports(getImports()).classManager(new ClassManager())
+                .build();
+
+        MVELCompiler compiler = new MVELCompiler();
+        compiler.compile(evalInfo);
+        assertThat(compiler.loadPersistedEmitted(evalInfo)).isNotNull();
+
+        // the same parameters, but resolving against a class loader where MyPerson is not what it was emitted for
+        try (URLClassLoader isolated = new URLClassLoader(new URL[0], null)) {
+            CompilerParameters<MyPerson, Void, Boolean> changed = MVEL.<MyPerson>pojo(MyPerson.class,
+                                                                                      Declaration.of("age", int.class)
+                    )
+                    .<Boolean>out(Boolean.class)
+                    .expression("age > 20")
+                    .imports(getImports()).classManager(evalInfo.classManager())
+                    .classLoader(isolated)
+                    .build();
+
+            assertThat(compiler.loadPersistedEmitted(changed)).isNull();
+        }
+    }
+
     public static class MyPerson {
 
         private String name;
@@ -8,9 +8,11 @@ import org.mvel3.transpiler.TranspiledResult;
 import org.mvel3.transpiler.context.Declaration;
 
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 /**
  * Tests for {@link ClassfileEvaluatorEmitter} — validates that the Classfile API bytecode emitter
@@ -123,19 +125,527 @@ class ClassfileEvaluatorEmitterTest {
         assertThat(evaluator.eval(ctx)).isFalse();
     }
 
-    // ── Javac fallback tests ─────────────────────────────────────────────
-    // These verify that the 9 documented permanent fallback cases produce
-    // correct results through the javac pipeline. Each test represents one
-    // fallback category from the canEmit() javadoc.
+    // ── Loop tests ─────────────────────────────────────────────────────────
+
+    @Test
+    void mapBlock_forAndWhileLoops() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Object> forLoop = emitMapBlock(
+                "long sum = 0; for (int i = 0, j = n; i < j; i++, j--) { sum += i * j; } return sum;", types);
+        Evaluator<Map<String, Object>, Void, Object> whileLoop = emitMapBlock(
+                "int steps = 0; int i = n; while (i-- > 0) { if (i % 2 == 0) continue; steps++; } return steps;", types);
+        Evaluator<Map<String, Object>, Void, Object> doLoop = emitMapBlock(
+                "int t = 0; do t += 3; while (t < n); return t;", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 6);
+        assertThat(forLoop.eval(ctx)).isEqualTo(0L * 6 + 1 * 5 + 2 * 4);
+        assertThat(whileLoop.eval(ctx)).isEqualTo(3);
+        assertThat(doLoop.eval(ctx)).isEqualTo(6);
+
+        ctx.put("n", 0);
+        assertThat(forLoop.eval(ctx)).isEqualTo(0L);
+        assertThat(whileLoop.eval(ctx)).isEqualTo(0);
+        assertThat(doLoop.eval(ctx)).isEqualTo(3);
+    }
+
+    @Test
+    void mapBlock_labelledBreakAndContinue() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("limit", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = emitMapBlock(
+                "int t = 0; " +
+                "outer: for (int i = 0; i < 10; i++) { " +
+                "  for (int j = 0; j < 10; j++) { " +
+                "    if (j > i) continue outer; " +
+                "    if (i == limit) break outer; " +
+                "    t++; " +
+                "  } " +
+                "} " +
+                "while (true) { if (t > 100) return -1; break; } " +
+                "return t;", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("limit", 5);
+        assertThat(evaluator.eval(ctx)).isEqualTo(1 + 2 + 3 + 4 + 5);
+    }
+
+    @Test
+    void mapBlock_enhancedForOverArrays() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("values", Type.type(int[].class));
+        types.put("names", Type.type(String[].class));
+
+        String block = "long sum = 0; for (int v : values) { sum += v; } for (var name : names) { sum += name.length(); } return sum;";
+        var result = transpileMapBlock(block, types, Collections.emptySet());
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        byte[] bytecode = ClassfileEvaluatorEmitter.emit(compilerParamsMapBlock(block, types, Collections.emptySet()), result);
+
+        // arrays are walked by index, without an Iterator
+        assertThat(new String(bytecode, StandardCharsets.ISO_8859_1)).doesNotContain("java/util/Iterator");
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = loadAndInstantiate(bytecode, result);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("values", new int[] {1, 2, 3});
+        ctx.put("names", new String[] {"ab", "cde"});
+        assertThat(evaluator.eval(ctx)).isEqualTo(11L);
+    }
+
+    @Test
+    void mapBlock_enhancedForOverCollections() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foos", Type.type(List.class, "<Foo>"));
+        types.put("ids", Type.type(Set.class, "<Integer>"));
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = emitMapBlock(
+                "int t = 0; for (Foo foo : foos) { t += foo.getName().length(); } for (int id : ids) { t += id; } return t;",
+                types, getImports());
+
+        Foo foo1 = new Foo();
+        foo1.setName("Alice");
+        Foo foo2 = new Foo();
+        foo2.setName("Bob");
+
+        // RandomAccess lists take the indexed loop, other lists the Iterator loop
+        for (List<Foo> foos : List.of(new ArrayList<>(List.of(foo1, foo2)), new LinkedList<>(List.of(foo1, foo2)))) {
+            Map<String, Object> ctx = new HashMap<>();
+            ctx.put("foos", foos);
+            ctx.put("ids", new TreeSet<>(Set.of(10, 20)));
+            assertThat(evaluator.eval(ctx)).isEqualTo(38);
+        }
+    }
+
+    // ── Conditional tests ──────────────────────────────────────────────────
+
+    @Test
+    void mapBlock_conditionalUnifiesBranchTypes() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("a", Type.type(int.class));
+        types.put("b", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Object> widened = emitMapBlock("return a > b ? a : b * 2L;", types);
+        Evaluator<Map<String, Object>, Void, Object> boxed = emitMapBlock("return a > b ? a : null;", types);
+        Evaluator<Map<String, Object>, Void, Object> nested = emitMapBlock(
+                "String s = a > b ? \"gt\" : a == b ? \"eq\" : \"lt\"; return s + (a + b > 10 ? 1 : 0);", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("a", 7);
+        ctx.put("b", 3);
+        assertThat(widened.eval(ctx)).isEqualTo(7L);
+        assertThat(boxed.eval(ctx)).isEqualTo(7);
+        assertThat(nested.eval(ctx)).isEqualTo("gt0");
+
+        ctx.put("a", 3);
+        ctx.put("b", 8);
+        assertThat(widened.eval(ctx)).isEqualTo(16L);
+        assertThat(boxed.eval(ctx)).isNull();
+        assertThat(nested.eval(ctx)).isEqualTo("lt1");
+    }
+
+    @Test
+    void mapBlock_nullSafeChain() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("p", Type.type(Person.class));
+
+        Set<String> imports = new HashSet<>(getImports());
+        imports.add(Address.class.getCanonicalName());
+        Evaluator<Map<String, Object>, Void, Object> city = emitMapBlock("return p!.address!.city;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> age = emitMapBlock("return p!.age;", types, imports);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("p", null);
+        assertThat(city.eval(ctx)).isNull();
+        assertThat(age.eval(ctx)).isNull();
+
+        Person person = new Person("Alice");
+        person.setAge(31);
+        ctx.put("p", person);
+        assertThat(city.eval(ctx)).isNull();
+        assertThat(age.eval(ctx)).isEqualTo(31);
+
+        Address address = new Address();
+        address.setCity("Brno");
+        person.setAddress(address);
+        assertThat(city.eval(ctx)).isEqualTo("Brno");
+    }
+
+    @Test
+    void mapBlock_nullSafeChainEvaluatesEachLinkOnce() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("p", Type.type(CountingPerson.class));
+
+        Evaluator<Map<String, Object>, Void, Object> length = emitMapBlock("return p!.address!.city!.length();", types);
+
+        CountingPerson person = new CountingPerson("Alice");
+        Address address = new Address();
+        address.setCity("Brno");
+        person.setAddress(address);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("p", person);
+        assertThat(length.eval(ctx)).isEqualTo(4);
+        assertThat(person.getAddressCalls()).isEqualTo(1);
+    }
+
+    // ── Switch tests ───────────────────────────────────────────────────────
+
+    @Test
+    void mapBlock_switchStatementFallsThroughAndBreaks() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+
+        // break leaves the switch, continue the enclosing loop
+        Evaluator<Map<String, Object>, Void, Object> dense = emitMapBlock(
+                "int t = 0; " +
+                "for (int i = 0; i < n; i++) { " +
+                "  switch (i) { case 0: t += 1; case 1: t += 10; break; default: continue; case 3: t += 1000; } " +
+                "  t += 100; " +
+                "} " +
+                "return t;", types);
+        Evaluator<Map<String, Object>, Void, Object> sparse = emitMapBlock(
+                "int r = 0; switch (n) { case -1000000: r = 1; break; case 7: r = 2; break; case 1000000: r = 3; } return r;",
+                types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 3);
+        assertThat(dense.eval(ctx)).isEqualTo(111 + 110);
+        ctx.put("n", 4);
+        assertThat(dense.eval(ctx)).isEqualTo(111 + 110 + 1100);
+
+        for (int n : new int[] {-1000000, 7, 1000000, 8}) {
+            ctx.put("n", n);
+            assertThat(sparse.eval(ctx)).isEqualTo(n == 8 ? 0 : n == -1000000 ? 1 : n == 7 ? 2 : 3);
+        }
+    }
+
+    @Test
+    void mapBlock_switchExpressionArrowsAndYield() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+
+        // the int and long values unify to long
+        Evaluator<Map<String, Object>, Void, Object> evaluator = emitMapBlock(
+                "return switch (n) { case 1, 2 -> 10; case 3 -> { long q = n * 2L; yield q + 1; } default -> n; };", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 2);
+        assertThat(evaluator.eval(ctx)).isEqualTo(10L);
+        ctx.put("n", 3);
+        assertThat(evaluator.eval(ctx)).isEqualTo(7L);
+        ctx.put("n", 9);
+        assertThat(evaluator.eval(ctx)).isEqualTo(9L);
+    }
+
+    @Test
+    void mapBlock_switchOnStrings() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("s", Type.type(String.class));
+
+        // "Aa" and "BB" share a hash code
+        Evaluator<Map<String, Object>, Void, Object> evaluator = emitMapBlock(
+                "return switch (s) { case \"Aa\" -> 1; case \"BB\" -> 2; case \"lord\", \"vassal\" -> 3; default -> 0; };", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        for (var expected : Map.of("Aa", 1, "BB", 2, "vassal", 3, "C#", 0).entrySet()) {
+            ctx.put("s", expected.getKey());
+            assertThat(evaluator.eval(ctx)).isEqualTo(expected.getValue());
+        }
+        ctx.put("s", null);
+        assertThatThrownBy(() -> evaluator.eval(ctx)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void mapBlock_switchOnEnums() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("e", Type.type(MyEnum.class));
+
+        Set<String> imports = Set.of(MyEnum.class.getCanonicalName());
+        String block = "return switch (e) { case ALTERNATIVE -> \"alt\"; case FULL_DOCUMENTATION -> \"full\"; };";
+        var result = transpileMapBlock(block, types, imports);
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        byte[] bytecode = ClassfileEvaluatorEmitter.emit(compilerParamsMapBlock(block, types, imports), result);
+
+        // the ordinals are mapped at run time, not baked into the class
+        assertThat(new String(bytecode, StandardCharsets.ISO_8859_1)).contains("EnumSwitchMaps");
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = loadAndInstantiate(bytecode, result);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("e", MyEnum.ALTERNATIVE);
+        assertThat(evaluator.eval(ctx)).isEqualTo("alt");
+        ctx.put("e", MyEnum.FULL_DOCUMENTATION);
+        assertThat(evaluator.eval(ctx)).isEqualTo("full");
+    }
+
+    // ── Instanceof tests ───────────────────────────────────────────────────
+
+    @Test
+    void mapBlock_instanceofWithPatternInConditions() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("fact", Type.type(Object.class));
+        Set<String> imports = Set.of(Person.class.getCanonicalName());
+
+        Evaluator<Map<String, Object>, Void, Object> predicate = emitMapBlock(
+                "return fact instanceof Person p && p.age < 40;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> plain = emitMapBlock(
+                "return fact instanceof Person;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> conditional = emitMapBlock(
+                "return fact instanceof Person p ? p.getName() : \"none\";", types, imports);
+
+        Person person = new Person("Alice");
+        person.setAge(31);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("fact", person);
+        assertThat(predicate.eval(ctx)).isEqualTo(true);
+        assertThat(plain.eval(ctx)).isEqualTo(true);
+        assertThat(conditional.eval(ctx)).isEqualTo("Alice");
+
+        for (Object other : new Object[] {"Alice", null}) {
+            ctx.put("fact", other);
+            assertThat(predicate.eval(ctx)).isEqualTo(false);
+            assertThat(plain.eval(ctx)).isEqualTo(false);
+            assertThat(conditional.eval(ctx)).isEqualTo("none");
+        }
+    }
+
+    @Test
+    void mapBlock_instanceofBindingsAreFlowScoped() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("fact", Type.type(Object.class));
+        Set<String> imports = Set.of(Person.class.getCanonicalName());
+
+        // the binding is read in the then branch, after a negated test that returns, and across loop iterations
+        Evaluator<Map<String, Object>, Void, Object> thenBranch = emitMapBlock(
+                "if (fact instanceof Person p && p.age > 10) { return p.name; } return null;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> afterReturn = emitMapBlock(
+                "if (!(fact instanceof Person p)) { return -1; } return p.age;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> inLoop = emitMapBlock(
+                "int n = 0; for (int i = 0; i < 3; i++) { if (fact instanceof Person p && p.age > i) { n += p.age; } } return n;",
+                types, imports);
+
+        Person person = new Person("Alice");
+        person.setAge(31);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("fact", person);
+        assertThat(thenBranch.eval(ctx)).isEqualTo("Alice");
+        assertThat(afterReturn.eval(ctx)).isEqualTo(31);
+        assertThat(inLoop.eval(ctx)).isEqualTo(93);
+
+        ctx.put("fact", 31);
+        assertThat(thenBranch.eval(ctx)).isNull();
+        assertThat(afterReturn.eval(ctx)).isEqualTo(-1);
+        assertThat(inLoop.eval(ctx)).isEqualTo(0);
+    }
+
+    // ── Lambda and method reference tests ──────────────────────────────────
+
+    @Test
+    void mapBlock_lambdasInStreams() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("people", Type.type(List.class, "<Person>"));
+        types.put("minAge", Type.type(int.class));
+        Set<String> imports = Set.of(Person.class.getCanonicalName(), List.class.getCanonicalName());
+
+        // a non-capturing predicate, one capturing a local, and a block body
+        Evaluator<Map<String, Object>, Void, Object> count = emitMapBlock(
+                "return people.stream().filter(p -> p.age > 30).count();", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> capturing = emitMapBlock(
+                "int limit = minAge; return people.stream().filter(p -> p.age >= limit).count();", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> block = emitMapBlock(
+                "return people.stream().map(p -> { String n = p.getName(); return n.toUpperCase(); }).toList();",
+                types, imports);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("people", people());
+        ctx.put("minAge", 20);
+        assertThat(count.eval(ctx)).isEqualTo(1L);
+        assertThat(capturing.eval(ctx)).isEqualTo(2L);
+        assertThat(block.eval(ctx)).isEqualTo(List.of("ALICE", "BOB", "CAROL"));
+
+        ctx.put("minAge", 40);
+        assertThat(capturing.eval(ctx)).isEqualTo(1L);
+    }
+
+    @Test
+    void mapBlock_methodReferences() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("people", Type.type(List.class, "<Person>"));
+        Set<String> imports = Set.of(Person.class.getCanonicalName(), List.class.getCanonicalName(),
+                Comparator.class.getCanonicalName());
+
+        // an unbound instance method, a static method, and a comparator built from a key extractor
+        Evaluator<Map<String, Object>, Void, Object> names = emitMapBlock(
+                "return people.stream().map(Person::getName).toList();", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> parsed = emitMapBlock(
+                "return people.stream().map(Person::getName).map(String::length).map(String::valueOf).map(Integer::parseInt).toList();",
+                types, imports);
+        Evaluator<Map<String, Object>, Void, Object> youngest = emitMapBlock(
+                "return people.stream().min(Comparator.comparingInt(Person::getAge)).get().getName();",
+                types, imports);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("people", people());
+        assertThat(names.eval(ctx)).isEqualTo(List.of("Alice", "Bob", "Carol"));
+        assertThat(parsed.eval(ctx)).isEqualTo(List.of(5, 3, 5));
+        assertThat(youngest.eval(ctx)).isEqualTo("Bob");
+    }
+
+    @Test
+    void mapBlock_methodReferenceOverloads() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("people", Type.type(List.class, "<Person>"));
+        Set<String> imports = Set.of(Person.class.getCanonicalName(), List.class.getCanonicalName());
+
+        // Math.abs(int) is the most specific for an int, and for an Integer once unboxed; valueOf(Object) for an Integer
+        Evaluator<Map<String, Object>, Void, Object> primitive = emitMapBlock(
+                "return people.stream().mapToInt(Person::getAge).map(Math::abs).sum();", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> boxed = emitMapBlock(
+                "return people.stream().map(Person::getAge).map(Math::abs).toList();", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> strings = emitMapBlock(
+                "return people.stream().map(Person::getAge).map(String::valueOf).toList();", types, imports);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("people", people());
+        assertThat(primitive.eval(ctx)).isEqualTo(75);
+        assertThat(boxed.eval(ctx)).isEqualTo(List.of(31, 19, 25));
+        assertThat(strings.eval(ctx)).isEqualTo(List.of("31", "19", "25"));
+    }
+
+    @Test
+    void mapBlock_nonCapturingLambdaIsAllocatedOnce() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+        Set<String> imports = Set.of(java.util.function.IntUnaryOperator.class.getCanonicalName());
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = emitMapBlock(
+                "IntUnaryOperator f = x -> x * 2; return f;", types, imports);
+        Evaluator<Map<String, Object>, Void, Object> applied = emitMapBlock(
+                "IntUnaryOperator f = x -> x * 2; return f.applyAsInt(n);", types, imports);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 21);
+        assertThat(evaluator.eval(ctx)).isSameAs(evaluator.eval(ctx));
+        assertThat(applied.eval(ctx)).isEqualTo(42);
+    }
+
+    private static List<Person> people() {
+        Person alice = new Person("Alice");
+        alice.setAge(31);
+        Person bob = new Person("Bob");
+        bob.setAge(19);
+        Person carol = new Person("Carol");
+        carol.setAge(25);
+        return List.of(alice, bob, carol);
+    }
+
+    // ── Generic element tests ──────────────────────────────────────────────
+
+    @Test
+    void mapBlock_genericElementMembers() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foos", Type.type(List.class, "<Foo>"));
+        types.put("byName", Type.type(Map.class, "<String, Foo>"));
+
+        Evaluator<Map<String, Object>, Void, Object> indexed = emitMapBlock(
+                "return foos[0].name + foos[1].name;", types, getImports());
+        Evaluator<Map<String, Object>, Void, Object> chained = emitMapBlock(
+                "return foos.get(1).getName().length();", types, getImports());
+        Evaluator<Map<String, Object>, Void, Object> mapValue = emitMapBlock(
+                "return byName.get(\"b\").getName();", types, getImports());
+        Evaluator<Map<String, Object>, Void, Object> loop = emitMapBlock(
+                "int t = 0; for (var foo : foos) { t += foo.getName().length(); } return t;", types, getImports());
+
+        Foo foo1 = new Foo();
+        foo1.setName("Alice");
+        Foo foo2 = new Foo();
+        foo2.setName("Bob");
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("foos", List.of(foo1, foo2));
+        ctx.put("byName", Map.of("a", foo1, "b", foo2));
+        assertThat(indexed.eval(ctx)).isEqualTo("AliceBob");
+        assertThat(chained.eval(ctx)).isEqualTo(3);
+        assertThat(mapValue.eval(ctx)).isEqualTo("Bob");
+        assertThat(loop.eval(ctx)).isEqualTo(8);
+    }
+
+    // ── Array tests ──────────────────────────────────────────────────────
+
+    @Test
+    void mapBlock_primitiveArrayAccessAndLength() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("xs", Type.type(int[].class));
+        types.put("ds", Type.type(double[].class));
+
+        Evaluator<Map<String, Object>, Void, Object> sum = emitMapBlock(
+                "long t = 0; for (int i = 0; i < xs.length; i++) { t += xs[i]; } return t;", types);
+        Evaluator<Map<String, Object>, Void, Object> scaled = emitMapBlock(
+                "for (int i = 0; i < ds.length; i++) { ds[i] *= xs[i]; } return ds[0] + ds[ds.length - 1];", types);
+        Evaluator<Map<String, Object>, Void, Object> assigned = emitMapBlock(
+                "int last = xs[xs.length - 1] = xs[0] + 10; xs[1] += 1.5; return last;", types);
+
+        int[] xs = {1, 2, 3};
+        double[] ds = {0.5, 1.5, 2.5};
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("xs", xs);
+        ctx.put("ds", ds);
+        assertThat(sum.eval(ctx)).isEqualTo(6L);
+        assertThat(scaled.eval(ctx)).isEqualTo(0.5 + 7.5);
+        assertThat(ds).containsExactly(0.5, 3.0, 7.5);
+        assertThat(assigned.eval(ctx)).isEqualTo(11);
+        // xs[1] += 1.5 narrows back to int
+        assertThat(xs).containsExactly(1, 3, 11);
+    }
+
+    @Test
+    void mapBlock_compoundAssignmentNarrowsToTheLocal() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+
+        // each is computed in the promoted type, then cast back to the type of the local
+        Evaluator<Map<String, Object>, Void, Object> plusLong = emitMapBlock(
+                "int i = n; long big = 3000000000L; i += big; return i;", types);
+        Evaluator<Map<String, Object>, Void, Object> timesDouble = emitMapBlock(
+                "int i = n; i *= 1.5; return i;", types);
+        Evaluator<Map<String, Object>, Void, Object> shiftByLong = emitMapBlock(
+                "int i = n; i <<= 33L; return i;", types);
+        Evaluator<Map<String, Object>, Void, Object> plusByte = emitMapBlock(
+                "byte b = 120; b += n; return b;", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 10);
+        assertThat(plusLong.eval(ctx)).isEqualTo((int) (10 + 3000000000L));
+        assertThat(timesDouble.eval(ctx)).isEqualTo(15);
+        assertThat(shiftByLong.eval(ctx)).isEqualTo(20);
+        assertThat(plusByte.eval(ctx)).isEqualTo((byte) 130);
+    }
 
-    /**
-     * Fallback category: scope-less free-function calls (DRL static import pattern).
-     * canEmit=false because the emitter cannot resolve functions without a scope.
-     * Javac resolves them via static imports on the generated parent class.
-     */
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Test
-    void fallback_scopelessFreeFunctionCall_producesCorrectResult() {
+    void mapBlock_arrayCreationAndInitializers() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("n", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Object> created = emitMapBlock(
+                "int[] squares = new int[n]; for (int i = 0; i < n; i++) { squares[i] = i * i; } return squares;", types);
+        Evaluator<Map<String, Object>, Void, Object> initialized = emitMapBlock(
+                "double[] ds = {1, 2.5, n}; String[] names = new String[]{\"a\", \"b\"}; " +
+                "return names[1] + ds.length + ds[2];", types);
+        Evaluator<Map<String, Object>, Void, Object> grid = emitMapBlock(
+                "int[][] g = new int[n][2]; g[n - 1][1] = 7; int[][] h = {{1}, {2, 3}}; " +
+                "return g.length + g[0].length + g[n - 1][1] + h[1][1];", types);
+
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("n", 4);
+        assertThat(created.eval(ctx)).isEqualTo(new int[]{0, 1, 4, 9});
+        assertThat(initialized.eval(ctx)).isEqualTo("b34.0");
+        assertThat(grid.eval(ctx)).isEqualTo(4 + 2 + 7 + 3);
+    }
+
+    // ── Free function tests ──────────────────────────────────────────────
+
+    @Test
+    void mapExpression_staticImportAndInheritedFunctions() {
         Map<String, Type<?>> types = new HashMap<>();
         types.put("foo", Type.type(Foo.class));
         types.put("bar", Type.type(Bar.class));
@@ -143,16 +653,12 @@ class ClassfileEvaluatorEmitterTest {
         Set<String> staticImports = new HashSet<>();
         staticImports.add(Person.class.getCanonicalName() + ".isEven");
 
-        // Full pipeline via fluent builder — falls back to javac
-        Evaluator evaluator = MVEL.map(Declaration.from(types))
-                .out(String.class)
-                .expression("foo.getName() + bar.getName() + isEven(1)")
-                .imports(getImports())
-                .staticImports(staticImports)
-                .classManager(new ClassManager())
-                .classLoader(ClassLoader.getSystemClassLoader())
-                .generatedSuperName(GeneratedParentClass.class.getCanonicalName())
-                .compile();
+        Evaluator<Map<String, Object>, Void, String> staticImport =
+                emitFunctionExpression("foo.getName() + bar.getName() + isEven(1)", types, staticImports);
+        Evaluator<Map<String, Object>, Void, String> inheritedStatic =
+                emitFunctionExpression("foo.getName() + staticMethod(1)", types, staticImports);
+        Evaluator<Map<String, Object>, Void, String> inheritedInstance =
+                emitFunctionExpression("instanceMethod(1) + bar.getName()", types, staticImports);
 
         Foo foo = new Foo();
         foo.setName("Alice");
@@ -163,38 +669,112 @@ class ClassfileEvaluatorEmitterTest {
         ctx.put("foo", foo);
         ctx.put("bar", bar);
         // isEven() is a test stub that always returns true
-        assertThat(evaluator.eval(ctx)).isEqualTo("AliceBobtrue");
+        assertThat(staticImport.eval(ctx)).isEqualTo("AliceBobtrue");
+        assertThat(inheritedStatic.eval(ctx)).isEqualTo("Alicestatic_int1");
+        assertThat(inheritedInstance.eval(ctx)).isEqualTo("instance_int1Bob");
     }
 
-    /**
-     * Fallback category: List generic erasure — List.get() returns Object,
-     * emitter cannot resolve chained methods (.getName()) on the erased type.
-     * Javac has the full type solver and handles this correctly.
-     */
+    // ── Void evaluator tests ─────────────────────────────────────────────
+
     @Test
-    void fallback_listGenericErasure_producesCorrectResult() {
+    void mapBlock_voidModifyAndWithBlocks() {
         Map<String, Type<?>> types = new HashMap<>();
-        types.put("foos", Type.type(List.class, "<Foo>"));
+        types.put("$p", Type.type(Person.class));
 
-        Foo foo1 = new Foo();
-        foo1.setName("Alice");
-        Foo foo2 = new Foo();
-        foo2.setName("Bob");
+        Evaluator<Map<String, Object>, Void, Void> modify =
+                emitVoidBlock("modify ($p) { name = \"Luca\"; age = 35; }", types);
+        Evaluator<Map<String, Object>, Void, Void> with =
+                emitVoidBlock("with ($p) { age = $p.age + 1; } if ($p.age > 40) { return; } $p.setName(\"Mario\");", types);
 
-        List<Foo> foos = new ArrayList<>();
-        foos.add(foo1);
-        foos.add(foo2);
+        Person person = new Person("Alice");
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("$p", person);
+
+        assertThat(modify.eval(ctx)).isNull();
+        assertThat(person.getName()).isEqualTo("Luca");
+        assertThat(person.getAge()).isEqualTo(35);
+        // modify notifies the rule engine through update($p), inherited from the generated superclass
+        assertThat(((GeneratedParentClass) modify).getUpdated()).containsExactly(person);
+
+        assertThat(with.eval(ctx)).isNull();
+        assertThat(person.getAge()).isEqualTo(36);
+        assertThat(person.getName()).isEqualTo("Mario");
+        assertThat(((GeneratedParentClass) with).getUpdated()).isEmpty();
+    }
+
+    // ── Primitive result tests ───────────────────────────────────────────
+
+    @Test
+    void mapExpression_unboxedPrimitiveResults() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("influence", Type.type(int.class));
+        types.put("atWar", Type.type(boolean.class));
+        types.put("treasury", Type.type(double.class));
+        types.put("bonus", Type.type(Integer.class));
+
+        Evaluator<Map<String, Object>, Void, Boolean> predicate =
+                emitMapExpression("influence > 50 && !atWar", Boolean.class, types);
+        Evaluator<Map<String, Object>, Void, Integer> boxed = emitMapExpression("bonus", Integer.class, types);
+        Evaluator<Map<String, Object>, Void, Long> product = emitMapExpression("influence * 2L", Long.class, types);
+        Evaluator<Map<String, Object>, Void, Double> ratio =
+                emitMapExpression("treasury / influence", Double.class, types);
 
         Map<String, Object> ctx = new HashMap<>();
-        ctx.put("foos", foos);
+        ctx.put("influence", 75);
+        ctx.put("atWar", false);
+        ctx.put("treasury", 150.0);
+        ctx.put("bonus", 5);
+
+        assertThat(predicate).isInstanceOf(BooleanEvaluator.class);
+        assertThat(BooleanEvaluator.of(predicate).evalBoolean(ctx)).isTrue();
+        assertThat(predicate.eval(ctx)).isTrue();
+        assertThat(IntEvaluator.of(boxed).evalInt(ctx)).isEqualTo(5);
+        assertThat(LongEvaluator.of(product).evalLong(ctx)).isEqualTo(150L);
+        assertThat(DoubleEvaluator.of(ratio).evalDouble(ctx)).isEqualTo(2.0);
+
+        // a null result is still returned boxed, but cannot be unboxed
+        ctx.put("bonus", null);
+        assertThat(boxed.eval(ctx)).isNull();
+        assertThatThrownBy(() -> IntEvaluator.of(boxed).evalInt(ctx)).isInstanceOf(NullPointerException.class);
+    }
 
-        MVEL mvel = new MVEL();
-        Evaluator<Map<String, Object>, Void, String> evaluator =
-                mvel.compileMapExpression("foos[0].name + foos[1].name",
-                        String.class, getImports(), types);
-        assertThat(evaluator.eval(ctx)).isEqualTo("AliceBob");
+    @Test
+    void mapExpression_bulkEvaluation() throws NoSuchMethodException {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("influence", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Boolean> predicate = emitMapExpression("influence > 50", Boolean.class, types);
+        Evaluator<Map<String, Object>, Void, Integer> doubled = emitMapExpression("influence * 2", Integer.class, types);
+
+        List<Map<String, Object>> inputs = new ArrayList<>();
+        for (int influence : new int[]{75, 25, 51, 50}) {
+            Map<String, Object> ctx = new HashMap<>();
+            ctx.put("influence", influence);
+            inputs.add(ctx);
+        }
+
+        // the loops are generated in each evaluator class, not inherited from the interface defaults
+        assertThat(doubled.getClass().getDeclaredMethod("evalAll", List.class, ResultSink.class)).isNotNull();
+        assertThat(predicate.getClass().getDeclaredMethod("filter", Collection.class)).isNotNull();
+        assertThatThrownBy(() -> doubled.getClass().getDeclaredMethod("filter", Collection.class))
+                .isInstanceOf(NoSuchMethodException.class);
+
+        Integer[] results = new Integer[inputs.size()];
+        doubled.evalAll(inputs, (index, input, result) -> {
+            assertThat(input).isSameAs(inputs.get(index));
+            results[index] = result;
+        });
+        assertThat(results).containsExactly(150, 50, 102, 100);
+
+        assertThat(predicate.filter(inputs)).containsExactly(inputs.get(0), inputs.get(2));
+        assertThat(predicate.filter(Collections.emptyList())).isEmpty();
     }
 
+    // ── Javac fallback tests ─────────────────────────────────────────────
+    // These verify that the 2 documented permanent fallback cases produce
+    // correct results through the javac pipeline. Each test represents one
+    // fallback category from the canEmit() javadoc.
+
     /**
      * Fallback category: BigDecimal + var compound assignment.
      * var infers BigDecimal from 0B literal; compound += resolves to .add()
@@ -211,6 +791,37 @@ class ClassfileEvaluatorEmitterTest {
 
         Map<String, Object> ctx = new HashMap<>();
         assertThat(evaluator.eval(ctx).toString()).isEqualTo("2");
+
+        // javac also compiles the evalAll loop into the evaluator class
+        List<Object> results = new ArrayList<>();
+        evaluator.evalAll(List.of(ctx, ctx), (index, input, result) -> results.add(index + "=" + result));
+        assertThat(results).containsExactly("0=2", "1=2");
+        assertThat(Arrays.stream(evaluator.getClass().getDeclaredMethods()).map(java.lang.reflect.Method::getName))
+                .contains("evalAll");
+    }
+
+    /**
+     * The javac pipeline binds each null-safe link to a pattern variable, so it is evaluated once as well.
+     * The try statement keeps this block off the emitter.
+     */
+    @Test
+    void fallback_nullSafeChainEvaluatesEachLinkOnce() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("p", Type.type(CountingPerson.class));
+
+        MVEL mvel = new MVEL();
+        Evaluator<Map<String, Object>, Void, Object> evaluator =
+                mvel.compileMapBlock("try { return p!.address!.city!.length(); } catch (RuntimeException e) { return -1; }",
+                        Object.class, getImports(), types);
+
+        CountingPerson person = new CountingPerson("Alice");
+        Address address = new Address();
+        address.setCity("Brno");
+        person.setAddress(address);
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("p", person);
+        assertThat(evaluator.eval(ctx)).isEqualTo(4);
+        assertThat(person.getAddressCalls()).isEqualTo(1);
     }
 
     // ── Helper methods ────────────────────────────────────────────────────
@@ -227,6 +838,72 @@ class ClassfileEvaluatorEmitterTest {
         return imports;
     }
 
+    private Evaluator<Map<String, Object>, Void, Object> emitMapBlock(String block, Map<String, Type<?>> types) {
+        return emitMapBlock(block, types, Collections.emptySet());
+    }
+
+    private Evaluator<Map<String, Object>, Void, Object> emitMapBlock(String block, Map<String, Type<?>> types, Set<String> imports) {
+        var result = transpileMapBlock(block, types, imports);
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        byte[] bytecode = ClassfileEvaluatorEmitter.emit(compilerParamsMapBlock(block, types, imports), result);
+        return loadAndInstantiate(bytecode, result);
+    }
+
+    private TranspiledResult transpileMapBlock(String block, Map<String, Type<?>> types, Set<String> imports) {
+        return new MVELCompiler().transpile(compilerParamsMapBlock(block, types, imports));
+    }
+
+    private CompilerParameters<Map<String, Object>, Void, Object> compilerParamsMapBlock(
+            String block, Map<String, Type<?>> types, Set<String> imports) {
+        return MVEL.<Object>map(Declaration.from(types))
+                   .<Object>out(Object.class)
+                   .block(block)
+                   .imports(imports)
+                   .classManager(new ClassManager())
+                   .build();
+    }
+
+    private Evaluator<Map<String, Object>, Void, String> emitFunctionExpression(
+            String expression, Map<String, Type<?>> types, Set<String> staticImports) {
+        var params = compilerParamsFunctions(expression, types, staticImports);
+        var result = new MVELCompiler().transpile(params);
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        return loadAndInstantiate(ClassfileEvaluatorEmitter.emit(params, result), result);
+    }
+
+    private CompilerParameters<Map<String, Object>, Void, String> compilerParamsFunctions(
+            String expression, Map<String, Type<?>> types, Set<String> staticImports) {
+        return MVEL.<Object>map(Declaration.from(types))
+                   .<String>out(String.class)
+                   .expression(expression)
+                   .imports(getImports())
+                   .staticImports(staticImports)
+                   .classManager(new ClassManager())
+                   .classLoader(ClassLoader.getSystemClassLoader())
+                   .generatedSuperName(GeneratedParentClass.class.getCanonicalName())
+                   .build();
+    }
+
+    private Evaluator<Map<String, Object>, Void, Void> emitVoidBlock(String block, Map<String, Type<?>> types) {
+        CompilerParameters<Map<String, Object>, Void, Void> params = MVEL.<Object>map(Declaration.from(types))
+                .block(block)
+                .imports(getImports())
+                .classManager(new ClassManager())
+                .classLoader(ClassLoader.getSystemClassLoader())
+                .generatedSuperName(GeneratedParentClass.class.getCanonicalName())
+                .build();
+        var result = new MVELCompiler().transpile(params);
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        return loadAndInstantiate(ClassfileEvaluatorEmitter.emit(params, result), result);
+    }
+
+    private <R> Evaluator<Map<String, Object>, Void, R> emitMapExpression(
+            String expression, Class<R> outType, Map<String, Type<?>> types) {
+        var result = transpileMap(expression, outType, types);
+        assertThat(ClassfileEvaluatorEmitter.canEmit(result)).isTrue();
+        return loadAndInstantiate(ClassfileEvaluatorEmitter.emit(compilerParamsMap(expression, outType, types), result), result);
+    }
+
     private <R> TranspiledResult transpileMap(String expression, Class<R> outType, Map<String, Type<?>> types) {
         CompilerParameters<Map<String, Object>, Void, R> params = compilerParamsMap(expression, outType, types);
         MVELCompiler compiler = new MVELCompiler();
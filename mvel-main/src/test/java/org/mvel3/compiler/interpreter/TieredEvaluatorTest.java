@@ -0,0 +1,209 @@
+package org.mvel3.compiler.interpreter;
+
+import org.junit.jupiter.api.Test;
+import org.mvel3.Evaluator;
+import org.mvel3.Foo;
+import org.mvel3.MVEL;
+import org.mvel3.Type;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link AstInterpreter} and {@link TieredEvaluator}: interpreted results must match the compiled ones,
+ * and promotion must happen once the threshold is reached.
+ */
+class TieredEvaluatorTest {
+
+    private static final Set<String> IMPORTS = Set.of(Foo.class.getCanonicalName(), List.class.getCanonicalName(),
+                                                      BigDecimal.class.getCanonicalName());
+
+    /** Runs submitted tasks only when asked to, so tests can observe both tiers. */
+    private static final class ManualExecutor implements Executor {
+        private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    private static <R> Evaluator<Map<String, Object>, Void, R> tiered(String content, Class<R> outClass, Map<String, Type<?>> types,
+                                                                      int threshold, Executor executor) {
+        var builder = MVEL.<Object>map(Declaration.from(types)).<R>out(outClass);
+        return (content.indexOf(';') > 0 ? builder.block(content) : builder.expression(content))
+                .imports(IMPORTS)
+                .tierUpThreshold(threshold)
+                .tierUpExecutor(executor)
+                .compile();
+    }
+
+    private static Map<String, Type<?>> fooTypes() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foo", Type.type(Foo.class));
+        types.put("foos", Type.type(List.class, "<Foo>"));
+        types.put("count", Type.type(int.class));
+        types.put("price", Type.type(BigDecimal.class));
+        return types;
+    }
+
+    private static Map<String, Object> fooVars() {
+        Foo foo = new Foo();
+        foo.setName("xxx");
+
+        List<Foo> foos = new ArrayList<>();
+        foos.add(foo);
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("foo", foo);
+        vars.put("foos", foos);
+        vars.put("count", 7);
+        vars.put("price", new BigDecimal("10.5"));
+        return vars;
+    }
+
+    @Test
+    void interpretsUntilThresholdThenPromotes() {
+        ManualExecutor executor = new ManualExecutor();
+        Evaluator<Map<String, Object>, Void, String> evaluator = tiered("foo.name + count", String.class, fooTypes(), 3, executor);
+
+        assertThat(evaluator).isInstanceOf(TieredEvaluator.class);
+        TieredEvaluator<Map<String, Object>, Void, String> tiered = (TieredEvaluator<Map<String, Object>, Void, String>) evaluator;
+
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx7");
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx7");
+        assertThat(executor.pending()).isZero();
+
+        // the third call schedules promotion, and is still interpreted
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx7");
+        assertThat(executor.pending()).isEqualTo(1);
+        assertThat(tiered.isCompiled()).isFalse();
+
+        executor.runAll();
+        assertThat(tiered.isCompiled()).isTrue();
+        assertThat(tiered.getCompiled()).isNotInstanceOf(TieredEvaluator.class);
+
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx7");
+        assertThat(tiered.getInvocationCount()).isEqualTo(3);
+        assertThat(executor.pending()).isZero();
+    }
+
+    @Test
+    void interpretedResultsMatchCompiled() {
+        String[] expressions = {
+                "count * 2 + 1",
+                "count / 2",
+                "count / 2.0",
+                "count << 3",
+                "count > 5 ? \"big\" : \"small\"",
+                "price + 1",
+                "price * count",
+                "foos[0].name",
+                "foos.size() == 1 && foo.name == \"xxx\"",
+                "foo.name.length() + count",
+                "Integer.toBinaryString(count)",
+                "int t = 0; for (int i = 0; i < count; i++) { t += i; } return t;",
+                "int t = 0; for (Foo f : foos) { t += f.name.length(); } return t;",
+                "int t = 0; while (true) { t++; if (t > count) break; } return t;",
+                "int[] a = new int[] {1, 2, 3}; a[1] += 5; return a[1];",
+                "foo.name = \"yyy\"; return foo.name;",
+        };
+
+        ManualExecutor executor = new ManualExecutor();
+        for (String expression : expressions) {
+            Evaluator<Map<String, Object>, Void, Object> interpreted = tiered(expression, Object.class, fooTypes(), 1, executor);
+            assertThat(interpreted).as(expression).isInstanceOf(TieredEvaluator.class);
+
+            Evaluator<Map<String, Object>, Void, Object> compiled = tiered(expression, Object.class, fooTypes(), 0, null);
+
+            assertThat(interpreted.eval(fooVars())).as(expression).isEqualTo(compiled.eval(fooVars()));
+        }
+    }
+
+    @Test
+    void overloadsAreChosenFromStaticArgumentTypes() {
+        // javac picks remove(Object) for an Integer and remove(int) for an int, whatever the value's class at runtime
+        String block = "List<Integer> l = new java.util.ArrayList<>(List.of(1, 2, 3)); Integer v = 3; l.remove(v); " +
+                       "Object o = count; l.remove(count - 7); return l.toString() + String.valueOf(o);";
+
+        Evaluator<Map<String, Object>, Void, Object> interpreted = tiered(block, Object.class, fooTypes(), 10, new ManualExecutor());
+        assertThat(interpreted).isInstanceOf(TieredEvaluator.class);
+        Evaluator<Map<String, Object>, Void, Object> compiled = tiered(block, Object.class, fooTypes(), 0, null);
+
+        assertThat(interpreted.eval(fooVars())).isEqualTo("[2]7");
+        assertThat(compiled.eval(fooVars())).isEqualTo("[2]7");
+    }
+
+    @Test
+    void instanceOverloadsAreChosenFromTheReceiverStaticType() {
+        // Collection only declares remove(Object), so javac boxes the int even though the list also has remove(int)
+        String block = "java.util.Collection<Integer> c = new java.util.ArrayList<>(List.of(1, 2, 3)); int i = 1; c.remove(i); " +
+                       "return c.toString();";
+
+        Evaluator<Map<String, Object>, Void, Object> interpreted = tiered(block, Object.class, fooTypes(), 10, new ManualExecutor());
+        assertThat(interpreted).isInstanceOf(TieredEvaluator.class);
+        Evaluator<Map<String, Object>, Void, Object> compiled = tiered(block, Object.class, fooTypes(), 0, null);
+
+        assertThat(interpreted.eval(fooVars())).isEqualTo("[2, 3]");
+        assertThat(compiled.eval(fooVars())).isEqualTo("[2, 3]");
+    }
+
+    @Test
+    void unsupportedExpressionIsCompiledImmediately() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foos", Type.type(List.class, "<Foo>"));
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = tiered("foos.stream().map(f -> f.getName()).toList()", Object.class,
+                                                                        types, 10, new ManualExecutor());
+
+        assertThat(evaluator).isNotInstanceOf(TieredEvaluator.class);
+    }
+
+    @Test
+    void runtimeExceptionsPropagateUnwrapped() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("count", Type.type(int.class));
+
+        Evaluator<Map<String, Object>, Void, Object> evaluator = tiered("Integer.parseInt(\"x\" + count)", Object.class,
+                                                                        types, 10, new ManualExecutor());
+
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("count", 1);
+        assertThatThrownBy(() -> evaluator.eval(vars)).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void rejectedPromotionStaysInterpreted() {
+        Executor rejecting = command -> {
+            throw new RejectedExecutionException("shut down");
+        };
+        TieredEvaluator<Map<String, Object>, Void, String> evaluator =
+                (TieredEvaluator<Map<String, Object>, Void, String>) tiered("foo.name", String.class, fooTypes(), 1, rejecting);
+
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx");
+        assertThat(evaluator.eval(fooVars())).isEqualTo("xxx");
+        assertThat(evaluator.isCompiled()).isFalse();
+    }
+}
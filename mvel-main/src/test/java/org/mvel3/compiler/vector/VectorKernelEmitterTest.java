@@ -0,0 +1,139 @@
+package org.mvel3.compiler.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mvel3.Columns;
+import org.mvel3.CompilationResult;
+import org.mvel3.CompilerParameters;
+import org.mvel3.Evaluator;
+import org.mvel3.MVEL;
+import org.mvel3.MVELCompiler;
+import org.mvel3.transpiler.TranspiledResult;
+import org.mvel3.transpiler.context.Declaration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link VectorKernelEmitter}: lowered kernels must give the same results as the scalar row loop, including
+ * for the rows after the last whole chunk, and anything outside the supported subset must not be lowered.
+ */
+class VectorKernelEmitterTest {
+
+    private static final int ROWS = 1003;
+
+    private static final Declaration<?>[] DECLARATIONS = {Declaration.of("influence", int.class),
+                                                          Declaration.of("atWar", boolean.class),
+                                                          Declaration.of("treasury", long.class),
+                                                          Declaration.of("ratio", double.class),
+                                                          Declaration.of("name", String.class)};
+
+    private int[] influence;
+    private boolean[] atWar;
+    private long[] treasury;
+    private double[] ratio;
+    private String[] names;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(VectorBackend.AVAILABLE, "jdk.incubator.vector is not resolved");
+
+        Random random = new Random(42);
+        influence = new int[ROWS];
+        atWar = new boolean[ROWS];
+        treasury = new long[ROWS];
+        ratio = new double[ROWS];
+        names = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            influence[i] = random.nextInt(-100, 100);
+            atWar[i] = random.nextBoolean();
+            treasury[i] = random.nextLong(-5000, 5000);
+            ratio[i] = random.nextDouble();
+            names[i] = "f" + i;
+        }
+    }
+
+    private Columns columns() {
+        return new Columns(ROWS, influence, atWar, treasury, ratio, names);
+    }
+
+    private static <R> CompilerParameters<Columns, Void, R> parameters(String expression, Class<R> outClass) {
+        return MVEL.columns(DECLARATIONS)
+                   .<R>out(outClass)
+                   .expression(expression)
+                   .imports(Collections.emptySet())
+                   .build();
+    }
+
+    private static <R> void assertLoweredMatchesScalar(String expression, Class<R> outClass, Columns vectorColumns,
+                                                       Columns scalarColumns) {
+        CompilerParameters<Columns, Void, R> params = parameters(expression, outClass);
+        MVELCompiler compiler = new MVELCompiler();
+        TranspiledResult transpiled = compiler.transpile(params);
+
+        Evaluator<Columns, Void, R> vectorized = VectorBackend.lower(params, transpiled);
+        assertThat(vectorized).as(expression).isInstanceOf(VectorizedEvaluator.class);
+        Evaluator<Columns, Void, R> scalar = compiler.compileScalar(params, transpiled);
+
+        assertThat(vectorized.eval(vectorColumns)).as(expression).isEqualTo(scalar.eval(scalarColumns));
+    }
+
+    @Test
+    void bitsetPredicates() {
+        for (String expression : new String[]{"influence > 50 && !atWar",
+                                              "influence * 2 - 10 <= treasury || atWar == (ratio > 0.5)",
+                                              "(ratio < 0.5) != atWar && -influence != 3",
+                                              "treasury / 3.0 + ratio >= influence * 1.5"}) {
+            assertLoweredMatchesScalar(expression, long[].class, columns(), columns());
+        }
+    }
+
+    @Test
+    void doubleResults() {
+        assertLoweredMatchesScalar("influence * ratio + treasury / 2.0", double[].class, columns(), columns());
+        assertLoweredMatchesScalar("influence - treasury", double[].class, columns(), columns());
+    }
+
+    @Test
+    void shortBatchOnlyHasATail() {
+        assertLoweredMatchesScalar("influence > 0", long[].class, columns().setLength(3), columns().setLength(3));
+    }
+
+    @Test
+    void unsupportedExpressionsAreNotLowered() {
+        MVELCompiler compiler = new MVELCompiler();
+        for (String expression : new String[]{"influence / 2 > 3",
+                                              "name.length() > 2",
+                                              "Math.abs(influence) > 3"}) {
+            CompilerParameters<Columns, Void, long[]> params = parameters(expression, long[].class);
+            assertThat(VectorBackend.lower(params, compiler.transpile(params))).as(expression).isNull();
+        }
+    }
+
+    @Test
+    void compileAllLowersColumnsExpressions() {
+        assumeTrue(VectorBackend.ENABLED, "mvel3.compiler.vector is not set");
+
+        List<CompilationResult<?, ?, ?>> results = new MVEL().compileAll(List.of(parameters("influence > 50 && !atWar", long[].class),
+                                                                                  parameters("name.length() > 2", long[].class)), 2);
+
+        assertThat(results).allSatisfy(result -> assertThat(result.isSuccess()).isTrue());
+        assertThat(VectorBackend.isLowered(results.get(0).evaluator())).isTrue();
+        // not in the supported subset, so compiled to the scalar row loop
+        assertThat(VectorBackend.isLowered(results.get(1).evaluator())).isFalse();
+
+        Evaluator<Columns, Void, long[]> lowered = (Evaluator<Columns, Void, long[]>) results.get(0).evaluator();
+        Evaluator<Columns, Void, long[]> scalar = compileScalar("influence > 50 && !atWar");
+        assertThat(lowered.eval(columns())).isEqualTo(scalar.eval(columns()));
+    }
+
+    private static Evaluator<Columns, Void, long[]> compileScalar(String expression) {
+        CompilerParameters<Columns, Void, long[]> params = parameters(expression, long[].class);
+        MVELCompiler compiler = new MVELCompiler();
+        return compiler.compileScalar(params, compiler.transpile(params));
+    }
+}
@@ -0,0 +1,42 @@
+package org.mvel3.javacompiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KieMemoryCompilerTest {
+
+    private static String source(String className, String body) {
+        return "package org.mvel3.batch; public class " + className + " { " + body + " }";
+    }
+
+    @Test
+    void compileBatchCompilesAllSourcesTogether() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("org.mvel3.batch.A", source("A", "public int eval() { return 1; }"));
+        sources.put("org.mvel3.batch.B", source("B", "public Runnable eval() { return new Runnable() { public void run() { } }; }"));
+
+        KieMemoryCompiler.BatchResult result = KieMemoryCompiler.compileBatch(sources, getClass().getClassLoader());
+
+        assertThat(result.failures()).isEmpty();
+        assertThat(result.classesOf("org.mvel3.batch.A")).containsOnlyKeys("org.mvel3.batch.A");
+        assertThat(result.classesOf("org.mvel3.batch.B")).containsOnlyKeys("org.mvel3.batch.B", "org.mvel3.batch.B$1");
+    }
+
+    @Test
+    void compileBatchReportsErrorsAgainstTheirOwnSource() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("org.mvel3.batch.Good", source("Good", "public int eval() { return 1; }"));
+        sources.put("org.mvel3.batch.Bad", source("Bad", "public int eval() { return \"x\"; }"));
+        sources.put("org.mvel3.batch.AlsoGood", source("AlsoGood", "public int eval() { return 2; }"));
+
+        KieMemoryCompiler.BatchResult result = KieMemoryCompiler.compileBatch(sources, getClass().getClassLoader());
+
+        assertThat(result.failures()).containsOnlyKeys("org.mvel3.batch.Bad");
+        assertThat(result.failures().get("org.mvel3.batch.Bad").getGeneratedSource()).isEqualTo(sources.get("org.mvel3.batch.Bad"));
+        assertThat(result.byteCode()).containsOnlyKeys("org.mvel3.batch.Good", "org.mvel3.batch.AlsoGood");
+    }
+}
@@ -6,11 +6,15 @@ import org.junit.jupiter.api.Test;
 import org.mvel3.ClassManager;
 import org.mvel3.javacompiler.KieMemoryCompiler;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class LambdaRegistryPersistenceTest {
 
@@ -53,4 +57,54 @@ class LambdaRegistryPersistenceTest {
         assertThat(registry.getPhysicalPath(physicalId2)).isEqualTo(persistedPath1);
         assertThat(Files.exists(persistedPath1)).isTrue();
     }
+
+    @Test
+    void batchWritesTheJournalOnceAtTheEnd() throws Exception {
+        assumeTrue(LambdaRegistry.PERSISTENCE_ENABLED, "the journal is only written with persistence enabled");
+        LambdaRegistry registry = LambdaRegistry.INSTANCE;
+        registry.resetAndRemoveAllPersistedFiles();
+
+        Path tempDir = Files.createTempDirectory("lambda-registry");
+        registry.beginBatch();
+        try {
+            for (int i = 0; i < 3; i++) {
+                MethodDeclaration methodDecl = StaticJavaParser.parseMethodDeclaration(
+                        "public int eval(java.util.Map m) { return m.size() + " + i + "; }");
+                int physicalId = registry.registerLambda(registry.getNextLogicalId(), LambdaUtils.createLambdaKeyFromMethodDeclaration(methodDecl));
+                registry.registerPhysicalPath(physicalId, Files.createFile(tempDir.resolve("Lambda" + i + ".class")));
+            }
+            assertThat(LambdaRegistry.JOURNAL.file()).doesNotExist();
+            assertThat(LambdaRegistry.JOURNAL.pendingCount()).isEqualTo(3);
+        } finally {
+            registry.endBatch();
+        }
+
+        assertThat(LambdaRegistry.JOURNAL.pendingCount()).isZero();
+        assertThat(new RegistryJournal(LambdaRegistry.JOURNAL.file()).replay())
+                .filteredOn(RegistryJournal.Entry.class::isInstance)
+                .hasSize(3);
+    }
+
+    @Test
+    void legacyRegistryFileIsImportedIntoTheJournalAndDeleted() throws Exception {
+        Path dir = Files.createTempDirectory("lambda-registry");
+        Path legacyFile = dir.resolve("lambda-registry.dat");
+        Base64.Encoder base64 = Base64.getEncoder();
+        Files.write(legacyFile, List.of(
+                "v1",
+                "8|12",
+                "7|" + base64.encodeToString("target/Lambda7.class".getBytes(StandardCharsets.UTF_8)) + "|" +
+                base64.encodeToString("public boolean eval(java.util.Map m)".getBytes(StandardCharsets.UTF_8)) + "|" +
+                base64.encodeToString("{ return m != null; }".getBytes(StandardCharsets.UTF_8))));
+        RegistryJournal journal = new RegistryJournal(dir.resolve("lambda-registry.journal"));
+
+        assertThat(LambdaRegistry.importLegacyRegistry(legacyFile, journal)).isEqualTo(1);
+
+        assertThat(legacyFile).doesNotExist();
+        LambdaKey key = LambdaUtils.createLambdaKeyFromMethodDeclarationString(
+                "public boolean eval(java.util.Map m) { return m != null; }");
+        assertThat(new RegistryJournal(journal.file()).replay())
+                .containsExactly(RegistryJournal.Entry.of(7, Path.of("target/Lambda7.class"), key),
+                                 new RegistryJournal.Counters(8, 12));
+    }
 }
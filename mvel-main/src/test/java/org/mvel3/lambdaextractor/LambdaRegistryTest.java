@@ -3,6 +3,15 @@ package org.mvel3.lambdaextractor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mvel3.lambdaextractor.LambdaUtils.createLambdaKeyFromMethodDeclarationString;
 
@@ -144,4 +153,52 @@ class LambdaRegistryTest {
         assertThat(registry.getPhysicalId(1)).isEqualTo(physicalIdObject);
         assertThat(registry.getPhysicalId(2)).isEqualTo(physicalIdObject);
     }
+
+    @Test
+    void testRegisterLambda_Concurrently_ShouldAssignOnePhysicalIdPerLambda() throws Exception {
+        LambdaRegistry registry = LambdaRegistry.INSTANCE;
+
+        // the Object overload is registered first, so every String variant below has to reuse it
+        LambdaKey keyObject = createLambdaKeyFromMethodDeclarationString("public boolean eval(java.lang.Object obj) { return obj != null; }");
+        int physicalIdObject = registry.registerLambda(registry.getNextLogicalId(), keyObject);
+
+        int threads = 8;
+        int lambdas = 32;
+        List<LambdaKey> keys = new ArrayList<>();
+        for (int i = 0; i < lambdas; i++) {
+            keys.add(createLambdaKeyFromMethodDeclarationString("public int eval(int a) { return a + " + i + "; }"));
+        }
+        LambdaKey keyString = createLambdaKeyFromMethodDeclarationString("public boolean eval(java.lang.String str) { return str != null; }");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int[] physicalIds = new int[lambdas + 1];
+                    for (int i = 0; i < lambdas; i++) {
+                        physicalIds[i] = registry.registerLambda(registry.getNextLogicalId(), keys.get(i));
+                    }
+                    physicalIds[lambdas] = registry.registerLambda(registry.getNextLogicalId(), keyString);
+                    return physicalIds;
+                }));
+            }
+            start.countDown();
+
+            int[] expected = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                assertThat(future.get()).containsExactly(expected);
+            }
+            Set<Integer> distinct = new HashSet<>();
+            for (int i = 0; i < lambdas; i++) {
+                distinct.add(expected[i]);
+            }
+            assertThat(distinct).hasSize(lambdas).doesNotContain(physicalIdObject);
+            assertThat(expected[lambdas]).isEqualTo(physicalIdObject);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
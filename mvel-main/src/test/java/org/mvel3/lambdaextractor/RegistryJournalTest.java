@@ -0,0 +1,152 @@
+package org.mvel3.lambdaextractor;
+
+import com.github.javaparser.StaticJavaParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegistryJournalTest {
+
+    private static RegistryJournal.Entry entry(int physicalId) {
+        return new RegistryJournal.Entry(physicalId, 31 * physicalId, "target/GeneratorEvaluator___" + physicalId + ".class",
+                                         "public boolean eval(java.util.Map m)", "{ return m != null; }",
+                                         "boolean", "eval", List.of("java.util.Map"));
+    }
+
+    @Test
+    void flushedRecordsAreReplayedInOrder() throws Exception {
+        Path file = Files.createTempDirectory("journal").resolve("registry.journal");
+
+        RegistryJournal journal = new RegistryJournal(file);
+        journal.append(entry(0));
+        journal.append(entry(1));
+        assertThat(file).doesNotExist();
+
+        journal.flush();
+        journal.append(new RegistryJournal.Counters(2, 5));
+        journal.flush();
+
+        assertThat(new RegistryJournal(file).replay())
+                .containsExactly(entry(0), entry(1), new RegistryJournal.Counters(2, 5));
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws Exception {
+        Path file = Files.createTempDirectory("journal").resolve("registry.journal");
+
+        RegistryJournal journal = new RegistryJournal(file);
+        journal.append(entry(0));
+        journal.append(entry(1));
+        journal.flush();
+
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        RegistryJournal reopened = new RegistryJournal(file);
+        assertThat(reopened.replay()).containsExactly(entry(0));
+
+        // appending after the truncated tail keeps the journal readable
+        reopened.append(entry(2));
+        reopened.flush();
+        assertThat(new RegistryJournal(file).replay()).containsExactly(entry(0), entry(2));
+    }
+
+    @Test
+    void journalInAnotherFormatIsIgnoredAndReplaced() throws Exception {
+        Path file = Files.createTempDirectory("journal").resolve("registry.journal");
+        Files.writeString(file, "v1\n0|0\n");
+
+        RegistryJournal journal = new RegistryJournal(file);
+        assertThat(journal.replay()).isEmpty();
+
+        journal.append(entry(0));
+        journal.flush();
+        assertThat(new RegistryJournal(file).replay()).containsExactly(entry(0));
+    }
+
+    @Test
+    void compactionKeepsOnlyGivenRecords() throws Exception {
+        Path file = Files.createTempDirectory("journal").resolve("registry.journal");
+
+        RegistryJournal journal = new RegistryJournal(file);
+        for (int i = 0; i < 10; i++) {
+            journal.append(entry(0));
+            journal.append(new RegistryJournal.Counters(1, i));
+        }
+        journal.flush();
+        long size = Files.size(file);
+
+        journal.compact(List.of(new RegistryJournal.Counters(1, 9), entry(0)));
+
+        assertThat(Files.size(file)).isLessThan(size);
+        assertThat(new RegistryJournal(file).replay()).containsExactly(new RegistryJournal.Counters(1, 9), entry(0));
+    }
+
+    @Test
+    void mappedEntriesAreLocatedAndDecodedOnDemand() throws Exception {
+        Path file = Files.createTempDirectory("journal").resolve("registry.journal");
+
+        RegistryJournal journal = new RegistryJournal(file);
+        journal.append(entry(0));
+        journal.append(entry(1));
+        journal.append(new RegistryJournal.Counters(2, 7));
+        journal.flush();
+
+        RegistryJournal.Mapped mapped = new RegistryJournal(file).map();
+
+        assertThat(mapped.recordCount()).isEqualTo(3);
+        assertThat(mapped.counters()).isEqualTo(new RegistryJournal.Counters(2, 7));
+        assertThat(mapped.entries()).extracting(RegistryJournal.EntryRef::physicalId).containsExactly(0, 1);
+        assertThat(mapped.entries()).extracting(RegistryJournal.EntryRef::hash).containsExactly(0, 31);
+        assertThat(mapped.read(mapped.entries().get(1))).isEqualTo(entry(1));
+    }
+
+    @Test
+    void persistedKeyIsRestoredWithoutParsing() throws Exception {
+        LambdaKey key = LambdaUtils.createLambdaKeyFromMethodDeclarationString(
+                "public java.lang.Integer eval(java.util.Map __context) { return __context.size(); }");
+
+        RegistryJournal.Entry entry = RegistryJournal.Entry.of(3, Path.of("Lambda.class"), key);
+        LambdaKey restored = LambdaUtils.restoreLambdaKey(entry.methodSignature(), entry.normalisedBody(), entry.hash(),
+                                                          entry.returnType(), entry.methodName(), entry.parameterTypes(),
+                                                          getClass().getClassLoader());
+
+        assertThat(restored).isEqualTo(key);
+        assertThat(restored.hashCode()).isEqualTo(key.hashCode());
+        assertThat(restored.getMethodSignatureInfo().returnType).isEqualTo(Integer.class);
+        assertThat(restored.getMethodSignatureInfo().methodName).isEqualTo("eval");
+        assertThat(restored.getMethodSignatureInfo().parameterTypes).containsExactly(java.util.Map.class);
+    }
+
+    @Test
+    void persistedKeyTypesAreResolvedWithTheGivenClassLoader() throws Exception {
+        RegistryJournal.Entry entry = LambdaUtils.createJournalEntry(4, Path.of("Lambda.class"), StaticJavaParser.parseMethodDeclaration(
+                "public java.lang.Boolean eval(org.mvel3.lambdaextractor.RegistryJournal.Counters c) { return c != null; }"));
+        assertThat(entry.parameterTypes()).containsExactly("org.mvel3.lambdaextractor.RegistryJournal.Counters");
+
+        List<String> requested = new ArrayList<>();
+        ClassLoader recording = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                requested.add(name);
+                return super.loadClass(name, resolve);
+            }
+        };
+        LambdaKey restored = LambdaUtils.restoreLambdaKey(entry.methodSignature(), entry.normalisedBody(), entry.hash(),
+                                                          entry.returnType(), entry.methodName(), entry.parameterTypes(),
+                                                          recording);
+
+        // the source name of the inner class is resolved as its binary name
+        assertThat(restored.getMethodSignatureInfo().parameterTypes).containsExactly(RegistryJournal.Counters.class);
+        assertThat(requested).contains("java.lang.Boolean", "org.mvel3.lambdaextractor.RegistryJournal$Counters");
+    }
+}
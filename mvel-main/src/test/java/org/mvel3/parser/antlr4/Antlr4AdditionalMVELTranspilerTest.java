@@ -108,14 +108,22 @@ class Antlr4AdditionalMVELTranspilerTest implements TranspilerTest {
     void testNullSafeChainedMethodCall() {
         test(ctx -> ctx.addDeclaration("$p", Person.class),
              "return $p!.getAddresses()!.get(0);",
-             "return $p != null ? ($p.getAddresses() != null ? $p.getAddresses().get(0) : null) : null;");
+             "return $p != null ? ($p.getAddresses() instanceof java.util.List<org.mvel3.Address> __nullSafe0 ? __nullSafe0.get(0) : null) : null;");
     }
 
     @Test
     void testNullSafeChainedMix() {
         test(ctx -> ctx.addDeclaration("$p", Person.class),
              "return $p!.addresses!.get(0);",
-             "return $p != null ? ($p.getAddresses() != null ? $p.getAddresses().get(0) : null) : null;");
+             "return $p != null ? ($p.getAddresses() instanceof java.util.List<org.mvel3.Address> __nullSafe0 ? __nullSafe0.get(0) : null) : null;");
+    }
+
+    @Test
+    void testNullSafeChainEvaluatesEachLinkOnce() {
+        test(ctx -> ctx.addDeclaration("$p", Person.class),
+             "return $p!.address!.city!.length();",
+             "return $p != null ? ($p.getAddress() instanceof org.mvel3.Address __nullSafe0 ? "
+             + "(__nullSafe0.getCity() instanceof java.lang.String __nullSafe1 ? __nullSafe1.length() : null) : null) : null;");
     }
 
     @Test
@@ -0,0 +1,147 @@
+package org.mvel3.transpiler.context;
+
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import org.junit.jupiter.api.Test;
+import org.mvel3.Evaluator;
+import org.mvel3.Foo;
+import org.mvel3.MVEL;
+import org.mvel3.Type;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranspilerEnvironmentTest {
+
+    @Test
+    void sameClassLoaderSharesEnvironment() {
+        ClassLoader classLoader = TranspilerEnvironmentTest.class.getClassLoader();
+
+        TranspilerEnvironment first = TranspilerEnvironment.forClassLoader(classLoader);
+        TranspilerEnvironment second = TranspilerEnvironment.forClassLoader(classLoader);
+
+        assertThat(second).isSameAs(first);
+        // the facade is not thread safe, so each transpilation creates its own
+        assertThat(second.createFacade()).isNotSameAs(first.createFacade());
+    }
+
+    @Test
+    void symbolSolverFacadeIsOwnedByTheTypeSolver() throws Exception {
+        TranspilerEnvironment environment = TranspilerEnvironment.forClassLoader(TranspilerEnvironmentTest.class.getClassLoader());
+        JavaParserFacade facade = JavaParserFacade.get(environment.getTypeSolver());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // the lock the shared facades are created under must not be taken for the environment's
+            synchronized (JavaParserFacade.class) {
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    results.add(executor.submit(() -> {
+                        for (int j = 0; j < 10_000; j++) {
+                            if (JavaParserFacade.get(environment.getTypeSolver()) != facade) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }));
+                }
+                for (Future<Boolean> result : results) {
+                    assertThat(result.get(10, TimeUnit.SECONDS)).isTrue();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.gc();
+        assertThat(JavaParserFacade.get(environment.getTypeSolver())).isSameAs(facade);
+    }
+
+    @Test
+    void releasedClassLoaderIsNotPinned() throws Exception {
+        URLClassLoader isolated = new URLClassLoader(new URL[0], TranspilerEnvironmentTest.class.getClassLoader());
+        TranspilerEnvironment environment = TranspilerEnvironment.forClassLoader(isolated);
+        // as the symbol solver does internally
+        JavaParserFacade.get(environment.getTypeSolver());
+
+        WeakReference<ClassLoader> ref = new WeakReference<>(isolated);
+        TranspilerEnvironment.release(isolated);
+        isolated.close();
+        isolated = null;
+        environment = null;
+
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(ref.get()).isNull();
+    }
+
+    @Test
+    void differentClassLoaderGetsOwnEnvironment() throws Exception {
+        try (URLClassLoader isolated = new URLClassLoader(new URL[0], TranspilerEnvironmentTest.class.getClassLoader())) {
+            TranspilerEnvironment environment = TranspilerEnvironment.forClassLoader(isolated);
+
+            assertThat(environment).isNotSameAs(TranspilerEnvironment.forClassLoader(TranspilerEnvironmentTest.class.getClassLoader()));
+            assertThat(environment.getClassLoader()).isSameAs(isolated);
+            assertThat(environment.getTypeSolver().tryToSolveType(Foo.class.getName()).isSolved()).isTrue();
+        }
+    }
+
+    @Test
+    void resolvedTypesAreCachedAcrossCompilations() {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foo", Type.type(Foo.class));
+
+        ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+        MVEL mvel = new MVEL();
+        mvel.compileMapExpression("foo.getName()", String.class, Set.of(Foo.class.getCanonicalName()), types);
+
+        TranspilerEnvironment environment = TranspilerEnvironment.forClassLoader(classLoader);
+        int cached = environment.cachedTypeCount();
+        assertThat(cached).isGreaterThan(0);
+
+        mvel.compileMapExpression("foo.getName()", String.class, Set.of(Foo.class.getCanonicalName()), types);
+        assertThat(environment.cachedTypeCount()).isEqualTo(cached);
+    }
+
+    @Test
+    void concurrentCompilationsShareEnvironment() throws Exception {
+        Map<String, Type<?>> types = new HashMap<>();
+        types.put("foo", Type.type(Foo.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String suffix = "x" + i;
+                results.add(executor.submit(() -> {
+                    Evaluator<Map<String, Object>, Void, String> evaluator =
+                            new MVEL().compileMapExpression("foo.getName() + \"" + suffix + "\"", String.class, Set.of(Foo.class.getCanonicalName()), types);
+                    Foo foo = new Foo();
+                    foo.setName("foo");
+                    Map<String, Object> vars = new HashMap<>();
+                    vars.put("foo", foo);
+                    return evaluator.eval(vars);
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get()).isEqualTo("foox" + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}